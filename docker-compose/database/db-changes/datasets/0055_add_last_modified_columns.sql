@@ -0,0 +1,6 @@
+ALTER TABLE dataset ADD COLUMN last_modified datetime(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6);
+ALTER TABLE dataset ADD INDEX idx_dataset_last_modified (last_modified);
+ALTER TABLE dataset_metadata ADD COLUMN last_modified datetime(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6);
+ALTER TABLE dataset_metadata ADD INDEX idx_dataset_metadata_last_modified (last_modified);
+ALTER TABLE examination ADD COLUMN last_modified datetime(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6);
+ALTER TABLE examination ADD INDEX idx_examination_last_modified (last_modified);
@@ -0,0 +1,8 @@
+CREATE TABLE `extra_data_volume` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `study_id` bigint(20) NOT NULL,
+  `extra_data_type` varchar(255) NOT NULL,
+  `size` bigint(20) NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `UK_extra_data_volume_study_type` (`study_id`, `extra_data_type`)
+);
@@ -0,0 +1,8 @@
+CREATE TABLE `study_files_volume` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `study_id` bigint(20) NOT NULL,
+  `file_type` varchar(255) NOT NULL,
+  `size` bigint(20) NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `UK_study_files_volume_study_type` (`study_id`, `file_type`)
+);
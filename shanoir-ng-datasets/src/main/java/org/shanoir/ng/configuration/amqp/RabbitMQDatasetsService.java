@@ -28,6 +28,7 @@ import org.shanoir.ng.datasetacquisition.service.DatasetAcquisitionService;
 import org.shanoir.ng.examination.model.Examination;
 import org.shanoir.ng.examination.repository.ExaminationRepository;
 import org.shanoir.ng.examination.service.ExaminationService;
+import org.shanoir.ng.examination.service.ExtraDataVolumeService;
 import org.shanoir.ng.shared.configuration.RabbitMQConfiguration;
 import org.shanoir.ng.shared.core.model.IdName;
 import org.shanoir.ng.shared.dataset.RelatedDataset;
@@ -102,6 +103,9 @@ public class RabbitMQDatasetsService {
 	@Autowired
 	private ExaminationService examinationService;
 
+	@Autowired
+	private ExtraDataVolumeService extraDataVolumeService;
+
 	@Autowired
 	public ShanoirEventService eventService;
 
@@ -135,6 +139,7 @@ public class RabbitMQDatasetsService {
 	)
 	public void receiveMessage(String commandArrStr) {
 		listener.receiveStudyUsers(commandArrStr);
+		solrService.evictStudiesCenterCache();
 	}
 
 	@Transactional
@@ -251,6 +256,7 @@ public class RabbitMQDatasetsService {
 	@RabbitHandler
 	public void receiveCenterNameUpdate(final String centerStr) {
 		receiveAndUpdateIdNameEntity(centerStr, Center.class, centerRepository);
+		solrService.evictStudiesCenterCache();
 	}
 	
 	private <T extends IdName> T receiveAndUpdateIdNameEntity(final String receivedStr, final Class<T> clazz, final CrudRepository<T, Long> repository) {
@@ -395,7 +401,7 @@ public class RabbitMQDatasetsService {
 		SecurityContextUtil.initAuthenticationContext("ROLE_ADMIN");
 
 		StudyStorageVolumeDTO dto = new StudyStorageVolumeDTO(datasetService.getVolumeByFormat(studyId),
-				examinationService.getExtraDataSizeByStudyId(studyId));
+				extraDataVolumeService.getSizeByType(studyId));
 
 		try {
 			return objectMapper.writeValueAsString(dto);
@@ -413,8 +419,9 @@ public class RabbitMQDatasetsService {
 
 		Map<Long, StudyStorageVolumeDTO> studyStorageVolumes = new HashMap<>();
 
+		Map<Long, Map<String, Long>> extraDataSizeByTypeByStudy = extraDataVolumeService.getSizeByTypeByStudyId(studyIds);
 		datasetService.getVolumeByFormatByStudyId(studyIds).forEach((id, volumeByFormat) -> {
-			studyStorageVolumes.put(id, new StudyStorageVolumeDTO(volumeByFormat, examinationService.getExtraDataSizeByStudyId(id)));
+			studyStorageVolumes.put(id, new StudyStorageVolumeDTO(volumeByFormat, extraDataSizeByTypeByStudy.get(id)));
 		});
 
 		try {
@@ -30,6 +30,7 @@ import org.shanoir.ng.importer.dto.ProcessedDatasetImportJob;
 import org.shanoir.ng.shared.exception.EntityNotFoundException;
 import org.shanoir.ng.shared.exception.RestServiceException;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
@@ -308,6 +309,50 @@ public interface DatasetApi {
 			@Parameter(description = "Decide if you want to download dicom (dcm) or nifti (nii) files.") @Valid
 			@RequestParam(value = "format", required = false, defaultValue="dcm") String format, HttpServletResponse response) throws RestServiceException, EntityNotFoundException, IOException;
 
+    @Operation(summary = "startMassiveDownloadJobByDatasetIds", description = "Starts building in background the zip file of the datasets corresponding to the given ids, returns the id of the download job")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "id of the download job"),
+        @ApiResponse(responseCode = "401", description = "unauthorized"),
+        @ApiResponse(responseCode = "403", description = "forbidden"),
+        @ApiResponse(responseCode = "500", description = "unexpected error") })
+    @PostMapping(value = "/massiveDownload/job", produces = { "application/json" })
+    @PreAuthorize("hasRole('ADMIN') or (hasAnyRole('EXPERT', 'USER') and @datasetSecurityService.hasRightOnEveryDataset(#datasetIds, 'CAN_DOWNLOAD'))")
+    ResponseEntity<Long> startMassiveDownloadJobByDatasetIds(
+    		@Parameter(description = "ids of the datasets", required=true) @Valid
+    		@RequestParam(value = "datasetIds", required = true) List<Long> datasetIds,
+    		@Parameter(description = "Decide if you want to download dicom (dcm) or nifti (nii) files.") @Valid
+    		@RequestParam(value = "format", required = false, defaultValue="dcm") String format,
+			@Parameter(description = "If nifti, decide converter to use") @Valid
+			@RequestParam(value = "converterId", required = false) Long converterId) throws RestServiceException;
+
+    @Operation(summary = "startMassiveDownloadJobByStudyId", description = "Starts building in background the zip file of the datasets corresponding to the given study ID, returns the id of the download job")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "id of the download job"),
+        @ApiResponse(responseCode = "401", description = "unauthorized"),
+        @ApiResponse(responseCode = "403", description = "forbidden"),
+        @ApiResponse(responseCode = "500", description = "unexpected error") })
+    @PostMapping(value = "/massiveDownloadByStudy/job", produces = { "application/json" })
+    @PreAuthorize("hasRole('ADMIN') or (hasAnyRole('EXPERT', 'USER') and @datasetSecurityService.hasRightOnStudy(#studyId, 'CAN_DOWNLOAD'))")
+    ResponseEntity<Long> startMassiveDownloadJobByStudyId(
+    		@Parameter(description = "id of the study", required=true) @Valid
+    		@RequestParam(value = "studyId", required = true) Long studyId,
+    		@Parameter(description = "Decide if you want to download dicom (dcm) or nifti (nii) files.") @Valid
+    		@RequestParam(value = "format", required = false, defaultValue="dcm") String format) throws RestServiceException;
+
+    @Operation(summary = "downloadMassiveDownloadJob", description = "Returns the zip file built by the given download job, supports Range requests to resume a download")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "zip file"),
+        @ApiResponse(responseCode = "202", description = "zip file not ready yet"),
+        @ApiResponse(responseCode = "206", description = "part of the zip file"),
+        @ApiResponse(responseCode = "401", description = "unauthorized"),
+        @ApiResponse(responseCode = "403", description = "forbidden"),
+        @ApiResponse(responseCode = "404", description = "no download job found, or job failed"),
+        @ApiResponse(responseCode = "500", description = "unexpected error") })
+    @GetMapping(value = "/massiveDownload/job/{jobId}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'EXPERT', 'USER')")
+    ResponseEntity<Resource> downloadMassiveDownloadJob(
+    		@Parameter(description = "id of the download job", required=true) @PathVariable("jobId") Long jobId);
+
 	@Operation(summary = "downloadStatistics", description = "Download statistics from the entire database")
 	@ApiResponses(value = {
 		@ApiResponse(responseCode = "200", description = "exported statistics"),
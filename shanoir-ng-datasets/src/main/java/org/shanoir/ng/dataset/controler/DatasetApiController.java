@@ -33,6 +33,8 @@ import org.shanoir.ng.dataset.model.Dataset;
 import org.shanoir.ng.dataset.model.DatasetExpressionFormat;
 import org.shanoir.ng.dataset.repository.DatasetRepository;
 import org.shanoir.ng.dataset.service.CreateStatisticsService;
+import org.shanoir.ng.dataset.service.DatasetDownloadJobService;
+import org.shanoir.ng.dataset.service.DatasetDownloadJobService.DownloadJob;
 import org.shanoir.ng.dataset.service.DatasetDownloaderServiceImpl;
 import org.shanoir.ng.dataset.service.DatasetService;
 import org.shanoir.ng.datasetacquisition.model.DatasetAcquisition;
@@ -62,6 +64,7 @@ import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
@@ -142,6 +145,9 @@ public class DatasetApiController implements DatasetApi {
 	@Autowired
 	DatasetDownloaderServiceImpl datasetDownloaderService;
 
+	@Autowired
+	private DatasetDownloadJobService downloadJobService;
+
 	@Autowired
 	private ObjectMapper objectMapper;
 
@@ -439,7 +445,7 @@ public class DatasetApiController implements DatasetApi {
 		}
 
 		// STEP 1: Retrieve all datasets all in one with only the one we can see
-		List<Dataset> datasets = datasetService.findByIdIn(datasetIds);
+		List<Dataset> datasets = datasetService.findByIdInWithExamination(datasetIds);
 
 		datasetDownloaderService.massiveDownload(format, datasets, response, false, converterId);
 	}
@@ -516,6 +522,68 @@ public class DatasetApiController implements DatasetApi {
     }
 
 
+	@Override
+	public ResponseEntity<Long> startMassiveDownloadJobByDatasetIds(
+			@Parameter(description = "ids of the datasets", required=true) @Valid
+			@RequestParam(value = "datasetIds", required = true) List<Long> datasetIds,
+			@Parameter(description = "Decide if you want to download dicom (dcm) or nifti (nii) files.") @Valid
+			@RequestParam(value = "format", required = false, defaultValue=DCM) String format,
+			@Parameter(description = "If nifti, decide converter to use") @Valid
+			@RequestParam(value = "converterId", required = false) Long converterId) throws RestServiceException {
+		if (datasetIds == null || datasetIds.isEmpty()) {
+			throw new RestServiceException(
+					new ErrorModel(HttpStatus.FORBIDDEN.value(), "Please use a valid sets of dataset IDs."));
+		}
+		int size = datasetIds.size();
+		if (size > DATASET_LIMIT) {
+			throw new RestServiceException(
+					new ErrorModel(HttpStatus.FORBIDDEN.value(), "This selection includes " + size + " datasets. You can't download more than " + DATASET_LIMIT + " datasets."));
+		}
+		ShanoirEvent event = downloadJobService.startJob(datasetIds, format, converterId, false);
+		return new ResponseEntity<>(event.getId(), HttpStatus.OK);
+	}
+
+	@Override
+	public ResponseEntity<Long> startMassiveDownloadJobByStudyId(
+			@Parameter(description = "id of the study", required=true) @Valid
+			@RequestParam(value = "studyId", required = true) Long studyId,
+			@Parameter(description = "Decide if you want to download dicom (dcm) or nifti (nii) files.") @Valid
+			@RequestParam(value = "format", required = false, defaultValue=DCM) String format) throws RestServiceException {
+		if (studyId == null) {
+			throw new RestServiceException(
+					new ErrorModel(HttpStatus.FORBIDDEN.value(), "Please use a valid study id."));
+		}
+		List<Long> datasetIds = datasetService.findByStudyId(studyId).stream().map(Dataset::getId).collect(Collectors.toList());
+		if (datasetIds.isEmpty()) {
+			throw new RestServiceException(
+					new ErrorModel(HttpStatus.NOT_FOUND.value(), "This study has no dataset."));
+		}
+		int size = datasetIds.size();
+		if (size > DATASET_LIMIT) {
+			throw new RestServiceException(
+					new ErrorModel(HttpStatus.FORBIDDEN.value(), "This study has " + size + " datasets. You can't download more than " + DATASET_LIMIT + " datasets." ));
+		}
+		ShanoirEvent event = downloadJobService.startJob(datasetIds, format, null, false);
+		return new ResponseEntity<>(event.getId(), HttpStatus.OK);
+	}
+
+	@Override
+	public ResponseEntity<Resource> downloadMassiveDownloadJob(Long jobId) {
+		DownloadJob job = downloadJobService.findJob(jobId);
+		if (job == null) {
+			return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+		}
+		Resource archive = downloadJobService.getArchiveResource(job);
+		if (archive == null) {
+			return new ResponseEntity<>(downloadJobService.isInProgress(job) ? HttpStatus.ACCEPTED : HttpStatus.NOT_FOUND);
+		}
+		// Range requests are handled by Spring for resources
+		return ResponseEntity.ok()
+				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=Datasets_" + jobId + ZIP)
+				.contentType(MediaType.parseMediaType("application/zip"))
+				.body(archive);
+	}
+
 	/**
 	 * This method receives a list of URLs containing file:/// urls and copies the files to a folder named workFolder.
 	 * @param urls
@@ -1,6 +1,7 @@
 package org.shanoir.ng.dataset.dto;
 
 import java.util.List;
+import java.util.Map;
 
 public class StudyStorageVolumeDTO {
 
@@ -8,15 +9,18 @@ public class StudyStorageVolumeDTO {
 
     private List<VolumeByFormatDTO> volumeByFormat;
 
-    private Long extraDataSize;
+    private Long extraDataSize = 0L;
 
-    public StudyStorageVolumeDTO(List<VolumeByFormatDTO> volumeByFormat, Long extraDataSize) {
+    private Map<String, Long> extraDataSizeByType;
+
+    public StudyStorageVolumeDTO(List<VolumeByFormatDTO> volumeByFormat, Map<String, Long> extraDataSizeByType) {
         this.volumeByFormat = volumeByFormat;
         if (volumeByFormat != null){
             volumeByFormat.forEach(dto -> this.total += dto.getSize());
         }
-        this.extraDataSize = extraDataSize;
-        if (extraDataSize != null){
+        this.extraDataSizeByType = extraDataSizeByType;
+        if (extraDataSizeByType != null){
+            extraDataSizeByType.values().forEach(size -> this.extraDataSize += size);
             this.total += extraDataSize;
         }
 
@@ -38,6 +42,14 @@ public class StudyStorageVolumeDTO {
         this.extraDataSize = extraDataSize;
     }
 
+    public Map<String, Long> getExtraDataSizeByType() {
+        return extraDataSizeByType;
+    }
+
+    public void setExtraDataSizeByType(Map<String, Long> extraDataSizeByType) {
+        this.extraDataSizeByType = extraDataSizeByType;
+    }
+
     public Long getTotal() {
         return total;
     }
@@ -29,6 +29,7 @@ import org.shanoir.ng.shared.dateTime.LocalDateAnnotations;
 import org.shanoir.ng.tag.model.StudyTag;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -138,6 +139,10 @@ public abstract class Dataset extends AbstractEntity {
 
 	private Long sourceId;
 
+	/** Last modification date, maintained by the database, used for the incremental Solr indexation. */
+	@Column(insertable = false, updatable = false, columnDefinition = "datetime(6) DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6) NOT NULL")
+	private LocalDateTime lastModified;
+
 	@JsonIgnore
 	@Transient
 	public String SOPInstanceUID;
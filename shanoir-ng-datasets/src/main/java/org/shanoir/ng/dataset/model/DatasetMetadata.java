@@ -14,10 +14,13 @@
 
 package org.shanoir.ng.dataset.model;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import org.shanoir.ng.dataset.modality.ProcessedDatasetType;
 import org.shanoir.ng.shared.core.model.AbstractEntity;
 
+import java.time.LocalDateTime;
+
 /**
  * Dataset metadata that could be updated by study card.
  * 
@@ -59,6 +62,10 @@ public class DatasetMetadata extends AbstractEntity {
 	/** Processed dataset type. */
 	private Integer processedDatasetType;
 
+	/** Last modification date, maintained by the database, used for the incremental Solr indexation. */
+	@Column(insertable = false, updatable = false, columnDefinition = "datetime(6) DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6) NOT NULL")
+	private LocalDateTime lastModified;
+
 	public DatasetMetadata() {
 
 	}
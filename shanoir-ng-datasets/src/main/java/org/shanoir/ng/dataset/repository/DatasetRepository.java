@@ -34,6 +34,20 @@ public interface DatasetRepository extends PagingAndSortingRepository<Dataset, L
 			"WHERE ds.source_id=:datasetParentId AND ex.study_id=:studyId", nativeQuery = true)
 	Long countDatasetsBySourceIdAndStudyId(Long datasetParentId, Long studyId);
 
+	/**
+	 * Loads the datasets with their acquisition, examination, study and subject in one query,
+	 * instead of one query per dataset for the eager relations.
+	 */
+	@Query("SELECT DISTINCT ds FROM Dataset ds " +
+			"LEFT JOIN FETCH ds.datasetAcquisition acq " +
+			"LEFT JOIN FETCH acq.examination ex " +
+			"LEFT JOIN FETCH ex.study " +
+			"LEFT JOIN FETCH ex.subject " +
+			"LEFT JOIN FETCH ds.updatedMetadata " +
+			"LEFT JOIN FETCH ds.originMetadata " +
+			"WHERE ds.id IN (:ids)")
+	List<Dataset> findWithExaminationByIdIn(List<Long> ids);
+
 	List<Dataset> findBySourceId(Long sourceDatasetId);
 
 	List<Dataset> findBySourceIdIn(List<Long> sourceDatasetId);
@@ -42,6 +56,18 @@ public interface DatasetRepository extends PagingAndSortingRepository<Dataset, L
 
 	Iterable<Dataset> findByDatasetAcquisitionExaminationStudy_IdIn(Iterable<Long> studyIds, Sort sort);
 
+	/**
+	 * Loads the datasets of a study with their acquisition, examination, study and subject in one query,
+	 * like findWithExaminationByIdIn, for the massive download by study.
+	 */
+	@Query("SELECT DISTINCT ds FROM Dataset ds " +
+			"JOIN FETCH ds.datasetAcquisition acq " +
+			"JOIN FETCH acq.examination ex " +
+			"JOIN FETCH ex.study st " +
+			"LEFT JOIN FETCH ex.subject " +
+			"LEFT JOIN FETCH ds.updatedMetadata " +
+			"LEFT JOIN FETCH ds.originMetadata " +
+			"WHERE st.id = :studyId")
 	Iterable<Dataset> findByDatasetAcquisition_Examination_Study_Id(Long studyId);
 
 	int countByDatasetAcquisition_Examination_Study_Id(Long studyId);
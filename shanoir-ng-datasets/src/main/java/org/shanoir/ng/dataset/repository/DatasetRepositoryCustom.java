@@ -1,10 +1,21 @@
 package org.shanoir.ng.dataset.repository;
 
-import java.util.List;
+import java.io.IOException;
 
 public interface DatasetRepositoryCustom {
 
-	public List<Object[]> queryStatistics(String studyNameInRegExp, String studyNameOutRegExp,
-			String subjectNameInRegExp, String subjectNameOutRegExp) throws Exception;
+	/**
+	 * Reads the rows of the statistics one by one: the result is never loaded into memory.
+	 */
+	public void queryStatistics(String studyNameInRegExp, String studyNameOutRegExp,
+			String subjectNameInRegExp, String subjectNameOutRegExp, StatisticsRowHandler rowHandler) throws Exception;
+
+	@FunctionalInterface
+	public interface StatisticsRowHandler {
+		/**
+		 * @param row the columns of the row, as strings
+		 */
+		void handle(String[] row) throws IOException;
+	}
 
 }
@@ -409,9 +409,12 @@ public class DatasetSecurityService {
 			return true;
 		}
     	
+    	Set<Long> studyIds = new HashSet<>();
+    	datasetAcquisitions.forEach((DatasetAcquisition acq) -> studyIds.add(acq.getExamination().getStudyId()));
+    	StudiesRights rights = new StudiesRights(studyIds, rightStr);
     	// Also check for centers    	
     	for (DatasetAcquisition acq : datasetAcquisitions) {
-			if (!this.hasRightOnStudyCenter(acq.getExamination().getCenterId(), acq.getExamination().getStudyId(), rightStr)) {
+			if (!rights.hasRightOnStudyCenter(acq.getExamination().getCenterId(), acq.getExamination().getStudyId())) {
 				return false;
 			}
     	}
@@ -441,11 +444,17 @@ public class DatasetSecurityService {
      * @throws EntityNotFoundException
      */
     public boolean hasAtLeastRightOnOneDataset(List<Long> datasetIds, String rightStr) throws EntityNotFoundException {
-    	boolean hasRight = false;
-    	for(Long datasetId : datasetIds) {
-    		hasRight = hasRight || hasRightOnDataset(datasetId, rightStr);
+    	if (datasetIds == null || datasetIds.isEmpty()) {
+    		return false;
+    	}
+    	if (KeycloakUtil.getTokenRoles().contains(ROLE_ADMIN)) {
+			return true;
+		}
+    	List<Dataset> datasets = Utils.toList(datasetRepository.findAllById(datasetIds));
+    	if (datasets.size() < new HashSet<>(datasetIds).size()) {
+    		throw new EntityNotFoundException("Cannot find every dataset with ids " + datasetIds);
     	}
-    	return hasRight;
+    	return !getTrustedDatasetIdsWithRight(datasets, rightStr).isEmpty();
     }
     
     /**
@@ -466,26 +475,102 @@ public class DatasetSecurityService {
 			return true;
 		}
     	
-    	Iterable<Dataset> datasets = datasetRepository.findAllById(datasetIds);
-    	 
-    	boolean hasRight = true;
+    	List<Dataset> datasets = Utils.toList(datasetRepository.findAllById(datasetIds));
+    	return getDatasetIdsWithRight(datasets, rightStr).size() == datasets.size();
+    }
+
+    /**
+     * Check the rights of the connected user on datasets: on the study and center of their examination,
+     * or on every input dataset of their processing. The rights on all the datasets are resolved at once.
+     * !!! The datasets must be trusted, meaning they must come from the database, not from the user !!!
+     * 
+     * @param datasets the datasets
+     * @param rightStr the right
+     * @return the ids of the datasets on which the user has the right
+     */
+    private Set<Long> getDatasetIdsWithRight(Collection<Dataset> datasets, String rightStr) {
+    	Set<Long> studyIds = new HashSet<>();
+    	List<Dataset> inputDatasets = new ArrayList<>();
     	for (Dataset dataset : datasets) {
-            if (dataset.getDatasetAcquisition() == null 
-                    || dataset.getDatasetAcquisition().getExamination() == null
-                    || dataset.getDatasetAcquisition().getExamination().getStudyId() == null) {
-                
-                if (dataset.getDatasetProcessing() != null && dataset.getDatasetProcessing().getInputDatasets() != null) {
-                    for (Dataset inputDs : dataset.getDatasetProcessing().getInputDatasets()) {
-                    	hasRight &= hasRightOnTrustedDataset(inputDs, rightStr);
-                    }
-                } else {
-                    throw new IllegalStateException("Cannot check dataset n°" + dataset.getId() + " rights, this dataset has neither examination nor processing parent !");                
-                }
-            } else {
-            	hasRight &= this.hasRightOnStudyCenter(dataset.getDatasetAcquisition().getExamination().getCenterId(), dataset.getDatasetAcquisition().getExamination().getStudyId(), rightStr);
-            }
+    		if (hasExaminationStudy(dataset)) {
+    			studyIds.add(dataset.getDatasetAcquisition().getExamination().getStudyId());
+    		} else if (dataset.getDatasetProcessing() != null && dataset.getDatasetProcessing().getInputDatasets() != null) {
+    			inputDatasets.addAll(dataset.getDatasetProcessing().getInputDatasets());
+    		} else {
+    			throw new IllegalStateException("Cannot check dataset n°" + dataset.getId() + " rights, this dataset has neither examination nor processing parent !");
+    		}
+    	}
+    	Map<Long, Set<Long>> inputStudies = getStudiesByDataset(inputDatasets);
+    	inputStudies.values().forEach(studyIds::addAll);
+    	StudiesRights rights = new StudiesRights(studyIds, rightStr);
+
+    	Set<Long> idsWithRight = new HashSet<>();
+    	for (Dataset dataset : datasets) {
+    		boolean hasRight;
+    		if (hasExaminationStudy(dataset)) {
+    			hasRight = rights.hasRightOnStudyCenter(dataset.getDatasetAcquisition().getExamination().getCenterId(), dataset.getDatasetAcquisition().getExamination().getStudyId());
+    		} else {
+    			hasRight = true;
+    			for (Dataset inputDs : dataset.getDatasetProcessing().getInputDatasets()) {
+    				hasRight &= rights.hasRightOnStudiesCenter(getExaminationCenterId(inputDs), inputStudies.get(inputDs.getId()));
+    			}
+    		}
+    		if (hasRight) {
+    			idsWithRight.add(dataset.getId());
+    		}
     	}
-    	return hasRight;
+    	return idsWithRight;
+    }
+
+    /**
+     * Check the rights of the connected user on trusted datasets, as hasRightOnTrustedDataset does,
+     * but resolving the related studies and the rights of all the datasets at once.
+     * 
+     * @param datasets the datasets
+     * @param rightStr the right
+     * @return the ids of the datasets on which the user has the right
+     */
+    private Set<Long> getTrustedDatasetIdsWithRight(Collection<Dataset> datasets, String rightStr) {
+    	Map<Long, Set<Long>> studiesByDataset = getStudiesByDataset(datasets);
+    	Set<Long> studyIds = new HashSet<>();
+    	studiesByDataset.values().forEach(studyIds::addAll);
+    	StudiesRights rights = new StudiesRights(studyIds, rightStr);
+    	Set<Long> idsWithRight = new HashSet<>();
+    	for (Dataset dataset : datasets) {
+    		if (rights.hasRightOnStudiesCenter(getExaminationCenterId(dataset), studiesByDataset.get(dataset.getId()))) {
+    			idsWithRight.add(dataset.getId());
+    		}
+    	}
+    	return idsWithRight;
+    }
+
+    /**
+     * @return for each dataset, its study and the studies it is related to, loaded in one query
+     */
+    private Map<Long, Set<Long>> getStudiesByDataset(Collection<Dataset> datasets) {
+    	Map<Long, Set<Long>> studiesByDataset = new HashMap<>();
+    	for (Dataset dataset : datasets) {
+    		studiesByDataset.computeIfAbsent(dataset.getId(), id -> new HashSet<>()).add(getStudyIdFromDataset(dataset));
+    	}
+    	if (!studiesByDataset.isEmpty()) {
+    		for (Object[] related : studyRepository.findByDatasetIdIn(studiesByDataset.keySet())) {
+    			studiesByDataset.get(((Number) related[0]).longValue()).add(((Number) related[1]).longValue());
+    		}
+    	}
+    	return studiesByDataset;
+    }
+
+    private static boolean hasExaminationStudy(Dataset dataset) {
+    	return dataset.getDatasetAcquisition() != null
+    			&& dataset.getDatasetAcquisition().getExamination() != null
+    			&& dataset.getDatasetAcquisition().getExamination().getStudyId() != null;
+    }
+
+    private static Long getExaminationCenterId(Dataset dataset) {
+    	if (dataset.getDatasetAcquisition() == null || dataset.getDatasetAcquisition().getExamination() == null) {
+    		return null;
+    	}
+    	return dataset.getDatasetAcquisition().getExamination().getCenterId();
     }
 
     /**
@@ -507,11 +592,11 @@ public class DatasetSecurityService {
 
 		Set<Long> studies = new HashSet<>();
 		studies.add(studyId);
-		List<Long> studiesRelated = studyRepository.findByDatasetId(studyId).stream().map(BigInteger::longValue).toList();
+		List<Long> studiesRelated = studyRepository.findByDatasetId(dataset.getId()).stream().map(BigInteger::longValue).toList();
 		if (!studiesRelated.isEmpty()) {
 			studies.addAll(studiesRelated);
 		}
-		return hasRightOnStudiesCenter(dataset.getDatasetAcquisition().getExamination().getCenterId(), studies, rightStr);
+		return hasRightOnStudiesCenter(getExaminationCenterId(dataset), studies, rightStr);
     }
 
 	private static Long getStudyIdFromDataset(Dataset dataset) {
@@ -712,16 +797,12 @@ public class DatasetSecurityService {
     public boolean checkDatasetPage(Iterable<Dataset> page, String rightStr) {
     	Set<Long> studyIds = new HashSet<>();
     	page.forEach((Dataset dataset) -> studyIds.add(dataset.getStudyId()));
-    	Set<Long> checkedIds = commService.hasRightOnStudies(studyIds, rightStr); //
+    	StudiesRights rights = new StudiesRights(studyIds, rightStr);
     	
     	// Also check for centers    	
     	for (Dataset dataset : page) {
-    		if (!checkedIds.contains(dataset.getStudyId())) {
+    		if (!rights.hasRightOnStudyCenter(dataset.getDatasetAcquisition().getExamination().getCenterId(), dataset.getStudyId())) {
     			return false;
-    		} else {
-    			if (!this.hasRightOnStudyCenter(dataset.getDatasetAcquisition().getExamination().getCenterId(), dataset.getDatasetAcquisition().getExamination().getStudyId(), rightStr)) {
-    				return false;
-    			}
     		}
     	}
     	return true;
@@ -737,16 +818,12 @@ public class DatasetSecurityService {
     public boolean checkDatasetDTOPage(Iterable<DatasetDTO> page, String rightStr) {
     	Set<Long> studyIds = new HashSet<>();
     	page.forEach((DatasetDTO dataset) -> studyIds.add(dataset.getStudyId()));
-    	Set<Long> checkedIds = commService.hasRightOnStudies(studyIds, rightStr); //
+    	StudiesRights rights = new StudiesRights(studyIds, rightStr);
     	
     	// Also check for centers    	
     	for (DatasetDTO dataset : page) {
-    		if (!checkedIds.contains(dataset.getStudyId())) {
+    		if (!rights.hasRightOnStudyCenter(dataset.getCenterId(), dataset.getStudyId())) {
     			return false;
-    		} else {
-    			if (!this.hasRightOnStudyCenter(dataset.getCenterId(), dataset.getStudyId(), rightStr)) {
-    				return false;
-    			}
     		}
     	}
     	return true;
@@ -760,27 +837,11 @@ public class DatasetSecurityService {
      * @return true
      */
     public boolean filterDatasetList(List<Dataset> list, String rightStr) {
-    	Set<Dataset> toRemove = new HashSet<>();
-    	list.forEach((Dataset ds) -> {
-            if (ds.getDatasetAcquisition() == null 
-                    || ds.getDatasetAcquisition().getExamination() == null
-                    || ds.getDatasetAcquisition().getExamination().getStudyId() == null) {
-                
-                if (ds.getDatasetProcessing() != null && ds.getDatasetProcessing().getInputDatasets() != null) {
-                    for (Dataset inputDs : ds.getDatasetProcessing().getInputDatasets()) {
-                        if (!hasRightOnTrustedDataset(inputDs, rightStr)) {
-                        	toRemove.add(ds);
-                        }
-                    }
-                } else {
-                    throw new IllegalStateException("Cannot check dataset n°" + ds.getId() + " rights, this dataset has neither examination nor processing parent !");                
-                }
-            }
-            else if (!this.hasRightOnStudyCenter(ds.getDatasetAcquisition().getExamination().getCenterId(), ds.getDatasetAcquisition().getExamination().getStudyId(), rightStr)) {
-        		toRemove.add(ds);
-        	}
-    	});
-    	list.removeAll(toRemove);
+    	if (list == null || list.isEmpty()) {
+    		return true;
+    	}
+    	Set<Long> idsWithRight = getDatasetIdsWithRight(list, rightStr);
+    	list.removeIf((Dataset ds) -> !idsWithRight.contains(ds.getId()));
     	return true;
     }
     
@@ -823,15 +884,11 @@ public class DatasetSecurityService {
     	if (page == null) return true;
     	Set<Long> studyIds = new HashSet<>();
     	page.forEach((Examination exam) -> studyIds.add(exam.getStudyId()));
-    	Set<Long> checkedIds = commService.hasRightOnStudies(studyIds, rightStr);
+    	StudiesRights rights = new StudiesRights(studyIds, rightStr);
     	for (Examination exam : page) {
-    		if (!checkedIds.contains(exam.getStudyId())) {
+    		if (!rights.hasRightOnStudyCenter(exam.getCenterId(), exam.getStudyId())) {
 				return false;
-			} else {
-    			if (!this.hasRightOnStudyCenter(exam.getCenterId(), exam.getStudyId(), rightStr)) {
-    				return false;
-    			}
-    		}
+			}
     	}
     	return true;
     }
@@ -844,13 +901,10 @@ public class DatasetSecurityService {
      * @return true
      */
     public boolean filterExaminationList(List<Examination> list, String rightStr) {
-    	Set<Examination> toRemove = new HashSet<>();
-    	list.forEach((Examination exam) -> {
-        	if (!this.hasRightOnStudyCenter(exam.getCenterId(), exam.getStudyId(), rightStr)) {
-        		toRemove.add(exam);
-        	}
-    	});
-    	list.removeAll(toRemove);
+    	Set<Long> studyIds = new HashSet<>();
+    	list.forEach((Examination exam) -> studyIds.add(exam.getStudyId()));
+    	StudiesRights rights = new StudiesRights(studyIds, rightStr);
+    	list.removeIf((Examination exam) -> !rights.hasRightOnStudyCenter(exam.getCenterId(), exam.getStudyId()));
     	return true;
     }
     
@@ -865,13 +919,18 @@ public class DatasetSecurityService {
     	if (list == null) {
 			return true;
 		}
-    	Set<DatasetDTO> dsRemove = new HashSet<>();
-    	for(DatasetDTO dto : list) {
-    		if (!this.hasRightOnDataset(dto.getId(), rightStr)) {
-    			dsRemove.add(dto);
-        	}
+    	if (list.isEmpty() || KeycloakUtil.getTokenRoles().contains(ROLE_ADMIN)) {
+			return true;
+		}
+    	List<Long> datasetIds = list.stream().map(DatasetDTO::getId).distinct().toList();
+    	List<Dataset> datasets = Utils.toList(datasetRepository.findAllById(datasetIds));
+    	if (datasets.size() < datasetIds.size()) {
+    		Set<Long> foundIds = datasets.stream().map(Dataset::getId).collect(Collectors.toSet());
+    		List<Long> missingIds = datasetIds.stream().filter(id -> !foundIds.contains(id)).toList();
+    		throw new EntityNotFoundException("Cannot find datasets with ids " + missingIds);
     	}
-    	list.removeAll(dsRemove);
+    	Set<Long> idsWithRight = getTrustedDatasetIdsWithRight(datasets, rightStr);
+    	list.removeIf((DatasetDTO dto) -> !idsWithRight.contains(dto.getId()));
     	return true;
     }
     
@@ -885,13 +944,10 @@ public class DatasetSecurityService {
      */
     public boolean filterDatasetAcquisitionList(List<DatasetAcquisition> list, String rightStr) {
         if (list == null) return true;
-    	Set<DatasetAcquisition> toRemove = new HashSet<>();
-    	list.forEach((DatasetAcquisition ds) -> {
-        	if (!this.hasRightOnStudyCenter(ds.getExamination().getCenterId(), ds.getExamination().getStudyId(), rightStr)) {
-        		toRemove.add(ds);
-        	}
-    	});
-    	list.removeAll(toRemove);
+    	Set<Long> studyIds = new HashSet<>();
+    	list.forEach((DatasetAcquisition acq) -> studyIds.add(acq.getExamination().getStudyId()));
+    	StudiesRights rights = new StudiesRights(studyIds, rightStr);
+    	list.removeIf((DatasetAcquisition acq) -> !rights.hasRightOnStudyCenter(acq.getExamination().getCenterId(), acq.getExamination().getStudyId()));
     	return true;
     }
 
@@ -906,13 +962,10 @@ public class DatasetSecurityService {
     	if (list == null) {
 			return true;
 		}
-    	Set<DatasetAcquisitionDTO> acqsToRemove = new HashSet<>();
-    	list.forEach((DatasetAcquisitionDTO dsa) -> {
-        	if (!this.hasRightOnStudyCenter(dsa.getExamination().getCenterId(), dsa.getExamination().getStudyId(), rightStr)) {
-        		acqsToRemove.add(dsa);
-        	}
-    	});
-    	list.removeAll(acqsToRemove);
+    	Set<Long> studyIds = new HashSet<>();
+    	list.forEach((DatasetAcquisitionDTO dsa) -> studyIds.add(dsa.getExamination().getStudyId()));
+    	StudiesRights rights = new StudiesRights(studyIds, rightStr);
+    	list.removeIf((DatasetAcquisitionDTO dsa) -> !rights.hasRightOnStudyCenter(dsa.getExamination().getCenterId(), dsa.getExamination().getStudyId()));
     	return true;
     }
     
@@ -925,13 +978,25 @@ public class DatasetSecurityService {
 	* @return true
 	*/
 	public boolean filterExaminationDatasetAcquisitionDTOList(List<ExaminationDatasetAcquisitionDTO> list, String rightStr) throws EntityNotFoundException {
-	   if (list == null) {
+	   if (list == null || list.isEmpty()) {
 	                   return true;
 	           }
+	   if (KeycloakUtil.getTokenRoles().contains(ROLE_ADMIN)) {
+		   return true;
+	   }
+	   Set<Long> examinationIds = new HashSet<>();
+	   list.forEach((ExaminationDatasetAcquisitionDTO edsa) -> examinationIds.add(edsa.getExaminationId()));
+	   List<Examination> exams = Utils.toList(examinationRepository.findAllById(examinationIds));
+	   if (exams.size() < examinationIds.size()) {
+		   throw new EntityNotFoundException("Cannot find every examination with ids " + examinationIds);
+	   }
+	   Set<Long> studyIds = new HashSet<>();
+	   exams.forEach((Examination exam) -> studyIds.add(exam.getStudyId()));
+	   StudiesRights rights = new StudiesRights(studyIds, rightStr);
 	   Set<Long> checkedIds = new HashSet<Long>();
-	   for (ExaminationDatasetAcquisitionDTO edsa : list) {
-		   if (hasRightOnExamination(edsa.getExaminationId(), rightStr)) {
-			   checkedIds.add(edsa.getExaminationId());
+	   for (Examination exam : exams) {
+		   if (exam.getStudyId() != null && rights.hasRightOnStudyCenter(exam.getCenterId(), exam.getStudyId())) {
+			   checkedIds.add(exam.getId());
 		   }
 	   }
 	   list.removeIf((ExaminationDatasetAcquisitionDTO edsa) -> !checkedIds.contains(edsa.getExaminationId()));
@@ -950,8 +1015,11 @@ public class DatasetSecurityService {
     	if (page == null) {
 			return true;
 		}
+    	Set<Long> studyIds = new HashSet<>();
+    	page.forEach((DatasetAcquisitionDTO acquisition) -> studyIds.add(acquisition.getExamination().getStudyId()));
+    	StudiesRights rights = new StudiesRights(studyIds, rightStr);
     	for (DatasetAcquisitionDTO acquisition : page) {
-    		if (!hasRightOnStudyCenter(acquisition.getExamination().getCenterId(), acquisition.getExamination().getStudyId(), rightStr)) {
+    		if (!rights.hasRightOnStudyCenter(acquisition.getExamination().getCenterId(), acquisition.getExamination().getStudyId())) {
 				return false;
 			}
     	}
@@ -969,8 +1037,11 @@ public class DatasetSecurityService {
     	if (page == null) {
 			return true;
 		}
+    	Set<Long> studyIds = new HashSet<>();
+    	page.forEach((DatasetAcquisition acquisition) -> studyIds.add(acquisition.getExamination().getStudyId()));
+    	StudiesRights rights = new StudiesRights(studyIds, rightStr);
     	for (DatasetAcquisition acquisition : page) {
-    		if (!hasRightOnStudyCenter(acquisition.getExamination().getCenterId(), acquisition.getExamination().getStudyId(), rightStr)) {
+    		if (!rights.hasRightOnStudyCenter(acquisition.getExamination().getCenterId(), acquisition.getExamination().getStudyId())) {
 				return false;
 			}
     	}
@@ -1009,8 +1080,11 @@ public class DatasetSecurityService {
     	if (page == null) {
 			return true;
 		}
+    	Set<Long> studyIds = new HashSet<>();
+    	page.forEach((ExaminationDTO exam) -> studyIds.add(exam.getStudyId()));
+    	StudiesRights rights = new StudiesRights(studyIds, rightStr);
     	for (ExaminationDTO exam : page) {
-    		if (!this.hasRightOnStudyCenter(exam.getCenterId(), exam.getStudyId(), rightStr)) {
+    		if (!rights.hasRightOnStudyCenter(exam.getCenterId(), exam.getStudyId())) {
 				return false;
 			}
     	}
@@ -1026,13 +1100,10 @@ public class DatasetSecurityService {
      */
     public boolean filterExaminationDTOList(List<ExaminationDTO> list, String rightStr) {
 	if (list == null) return true;
-    	Set<ExaminationDTO> examsToRemove = new HashSet<>();
-    	for(ExaminationDTO exam : list) {
-    		if (!hasRightOnStudyCenter(exam.getCenterId(), exam.getStudyId(), rightStr)) {
-    			examsToRemove.add(exam);
-			}
-    	}
-    	list.removeAll(examsToRemove);
+    	Set<Long> studyIds = new HashSet<>();
+    	list.forEach((ExaminationDTO exam) -> studyIds.add(exam.getStudyId()));
+    	StudiesRights rights = new StudiesRights(studyIds, rightStr);
+    	list.removeIf((ExaminationDTO exam) -> !rights.hasRightOnStudyCenter(exam.getCenterId(), exam.getStudyId()));
     	return true;
     }
     
@@ -1045,13 +1116,10 @@ public class DatasetSecurityService {
      */
     public boolean filterSubjectExaminationDTOList(List<SubjectExaminationDTO> list, String rightStr) {
 	if (list == null) return true;
-    	Set<SubjectExaminationDTO> examsToRemove = new HashSet<>();
-    	for(SubjectExaminationDTO exam : list) {
-    		if (!hasRightOnStudyCenter(exam.getCenterId(), exam.getStudyId(), rightStr)) {
-    			examsToRemove.add(exam);
-			}
-    	}
-    	list.removeAll(examsToRemove);
+    	Set<Long> studyIds = new HashSet<>();
+    	list.forEach((SubjectExaminationDTO exam) -> studyIds.add(exam.getStudyId()));
+    	StudiesRights rights = new StudiesRights(studyIds, rightStr);
+    	list.removeIf((SubjectExaminationDTO exam) -> !rights.hasRightOnStudyCenter(exam.getCenterId(), exam.getStudyId()));
     	return true;
     }
     
@@ -1105,4 +1173,30 @@ public class DatasetSecurityService {
 		return hasRightOnExamination(id, rightStr);
     }
    
+    /**
+     * The rights of the connected user on the studies of a list or a page: the studies with the right
+     * are resolved at once, and the center rights once for each study and center, so that the elements
+     * are then checked in memory.
+     */
+    private class StudiesRights {
+
+    	private final Set<Long> checkedStudyIds;
+
+    	private final Map<List<Long>, Boolean> centerRights = new HashMap<>();
+
+    	StudiesRights(Set<Long> studyIds, String rightStr) {
+    		Set<Long> checkedIds = studyIds.isEmpty() ? null : commService.hasRightOnStudies(studyIds, rightStr);
+    		this.checkedStudyIds = checkedIds != null ? checkedIds : Collections.emptySet();
+    	}
+
+    	boolean hasRightOnStudyCenter(Long centerId, Long studyId) {
+    		return checkedStudyIds.contains(studyId)
+    				&& centerRights.computeIfAbsent(Arrays.asList(studyId, centerId), key -> commService.hasRightOnCenter(studyId, centerId));
+    	}
+
+    	boolean hasRightOnStudiesCenter(Long centerId, Set<Long> studyIds) {
+    		return studyIds.stream().anyMatch(checkedStudyIds::contains) && commService.hasRightOnCenter(studyIds, centerId);
+    	}
+    }
+
 }
@@ -14,10 +14,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -28,6 +26,9 @@ public class CreateStatisticsService {
     @Autowired
     private DatasetService datasetService;
     private static final String ZIP = ".zip";
+    private static final String TSV = ".tsv";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long PROGRESS_INTERVAL_MS = 2000;
     private static final String JAVA_IO_TMPDIR = "java.io.tmpdir";
     private static final Logger LOG = LoggerFactory.getLogger(CreateStatisticsService.class);
 
@@ -40,73 +41,70 @@ public class CreateStatisticsService {
         return file;
     }
 
+    /**
+     * Writes the statistics into the zip while they are read from the database: neither
+     * the rows nor the tsv file are kept. The progress is published at most every
+     * PROGRESS_INTERVAL_MS, with the number of lines written, as the total is unknown.
+     */
     @Async
     @Transactional
     public void createStats(String studyNameInRegExp, String studyNameOutRegExp, String subjectNameInRegExp, String subjectNameOutRegExp, ShanoirEvent event, String params) throws RestServiceException, IOException {
-        float progress = 0;
         String tmpDir = System.getProperty(JAVA_IO_TMPDIR);
         File userDir = DatasetFileUtils.getUserImportDir(tmpDir);
-        File statisticsFile = recreateFile(userDir + File.separator + "shanoirExportStatistics_" + event.getId() + ".tsv");
-        File zipFile = recreateFile(userDir + File.separator + "shanoirExportStatistics_" + event.getId() + ZIP);
+        String fileName = "shanoirExportStatistics_" + event.getId();
+        File zipFile = recreateFile(userDir + File.separator + fileName + ZIP);
 
         // Get the data
-        try (FileOutputStream fos = new FileOutputStream(statisticsFile);
-             BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos))){
-
-            List<Object[]> results = datasetService.queryStatistics(studyNameInRegExp, studyNameOutRegExp, subjectNameInRegExp, subjectNameOutRegExp);
-
-            for (Object[] or : results) {
-
-                progress += 1f / results.size();
-                event.setProgress(progress);
-                eventService.publishEvent(event);
-                List<String> strings = Arrays.stream(or).map(object -> Objects.toString(object, null)).collect(Collectors.toList());
-                bw.write(String.join("\t", strings));
+        try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile), BUFFER_SIZE));
+             BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(zos, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            zos.putNextEntry(new ZipEntry(fileName + TSV));
+            ExportProgress progress = new ExportProgress(event);
+            datasetService.queryStatistics(studyNameInRegExp, studyNameOutRegExp, subjectNameInRegExp, subjectNameOutRegExp, row -> {
+                bw.write(String.join("\t", Arrays.stream(row).map(String::valueOf).toArray(String[]::new)));
                 bw.newLine();
-            }
-
+                progress.lineWritten();
+            });
+            bw.flush();
+            zos.closeEntry();
         } catch (Exception e) {
+            zipFile.delete();
             event.setStatus(ShanoirEvent.ERROR);
             event.setMessage("Error during fetching of statistics.");
             event.setProgress(-1f);
             eventService.publishEvent(event);
-            LOG.error("Error during fetching of statistics with id : " + event.getId());
-        } finally {
-            zipSingleFile(statisticsFile, zipFile);
-            statisticsFile.delete();
-            event.setObjectId(String.valueOf(event.getId()));
-            event.setProgress(1f);
-            event.setMessage("Statistics fetched with params : " + params + "\nDownload available for 6 hours");
-            event.setStatus(ShanoirEvent.SUCCESS);
-            eventService.publishEvent(event);
+            LOG.error("Error during fetching of statistics with id : " + event.getId(), e);
+            return;
         }
+        event.setObjectId(String.valueOf(event.getId()));
+        event.setProgress(1f);
+        event.setMessage("Statistics fetched with params : " + params + "\nDownload available for 6 hours");
+        event.setStatus(ShanoirEvent.SUCCESS);
+        eventService.publishEvent(event);
     }
 
     /**
-     * Zip a single file
-     *
-     * @param sourceFile
-     * @param zipFile
-     * @throws IOException
+     * Counts the written lines, and publishes them in the event at most every PROGRESS_INTERVAL_MS.
      */
-    private void zipSingleFile(final File sourceFile, final File zipFile) throws IOException {
+    private class ExportProgress {
 
-        byte[] buffer = new byte[1024];
+        private final ShanoirEvent event;
 
+        private long lines;
 
-        try (FileOutputStream fos = new FileOutputStream(zipFile);
-             ZipOutputStream zos = new ZipOutputStream(fos);
-             FileInputStream fis = new FileInputStream(sourceFile);
-        ) {
-            // begin writing a new ZIP entry, positions the stream to the start of the entry data
-            zos.putNextEntry(new ZipEntry(sourceFile.getName()));
+        private long lastPublished = System.currentTimeMillis();
 
-            int length;
+        ExportProgress(ShanoirEvent event) {
+            this.event = event;
+        }
 
-            while ((length = fis.read(buffer)) > 0) {
-                zos.write(buffer, 0, length);
+        void lineWritten() {
+            lines++;
+            long now = System.currentTimeMillis();
+            if (now - lastPublished >= PROGRESS_INTERVAL_MS) {
+                lastPublished = now;
+                event.setMessage("Fetching statistics : " + lines + " lines written");
+                eventService.publishEvent(event);
             }
-            zos.closeEntry();
         }
     }
 }
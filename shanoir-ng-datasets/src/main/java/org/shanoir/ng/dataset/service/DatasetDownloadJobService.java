@@ -0,0 +1,347 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+
+package org.shanoir.ng.dataset.service;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.shanoir.ng.shared.event.ShanoirEvent;
+import org.shanoir.ng.shared.event.ShanoirEventService;
+import org.shanoir.ng.shared.event.ShanoirEventType;
+import org.shanoir.ng.utils.KeycloakUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * This service manages the download jobs: the zip of the datasets is built in background
+ * into the archive folder, and the user is informed of the progress by a download event.
+ * The id of the job is the id of this event.
+ *
+ * The archives are identified by the downloaded datasets, the format and the converter:
+ * a finished archive is reused by the next jobs asking the same content, and a job asking
+ * the content of a job in progress waits for it instead of building it again.
+ * The archives are deleted when not used for maxAgeHours, or when the folder exceeds maxSizeMb
+ * (least recently used first). The archives being served, or ready for a job since the last
+ * eviction, are never deleted.
+ */
+@Service
+public class DatasetDownloadJobService {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DatasetDownloadJobService.class);
+
+	private static final String ZIP = ".zip";
+
+	private static final String PART = ".part";
+
+	private static final long MEGA_BYTE = 1024L * 1024L;
+
+	private static final long EVICTION_INTERVAL_MINUTES = 10;
+
+	@Value("${download-jobs.folder}")
+	private String archiveFolder;
+
+	@Value("${download-jobs.max-size-mb}")
+	private long maxSizeMb;
+
+	@Value("${download-jobs.max-age-hours}")
+	private long maxAgeHours;
+
+	@Autowired
+	private DatasetDownloaderServiceImpl datasetDownloaderService;
+
+	@Autowired
+	private ShanoirEventService eventService;
+
+	/** Jobs by id */
+	private final Map<Long, DownloadJob> jobs = new ConcurrentHashMap<>();
+
+	/** Events of the jobs waiting for an archive in progress, by archive key */
+	private final Map<String, List<ShanoirEvent>> archivesInProgress = new ConcurrentHashMap<>();
+
+	/** Number of open streams on the archives being served, by archive key */
+	private final Map<String, Integer> archivesInUse = new HashMap<>();
+
+	@PostConstruct
+	public void initArchiveFolder() {
+		new File(archiveFolder).mkdirs();
+	}
+
+	/**
+	 * Starts a download job for the given datasets. The caller must have checked the download rights.
+	 *
+	 * @param datasetIds
+	 * @param format
+	 * @param converterId
+	 * @param withManifest
+	 * @return the event of the job, its id is the job id
+	 */
+	public ShanoirEvent startJob(List<Long> datasetIds, String format, Long converterId, boolean withManifest) {
+		Long userId = KeycloakUtil.getTokenUserId();
+		String key = getArchiveKey(datasetIds, format, converterId, withManifest);
+		ShanoirEvent event = new ShanoirEvent(ShanoirEventType.DOWNLOAD_DATASET_EVENT, null, userId,
+				"Preparing the download of " + datasetIds.size() + " datasets", ShanoirEvent.IN_PROGRESS, 0f);
+		event.setObjectId(String.valueOf(event.getId()));
+		jobs.put(event.getId(), new DownloadJob(userId, key, datasetIds.size()));
+
+		boolean build;
+		synchronized (archivesInProgress) {
+			File archive = getArchive(key);
+			if (archive.exists()) {
+				touch(archive);
+				publishReady(event, datasetIds.size());
+				return event;
+			}
+			List<ShanoirEvent> waitingEvents = archivesInProgress.get(key);
+			build = waitingEvents == null;
+			if (build) {
+				waitingEvents = new ArrayList<>();
+				archivesInProgress.put(key, waitingEvents);
+			}
+			waitingEvents.add(event);
+		}
+		eventService.publishEvent(event);
+		if (build) {
+			buildArchive(key, datasetIds, format, converterId, withManifest, event);
+		}
+		return event;
+	}
+
+	private void buildArchive(String key, List<Long> datasetIds, String format, Long converterId, boolean withManifest, ShanoirEvent event) {
+		File partFile = new File(archiveFolder, key + PART);
+		try {
+			datasetDownloaderService.massiveDownloadToFile(format, datasetIds, partFile, withManifest, converterId, event)
+					.whenComplete((result, error) -> onArchiveBuilt(key, partFile, datasetIds.size(), error));
+		} catch (TaskRejectedException e) {
+			onArchiveBuilt(key, partFile, datasetIds.size(), e);
+		}
+	}
+
+	private void onArchiveBuilt(String key, File partFile, int datasetCount, Throwable error) {
+		if (error == null) {
+			try {
+				Files.move(partFile.toPath(), getArchive(key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				error = e;
+			}
+		}
+		List<ShanoirEvent> waitingEvents;
+		synchronized (archivesInProgress) {
+			waitingEvents = archivesInProgress.remove(key);
+		}
+		if (error != null) {
+			LOG.error("Download job archive [{}] could not be built.", key, error);
+			partFile.delete();
+		}
+		for (ShanoirEvent event : waitingEvents) {
+			if (error == null) {
+				publishReady(event, datasetCount);
+			} else {
+				eventService.publishErrorEvent(event, "Unexpected error while downloading dataset files");
+			}
+		}
+	}
+
+	private void publishReady(ShanoirEvent event, int datasetCount) {
+		eventService.publishSuccessEvent(event, "Download of " + datasetCount + " datasets ready, available for " + maxAgeHours + " hours");
+	}
+
+	/**
+	 * @param jobId
+	 * @return the job if it exists and belongs to the connected user (or if admin), null otherwise
+	 */
+	public DownloadJob findJob(Long jobId) {
+		DownloadJob job = jobs.get(jobId);
+		if (job == null) {
+			return null;
+		}
+		if (!job.userId().equals(KeycloakUtil.getTokenUserId()) && !KeycloakUtil.getTokenRoles().contains("ROLE_ADMIN")) {
+			return null;
+		}
+		return job;
+	}
+
+	/**
+	 * @param job
+	 * @return the archive of the job, null if not built (yet). The archive is not evicted
+	 * while its streams are open.
+	 */
+	public Resource getArchiveResource(DownloadJob job) {
+		String key = job.archiveKey();
+		File archive = getArchive(key);
+		if (!archive.exists()) {
+			return null;
+		}
+		touch(archive);
+		return new FileSystemResource(archive) {
+			@Override
+			public InputStream getInputStream() throws IOException {
+				return openArchive(key, this);
+			}
+		};
+	}
+
+	private InputStream openArchive(String key, FileSystemResource archive) throws IOException {
+		synchronized (archivesInUse) {
+			InputStream inputStream = Files.newInputStream(archive.getFile().toPath());
+			archivesInUse.merge(key, 1, Integer::sum);
+			return new FilterInputStream(inputStream) {
+				private boolean closed;
+
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						if (!closed) {
+							closed = true;
+							releaseArchive(key);
+						}
+					}
+				}
+			};
+		}
+	}
+
+	private void releaseArchive(String key) {
+		synchronized (archivesInUse) {
+			archivesInUse.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+		}
+	}
+
+	public boolean isInProgress(DownloadJob job) {
+		return archivesInProgress.containsKey(job.archiveKey());
+	}
+
+	private File getArchive(String key) {
+		return new File(archiveFolder, key + ZIP);
+	}
+
+	/**
+	 * The last modification date of an archive is its last use date, for eviction.
+	 */
+	private void touch(File archive) {
+		archive.setLastModified(System.currentTimeMillis());
+	}
+
+	/**
+	 * Archives are identified by the sorted dataset ids, the format, the converter and the manifest option.
+	 */
+	private String getArchiveKey(List<Long> datasetIds, String format, Long converterId, boolean withManifest) {
+		String content = new TreeSet<>(datasetIds) + ";" + format + ";" + converterId + ";" + withManifest;
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Deletes the archives not used for maxAgeHours, then the least recently used ones
+	 * until the archive folder is smaller than maxSizeMb.
+	 */
+	@Scheduled(fixedDelay = EVICTION_INTERVAL_MINUTES, timeUnit = TimeUnit.MINUTES)
+	public void evictArchives() {
+		File[] files = new File(archiveFolder).listFiles((dir, name) -> name.endsWith(ZIP) || name.endsWith(PART));
+		if (files == null) {
+			return;
+		}
+		long maxAge = TimeUnit.HOURS.toMillis(maxAgeHours);
+		long now = System.currentTimeMillis();
+		List<File> archives = new ArrayList<>();
+		long totalSize = 0;
+		for (File file : files) {
+			String key = file.getName().substring(0, file.getName().lastIndexOf('.'));
+			if (archivesInProgress.containsKey(key)) {
+				continue;
+			}
+			if (now - file.lastModified() > maxAge && deleteArchive(file)) {
+				continue;
+			}
+			if (file.getName().endsWith(ZIP)) {
+				archives.add(file);
+				totalSize += file.length();
+			}
+		}
+		archives.sort(Comparator.comparingLong(File::lastModified));
+		// an archive used since the last eviction can still be waited for by its job
+		long recentlyUsed = now - TimeUnit.MINUTES.toMillis(EVICTION_INTERVAL_MINUTES);
+		for (File archive : archives) {
+			if (totalSize <= maxSizeMb * MEGA_BYTE) {
+				break;
+			}
+			long size = archive.length();
+			if (archive.lastModified() < recentlyUsed && deleteArchive(archive)) {
+				totalSize -= size;
+			}
+		}
+		// forget the jobs of deleted archives
+		jobs.values().removeIf(job -> !getArchive(job.archiveKey()).exists() && !archivesInProgress.containsKey(job.archiveKey()));
+	}
+
+	/**
+	 * Deletes an archive, if not being served.
+	 *
+	 * @return false if the archive is being served or could not be deleted
+	 */
+	private boolean deleteArchive(File archive) {
+		String key = archive.getName().substring(0, archive.getName().lastIndexOf('.'));
+		synchronized (archivesInUse) {
+			if (archivesInUse.containsKey(key)) {
+				return false;
+			}
+			LOG.info("Deleting download job archive [{}]", archive.getName());
+			try {
+				Files.deleteIfExists(archive.toPath());
+				return true;
+			} catch (IOException e) {
+				LOG.error("Could not delete download job archive [{}]", archive.getName(), e);
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * A download job: its user, the key of its archive and its number of datasets.
+	 */
+	public record DownloadJob(Long userId, String archiveKey, int datasetCount) {
+	}
+
+}
@@ -20,12 +20,15 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.ArrayUtils;
+import org.hibernate.Hibernate;
 import org.joda.time.DateTime;
 import org.shanoir.ng.dataset.modality.BidsDataset;
 import org.shanoir.ng.dataset.modality.EegDataset;
 import org.shanoir.ng.dataset.model.Dataset;
+import org.shanoir.ng.dataset.model.DatasetExpression;
 import org.shanoir.ng.dataset.model.DatasetExpressionFormat;
 import org.shanoir.ng.download.DatasetDownloadError;
+import org.shanoir.ng.download.PacsDownloadStatistics;
 import org.shanoir.ng.download.WADODownloaderService;
 import org.shanoir.ng.examination.model.Examination;
 import org.shanoir.ng.shared.configuration.RabbitMQConfiguration;
@@ -34,7 +37,6 @@ import org.shanoir.ng.shared.event.ShanoirEventService;
 import org.shanoir.ng.shared.event.ShanoirEventType;
 import org.shanoir.ng.shared.exception.ErrorModel;
 import org.shanoir.ng.shared.exception.RestServiceException;
-import org.shanoir.ng.shared.model.Subject;
 import org.shanoir.ng.shared.repository.StudyRepository;
 import org.shanoir.ng.shared.repository.SubjectRepository;
 import org.shanoir.ng.utils.DatasetFileUtils;
@@ -45,14 +47,21 @@ import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StreamUtils;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -103,6 +112,9 @@ public class DatasetDownloaderServiceImpl {
 	@Autowired
 	private ObjectMapper objectMapper;
 
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
 	@PostConstruct
 	private void initialize() {
 		// Set timeout to 5mn (consider nifti reconversion can take some time)
@@ -110,16 +122,91 @@ public class DatasetDownloaderServiceImpl {
 	}
 
 	public void massiveDownload(String format, List<Dataset> datasets, HttpServletResponse response, boolean withManifest, Long converterId) throws RestServiceException {
-		Map<Long, List<String>> filesByAcquisitionId = new HashMap<>();
-
 		response.setContentType("application/zip");
 		response.setHeader("Content-Disposition",
 				"attachment;filename=" + getFileName(datasets));
+		try {
+			massiveDownload(format, datasets, response.getOutputStream(), withManifest, converterId, null);
+		} catch (Exception e) {
+			response.setContentType(null);
+			LOG.error("Unexpected error while downloading dataset files.", e);
+			throw new RestServiceException(
+					new ErrorModel(HttpStatus.UNPROCESSABLE_ENTITY.value(),
+							"Unexpected error while downloading dataset files"));
+		}
+	}
+
+	/**
+	 * Builds the zip of the datasets into the given file, in background, for a download job.
+	 * The datasets are loaded again in a short transaction: no database connection is held
+	 * while the zip is built.
+	 *
+	 * @param format
+	 * @param datasetIds
+	 * @param archive
+	 * @param withManifest
+	 * @param converterId
+	 * @param event the event of the job, updated with the progress
+	 * @return completed when the zip is written
+	 */
+	@Async
+	public CompletableFuture<Void> massiveDownloadToFile(String format, List<Long> datasetIds, File archive, boolean withManifest, Long converterId, ShanoirEvent event) {
+		try {
+			TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+			transaction.setReadOnly(true);
+			List<Dataset> datasets = transaction.execute(status -> findDatasetsWithFiles(datasetIds));
+			try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(archive))) {
+				massiveDownload(format, datasets, outputStream, withManifest, converterId, event);
+			}
+			return CompletableFuture.completedFuture(null);
+		} catch (Exception e) {
+			LOG.error("Unexpected error while building the zip of dataset files [{}].", archive.getName(), e);
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/**
+	 * Loads the datasets with their examination, expressions and files: all that is read
+	 * to build the zip, outside of the transaction.
+	 */
+	private List<Dataset> findDatasetsWithFiles(List<Long> datasetIds) {
+		List<Dataset> datasets = datasetService.findByIdInWithExamination(datasetIds);
+		for (Dataset dataset : datasets) {
+			if (dataset.getDatasetExpressions() != null) {
+				for (DatasetExpression expression : dataset.getDatasetExpressions()) {
+					Hibernate.initialize(expression.getDatasetFiles());
+				}
+			}
+		}
+		return datasets;
+	}
+
+	/**
+	 * Writes the zip of the datasets into the output stream.
+	 *
+	 * @param progressEvent if not null, the event of a download job: its progress is published after each dataset,
+	 * and the download event is not published at the end
+	 */
+	private void massiveDownload(String format, List<Dataset> datasets, OutputStream outputStream, boolean withManifest, Long converterId, ShanoirEvent progressEvent) throws IOException, RestServiceException {
+		Map<Long, List<String>> filesByAcquisitionId = new HashMap<>();
+
 		SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMddHHmmssSSS");
 		Map<Long, DatasetDownloadError> downloadResults = new HashMap<Long, DatasetDownloadError>();
+		PacsDownloadStatistics pacsStatistics = new PacsDownloadStatistics();
+		int datasetCount = 0;
+		// publish the progress of a job at most every percent
+		int progressStep = Math.max(1, datasets.size() / 100);
+
+		// Load all the names needed for the paths at once, instead of once per dataset
+		Map<Long, String> subjectNames = getSubjectNames(datasets);
+		Map<Long, String> studyNames = getStudyNames(datasets);
 
-		try (ZipOutputStream zipOutputStream = new ZipOutputStream(response.getOutputStream())) {
+		try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
 			for (Dataset dataset : datasets) {
+				if (progressEvent != null && datasetCount % progressStep == 0) {
+					eventService.publishEvent(progressEvent, "Preparing the download of " + datasets.size() + " datasets: " + datasetCount + " done", (float) datasetCount / datasets.size());
+				}
+				datasetCount++;
 				if (!dataset.isDownloadable()) {
 					downloadResults.put(dataset.getId(), new DatasetDownloadError("Dataset not downloadable", DatasetDownloadError.ERROR));
 					continue;
@@ -128,11 +215,11 @@ public class DatasetDownloaderServiceImpl {
 				downloadResults.put(dataset.getId(), downloadResult);
 
 				// Create a new folder organized by subject / examination
-				String subjectName = getSubjectName(dataset);
+				String subjectName = getSubjectName(dataset, subjectNames);
 				if (subjectName.contains(File.separator)) {
 					subjectName = subjectName.replaceAll(File.separator, "_");
 				}
-				String studyName = studyRepository.findById(dataset.getStudyId()).orElse(null).getName();
+				String studyName = studyNames.get(dataset.getStudyId());
 
 				String datasetFilePath = null;
 				if (datasets.size() != 1) {
@@ -157,7 +244,7 @@ public class DatasetDownloaderServiceImpl {
 				} else if (DCM.equals(format)) {
 					// DOWNLOAD DICOM
 					DatasetFileUtils.getDatasetFilePathURLs(dataset, pathURLs, DatasetExpressionFormat.DICOM, downloadResult);
-					List<String> files = downloader.downloadDicomFilesForURLsAsZip(pathURLs, zipOutputStream, subjectName, dataset, datasetFilePath, downloadResult);
+					List<String> files = downloader.downloadDicomFilesForURLsAsZip(pathURLs, zipOutputStream, subjectName, dataset, datasetFilePath, downloadResult, pacsStatistics);
 					if (withManifest) {
 						filesByAcquisitionId.putIfAbsent(dataset.getDatasetAcquisition().getId(), new ArrayList<>());
 						filesByAcquisitionId.get(dataset.getDatasetAcquisition().getId()).addAll(files);
@@ -165,7 +252,7 @@ public class DatasetDownloaderServiceImpl {
 				} else if (NII.equals(format)) {
 					// Check if we have a specific converter -> nifti reconversion
 					if (converterId != null) {
-						reconvertToNifti(format, response, converterId, dataset, formatter, pathURLs, downloadResult, subjectName, zipOutputStream);
+						reconvertToNifti(format, converterId, dataset, formatter, pathURLs, downloadResult, subjectName, subjectNames, zipOutputStream);
 					} else {
 						// Check that we have existing nifti, otherwise reconvert using dcm2niix by default.
 						DatasetFileUtils.getDatasetFilePathURLs(dataset, pathURLs, DatasetExpressionFormat.NIFTI_SINGLE_FILE, downloadResult);
@@ -173,7 +260,7 @@ public class DatasetDownloaderServiceImpl {
 							List<String> files = DatasetFileUtils.copyNiftiFilesForURLs(pathURLs, zipOutputStream, dataset, subjectName, false, datasetFilePath);
 						} else {
 							// Reconvert using dcm2niix by default.
-							reconvertToNifti(format, response, DEFAULT_NIFTI_CONVERTER_ID, dataset, formatter, pathURLs, downloadResult, subjectName, zipOutputStream);
+							reconvertToNifti(format, DEFAULT_NIFTI_CONVERTER_ID, dataset, formatter, pathURLs, downloadResult, subjectName, subjectNames, zipOutputStream);
 						}
 					}
 				} else {
@@ -184,6 +271,9 @@ public class DatasetDownloaderServiceImpl {
 					downloadResults.remove(dataset.getId());
 				}
 			}
+			if (pacsStatistics.getInstances() > 0) {
+				LOG.info("Download of [{}] datasets from pacs: {}", datasets.size(), pacsStatistics);
+			}
 			if(!filesByAcquisitionId.isEmpty()){
 				DatasetFileUtils.writeManifestForExport(zipOutputStream, filesByAcquisitionId);
 			}
@@ -198,20 +288,16 @@ public class DatasetDownloaderServiceImpl {
 			}
 
 			String ids = String.join(",", datasets.stream().map(dataset -> dataset.getId().toString()).collect(Collectors.toList()));
-			ShanoirEvent event = new ShanoirEvent(ShanoirEventType.DOWNLOAD_DATASET_EVENT, ids,
-					KeycloakUtil.getTokenUserId(), ids + "." + format, ShanoirEvent.IN_PROGRESS);
-			event.setStatus(ShanoirEvent.SUCCESS);
-			eventService.publishEvent(event);
-		} catch (Exception e) {
-			response.setContentType(null);
-			LOG.error("Unexpected error while downloading dataset files.", e);
-			throw new RestServiceException(
-					new ErrorModel(HttpStatus.UNPROCESSABLE_ENTITY.value(),
-							"Unexpected error while downloading dataset files"));
+			if (progressEvent == null) {
+				ShanoirEvent event = new ShanoirEvent(ShanoirEventType.DOWNLOAD_DATASET_EVENT, ids,
+						KeycloakUtil.getTokenUserId(), ids + "." + format, ShanoirEvent.IN_PROGRESS);
+				event.setStatus(ShanoirEvent.SUCCESS);
+				eventService.publishEvent(event);
+			}
 		}
 	}
 
-	private void reconvertToNifti(String format, HttpServletResponse response, Long converterId, Dataset dataset, SimpleDateFormat formatter, List<URL> pathURLs, DatasetDownloadError downloadResult, String subjectName, ZipOutputStream zipOutputStream) throws RestServiceException, IOException {
+	private void reconvertToNifti(String format, Long converterId, Dataset dataset, SimpleDateFormat formatter, List<URL> pathURLs, DatasetDownloadError downloadResult, String subjectName, Map<Long, String> subjectNames, ZipOutputStream zipOutputStream) throws RestServiceException, IOException {
 		File userDir = DatasetFileUtils.getUserImportDir("/tmp");
 		String tmpFilePath = userDir + File.separator + dataset.getId() + "_" + format;
 
@@ -243,7 +329,7 @@ public class DatasetDownloaderServiceImpl {
 				String datasetFilePath = res.getAbsolutePath();
 				String fileName = res.getName();
 				String extension = fileName.endsWith(NII_GZ) ? NII_GZ : "." + FilenameUtils.getExtension(fileName);
-				String fileNameToSet = getDatasetFileName(dataset) + extension;
+				String fileNameToSet = getDatasetFileName(dataset, subjectNames) + extension;
 
 				// Gzip file if necessary in order to always return a .nii.gz file
 				if (".nii".equals(extension)) {
@@ -272,29 +358,50 @@ public class DatasetDownloaderServiceImpl {
 		}
 	}
 
-	private String getSubjectName(Dataset dataset) {
-		String subjectName = "unknownSubject";
-		if(dataset.getSubjectId() != null){
-			Optional<Subject> subjectOpt = subjectRepository.findById(dataset.getSubjectId());
-			if (subjectOpt.isPresent()) {
-				subjectName = subjectOpt.get().getName();
-			}
+	/**
+	 * @return the names of the subjects of the datasets by id, loaded in one query
+	 */
+	private Map<Long, String> getSubjectNames(List<Dataset> datasets) {
+		Set<Long> subjectIds = datasets.stream().map(Dataset::getSubjectId).filter(Objects::nonNull).collect(Collectors.toSet());
+		Map<Long, String> subjectNames = new HashMap<>();
+		if (!subjectIds.isEmpty()) {
+			subjectRepository.findAllById(subjectIds).forEach(subject -> subjectNames.put(subject.getId(), subject.getName()));
+		}
+		return subjectNames;
+	}
+
+	/**
+	 * @return the names of the studies of the datasets by id, loaded in one query
+	 */
+	private Map<Long, String> getStudyNames(List<Dataset> datasets) {
+		Set<Long> studyIds = datasets.stream().map(Dataset::getStudyId).filter(Objects::nonNull).collect(Collectors.toSet());
+		Map<Long, String> studyNames = new HashMap<>();
+		if (!studyIds.isEmpty()) {
+			studyRepository.findAllById(studyIds).forEach(study -> studyNames.put(study.getId(), study.getName()));
+		}
+		return studyNames;
+	}
+
+	private String getSubjectName(Dataset dataset, Map<Long, String> subjectNames) {
+		String subjectName = null;
+		if (dataset.getSubjectId() != null) {
+			subjectName = subjectNames.get(dataset.getSubjectId());
 		}
-		return subjectName;
+		return subjectName != null ? subjectName : "unknownSubject";
 	}
 
 	private String getFileName(List<Dataset> datasets) {
 		if (datasets != null && datasets.size() == 1) {
-			String datasetName = getDatasetFileName(datasets.get(0));
+			String datasetName = getDatasetFileName(datasets.get(0), getSubjectNames(datasets));
 			return "Dataset_" +  datasetName + "_" + fileDateformatter.format(new DateTime().toDate()) + ZIP;
 		} else {
 			return "Datasets_" + fileDateformatter.format(new DateTime().toDate()) + ZIP;
 		}
 	}
 
-	private String getDatasetFileName(Dataset dataset) {
+	private String getDatasetFileName(Dataset dataset, Map<Long, String> subjectNames) {
 		// Only one dataset -> the logic for one dataset is used
-		String subjectName = getSubjectName(dataset);
+		String subjectName = getSubjectName(dataset, subjectNames);
 
 		String datasetName = subjectName + "_" + dataset.getId() + "_" + dataset.getName();
 		if (dataset.getUpdatedMetadata() != null && dataset.getUpdatedMetadata().getComment() != null) {
@@ -17,6 +17,7 @@ package org.shanoir.ng.dataset.service;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.shanoir.ng.dataset.dto.VolumeByFormatDTO;
 import org.shanoir.ng.dataset.model.Dataset;
+import org.shanoir.ng.dataset.repository.DatasetRepositoryCustom.StatisticsRowHandler;
 import org.shanoir.ng.datasetacquisition.model.DatasetAcquisition;
 import org.shanoir.ng.examination.model.Examination;
 import org.shanoir.ng.shared.exception.EntityNotFoundException;
@@ -78,6 +79,17 @@ public interface DatasetService {
 	@PostAuthorize("hasRole('ADMIN') or @datasetSecurityService.filterDatasetList(returnObject, 'CAN_SEE_ALL')")
 	List<Dataset> findByIdIn(List<Long> id);
 
+	/**
+	 * Find datasets by their ids, with their acquisition and examination loaded in one query.
+	 * To be used for large selections, e.g. downloads.
+	 *
+	 * @param ids datasets ids.
+	 * @return a list if datasets or an empty list.
+	 */
+	@PreAuthorize("hasAnyRole('ADMIN', 'EXPERT', 'USER')")
+	@PostAuthorize("hasRole('ADMIN') or @datasetSecurityService.filterDatasetList(returnObject, 'CAN_SEE_ALL')")
+	List<Dataset> findByIdInWithExamination(List<Long> ids);
+
 	/**
 	 * Save a dataset.
 	 *
@@ -142,12 +154,12 @@ public interface DatasetService {
 	List<Dataset> findByStudycard(Long studycardId);
   
 	/**
-	 * Get database statistics
+	 * Get database statistics, row by row
 	 * 
-	 * @return statistics
+	 * @param rowHandler called for each row of the statistics
 	 */
 	@PreAuthorize("hasRole('ADMIN')")
-	List<Object[]> queryStatistics(String studyNameInRegExp, String studyNameOutRegExp, String subjectNameInRegExp, String subjectNameOutRegExp) throws Exception;
+	void queryStatistics(String studyNameInRegExp, String studyNameOutRegExp, String subjectNameInRegExp, String subjectNameOutRegExp, StatisticsRowHandler rowHandler) throws Exception;
 	
 	
 	@PreAuthorize("hasRole('ADMIN') or (hasRole('EXPERT') and @datasetSecurityService.hasRightOnDataset(#dataset.getId(), 'CAN_ADMINISTRATE'))")
@@ -26,6 +26,7 @@ import org.shanoir.ng.dataset.model.DatasetExpression;
 import org.shanoir.ng.dataset.model.DatasetExpressionFormat;
 import org.shanoir.ng.dataset.repository.DatasetExpressionRepository;
 import org.shanoir.ng.dataset.repository.DatasetRepository;
+import org.shanoir.ng.dataset.repository.DatasetRepositoryCustom.StatisticsRowHandler;
 import org.shanoir.ng.datasetacquisition.model.DatasetAcquisition;
 import org.shanoir.ng.datasetfile.DatasetFile;
 import org.shanoir.ng.dicom.web.service.DICOMWebService;
@@ -199,6 +200,11 @@ public class DatasetServiceImpl implements DatasetService {
 		return Utils.toList(repository.findAllById(ids));
 	}
 
+	@Override
+	public List<Dataset> findByIdInWithExamination(List<Long> ids) {
+		return repository.findWithExaminationByIdIn(ids);
+	}
+
 	@Override
 	public Dataset create(final Dataset dataset) throws SolrServerException, IOException {
 		Dataset ds = repository.save(dataset);
@@ -366,8 +372,8 @@ public class DatasetServiceImpl implements DatasetService {
 	}
 
 	@Override
-	public List<Object[]> queryStatistics(String studyNameInRegExp, String studyNameOutRegExp, String subjectNameInRegExp, String subjectNameOutRegExp) throws Exception {
-		return repository.queryStatistics(studyNameInRegExp, studyNameOutRegExp, subjectNameInRegExp, subjectNameOutRegExp);
+	public void queryStatistics(String studyNameInRegExp, String studyNameOutRegExp, String subjectNameInRegExp, String subjectNameOutRegExp, StatisticsRowHandler rowHandler) throws Exception {
+		repository.queryStatistics(studyNameInRegExp, studyNameOutRegExp, subjectNameInRegExp, subjectNameOutRegExp, rowHandler);
 	}
 
 	@Override
@@ -8,12 +8,14 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.shanoir.ng.shared.exception.RestServiceException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -112,11 +114,12 @@ public interface DICOMWebApi {
 			@ApiResponse(responseCode = "500", description = "unexpected error") })
 	@GetMapping(value = "/studies/{examinationUID}/series/{serieInstanceUID}/instances/{sopInstanceUID}")
 	@PreAuthorize("hasRole('ADMIN') or (hasAnyRole('EXPERT', 'USER') and @datasetSecurityService.hasRightOnExamination(#examinationUID, 'CAN_SEE_ALL'))")
-	ResponseEntity findInstance(
+	void findInstance(
 			@Parameter(description = "examinationUID", required = true) @PathVariable("examinationUID") String examinationUID,
 			@Parameter(description = "serieInstanceUID", required = true) @PathVariable("serieInstanceUID") String serieInstanceUID,
-			@Parameter(description = "sopInstanceUID", required = true) @PathVariable("sopInstanceUID") String sopInstanceUID
-		) throws RestServiceException;
+			@Parameter(description = "sopInstanceUID", required = true) @PathVariable("sopInstanceUID") String sopInstanceUID,
+			HttpServletRequest request, HttpServletResponse response
+		) throws RestServiceException, IOException;
 	
 	@Operation(summary = "", description = "Returns a frame of a DICOM instance/dataset, of a study and serie")
 	@ApiResponses(value = {
@@ -127,12 +130,13 @@ public interface DICOMWebApi {
 			@ApiResponse(responseCode = "500", description = "unexpected error") })
 	@GetMapping(value = "/studies/{examinationUID}/series/{serieInstanceUID}/instances/{sopInstanceUID}/frames/{frame}")
 	@PreAuthorize("hasRole('ADMIN') or (hasAnyRole('EXPERT', 'USER') and @datasetSecurityService.hasRightOnExamination(#examinationUID, 'CAN_SEE_ALL'))")
-	ResponseEntity findFrameOfStudyOfSerieOfInstance(
+	void findFrameOfStudyOfSerieOfInstance(
 			@Parameter(description = "examinationUID", required = true) @PathVariable("examinationUID") String examinationUID,
 			@Parameter(description = "serieInstanceUID", required = true) @PathVariable("serieInstanceUID") String serieInstanceUID,
 			@Parameter(description = "sopInstanceUID", required = true) @PathVariable("sopInstanceUID") String sopInstanceUID,
-			@Parameter(description = "frame", required = true) @PathVariable("frame") String frame
-		) throws RestServiceException;
+			@Parameter(description = "frame", required = true) @PathVariable("frame") String frame,
+			HttpServletRequest request, HttpServletResponse response
+		) throws RestServiceException, IOException;
 	
 	@Operation(summary = "", description = "Returns all DICOM instances/datasets")
 	@ApiResponses(value = {
@@ -1,5 +1,7 @@
 package org.shanoir.ng.dicom.web;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -22,6 +24,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -29,6 +33,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 @Controller
 public class DICOMWebApiController implements DICOMWebApi {
@@ -53,6 +58,8 @@ public class DICOMWebApiController implements DICOMWebApi {
 
 	private static final String VALUE = "Value";
 
+	private static final String EMPTY_ARRAY = "[]";
+
 	@Autowired
 	private ExaminationService examinationService;
 	
@@ -67,6 +74,9 @@ public class DICOMWebApiController implements DICOMWebApi {
 
 	@Autowired
 	private ObjectMapper mapper;
+
+	@Autowired
+	private DICOMWebMetadataCache metadataCache;
 	
 	@Override
 	public ResponseEntity<String> findPatients() throws RestServiceException {
@@ -170,12 +180,20 @@ public class DICOMWebApiController implements DICOMWebApi {
 		}
 
 		if (studyInstanceUID != null) {
-			String response = dicomWebService.findSeriesOfStudy(studyInstanceUID, includefield, seriesInstanceUID);
-			JsonNode root = mapper.readTree(response);
-			root = sortSeriesBySeriesNumber(root);
-			studyInstanceUIDHandler.replaceStudyInstanceUIDsWithExaminationUIDs(root, examinationUID, false);
-
-			return new ResponseEntity<String>(mapper.writeValueAsString(root), HttpStatus.OK);
+			String request = "/series?" + INCLUDEFIELD + "=" + includefield + "&" + SERIES_INSTANCE_UID + "=" + seriesInstanceUID;
+			String json = metadataCache.get(examinationUID, request);
+			if (json == null) {
+				String response = dicomWebService.findSeriesOfStudy(studyInstanceUID, includefield, seriesInstanceUID);
+				JsonNode root = mapper.readTree(response);
+				root = sortSeriesBySeriesNumber(root);
+				studyInstanceUIDHandler.replaceStudyInstanceUIDsWithExaminationUIDs(root, examinationUID, false);
+				json = mapper.writeValueAsString(root);
+				// an empty answer may be a PACS still storing the serie
+				if (root.size() > 0) {
+					metadataCache.put(examinationUID, studyInstanceUID, request, json);
+				}
+			}
+			return new ResponseEntity<String>(json, HttpStatus.OK);
 		}
 		else {
 			return new ResponseEntity<>(HttpStatus.NO_CONTENT);
@@ -203,24 +221,41 @@ public class DICOMWebApiController implements DICOMWebApi {
 			throws RestServiceException, JsonMappingException, JsonProcessingException {
 		String studyInstanceUID = studyInstanceUIDHandler.findStudyInstanceUIDFromCacheOrDatabase(examinationUID);
 		if (studyInstanceUID != null && serieId != null) {
-			String response = dicomWebService.findSerieMetadataOfStudy(studyInstanceUID, serieId);
-			JsonNode root = mapper.readTree(response);
-			studyInstanceUIDHandler.replaceStudyInstanceUIDsWithExaminationUIDs(root, examinationUID, false);
-			return new ResponseEntity<String>(mapper.writeValueAsString(root), HttpStatus.OK);
+			String request = "/series/" + serieId + "/metadata";
+			String json = metadataCache.get(examinationUID, request);
+			if (json == null) {
+				// the Json is rewritten while read from the PACS, without building its tree
+				StringWriter writer = new StringWriter();
+				boolean found = dicomWebService.findSerieMetadataOfStudy(studyInstanceUID, serieId, inputStream -> {
+					try (JsonParser parser = mapper.getFactory().createParser(inputStream);
+							JsonGenerator generator = mapper.getFactory().createGenerator(writer)) {
+						studyInstanceUIDHandler.replaceStudyInstanceUIDsWithExaminationUIDs(parser, generator, examinationUID, false);
+					}
+				});
+				json = writer.toString();
+				if (!found || json.isEmpty()) {
+					return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+				}
+				// an empty answer may be a PACS still storing the serie
+				if (!EMPTY_ARRAY.equals(json)) {
+					metadataCache.put(examinationUID, studyInstanceUID, request, json);
+				}
+			}
+			return new ResponseEntity<String>(json, HttpStatus.OK);
 		} else {
 			return new ResponseEntity<>(HttpStatus.NOT_FOUND);
 		}
 	}
 	
 	@Override
-	public ResponseEntity findFrameOfStudyOfSerieOfInstance(String examinationUID, String serieInstanceUID,
-			String sopInstanceUID, String frame) throws RestServiceException {
+	public void findFrameOfStudyOfSerieOfInstance(String examinationUID, String serieInstanceUID,
+			String sopInstanceUID, String frame, HttpServletRequest request, HttpServletResponse response) throws RestServiceException, IOException {
 		String studyInstanceUID = studyInstanceUIDHandler.findStudyInstanceUIDFromCacheOrDatabase(examinationUID);
 		if (!StringUtils.isEmpty(studyInstanceUID) && !StringUtils.isEmpty(serieInstanceUID)
 				&& !StringUtils.isEmpty(sopInstanceUID) && !StringUtils.isEmpty(frame))  {
-			return dicomWebService.findFrameOfStudyOfSerieOfInstance(studyInstanceUID, serieInstanceUID, sopInstanceUID, frame);
+			dicomWebService.findFrameOfStudyOfSerieOfInstance(studyInstanceUID, serieInstanceUID, sopInstanceUID, frame, request, response);
 		} else {
-			return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+			response.sendError(HttpStatus.NOT_FOUND.value());
 		}
 	}
 
@@ -231,14 +266,14 @@ public class DICOMWebApiController implements DICOMWebApi {
 	}
 	
 	@Override
-	public ResponseEntity findInstance(String examinationUID, String serieInstanceUID, String sopInstanceUID)
-			throws RestServiceException {
+	public void findInstance(String examinationUID, String serieInstanceUID, String sopInstanceUID,
+			HttpServletRequest request, HttpServletResponse response) throws RestServiceException, IOException {
 		String studyInstanceUID = studyInstanceUIDHandler.findStudyInstanceUIDFromCacheOrDatabase(examinationUID);
 		if (!StringUtils.isEmpty(studyInstanceUID) && !StringUtils.isEmpty(serieInstanceUID)
 				&& !StringUtils.isEmpty(sopInstanceUID))  {
-			return dicomWebService.findInstance(studyInstanceUID, serieInstanceUID, sopInstanceUID);
+			dicomWebService.findInstance(studyInstanceUID, serieInstanceUID, sopInstanceUID, request, response);
 		} else {
-			return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+			response.sendError(HttpStatus.NOT_FOUND.value());
 		}
 	}
 
@@ -0,0 +1,161 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+
+package org.shanoir.ng.dicom.web;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * The DICOMWebMetadataCache keeps the DICOMWeb Json sent to the viewer for the series
+ * of an examination, once the StudyInstanceUIDs are replaced with the examinationUID:
+ * the series do not change once imported, so the PACS is only queried on the first
+ * viewer opening.
+ * 
+ * The cache is bounded to maxSizeMb of Json (counted in UTF-8 bytes), the least recently
+ * used Json being evicted first.
+ * The entries of an examination are evicted when a serie is imported into it, or when
+ * one of its datasets is rejected from the PACS.
+ */
+@Component
+public class DICOMWebMetadataCache {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DICOMWebMetadataCache.class);
+
+	private static final long MEGA_BYTE = 1024L * 1024L;
+
+	@Value("${dcm4chee-arc.dicom.web.metadata-cache.max-size-mb:64}")
+	private long maxSizeMb;
+
+	/** Json by examinationUID and request, in access order */
+	private final LinkedHashMap<String, CachedJson> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/** The size in bytes of the cached Json */
+	private long size;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong bytesServed = new AtomicLong();
+
+	/**
+	 * @param examinationUID
+	 * @param request the query sent to the PACS, without the study
+	 * @return the cached Json, null if not cached
+	 */
+	public String get(String examinationUID, String request) {
+		CachedJson cached;
+		synchronized (entries) {
+			cached = entries.get(examinationUID + request);
+		}
+		if (cached == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		bytesServed.addAndGet(cached.size());
+		return cached.json();
+	}
+
+	public void put(String examinationUID, String studyInstanceUID, String request, String json) {
+		long maxSize = maxSizeMb * MEGA_BYTE;
+		if (json == null) {
+			return;
+		}
+		long jsonSize = json.getBytes(StandardCharsets.UTF_8).length;
+		if (jsonSize > maxSize) {
+			return;
+		}
+		synchronized (entries) {
+			CachedJson previous = entries.put(examinationUID + request, new CachedJson(examinationUID, studyInstanceUID, json, jsonSize));
+			if (previous != null) {
+				size -= previous.size();
+			}
+			size += jsonSize;
+			Iterator<CachedJson> it = entries.values().iterator();
+			while (size > maxSize && it.hasNext()) {
+				size -= it.next().size();
+				it.remove();
+			}
+		}
+	}
+
+	public void evictExamination(String examinationUID) {
+		evict(cached -> cached.examinationUID().equals(examinationUID));
+	}
+
+	/**
+	 * @param studyInstanceUID the StudyInstanceUID in the PACS, if null all is evicted
+	 */
+	public void evictStudy(String studyInstanceUID) {
+		evict(cached -> studyInstanceUID == null || studyInstanceUID.equals(cached.studyInstanceUID()));
+	}
+
+	private void evict(Predicate<CachedJson> filter) {
+		synchronized (entries) {
+			Iterator<Map.Entry<String, CachedJson>> it = entries.entrySet().iterator();
+			while (it.hasNext()) {
+				CachedJson cached = it.next().getValue();
+				if (filter.test(cached)) {
+					size -= cached.size();
+					it.remove();
+				}
+			}
+		}
+	}
+
+	public double getHitRatio() {
+		long requests = hits.get() + misses.get();
+		return requests == 0 ? 0 : (double) hits.get() / requests;
+	}
+
+	public long getBytesServed() {
+		return bytesServed.get();
+	}
+
+	@Scheduled(fixedDelay = 1, timeUnit = TimeUnit.HOURS)
+	public void logStatistics() {
+		if (hits.get() + misses.get() > 0) {
+			LOG.info("DICOMWeb metadata cache: {}", this);
+		}
+	}
+
+	@Override
+	public String toString() {
+		int count;
+		long cachedSize;
+		synchronized (entries) {
+			count = entries.size();
+			cachedSize = size;
+		}
+		return String.format("%d entries, %.1f MB, %d hits, %d misses (hit ratio %.2f), %.1f MB served from cache",
+				count, (double) cachedSize / MEGA_BYTE, hits.get(), misses.get(), getHitRatio(), (double) getBytesServed() / MEGA_BYTE);
+	}
+
+	private record CachedJson(String examinationUID, String studyInstanceUID, String json, long size) {
+	}
+
+}
@@ -1,5 +1,8 @@
 package org.shanoir.ng.dicom.web;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import jakarta.annotation.PostConstruct;
@@ -21,8 +24,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -48,9 +53,9 @@ public class StudyInstanceUIDHandler {
 	
 	private static final Logger LOG = LoggerFactory.getLogger(StudyInstanceUIDHandler.class);
 
-	private static final String WADO_URI_STUDY_UID_SERIES_UID = "studyUID=(.*?)\\&seriesUID";
+	private static final Pattern WADO_URI_STUDY_UID_SERIES_UID = Pattern.compile("studyUID=(.*?)\\&seriesUID");
 	
-	private static final String WADO_RS_STUDY_UID_SERIES_UID = "/studies/(.*?)/series/";
+	private static final Pattern WADO_RS_STUDY_UID_SERIES_UID = Pattern.compile("/studies/(.*?)/series/");
 
 	private static final String DICOM_TAG_STUDY_INSTANCE_UID = "0020000D";
 
@@ -58,9 +63,9 @@ public class StudyInstanceUIDHandler {
 
 	private static final String VALUE = "Value";
 
-	private static final String RETRIEVE_URL_SERIE_LEVEL = "/studies/(.*)/series/";
+	private static final Pattern RETRIEVE_URL_SERIE_LEVEL = Pattern.compile("/studies/(.*)/series/");
 
-	private static final String RETRIEVE_URL_STUDY_LEVEL = "/studies/(.*)";
+	private static final Pattern RETRIEVE_URL_STUDY_LEVEL = Pattern.compile("/studies/(.*)");
 
 	private static final String STUDIES = "/studies/";
 
@@ -110,16 +115,9 @@ public class StudyInstanceUIDHandler {
 				ArrayNode retrieveURLArray = (ArrayNode) retrieveURLNode.path(VALUE);
 				for (int i = 0; i < retrieveURLArray.size(); i++) {
 					JsonNode arrayElement = retrieveURLArray.get(i);
-					String retrieveURL = arrayElement.asText();
-					if (studyLevel) { // study level
-						retrieveURL = retrieveURL.replaceFirst(RETRIEVE_URL_STUDY_LEVEL, STUDIES + examinationUID);
-						retrieveURLArray.remove(i);
-						retrieveURLArray.insert(i, retrieveURL);
-					} else { // serie level
-						retrieveURL = retrieveURL.replaceFirst(RETRIEVE_URL_SERIE_LEVEL, STUDIES + examinationUID + SERIES);
-						retrieveURLArray.remove(i);
-						retrieveURLArray.insert(i, retrieveURL);
-					}
+					String retrieveURL = replaceRetrieveURL(arrayElement.asText(), examinationUID, studyLevel);
+					retrieveURLArray.remove(i);
+					retrieveURLArray.insert(i, retrieveURL);
 				}				
 			}
 		} else if (root.isArray()) {
@@ -131,6 +129,84 @@ public class StudyInstanceUIDHandler {
 		}
 	}
 
+	/**
+	 * This method does the same replacements as the method above, while copying
+	 * the Json token by token from the parser to the generator: the Json is never
+	 * loaded into memory, what matters for the metadata of big series.
+	 * As above, only the attributes of the objects, that are not inside another
+	 * object, are replaced.
+	 * 
+	 * @param parser
+	 * @param generator
+	 * @param examinationUID
+	 * @param studyLevel
+	 * @throws IOException
+	 */
+	public void replaceStudyInstanceUIDsWithExaminationUIDs(JsonParser parser, JsonGenerator generator,
+			String examinationUID, boolean studyLevel) throws IOException {
+		int openObjects = 0;
+		JsonToken token;
+		while ((token = parser.nextToken()) != null) {
+			if (token == JsonToken.START_OBJECT) {
+				openObjects++;
+				generator.writeStartObject();
+			} else if (token == JsonToken.END_OBJECT) {
+				openObjects--;
+				generator.writeEndObject();
+			} else if (token == JsonToken.FIELD_NAME && openObjects == 1
+					&& DICOM_TAG_STUDY_INSTANCE_UID.equals(parser.currentName())) {
+				generator.writeFieldName(parser.currentName());
+				parser.nextToken();
+				copyAttribute(parser, generator, studyInstanceUID -> examinationUID);
+			} else if (token == JsonToken.FIELD_NAME && openObjects == 1
+					&& DICOM_TAG_RETRIEVE_URL.equals(parser.currentName())) {
+				generator.writeFieldName(parser.currentName());
+				parser.nextToken();
+				copyAttribute(parser, generator, retrieveURL -> replaceRetrieveURL(retrieveURL, examinationUID, studyLevel));
+			} else {
+				generator.copyCurrentEvent(parser);
+			}
+		}
+		generator.flush();
+	}
+
+	/**
+	 * Copies a DICOM attribute object, replacing the strings of its Value array.
+	 */
+	private void copyAttribute(JsonParser parser, JsonGenerator generator, UnaryOperator<String> replacement) throws IOException {
+		if (parser.currentToken() != JsonToken.START_OBJECT) {
+			generator.copyCurrentStructure(parser);
+			return;
+		}
+		generator.writeStartObject();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.currentName();
+			generator.writeFieldName(name);
+			if (parser.nextToken() == JsonToken.START_ARRAY && VALUE.equals(name)) {
+				generator.writeStartArray();
+				while (parser.nextToken() != JsonToken.END_ARRAY) {
+					if (parser.currentToken() == JsonToken.VALUE_STRING) {
+						generator.writeString(replacement.apply(parser.getText()));
+					} else {
+						generator.copyCurrentStructure(parser);
+					}
+				}
+				generator.writeEndArray();
+			} else {
+				generator.copyCurrentStructure(parser);
+			}
+		}
+		generator.writeEndObject();
+	}
+
+	private String replaceRetrieveURL(String retrieveURL, String examinationUID, boolean studyLevel) {
+		if (studyLevel) { // study level
+			return RETRIEVE_URL_STUDY_LEVEL.matcher(retrieveURL).replaceFirst(Matcher.quoteReplacement(STUDIES + examinationUID));
+		} else { // serie level
+			return RETRIEVE_URL_SERIE_LEVEL.matcher(retrieveURL).replaceFirst(Matcher.quoteReplacement(STUDIES + examinationUID + SERIES));
+		}
+	}
+
 	/**
 	 * This method returns the corresponding StudyInstanceUID, that is generated during the import in Shanoir
 	 * with the pseudonymization module and present in the PACS, either from a local cache to accelerate the
@@ -202,14 +278,12 @@ public class StudyInstanceUIDHandler {
 	 * 
 	 * @param path
 	 */
-	private String findStudyInstanceUID(String path) {
-		Pattern p = Pattern.compile(WADO_URI_STUDY_UID_SERIES_UID);
-		Matcher m = p.matcher(path);
+	public String findStudyInstanceUID(String path) {
+		Matcher m = WADO_URI_STUDY_UID_SERIES_UID.matcher(path);
 		while (m.find()) {
 			return m.group(1);
 		}
-		p = Pattern.compile(WADO_RS_STUDY_UID_SERIES_UID);
-		m = p.matcher(path);
+		m = WADO_RS_STUDY_UID_SERIES_UID.matcher(path);
 		while (m.find()) {
 			return m.group(1);
 		}
@@ -2,9 +2,17 @@ package org.shanoir.ng.dicom.web.service;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.hc.client5.http.classic.methods.HttpDelete;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
@@ -19,23 +27,29 @@ import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.EntityTemplate;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.io.IOCallback;
 import org.shanoir.ng.dicom.WADOURLHandler;
+import org.shanoir.ng.dicom.web.DICOMWebMetadataCache;
+import org.shanoir.ng.dicom.web.StudyInstanceUIDHandler;
 import org.shanoir.ng.shared.exception.ShanoirException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 /**
  * This class handles all calls to the shanoir backup pacs using DICOMWeb.
@@ -66,6 +80,21 @@ public class DICOMWebService {
 
 	private static final String REJECT_SUFFIX = "/reject/113001%5EDCM";
 
+	private static final byte[] PART_HEADER = ("--" + BOUNDARY + "\r\nContent-Type: " + CONTENT_TYPE_DICOM + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+	private static final byte[] PART_END = "\r\n".getBytes(StandardCharsets.US_ASCII);
+
+	private static final byte[] CLOSE_DELIMITER = ("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+
+	private static final double MEGA_BYTE = 1024d * 1024d;
+
+	private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+	private static final String[] FORWARDED_REQUEST_HEADERS = { HttpHeaders.ACCEPT, HttpHeaders.RANGE, HttpHeaders.IF_RANGE };
+
+	private static final String[] FORWARDED_RESPONSE_HEADERS = { HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH,
+			HttpHeaders.CONTENT_RANGE, HttpHeaders.ACCEPT_RANGES, HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED };
+
 	private CloseableHttpClient httpClient;
 
 	private String serverURL;
@@ -91,9 +120,23 @@ public class DICOMWebService {
 	@Value("${dcm4chee-arc.dicom.web.http.client.max.per.route}")
 	private int dicomWebHttpClientMaxPerRoute;
 	
+	@Value("${dcm4chee-arc.dicom.web.stow.max-request-size-mb:64}")
+	private long stowMaxRequestSizeMb;
+
+	@Value("${dcm4chee-arc.dicom.web.stow.parallelism:4}")
+	private int stowParallelism;
+
 	@Autowired
 	private WADOURLHandler wadoURLHandler;
 
+	@Autowired
+	private StudyInstanceUIDHandler studyInstanceUIDHandler;
+
+	@Autowired
+	private DICOMWebMetadataCache metadataCache;
+
+	private ExecutorService stowExecutor;
+
 	@PostConstruct
 	public void init() {
 		this.serverURL = dcm4cheeProtocol + dcm4cheeHost + ":" + dcm4cheePort + dicomWebRS;
@@ -105,6 +148,12 @@ public class DICOMWebService {
 		} catch (Exception e) {
 			LOG.error(e.getMessage(), e);
 		}
+		stowExecutor = Executors.newFixedThreadPool(Math.max(1, stowParallelism));
+	}
+
+	@PreDestroy
+	public void shutdownStowExecutor() {
+		stowExecutor.shutdownNow();
 	}
 
 	public String findStudy(String studyInstanceUID, String includeField) {
@@ -157,7 +206,12 @@ public class DICOMWebService {
 		return null;
 	}
 
-	public String findSerieMetadataOfStudy(String studyInstanceUID, String serieInstanceUID) {
+	/**
+	 * Gives the metadata Json of a serie to the reader, as a stream from the PACS.
+	 * 
+	 * @return false if the PACS did not answer
+	 */
+	public boolean findSerieMetadataOfStudy(String studyInstanceUID, String serieInstanceUID, IOCallback<InputStream> reader) {
 		try {
 			String url = this.serverURL + "/" + studyInstanceUID + "/series/" + serieInstanceUID + "/metadata";
 			HttpGet httpGet = new HttpGet(url);
@@ -165,7 +219,10 @@ public class DICOMWebService {
 			try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
 				HttpEntity entity = response.getEntity();
 				if (entity != null) {
-					return EntityUtils.toString(entity, "UTF-8");
+					try (InputStream inputStream = entity.getContent()) {
+						reader.execute(inputStream);
+					}
+					return true;
 				} else {
 					LOG.error("DICOMWeb: findSerieMetadataOfStudy: empty response entity.");				
 				}
@@ -173,51 +230,64 @@ public class DICOMWebService {
 		} catch (Exception e) {
 			LOG.error(e.getMessage(), e);
 		}
-		return null;
+		return false;
 	}
 
-	public ResponseEntity findFrameOfStudyOfSerieOfInstance(String studyInstanceUID, String serieInstanceUID,
-			String sopInstanceUID, String frame) {
-		try {
-			String url = this.serverURL + "/" + studyInstanceUID + "/series/" + serieInstanceUID + "/instances/"
-					+ sopInstanceUID + "/frames/" + frame;
-			HttpGet httpGet = new HttpGet(url);
-			try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
-				HttpEntity entity = response.getEntity();
-				if (entity != null) {
-					ByteArrayResource byteArrayResource = new ByteArrayResource(EntityUtils.toByteArray(entity));
-					HttpHeaders responseHeaders = new HttpHeaders();
-					responseHeaders.setContentLength(entity.getContentLength());
-					return new ResponseEntity(byteArrayResource, responseHeaders, HttpStatus.OK);
-				} else {
-					LOG.error("DICOMWeb: findFrameOfStudyOfSerieOfInstance: empty response entity.");				
-				}
-			}
-		} catch (Exception e) {
-			LOG.error(e.getMessage(), e);
-		}
-		return null;
+	public void findFrameOfStudyOfSerieOfInstance(String studyInstanceUID, String serieInstanceUID,
+			String sopInstanceUID, String frame, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		String url = this.serverURL + "/" + studyInstanceUID + "/series/" + serieInstanceUID + "/instances/"
+				+ sopInstanceUID + "/frames/" + frame;
+		streamFromPacs(url, request, response);
 	}
 	
-	public ResponseEntity findInstance(String studyInstanceUID, String serieInstanceUID, String sopInstanceUID) {
-		try {
-			String url = this.serverURL + "/" + studyInstanceUID + "/series/" + serieInstanceUID + "/instances/" + sopInstanceUID;
-			HttpGet httpGet = new HttpGet(url);
-			try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
-				HttpEntity entity = response.getEntity();
-				if (entity != null) {
-					ByteArrayResource byteArrayResource = new ByteArrayResource(EntityUtils.toByteArray(entity));
-					HttpHeaders responseHeaders = new HttpHeaders();
-					responseHeaders.setContentLength(entity.getContentLength());
-					return new ResponseEntity(byteArrayResource, responseHeaders, HttpStatus.OK);
-				} else {
-					LOG.error("DICOMWeb: findInstance: empty response entity.");				
+	public void findInstance(String studyInstanceUID, String serieInstanceUID, String sopInstanceUID,
+			HttpServletRequest request, HttpServletResponse response) throws IOException {
+		String url = this.serverURL + "/" + studyInstanceUID + "/series/" + serieInstanceUID + "/instances/" + sopInstanceUID;
+		streamFromPacs(url, request, response);
+	}
+
+	/**
+	 * Copies the PACS response into the servlet response with a fixed size buffer,
+	 * so that instances and frames are never loaded into memory. The Accept and Range
+	 * headers of the viewer are sent to the PACS, and the status, content type, length
+	 * and range of the PACS response are sent back.
+	 */
+	private void streamFromPacs(String url, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		HttpGet httpGet = new HttpGet(url);
+		for (String header : FORWARDED_REQUEST_HEADERS) {
+			String value = request.getHeader(header);
+			if (value != null) {
+				httpGet.setHeader(header, value);
+			}
+		}
+		try (CloseableHttpResponse pacsResponse = httpClient.execute(httpGet)) {
+			response.setStatus(pacsResponse.getCode());
+			for (String header : FORWARDED_RESPONSE_HEADERS) {
+				Header value = pacsResponse.getFirstHeader(header);
+				if (value != null) {
+					response.setHeader(header, value.getValue());
 				}
 			}
-		} catch (Exception e) {
-			LOG.error(e.getMessage(), e);
+			HttpEntity entity = pacsResponse.getEntity();
+			if (entity == null) {
+				LOG.error("DICOMWeb: streamFromPacs: empty response entity for: " + url);
+				return;
+			}
+			try (InputStream inputStream = entity.getContent()) {
+				OutputStream outputStream = response.getOutputStream();
+				byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+				int read;
+				while ((read = inputStream.read(buffer)) != -1) {
+					outputStream.write(buffer, 0, read);
+				}
+				outputStream.flush();
+			}
+		} catch (IOException e) {
+			LOG.error("DICOMWeb: streamFromPacs: " + url + ": " + e.getMessage());
+			if (!response.isCommitted()) {
+				response.sendError(HttpStatus.INTERNAL_SERVER_ERROR.value());
+			}
 		}
-		return null;
 	}
 
 	public void sendDicomFilesToPacs(File directoryWithDicomFiles) throws ShanoirException {
@@ -227,28 +297,91 @@ public class DICOMWebService {
 		}
 		File[] dicomFiles = directoryWithDicomFiles.listFiles();
 		LOG.info("Start: STOW-RS sending " + dicomFiles.length + " dicom files to PACS from folder: " + directoryWithDicomFiles.getAbsolutePath());
-		MultipartEntityBuilder multipartEntityBuilder = MultipartEntityBuilder.create();
-		multipartEntityBuilder.setBoundary(BOUNDARY);
-		multipartEntityBuilder.setMimeSubtype(RELATED);
-		// create one multipart part for each file
+		long start = System.currentTimeMillis();
+		// the files are read from disk while each request is written: a request only
+		// needs a copy buffer, and at most stowParallelism requests are sent at once
+		List<Future<Void>> requests = new ArrayList<>();
+		long totalSize = 0;
+		for (List<File> requestFiles : splitIntoRequests(dicomFiles)) {
+			HttpEntity entity = createStreamingEntity(requestFiles);
+			totalSize += entity.getContentLength();
+			requests.add(stowExecutor.submit(() -> {
+				sendMultipartRequest(entity);
+				return null;
+			}));
+		}
+		waitForRequests(requests);
+		double seconds = Math.max(System.currentTimeMillis() - start, 1) / 1000d;
+		double megaBytes = totalSize / MEGA_BYTE;
+		LOG.info(String.format("Finished: STOW-RS sending %d dicom files to PACS from folder: %s, with %d requests: %.1f MB in %.1f s (%.2f MB/s, %.1f instances/s)",
+				dicomFiles.length, directoryWithDicomFiles.getAbsolutePath(), requests.size(), megaBytes, seconds, megaBytes / seconds, dicomFiles.length / seconds));
+	}
+
+	/**
+	 * Splits the files of a serie into groups of at most stowMaxRequestSizeMb,
+	 * each group being sent with one STOW-RS request.
+	 */
+	private List<List<File>> splitIntoRequests(File[] dicomFiles) {
+		long maxRequestSize = stowMaxRequestSizeMb * 1024 * 1024;
+		List<List<File>> requests = new ArrayList<>();
+		List<File> requestFiles = new ArrayList<>();
+		long requestSize = 0;
 		for (File dicomFile : dicomFiles) {
-			try(FileInputStream fileIS = new FileInputStream(dicomFile)) {
-				ContentBody contentBody = new InputStreamBody(
-						new ByteArrayInputStream(fileIS.readAllBytes()), ContentType.create(CONTENT_TYPE_DICOM));
-				// build MultipartPart
-				MultipartPartBuilder partBuilder = MultipartPartBuilder.create();
-				partBuilder.addHeader(CONTENT_TYPE, CONTENT_TYPE_DICOM);
-				partBuilder.setBody(contentBody);
-				MultipartPart multipartPart = partBuilder.build();
-				multipartEntityBuilder.addPart(multipartPart);
-			} catch(Exception e) {
-				LOG.error(e.getMessage(), e);
-				throw new ShanoirException(e.getMessage());
+			if (!requestFiles.isEmpty() && requestSize + dicomFile.length() > maxRequestSize) {
+				requests.add(requestFiles);
+				requestFiles = new ArrayList<>();
+				requestSize = 0;
 			}
+			requestFiles.add(dicomFile);
+			requestSize += dicomFile.length();
+		}
+		if (!requestFiles.isEmpty()) {
+			requests.add(requestFiles);
+		}
+		return requests;
+	}
+
+	/**
+	 * Creates a multipart/related entity, that copies the files into the request body
+	 * when it is written. The entity is repeatable, as the files are read again on retry.
+	 */
+	private HttpEntity createStreamingEntity(List<File> dicomFiles) {
+		long contentLength = CLOSE_DELIMITER.length;
+		for (File dicomFile : dicomFiles) {
+			contentLength += PART_HEADER.length + dicomFile.length() + PART_END.length;
+		}
+		return new EntityTemplate(contentLength, null, null, outputStream -> {
+			for (File dicomFile : dicomFiles) {
+				outputStream.write(PART_HEADER);
+				Files.copy(dicomFile.toPath(), outputStream);
+				outputStream.write(PART_END);
+			}
+			outputStream.write(CLOSE_DELIMITER);
+		});
+	}
+
+	/**
+	 * Waits for all the requests, and throws the first error if one failed.
+	 */
+	private void waitForRequests(List<Future<Void>> requests) throws ShanoirException {
+		ShanoirException error = null;
+		for (Future<Void> request : requests) {
+			try {
+				request.get();
+			} catch (ExecutionException e) {
+				if (error == null) {
+					error = e.getCause() instanceof ShanoirException shanoirException
+							? shanoirException : new ShanoirException(e.getCause().getMessage());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				requests.forEach(r -> r.cancel(true));
+				throw new ShanoirException("Interrupted while sending dicom files to PACS.");
+			}
+		}
+		if (error != null) {
+			throw error;
 		}
-		HttpEntity entity = multipartEntityBuilder.build();
-		sendMultipartRequest(entity);
-		LOG.info("Finished: STOW-RS sending " + dicomFiles.length + " dicom files to PACS from folder: " + directoryWithDicomFiles.getAbsolutePath());
 	}
 
 	@PreAuthorize("hasAnyRole('ADMIN', 'EXPERT', 'USER')")
@@ -302,6 +435,10 @@ public class DICOMWebService {
 			url = url.substring(0, url.indexOf("/instances"));
 			rejectURL = url + REJECT_SUFFIX;
 		}
+		// the viewer Json of the study will change: evicted again once rejected, as
+		// a viewer request during the reject can cache the Json with the instances
+		String studyInstanceUID = studyInstanceUIDHandler.findStudyInstanceUID(rejectURL);
+		metadataCache.evictStudy(studyInstanceUID);
 
 		// STEP 1: Reject from the PACS
 		HttpPost post = new HttpPost(rejectURL);
@@ -309,6 +446,7 @@ public class DICOMWebService {
 		try (CloseableHttpResponse response = httpClient.execute(post)) {
 			if (HttpStatus.OK.value() == response.getCode()) {
 				LOG.info("Rejected from PACS: " + url);
+				metadataCache.evictStudy(studyInstanceUID);
 			} else {
 				LOG.error(response.getCode() + ": Could not reject instance from PACS: " + response.getReasonPhrase()
 						+ " for rejectURL: " + rejectURL);
@@ -0,0 +1,298 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+
+package org.shanoir.ng.download;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This class reads a multipart/related message (RFC 2387), as returned by a PACS
+ * for WADO-RS requests, part after part directly from the response stream.
+ *
+ * Contrary to javax.mail MimeMultipart, nothing is buffered apart from a fixed size
+ * window used to detect the boundaries: the body of each part is given as an
+ * input stream, that ends at the next boundary. The memory usage is constant,
+ * whatever the size of the DICOM files.
+ */
+public class MultipartRelatedReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final int MAX_HEADER_LINE_LENGTH = 8 * 1024;
+
+	private static final String BOUNDARY = "boundary=";
+
+	private static final byte CR = '\r';
+
+	private static final byte LF = '\n';
+
+	private static final byte DASH = '-';
+
+	private final InputStream in;
+
+	/** CRLF--boundary */
+	private final byte[] delimiter;
+
+	private final byte[] buffer;
+
+	private int position;
+
+	private int limit;
+
+	private boolean endOfStream;
+
+	private boolean closed;
+
+	private PartInputStream currentPart;
+
+	/**
+	 * @param in the body of the response
+	 * @param boundary the boundary, as given in the content type of the response
+	 */
+	public MultipartRelatedReader(InputStream in, String boundary) {
+		if (boundary == null || boundary.isEmpty()) {
+			throw new IllegalArgumentException("Multipart boundary can not be empty.");
+		}
+		this.in = in;
+		this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.US_ASCII);
+		this.buffer = new byte[Math.max(BUFFER_SIZE, 2 * delimiter.length)];
+		// The first boundary is not preceded by a CRLF: add one virtually,
+		// so that the preamble can be read as a part body.
+		this.buffer[0] = CR;
+		this.buffer[1] = LF;
+		this.limit = 2;
+		this.currentPart = new PartInputStream();
+	}
+
+	/**
+	 * Extracts the boundary from a multipart content type,
+	 * e.g. multipart/related; type="application/dicom"; boundary="abc"
+	 *
+	 * @param contentType
+	 * @return the boundary, null if the content type is not multipart
+	 */
+	public static String extractBoundary(String contentType) {
+		if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/")) {
+			return null;
+		}
+		for (String parameter : contentType.split(";")) {
+			String trimmed = parameter.trim();
+			if (trimmed.toLowerCase(Locale.ROOT).startsWith(BOUNDARY)) {
+				String boundary = trimmed.substring(BOUNDARY.length()).trim();
+				if (boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+					boundary = boundary.substring(1, boundary.length() - 1);
+				}
+				return boundary;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Moves to the next part of the message, skipping what was not read of the current one.
+	 *
+	 * @return the next part, null when the closing boundary has been reached
+	 * @throws IOException
+	 */
+	public BodyPart nextPart() throws IOException {
+		if (closed) {
+			return null;
+		}
+		currentPart.skipToEnd();
+		// after a boundary: "--" for the closing one, otherwise optional spaces and CRLF
+		if (!fill(2)) {
+			throw new IOException("Multipart stream ended before the closing boundary.");
+		}
+		if (buffer[position] == DASH && buffer[position + 1] == DASH) {
+			closed = true;
+			return null;
+		}
+		readLine();
+		Map<String, String> headers = new HashMap<>();
+		String line;
+		while (!(line = readLine()).isEmpty()) {
+			int colon = line.indexOf(':');
+			if (colon > 0) {
+				headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+			}
+		}
+		currentPart = new PartInputStream();
+		return new BodyPart(headers, currentPart);
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		in.close();
+	}
+
+	/**
+	 * Ensures that at least count bytes are available in the buffer, if the stream is long enough.
+	 * @return false if the end of the stream is reached before
+	 */
+	private boolean fill(int count) throws IOException {
+		if (limit - position >= count) {
+			return true;
+		}
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		}
+		while (!endOfStream && limit < count) {
+			int read = in.read(buffer, limit, buffer.length - limit);
+			if (read < 0) {
+				endOfStream = true;
+			} else {
+				limit += read;
+			}
+		}
+		return limit - position >= count;
+	}
+
+	private String readLine() throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		while (true) {
+			if (!fill(1)) {
+				throw new IOException("Multipart stream ended in the headers of a part.");
+			}
+			byte b = buffer[position++];
+			if (b == LF) {
+				break;
+			}
+			if (b != CR) {
+				line.write(b);
+			}
+			if (line.size() > MAX_HEADER_LINE_LENGTH) {
+				throw new IOException("Multipart header line too long.");
+			}
+		}
+		return line.toString(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Searches the delimiter in the buffer, starting before maxStart.
+	 */
+	private int indexOfDelimiter(int maxStart) {
+		int last = Math.min(limit - delimiter.length, maxStart);
+		for (int i = position; i <= last; i++) {
+			if (buffer[i] == CR) {
+				int j = 1;
+				while (j < delimiter.length && buffer[i + j] == delimiter[j]) {
+					j++;
+				}
+				if (j == delimiter.length) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * The body of a part: ends at the next boundary.
+	 */
+	private class PartInputStream extends InputStream {
+
+		private boolean ended;
+
+		@Override
+		public int read() throws IOException {
+			byte[] single = new byte[1];
+			int read = read(single, 0, 1);
+			return read < 0 ? -1 : single[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (ended) {
+				return -1;
+			}
+			if (len == 0) {
+				return 0;
+			}
+			fill(Math.min(buffer.length, delimiter.length + len));
+			int index = indexOfDelimiter(position + len);
+			if (index < 0 && endOfStream) {
+				index = indexOfDelimiter(limit);
+			}
+			int available;
+			if (index == position) {
+				ended = true;
+				position += delimiter.length;
+				return -1;
+			} else if (index >= 0) {
+				available = index - position;
+			} else if (endOfStream) {
+				throw new IOException("Multipart stream ended before the closing boundary.");
+			} else {
+				// keep the bytes that could be the beginning of a delimiter
+				available = limit - position - delimiter.length + 1;
+			}
+			int count = Math.min(len, available);
+			System.arraycopy(buffer, position, b, off, count);
+			position += count;
+			return count;
+		}
+
+		private void skipToEnd() throws IOException {
+			byte[] skipped = new byte[8192];
+			while (read(skipped, 0, skipped.length) >= 0) {
+				// skip
+			}
+		}
+	}
+
+	/**
+	 * A part of the message: its headers, with lower case names, and its body.
+	 */
+	public static class BodyPart {
+
+		private final Map<String, String> headers;
+
+		private final InputStream inputStream;
+
+		BodyPart(Map<String, String> headers, InputStream inputStream) {
+			this.headers = headers;
+			this.inputStream = inputStream;
+		}
+
+		public String getHeader(String name) {
+			return headers.get(name.toLowerCase(Locale.ROOT));
+		}
+
+		/**
+		 * @return the content type without its parameters, in lower case, null if none
+		 */
+		public String getMimeType() {
+			String contentType = getHeader("Content-Type");
+			if (contentType == null) {
+				return null;
+			}
+			return contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+		}
+
+		public InputStream getInputStream() {
+			return inputStream;
+		}
+	}
+
+}
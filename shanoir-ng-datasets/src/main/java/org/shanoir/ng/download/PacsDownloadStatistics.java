@@ -0,0 +1,58 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+
+package org.shanoir.ng.download;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the instances and bytes received from the PACS during one download,
+ * in order to log its throughput at the end.
+ */
+public class PacsDownloadStatistics {
+
+	private static final double MEGA_BYTE = 1024d * 1024d;
+
+	private final long start = System.currentTimeMillis();
+
+	private final AtomicLong instances = new AtomicLong();
+
+	private final AtomicLong bytes = new AtomicLong();
+
+	public void addInstance(long size) {
+		instances.incrementAndGet();
+		bytes.addAndGet(size);
+	}
+
+	public long getInstances() {
+		return instances.get();
+	}
+
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	public long getElapsedMillis() {
+		return System.currentTimeMillis() - start;
+	}
+
+	@Override
+	public String toString() {
+		double seconds = Math.max(getElapsedMillis(), 1) / 1000d;
+		double megaBytes = getBytes() / MEGA_BYTE;
+		return String.format("%d instances, %.1f MB in %.1f s (%.2f MB/s, %.1f instances/s)",
+				getInstances(), megaBytes, seconds, megaBytes / seconds, getInstances() / seconds);
+	}
+
+}
@@ -14,24 +14,41 @@
 
 package org.shanoir.ng.download;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.net.URL;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.io.DicomInputStream;
 import org.dcm4che3.json.JSONReader;
 import org.shanoir.ng.dataset.model.Dataset;
 import org.shanoir.ng.dataset.model.DatasetExpressionFormat;
@@ -43,20 +60,20 @@ import org.shanoir.ng.shared.exception.RestServiceException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.json.Json;
 import jakarta.json.stream.JsonParser;
-import jakarta.mail.BodyPart;
 import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMultipart;
-import jakarta.mail.util.ByteArrayDataSource;
 
 /**
  * This class is used to download files on using WADO URLs:
@@ -95,6 +112,8 @@ public class WADODownloaderService {
 
 	private static final String WADO_REQUEST_TYPE_WADO_RS = "/instances/";
 
+	private static final String WADO_REQUEST_SERIES_WADO_RS = "/series/";
+
 	private static final String WADO_REQUEST_TYPE_WADO_URI = "objectUID=";
 
 	private static final String WADO_REQUEST_STUDY_WADO_URI = "studyUID=";
@@ -103,6 +122,8 @@ public class WADODownloaderService {
 
 	private static final String UNDER_SCORE = "_";
 
+	private static final String TEMPORARY_FILE_PREFIX = "wado-";
+
 	/** Mime type */
 	private static final String CONTENT_TYPE_MULTIPART = "multipart/related";
 
@@ -120,56 +141,255 @@ public class WADODownloaderService {
 	@Autowired
 	private WADOURLHandler wadoURLHandler;
 
+	/** Number of threads of the download executor: max number of WADO requests in flight, shared by all downloads */
+	@Value("${dcm4chee-arc.dicom.wado.download.parallelism:8}")
+	private int downloadParallelism;
+
+	/** Max number of WADO requests in flight on the same PACS host, for all downloads: not more than downloadParallelism */
+	@Value("${dcm4chee-arc.dicom.wado.download.max-per-host:8}")
+	private int downloadMaxPerHost;
+
+	/** Max number of instances fetched in advance, waiting to be written into the zip */
+	@Value("${dcm4chee-arc.dicom.wado.download.queue-depth:32}")
+	private int downloadQueueDepth;
+
+	/** Retrieve whole series with one WADO-RS request, when all their instances are downloaded */
+	@Value("${dcm4chee-arc.dicom.wado.download.serie-level:false}")
+	private boolean downloadSerieLevel;
+
+	private ExecutorService downloadExecutor;
+
+	private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
 	@PostConstruct
 	public void initRestTemplate() {
 		restTemplate.getMessageConverters().add(new ByteArrayHttpMessageConverter());
+		downloadExecutor = Executors.newFixedThreadPool(Math.max(1, downloadParallelism));
+		if (downloadMaxPerHost > downloadParallelism) {
+			LOG.warn("dicom.wado.download.max-per-host ({}) is greater than dicom.wado.download.parallelism ({}): the limit per host does not apply.",
+					downloadMaxPerHost, downloadParallelism);
+		}
+	}
+
+	@PreDestroy
+	public void shutdownDownloadExecutor() {
+		downloadExecutor.shutdownNow();
 	}
 
 	/**
-	 * This method receives a list of URLs containing WADO-RS or WADO-URI urls and downloads
-	 * their received dicom files to a folder named workFolder.
-	 * Return the list of downloaded files
+	 * This method receives a list of URLs containing WADO-RS or WADO-URI urls, downloads
+	 * their received dicom files and writes them into the zip output stream.
+	 * Return the list of zipped files
+	 *
+	 * The downloads are done in parallel by the download executor (at most downloadMaxPerHost
+	 * requests on the same PACS host), while the calling thread is the only one writing into the zip:
+	 * it writes the files in the order of the urls, as soon as they are received. The files are
+	 * streamed from the PACS into temporary files, and at most downloadQueueDepth requests are
+	 * downloaded in advance, to keep the memory and disk usage bounded.
+	 *
+	 * In serie level mode, the WADO-RS urls are grouped by serie: when all the instances of a serie
+	 * are referenced, the serie is retrieved with one single request, otherwise each instance is
+	 * retrieved with its own url.
 	 *
 	 * @param urls
+	 * @param zipOutputStream
 	 * @param subjectName
 	 * @param dataset 
 	 * @param datasetFilePath
-	 * @throws IOException
-	 * @throws MessagingException
+	 * @param downloadResult
+	 * @param statistics counts the downloaded instances and bytes, to report the download throughput
 	 * @return
-	 * @throws RestServiceException
 	 *
 	 */
-	public List<String> downloadDicomFilesForURLsAsZip(final List<URL> urls, final ZipOutputStream zipOutputStream, String subjectName, Dataset dataset, String datasetFilePath, DatasetDownloadError downloadResult) {
-		int i = 0;
+	public List<String> downloadDicomFilesForURLsAsZip(final List<URL> urls, final ZipOutputStream zipOutputStream, String subjectName, Dataset dataset, String datasetFilePath, DatasetDownloadError downloadResult, PacsDownloadStatistics statistics) {
 		List<String> files = new ArrayList<>();
 		Set<String> zippedUrls = new HashSet<>();
 		long duplicates = 0;
-		for (Iterator<URL> iterator = urls.iterator(); iterator.hasNext(); i++) {
-			String url = iterator.next().toString();
-			if (!zippedUrls.contains(url)) {
-				zippedUrls.add(url);
-				String sopInstanceUID = wadoURLHandler.extractUIDs(url)[2];
+		// instances grouped by serie url, in the order of the urls
+		Map<String, List<PacsInstance>> instancesBySerie = new LinkedHashMap<>();
+		for (Iterator<URL> iterator = urls.iterator(); iterator.hasNext();) {
+			URL url = iterator.next();
+			if (!zippedUrls.contains(url.toString())) {
+				zippedUrls.add(url.toString());
+				String sopInstanceUID = wadoURLHandler.extractUIDs(url.toString())[2];
 				// Build name
 				String name = buildFileName(subjectName, dataset, datasetFilePath, sopInstanceUID);
-				// Download and zip
+				instancesBySerie.computeIfAbsent(getSerieURL(url.toString()), serieUrl -> new ArrayList<>())
+						.add(new PacsInstance(url, sopInstanceUID, name));
+			} else {
+				duplicates++;
+			}
+		}
+		int queueDepth = Math.max(1, downloadQueueDepth);
+		Deque<PacsFileFetch> fetches = new ArrayDeque<>();
+		try {
+			for (Map.Entry<String, List<PacsInstance>> serie : instancesBySerie.entrySet()) {
+				// Download in background, zip in order
+				for (PacsFileFetch fetch : submitFetches(serie.getKey(), serie.getValue())) {
+					fetches.add(fetch);
+					if (fetches.size() >= queueDepth) {
+						writeNextFetchInZip(fetches.poll(), zipOutputStream, files, dataset, downloadResult, statistics);
+					}
+				}
+			}
+			while (!fetches.isEmpty()) {
+				writeNextFetchInZip(fetches.poll(), zipOutputStream, files, dataset, downloadResult, statistics);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOG.error("Download of dataset [{}] as dicom was interrupted", dataset.getId(), e);
+			downloadResult.update("Download of dataset [" + dataset.getId() + "] as dicom was interrupted", DatasetDownloadError.PARTIAL_FAILURE);
+		} finally {
+			// in case of error, do not let the remaining downloads run for nothing
+			fetches.forEach(this::discardFetch);
+		}
+		if (duplicates > 0) {
+			LOG.error("There were [" + duplicates + "] duplicate dataset_files when zipping dataset [" + dataset.getId() + "], they were ignored.");
+		}
+		return files;
+	}
+
+	/**
+	 * Submits the downloads of the instances of one serie: one single serie request if possible,
+	 * one request per instance otherwise.
+	 */
+	private List<PacsFileFetch> submitFetches(String serieUrl, List<PacsInstance> instances) throws InterruptedException {
+		List<PacsFileFetch> fetches = new ArrayList<>();
+		if (downloadSerieLevel && serieUrl != null && instances.size() > 1 && isWholeSerie(serieUrl, instances.size())) {
+			Set<String> sopInstanceUIDs = new HashSet<>();
+			instances.forEach(instance -> sopInstanceUIDs.add(instance.sopInstanceUID()));
+			URL url = instances.get(0).url();
+			fetches.add(new PacsFileFetch(instances, true, submitDownload(url, () -> downloadSerieFromPACS(new URL(serieUrl), sopInstanceUIDs))));
+		} else {
+			for (PacsInstance instance : instances) {
+				fetches.add(new PacsFileFetch(List.of(instance), false, submitDownload(instance.url(), () -> {
+					Map<String, List<File>> files = new HashMap<>();
+					files.put(instance.sopInstanceUID(), downloadFileFromPACS(instance.url()));
+					return files;
+				})));
+			}
+		}
+		return fetches;
+	}
+
+	/**
+	 * Submits a download to the download executor, once a slot is free on the PACS host:
+	 * the calling thread waits for the slot, not a thread of the executor. The slot is freed
+	 * when the download ends, or when it is cancelled before it started.
+	 */
+	private <T> Future<T> submitDownload(URL url, Callable<T> download) throws InterruptedException {
+		Semaphore permits = getHostPermits(url);
+		permits.acquire();
+		AtomicBoolean claimed = new AtomicBoolean();
+		FutureTask<T> task = new FutureTask<>(() -> {
+			if (!claimed.compareAndSet(false, true)) {
+				return null;
+			}
+			try {
+				return download.call();
+			} finally {
+				permits.release();
+			}
+		}) {
+			@Override
+			protected void done() {
+				// cancelled before it started
+				if (claimed.compareAndSet(false, true)) {
+					permits.release();
+				}
+			}
+		};
+		try {
+			downloadExecutor.execute(task);
+		} catch (RejectedExecutionException e) {
+			permits.release();
+			throw e;
+		}
+		return task;
+	}
+
+	private Semaphore getHostPermits(URL url) {
+		return hostPermits.computeIfAbsent(url.getAuthority(), host -> new Semaphore(Math.max(1, downloadMaxPerHost)));
+	}
+
+	/**
+	 * Waits for the download of the given fetch and writes its instances into the zip.
+	 * The instances missing from a serie response are downloaded with their own url.
+	 */
+	private void writeNextFetchInZip(PacsFileFetch fetch, ZipOutputStream zipOutputStream, List<String> files, Dataset dataset, DatasetDownloadError downloadResult, PacsDownloadStatistics statistics) throws InterruptedException {
+		Map<String, List<File>> received;
+		try {
+			received = new HashMap<>(getFetchedFiles(fetch));
+		} catch (ZipPacsFileException e) {
+			if (!fetch.serie()) {
+				LOG.error("Could not download dataset [{}] as dicom", dataset.getId(), e);
+				downloadResult.update("Could not download dataset [" + dataset.getId() + "] as dicom : " + e.getMessage(), DatasetDownloadError.PARTIAL_FAILURE);
+				return;
+			}
+			LOG.warn("Could not download the serie of dataset [{}] at once, its instances are downloaded one by one", dataset.getId(), e);
+			received = new HashMap<>();
+		}
+		try {
+			for (PacsInstance instance : fetch.instances()) {
 				try {
-					String zipedFile = downloadAndWriteFileInZip(url, zipOutputStream, name);
-					if (zipedFile != null) {
-						files.add(zipedFile);
+					List<File> parts = received.get(instance.sopInstanceUID());
+					if (parts == null) {
+						parts = downloadInstanceFromPACS(instance);
+						received.put(instance.sopInstanceUID(), parts);
 					}
+					files.add(writeFilesInZip(parts, zipOutputStream, instance.name()));
+					parts.forEach(part -> statistics.addInstance(part.length()));
 				} catch (ZipPacsFileException e) {
 					LOG.error("Could not download dataset [{}] as dicom", dataset.getId(), e);
 					downloadResult.update("Could not download dataset [" + dataset.getId() + "] as dicom : " + e.getMessage(), DatasetDownloadError.PARTIAL_FAILURE);
 				}
-			} else {
-				duplicates++;
 			}
+		} finally {
+			received.values().forEach(this::deleteTemporaryFiles);
 		}
-		if (duplicates > 0) {
-			LOG.error("There were [" + duplicates + "] duplicate dataset_files when zipping dataset [" + dataset.getId() + "], they were ignored.");
+	}
+
+	private Map<String, List<File>> getFetchedFiles(PacsFileFetch fetch) throws InterruptedException, ZipPacsFileException {
+		try {
+			return fetch.response().get();
+		} catch (ExecutionException e) {
+			throw toZipPacsFileException(e.getCause());
+		}
+	}
+
+	private ZipPacsFileException toZipPacsFileException(Throwable cause) {
+		if (cause instanceof HttpClientErrorException httpError) {
+			return new ZipPacsFileException("Received " + httpError.getStatusCode() + " from PACS", httpError);
+		}
+		LOG.error("Error in downloading file from pacs", cause);
+		return new ZipPacsFileException(cause);
+	}
+
+	/**
+	 * Cancels a fetch that will not be written into the zip, and deletes its temporary files if already downloaded.
+	 */
+	private void discardFetch(PacsFileFetch fetch) {
+		if (!fetch.response().cancel(true) && !fetch.response().isCancelled()) {
+			try {
+				fetch.response().get().values().forEach(this::deleteTemporaryFiles);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				// nothing was downloaded
+			}
+		}
+	}
+
+	private void deleteTemporaryFiles(List<File> files) {
+		if (files != null) {
+			files.forEach(file -> {
+				try {
+					Files.deleteIfExists(file.toPath());
+				} catch (IOException e) {
+					LOG.warn("Could not delete temporary file [{}]", file.getAbsolutePath(), e);
+				}
+			});
 		}
-		return files;
 	}
 
 	private String buildFileName(String subjectName, Dataset dataset, String datasetFilePath, String instanceUID ) {
@@ -187,26 +407,111 @@ public class WADODownloaderService {
 	}
 
 	/**
-	 * Downloads and writes the file specified by url into zipOutputStream, using name + .DCM as filename.
-	 * If the downloading fails, a text file is added instead and null is returned.
-	 * @param url
+	 * Writes the files downloaded for one url into zipOutputStream, using name + .DCM as filename,
+	 * or name + _index + .DCM if the PACS returned several files.
+	 * @param parts
 	 * @param zipOutputStream
 	 * @param name the filename without extension
-	 * @return the added file name, null if failed
+	 * @return the added file name
 	 * @throws ZipPacsFileException
-	 * @throws IOException when couldn't write into the stream
 	 */
-	private String downloadAndWriteFileInZip(String url, ZipOutputStream zipOutputStream, String name) throws ZipPacsFileException {
-		byte[] responseBody = null;
+	private String writeFilesInZip(List<File> parts, ZipOutputStream zipOutputStream, String name) throws ZipPacsFileException {
 		try {
-			responseBody = downloadFileFromPACS(url);
-			this.extractDICOMZipFromMHTMLFile(responseBody,  name, zipOutputStream, url.contains(WADO_REQUEST_TYPE_WADO_RS));
+			for (int i = 0; i < parts.size(); i++) {
+				ZipEntry entry = new ZipEntry(parts.size() == 1 ? name + DCM : name + UNDER_SCORE + i + DCM);
+				zipOutputStream.putNextEntry(entry);
+				Files.copy(parts.get(i).toPath(), zipOutputStream);
+				zipOutputStream.closeEntry();
+			}
 			return name + DCM;
-		} catch (IOException | MessagingException e) {
+		} catch (IOException e) {
 			LOG.error("Error in downloading/writing file [{}] from pacs to zip", name, e);
 			throw new ZipPacsFileException(e);
-		} catch (HttpClientErrorException e) {
-			throw new ZipPacsFileException("Received " + e.getStatusCode() + " from PACS", e);
+		}
+	}
+
+	/**
+	 * Downloads the file from the PACS into temporary files.
+	 */
+	private List<File> downloadFileFromPACS(final URL url) throws IOException {
+		return downloadFileFromPACS(url.toString(), this::extractDICOMFilesToTemporaryFiles);
+	}
+
+	/**
+	 * Downloads one instance from the PACS in the calling thread, waiting first for a free slot on its host.
+	 */
+	private List<File> downloadInstanceFromPACS(PacsInstance instance) throws ZipPacsFileException, InterruptedException {
+		Semaphore permits = getHostPermits(instance.url());
+		permits.acquire();
+		try {
+			return downloadFileFromPACS(instance.url());
+		} catch (IOException | RestClientException e) {
+			throw toZipPacsFileException(e);
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Downloads all the instances of a serie with one WADO-RS request, and sorts the received
+	 * files by SOPInstanceUID. The files of the instances that are not in sopInstanceUIDs are deleted.
+	 */
+	private Map<String, List<File>> downloadSerieFromPACS(final URL serieUrl, final Set<String> sopInstanceUIDs) throws IOException {
+		List<File> parts = downloadFileFromPACS(serieUrl);
+		Map<String, List<File>> filesBySopInstanceUID = new HashMap<>();
+		try {
+			for (File part : parts) {
+				String sopInstanceUID = readSOPInstanceUID(part);
+				if (sopInstanceUID != null && sopInstanceUIDs.contains(sopInstanceUID)) {
+					filesBySopInstanceUID.computeIfAbsent(sopInstanceUID, uid -> new ArrayList<>()).add(part);
+				} else {
+					Files.deleteIfExists(part.toPath());
+				}
+			}
+			return filesBySopInstanceUID;
+		} catch (IOException e) {
+			deleteTemporaryFiles(parts);
+			throw e;
+		}
+	}
+
+	private String readSOPInstanceUID(File file) throws IOException {
+		try (DicomInputStream dIS = new DicomInputStream(file)) {
+			Attributes metaInformationAttributes = dIS.readFileMetaInformation();
+			if (metaInformationAttributes != null && metaInformationAttributes.containsValue(Tag.MediaStorageSOPInstanceUID)) {
+				return metaInformationAttributes.getString(Tag.MediaStorageSOPInstanceUID);
+			}
+			return dIS.readDatasetUntilPixelData().getString(Tag.SOPInstanceUID);
+		}
+	}
+
+	/**
+	 * Returns the WADO-RS url of the serie of the given instance url, null for WADO-URI urls.
+	 */
+	private String getSerieURL(String instanceUrl) {
+		int indexInstanceUID = instanceUrl.lastIndexOf(WADO_REQUEST_TYPE_WADO_RS);
+		if (wadoURLHandler.isWADO_URI(instanceUrl) || indexInstanceUID < 0) {
+			return null;
+		}
+		return instanceUrl.substring(0, indexInstanceUID);
+	}
+
+	/**
+	 * Asks the PACS (QIDO-RS) if the serie contains exactly the given number of instances.
+	 */
+	private boolean isWholeSerie(String serieUrl, int instanceCount) {
+		int indexSerieUID = serieUrl.lastIndexOf(WADO_REQUEST_SERIES_WADO_RS);
+		String serieUID = serieUrl.substring(indexSerieUID + WADO_REQUEST_SERIES_WADO_RS.length());
+		String qidoUrl = serieUrl.substring(0, indexSerieUID) + "/series?SeriesInstanceUID=" + serieUID
+				+ "&includefield=NumberOfSeriesRelatedInstances";
+		try {
+			String jsonMetadataStr = downloadMetadataFromPACS(qidoUrl);
+			JsonParser parser = Json.createParser(new StringReader(jsonMetadataStr));
+			Attributes serieAttributes = new JSONReader(parser).readDataset(null);
+			return serieAttributes != null && serieAttributes.getInt(Tag.NumberOfSeriesRelatedInstances, -1) == instanceCount;
+		} catch (IOException | RuntimeException e) {
+			LOG.warn("Could not count the instances of serie [{}], its instances are downloaded one by one", serieUID, e);
+			return false;
 		}
 	}
 
@@ -233,9 +538,8 @@ public class WADODownloaderService {
 				// handle and check at first for WADO-RS URLs by "/instances/"
 				int indexInstanceUID = url.lastIndexOf(WADO_REQUEST_TYPE_WADO_RS);
 				if (indexInstanceUID > 0) {
-					sopInstanceUID = url.substring(indexInstanceUID + WADO_REQUEST_TYPE_WADO_RS.length());
-					byte[] responseBody = downloadFileFromPACS(url);
-					extractDICOMFilesFromMHTMLFile(responseBody, sopInstanceUID, workFolder);
+					String instanceUID = url.substring(indexInstanceUID + WADO_REQUEST_TYPE_WADO_RS.length());
+					downloadFileFromPACS(url, (body, boundary) -> extractDICOMFilesFromMHTMLFile(body, boundary, instanceUID, workFolder));
 				} else {
 					// handle and check secondly for WADO-URI URLs by "objectUID="
 					// instanceUID == objectUID
@@ -253,11 +557,8 @@ public class WADODownloaderService {
 
 						File extractedDicomFile = new File(workFolder.getPath() + File.separator + name + DCM);
 
-						byte[] responseBody = downloadFileFromPACS(url);
-						try (ByteArrayInputStream bIS = new ByteArrayInputStream(responseBody)) {
-							Files.copy(bIS, extractedDicomFile.toPath());
-							files.add(extractedDicomFile);
-						}
+						downloadFileFromPACS(url, (body, boundary) -> Files.copy(body, extractedDicomFile.toPath()));
+						files.add(extractedDicomFile);
 					} else {
 						downloadResult.update("URL for download of dataset [" + dataset.getId() + "] is neither in WADO-RS nor in WADO-URI format", DatasetDownloadError.PARTIAL_FAILURE);
 					}
@@ -336,22 +637,31 @@ public class WADODownloaderService {
 
 	/**
 	 * This method contacts the PACS with a WADO-RS url and does the actual download.
+	 * The response body is given as a stream to the handler, with the multipart boundary
+	 * of the response, or null if the response is not multipart.
 	 * 
 	 * @param url
-	 * @return
+	 * @param handler
+	 * @return the result of the handler
 	 * @throws IOException
 	 */
-	private byte[] downloadFileFromPACS(final String url) throws IOException, HttpClientErrorException {
-		HttpHeaders headers = new HttpHeaders();
-		headers.add(HttpHeaders.ACCEPT, CONTENT_TYPE_MULTIPART + "; type=" + CONTENT_TYPE_DICOM + ";");
-		HttpEntity<String> entity = new HttpEntity<>(headers);
-
-		ResponseEntity<byte[]> response = restTemplate.exchange(url,
-				HttpMethod.GET, entity, byte[].class, "1");
-		if (response.getStatusCode() == HttpStatus.OK) {
-			return response.getBody();
-		} else {
-			throw new IOException("Download did not work: wrong status code received.");
+	private <T> T downloadFileFromPACS(final String url, final PacsResponseHandler<T> handler) throws IOException, HttpClientErrorException {
+		try {
+			return restTemplate.execute(url, HttpMethod.GET,
+					request -> request.getHeaders().add(HttpHeaders.ACCEPT, CONTENT_TYPE_MULTIPART + "; type=" + CONTENT_TYPE_DICOM + ";"),
+					response -> {
+						if (response.getStatusCode().value() != HttpStatus.OK.value()) {
+							throw new IOException("Download did not work: wrong status code received.");
+						}
+						String boundary = MultipartRelatedReader.extractBoundary(response.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+						return handler.handle(response.getBody(), boundary);
+					});
+		} catch (ResourceAccessException e) {
+			// I/O errors are wrapped by the rest template
+			if (e.getCause() instanceof IOException ioException) {
+				throw ioException;
+			}
+			throw e;
 		}
 	}
 
@@ -377,90 +687,102 @@ public class WADODownloaderService {
 	 * the HTML code and its companion resources that are otherwise represented by external links (such as images, Flash animations, Java applets,
 	 * and audio files). The content of an MHTML file is encoded as if it were an HTML e-mail message, using the MIME type multipart/related.
 	 * 
+	 * The parts are streamed one after the other to the work folder, without being loaded in memory.
+	 * 
 	 * @param responseBody
+	 * @param boundary the multipart boundary
 	 * @param instanceUID
 	 * @param workFolder
-	 * @throws FileNotFoundException
 	 * @throws IOException
-	 * @throws MessagingException
 	 */
-	private void extractDICOMFilesFromMHTMLFile(final byte[] responseBody, final String instanceUID, final File workFolder)
-			throws IOException, MessagingException {
-		try(ByteArrayInputStream bIS = new ByteArrayInputStream(responseBody)) {
-			ByteArrayDataSource datasource = new ByteArrayDataSource(bIS, CONTENT_TYPE_MULTIPART);
-			MimeMultipart multipart = new MimeMultipart(datasource);
-			int count = multipart.getCount();
-			for (int i = 0; i < count; i++) {
-				BodyPart bodyPart = multipart.getBodyPart(i);
-				if (isNotOnlyDicom(bodyPart)) {
-					throw new IOException("Answer file from PACS contains other content-type than DICOM, stop here.");
-				}
-				File extractedDicomFile = null;
-				if (count == 1) {
-					extractedDicomFile = new File(workFolder.getPath() + File.separator + instanceUID + DCM);
-				} else {
-					extractedDicomFile = new File(workFolder.getPath() + File.separator + instanceUID + UNDER_SCORE + i + DCM);
+	private Void extractDICOMFilesFromMHTMLFile(final InputStream responseBody, final String boundary, final String instanceUID, final File workFolder)
+			throws IOException {
+		if (boundary == null) {
+			throw new IOException("Answer file from PACS is not multipart, stop here.");
+		}
+		MultipartRelatedReader multipart = new MultipartRelatedReader(responseBody, boundary);
+		File singleDicomFile = new File(workFolder.getPath() + File.separator + instanceUID + DCM);
+		MultipartRelatedReader.BodyPart bodyPart;
+		int i = 0;
+		while ((bodyPart = multipart.nextPart()) != null) {
+			if (isNotOnlyDicom(bodyPart)) {
+				throw new IOException("Answer file from PACS contains other content-type than DICOM, stop here.");
+			}
+			File extractedDicomFile = singleDicomFile;
+			if (i > 0) {
+				if (i == 1) {
+					// more than one part: the first one is numbered as well
+					Files.move(singleDicomFile.toPath(), new File(workFolder.getPath() + File.separator + instanceUID + UNDER_SCORE + 0 + DCM).toPath());
 				}
-				Files.copy(bodyPart.getInputStream(), extractedDicomFile.toPath());
+				extractedDicomFile = new File(workFolder.getPath() + File.separator + instanceUID + UNDER_SCORE + i + DCM);
 			}
+			Files.copy(bodyPart.getInputStream(), extractedDicomFile.toPath());
+			i++;
 		}
+		return null;
 	}
 
-	private boolean isNotOnlyDicom(BodyPart bodyPart) throws MessagingException {
-		return !bodyPart.isMimeType(CONTENT_TYPE_DICOM) && !bodyPart.isMimeType(CONTENT_TYPE_DICOM_XML);
+	private boolean isNotOnlyDicom(MultipartRelatedReader.BodyPart bodyPart) {
+		return !CONTENT_TYPE_DICOM.equals(bodyPart.getMimeType()) && !CONTENT_TYPE_DICOM_XML.equals(bodyPart.getMimeType());
 	}
 
 	/**
 	 * This method reads in a file in format MHTML, one representation of a multipart/related response, that is given from
-	 * a PACS server, that supports WADO-RS requests.
-	 *
-	 * MHTML, short for MIME Encapsulation of Aggregate HTML Documents, is a web page archive format used to combine in a single document
-	 * the HTML code and its companion resources that are otherwise represented by external links (such as images, Flash animations, Java applets,
-	 * and audio files). The content of an MHTML file is encoded as if it were an HTML e-mail message, using the MIME type multipart/related.
+	 * a PACS server, that supports WADO-RS requests, and streams each of its parts into a temporary file. If the response
+	 * is not multipart (WADO-URI), the response body is the DICOM file itself.
 	 *
 	 * @param responseBody
-	 * @throws FileNotFoundException
+	 * @param boundary the multipart boundary, null if not multipart
+	 * @return the temporary files, to be deleted by the caller
 	 * @throws IOException
-	 * @throws MessagingException
 	 */
-	private void extractDICOMZipFromMHTMLFile(final byte[] responseBody, String name, ZipOutputStream zipOutputStream, boolean isMultipart)
-			throws IOException, MessagingException {
-		try(ByteArrayInputStream bIS = new ByteArrayInputStream(responseBody)) {
-			// Not multipart
-			if (!isMultipart) {
-				ZipEntry entry = new ZipEntry(name + DCM);
-				zipOutputStream.putNextEntry(entry);
-				bIS.transferTo(zipOutputStream);
-				zipOutputStream.closeEntry();
-				return;
-			}
-			ByteArrayDataSource datasource = new ByteArrayDataSource(bIS, CONTENT_TYPE_MULTIPART);
-			MimeMultipart multipart = new MimeMultipart(datasource);
-			int count = multipart.getCount();
-			// Multipart but with a single body part
-			if (count == 1) {
-				BodyPart bodyPart = multipart.getBodyPart(0);
-				if (isNotOnlyDicom(bodyPart)) {
-					throw new IOException("Answer file from PACS contains other content-type than DICOM, stop here.");
-				}
-				ZipEntry entry = new ZipEntry(name + DCM);
-				zipOutputStream.putNextEntry(entry);
-				bodyPart.getInputStream().transferTo(zipOutputStream);
-				zipOutputStream.closeEntry();
-				return;
+	private List<File> extractDICOMFilesToTemporaryFiles(final InputStream responseBody, final String boundary) throws IOException {
+		List<File> files = new ArrayList<>();
+		try {
+			if (boundary == null) {
+				files.add(copyToTemporaryFile(responseBody));
+				return files;
 			}
-			// Multipart with multiple parts
-			for (int i = 0; i < count; i++) {
-				BodyPart bodyPart = multipart.getBodyPart(i);
+			MultipartRelatedReader multipart = new MultipartRelatedReader(responseBody, boundary);
+			MultipartRelatedReader.BodyPart bodyPart;
+			while ((bodyPart = multipart.nextPart()) != null) {
 				if (isNotOnlyDicom(bodyPart)) {
 					throw new IOException("Answer file from PACS contains other content-type than DICOM, stop here.");
 				}
-				ZipEntry entry = new ZipEntry(name + UNDER_SCORE + i + DCM);
-				zipOutputStream.putNextEntry(entry);
-				bodyPart.getInputStream().transferTo(zipOutputStream);
-				zipOutputStream.closeEntry();
+				files.add(copyToTemporaryFile(bodyPart.getInputStream()));
 			}
+			return files;
+		} catch (IOException e) {
+			deleteTemporaryFiles(files);
+			throw e;
 		}
 	}
 
+	private File copyToTemporaryFile(InputStream inputStream) throws IOException {
+		File file = Files.createTempFile(TEMPORARY_FILE_PREFIX, DCM).toFile();
+		Files.copy(inputStream, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return file;
+	}
+
+	/**
+	 * Handles the body of a PACS response, while it is received.
+	 */
+	@FunctionalInterface
+	private interface PacsResponseHandler<T> {
+		T handle(InputStream body, String boundary) throws IOException;
+	}
+
+	/**
+	 * Files being downloaded from the PACS, waiting to be written into the zip,
+	 * by SOPInstanceUID: either one instance or a whole serie.
+	 */
+	private record PacsFileFetch(List<PacsInstance> instances, boolean serie, Future<Map<String, List<File>>> response) {
+	}
+
+	/**
+	 * An instance to download, with its name in the zip.
+	 */
+	private record PacsInstance(URL url, String sopInstanceUID, String name) {
+	}
+
 }
@@ -99,14 +99,14 @@ public class ExaminationApiController implements ExaminationApi {
 			@Parameter(description = "id of the examination", required = true) @PathVariable("examinationId") final Long examinationId)
 					throws RestServiceException {
 		try {
-			// Delete extra data
 			Long studyId = examinationService.findById(examinationId).getStudyId();
 			String dataPath = examinationService.getExtraDataFilePath(examinationId, "");
+			examinationService.deleteById(examinationId);
+			// Delete extra data, once their size is removed from the study storage volume
 			File fileToDelete = new File(dataPath);
-			if (fileToDelete.exists()) {
-				FileUtils.deleteDirectory(fileToDelete);
+			if (fileToDelete.exists() && !FileUtils.deleteQuietly(fileToDelete)) {
+				LOG.error("Something went wrong while deleting extra-data folder: {}", dataPath);
 			}
-			examinationService.deleteById(examinationId);
 			ShanoirEvent event= new ShanoirEvent(ShanoirEventType.DELETE_EXAMINATION_EVENT, examinationId.toString(), KeycloakUtil.getTokenUserId(), "Examination " + examinationId + " deleted from study " + studyId, ShanoirEvent.SUCCESS, studyId);
 			eventService.publishEvent(event);
 			event.setMessage("" + studyId);
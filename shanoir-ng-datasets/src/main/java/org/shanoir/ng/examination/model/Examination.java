@@ -31,6 +31,7 @@ import org.shanoir.ng.shared.model.Subject;
 
 import java.sql.Types;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -124,6 +125,10 @@ public class Examination extends HalEntity {
     /** The unit of weight, can be in kg or g */
     private Integer weightUnitOfMeasure;
 
+    /** Last modification date, maintained by the database, used for the incremental Solr indexation. */
+    @Column(insertable = false, updatable = false, columnDefinition = "datetime(6) DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6) NOT NULL")
+    private LocalDateTime lastModified;
+
     /** Flag to set the examination as pre-clinical  */ 
     @Column(nullable=false)
     @ColumnDefault("false")
@@ -0,0 +1,97 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+package org.shanoir.ng.examination.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.validation.constraints.NotNull;
+import org.shanoir.ng.shared.core.model.AbstractEntity;
+
+/**
+ * Total size of the extra data files of a study, for one type of file.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = { "study_id", "extra_data_type" }))
+public class ExtraDataVolume extends AbstractEntity {
+
+	/**
+	 * UID
+	 */
+	private static final long serialVersionUID = 3215634845512474620L;
+
+	@NotNull
+	private Long studyId;
+
+	/** The lower case extension of the files. */
+	@NotNull
+	private String extraDataType;
+
+	/** Size in bytes. */
+	private long size;
+
+	public ExtraDataVolume() {
+	}
+
+	public ExtraDataVolume(Long studyId, String extraDataType) {
+		this.studyId = studyId;
+		this.extraDataType = extraDataType;
+	}
+
+	/**
+	 * @return the studyId
+	 */
+	public Long getStudyId() {
+		return studyId;
+	}
+
+	/**
+	 * @param studyId
+	 *            the studyId to set
+	 */
+	public void setStudyId(Long studyId) {
+		this.studyId = studyId;
+	}
+
+	/**
+	 * @return the extraDataType
+	 */
+	public String getExtraDataType() {
+		return extraDataType;
+	}
+
+	/**
+	 * @param extraDataType
+	 *            the extraDataType to set
+	 */
+	public void setExtraDataType(String extraDataType) {
+		this.extraDataType = extraDataType;
+	}
+
+	/**
+	 * @return the size
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @param size
+	 *            the size to set
+	 */
+	public void setSize(long size) {
+		this.size = size;
+	}
+
+}
@@ -58,6 +58,14 @@ public interface ExaminationRepository extends PagingAndSortingRepository<Examin
 	List<Examination> findBySubjectIdAndStudy_Id(Long subjectId, Long studyId);
 
 	List<Examination> findByIdGreaterThan(Long id);
+
+	/**
+	 * Get the extra data files of all the examinations.
+	 * 
+	 * @return triples of study id, examination id and extra data file name.
+	 */
+	@Query("SELECT e.study.id, e.id, p FROM Examination e JOIN e.extraDataFilePathList p")
+	List<Object[]> findAllExtraDataFilePaths();
 	
 	/**
 	 * Get a paginated list of examinations
@@ -0,0 +1,34 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+package org.shanoir.ng.examination.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.shanoir.ng.examination.model.ExtraDataVolume;
+import org.springframework.data.repository.CrudRepository;
+
+/**
+ * Repository for the extra data volumes.
+ */
+public interface ExtraDataVolumeRepository extends CrudRepository<ExtraDataVolume, Long> {
+
+	Optional<ExtraDataVolume> findByStudyIdAndExtraDataType(Long studyId, String extraDataType);
+
+	List<ExtraDataVolume> findByStudyId(Long studyId);
+
+	List<ExtraDataVolume> findByStudyIdIn(Collection<Long> studyIds);
+
+}
@@ -41,10 +41,14 @@ import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.util.Pair;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
@@ -95,9 +99,12 @@ public class ExaminationServiceImpl implements ExaminationService {
 
 	@Autowired
 	private ObjectMapper objectMapper;
+	@Autowired
+	private ExtraDataVolumeService extraDataVolumeService;
+
 	@Value("${datasets-data}")
 	private String dataDir;
-	
+
 	@Override
 	public void deleteById(final Long id) throws ShanoirException, SolrServerException, IOException, RestServiceException {
 		Optional<Examination> examinationOpt = examinationRepository.findById(id);
@@ -120,7 +127,9 @@ public class ExaminationServiceImpl implements ExaminationService {
 					this.datasetAcquisitionService.deleteById(dsAcq.getId());
 				}
 			}
+			Map<String, Long> extraDataSizeByType = getExtraDataSizeByType(id, examination.getExtraDataFilePathList());
 			examinationRepository.deleteById(id);
+			extraDataVolumeService.remove(examination.getStudyId(), extraDataSizeByType);
 		}
 		rabbitTemplate.convertAndSend(RabbitMQConfiguration.RELOAD_BIDS, objectMapper.writeValueAsString(examination.getStudyId()));
 	}
@@ -235,13 +244,23 @@ public class ExaminationServiceImpl implements ExaminationService {
 	private Examination updateExaminationValues(final Examination examinationDb, final Examination examination) {
 		// Update extra data paths => delete files not present anymore
 		if (examinationDb.getExtraDataFilePathList() != null) {
+			Map<String, Long> deletedSizeByType = new HashMap<>();
 			for(String filePath : examinationDb.getExtraDataFilePathList()) {
 				if (!examination.getExtraDataFilePathList().contains(filePath)) {
 					// Delete file
-					String filePathToDelete = getExtraDataFilePath(examinationDb.getId(), filePath);
-					FileUtils.deleteQuietly(new File(filePathToDelete));
+					File fileToDelete = new File(getExtraDataFilePath(examinationDb.getId(), filePath));
+					long length = fileToDelete.length();
+					if (FileUtils.deleteQuietly(fileToDelete)) {
+						ExtraDataVolumeService.addSize(deletedSizeByType, filePath, length);
+					}
 				}
 			}
+			extraDataVolumeService.remove(examinationDb.getStudyId(), deletedSizeByType);
+		}
+		// The extra data move with the examination
+		if (examination.getStudyId() != null && !examination.getStudyId().equals(examinationDb.getStudyId())) {
+			extraDataVolumeService.move(examinationDb.getStudyId(), examination.getStudyId(),
+					getExtraDataSizeByType(examinationDb.getId(), examination.getExtraDataFilePathList()));
 		}
 		// If we updated the subject, we need to update datasets and processed datasets too
 		if (!examination.getSubject().getId().equals(examinationDb.getSubject().getId())) {
@@ -278,19 +297,56 @@ public class ExaminationServiceImpl implements ExaminationService {
 
 	@Override
 	public Long getExtraDataSizeByStudyId(Long studyId){
+		return extraDataVolumeService.getSizeByType(studyId).values().stream().mapToLong(Long::longValue).sum();
+	}
 
-		List<Examination> exams = this.findByStudyId(studyId);
-
-		long size = 0L;
-		for(Examination exam : exams){
-			for(String path : exam.getExtraDataFilePathList()){
-				File f = new File(this.getExtraDataFilePath(exam.getId(), path));
-				if(f.exists()){
-					size += f.length();
+	/**
+	 * Sums by type the size of the existing extra data files of an examination.
+	 */
+	private Map<String, Long> getExtraDataSizeByType(Long examinationId, List<String> filePaths) {
+		Map<String, Long> sizeByType = new HashMap<>();
+		if (filePaths != null) {
+			for (String filePath : filePaths) {
+				File file = new File(getExtraDataFilePath(examinationId, filePath));
+				if (file.exists()) {
+					ExtraDataVolumeService.addSize(sizeByType, filePath, file.length());
 				}
 			}
 		}
-		return size;
+		return sizeByType;
+	}
+
+	private void addExtraDataSize(File file, Long examinationId, long previousLength) {
+		examinationRepository.findById(examinationId).ifPresent(examination -> extraDataVolumeService.add(
+				examination.getStudyId(), Map.of(ExtraDataVolumeService.getType(file.getName()), file.length() - previousLength)));
+	}
+
+	/**
+	 * Fills the stored extra data sizes at the first start after the creation of their table.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Async
+	public void initExtraDataSizes() {
+		if (extraDataVolumeService.isEmpty()) {
+			reconcileExtraDataSizes();
+		}
+	}
+
+	/**
+	 * Corrects the stored extra data sizes of all the studies, that could have drifted
+	 * with files changed outside of Shanoir, failed transactions or concurrent changes.
+	 */
+	@Scheduled(cron = "0 0 5 * * *", zone="Europe/Paris")
+	public void reconcileExtraDataSizes() {
+		Map<Long, Map<String, Long>> sizeByTypeByStudy = new HashMap<>();
+		for (Object[] examinationFile : examinationRepository.findAllExtraDataFilePaths()) {
+			File file = new File(this.getExtraDataFilePath((Long) examinationFile[1], (String) examinationFile[2]));
+			if (examinationFile[0] != null && file.exists()) {
+				ExtraDataVolumeService.addSize(sizeByTypeByStudy.computeIfAbsent((Long) examinationFile[0], id -> new HashMap<>()),
+						(String) examinationFile[2], file.length());
+			}
+		}
+		extraDataVolumeService.reconcile(sizeByTypeByStudy);
 	}
 
 	@Override
@@ -298,9 +354,11 @@ public class ExaminationServiceImpl implements ExaminationService {
 		String filePath = getExtraDataFilePath(examinationId, file.getOriginalFilename());
 		File fileToCreate = new File(filePath);
 		fileToCreate.getParentFile().mkdirs();
+		long previousLength = fileToCreate.length();
 		try {
 			LOG.info("Saving file {} to destination: {}", file.getOriginalFilename(), filePath);
 			file.transferTo(new File(filePath));
+			addExtraDataSize(fileToCreate, examinationId, previousLength);
 		} catch (Exception e) {
 			LOG.error("Error while loading files on examination: {}. File not uploaded. {}", examinationId, e);
 			e.printStackTrace();
@@ -317,6 +375,7 @@ public class ExaminationServiceImpl implements ExaminationService {
 		try {
 			LOG.info("Saving file {} to destination: {}", file.getName(), filePath);
 			Files.copy(Path.of(file.getAbsolutePath()), Path.of(filePath));
+			addExtraDataSize(fileToCreate, examinationId, 0);
 		} catch (Exception e) {
 			LOG.error("Error while loading files on examination: {}. File not uploaded. {}", examinationId, e);
 			e.printStackTrace();
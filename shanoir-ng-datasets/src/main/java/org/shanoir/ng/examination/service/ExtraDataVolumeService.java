@@ -0,0 +1,191 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+package org.shanoir.ng.examination.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FilenameUtils;
+import org.shanoir.ng.examination.model.ExtraDataVolume;
+import org.shanoir.ng.examination.repository.ExtraDataVolumeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Total size of the extra data files by study and by type, stored in database
+ * so that the storage volume of a study is read without walking its files.
+ * The changes are committed in their own transaction, inside the lock,
+ * so that concurrent changes of the same total are not lost.
+ */
+@Service
+public class ExtraDataVolumeService {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ExtraDataVolumeService.class);
+
+	/** Type of the extra data files without extension. */
+	private static final String NO_EXTENSION_TYPE = "none";
+
+	@Autowired
+	private ExtraDataVolumeRepository extraDataVolumeRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	/**
+	 * Gets the type of an extra data file: its lower case extension.
+	 * 
+	 * @param fileName name of the file
+	 * @return the type of the file
+	 */
+	public static String getType(String fileName) {
+		String extension = FilenameUtils.getExtension(fileName);
+		return extension == null || extension.isEmpty() ? NO_EXTENSION_TYPE : extension.toLowerCase();
+	}
+
+	/**
+	 * Adds to the totals of a study the size of the given existing files.
+	 * 
+	 * @param sizeByType the map to fill
+	 * @param fileName name of the file, for its type
+	 * @param size size of the file
+	 */
+	public static void addSize(Map<String, Long> sizeByType, String fileName, long size) {
+		sizeByType.merge(getType(fileName), size, Long::sum);
+	}
+
+	/**
+	 * Adds the given sizes, negative for removed files, to the totals of a study.
+	 * 
+	 * @param studyId id of the study
+	 * @param deltaByType size to add, by type
+	 */
+	public synchronized void add(Long studyId, Map<String, Long> deltaByType) {
+		if (studyId == null || deltaByType.isEmpty()) {
+			return;
+		}
+		newTransaction().executeWithoutResult(status -> deltaByType.forEach((type, delta) -> {
+			if (delta == 0) {
+				return;
+			}
+			ExtraDataVolume volume = extraDataVolumeRepository.findByStudyIdAndExtraDataType(studyId, type)
+					.orElseGet(() -> new ExtraDataVolume(studyId, type));
+			volume.setSize(Math.max(0, volume.getSize() + delta));
+			extraDataVolumeRepository.save(volume);
+		}));
+	}
+
+	/**
+	 * Removes the size of deleted files from the totals of a study.
+	 * 
+	 * @param studyId id of the study
+	 * @param sizeByType size to remove, by type
+	 */
+	public void remove(Long studyId, Map<String, Long> sizeByType) {
+		Map<String, Long> deltaByType = new HashMap<>();
+		sizeByType.forEach((type, size) -> deltaByType.put(type, -size));
+		add(studyId, deltaByType);
+	}
+
+	/**
+	 * Moves the given sizes from the totals of a study to the ones of another study.
+	 * 
+	 * @param fromStudyId id of the previous study
+	 * @param toStudyId id of the new study
+	 * @param sizeByType size to move, by type
+	 */
+	public void move(Long fromStudyId, Long toStudyId, Map<String, Long> sizeByType) {
+		remove(fromStudyId, sizeByType);
+		add(toStudyId, sizeByType);
+	}
+
+	/**
+	 * @param studyId id of the study
+	 * @return the size of the extra data files of the study, by type
+	 */
+	public Map<String, Long> getSizeByType(Long studyId) {
+		Map<String, Long> sizeByType = new HashMap<>();
+		for (ExtraDataVolume volume : extraDataVolumeRepository.findByStudyId(studyId)) {
+			sizeByType.put(volume.getExtraDataType(), volume.getSize());
+		}
+		return sizeByType;
+	}
+
+	/**
+	 * @param studyIds ids of the studies
+	 * @return the size of the extra data files by type, for each study of the list
+	 */
+	public Map<Long, Map<String, Long>> getSizeByTypeByStudyId(Collection<Long> studyIds) {
+		Map<Long, Map<String, Long>> sizeByTypeByStudy = new HashMap<>();
+		for (Long studyId : studyIds) {
+			sizeByTypeByStudy.put(studyId, new HashMap<>());
+		}
+		for (ExtraDataVolume volume : extraDataVolumeRepository.findByStudyIdIn(studyIds)) {
+			sizeByTypeByStudy.get(volume.getStudyId()).put(volume.getExtraDataType(), volume.getSize());
+		}
+		return sizeByTypeByStudy;
+	}
+
+	/**
+	 * @return true if no total is stored yet, as after the creation of the table.
+	 */
+	public boolean isEmpty() {
+		return extraDataVolumeRepository.count() == 0;
+	}
+
+	/**
+	 * Replaces the stored totals of all the studies by the given ones, computed from the files.
+	 * 
+	 * @param sizeByTypeByStudy the size of the extra data files by type, for each study having some
+	 */
+	public synchronized void reconcile(Map<Long, Map<String, Long>> sizeByTypeByStudy) {
+		newTransaction().executeWithoutResult(status -> {
+			Map<Long, Map<String, Long>> remaining = new HashMap<>();
+			sizeByTypeByStudy.forEach((studyId, sizeByType) -> remaining.put(studyId, new HashMap<>(sizeByType)));
+			for (ExtraDataVolume volume : extraDataVolumeRepository.findAll()) {
+				Map<String, Long> sizeByType = remaining.get(volume.getStudyId());
+				Long size = sizeByType != null ? sizeByType.remove(volume.getExtraDataType()) : null;
+				if (size == null) {
+					if (volume.getSize() != 0) {
+						LOG.warn("Extra data size of study {} for type {} corrected from {} to 0 bytes.",
+								volume.getStudyId(), volume.getExtraDataType(), volume.getSize());
+					}
+					extraDataVolumeRepository.delete(volume);
+				} else if (size != volume.getSize()) {
+					LOG.warn("Extra data size of study {} for type {} corrected from {} to {} bytes.",
+							volume.getStudyId(), volume.getExtraDataType(), volume.getSize(), size);
+					volume.setSize(size);
+					extraDataVolumeRepository.save(volume);
+				}
+			}
+			remaining.forEach((studyId, sizeByType) -> sizeByType.forEach((type, size) -> {
+				ExtraDataVolume volume = new ExtraDataVolume(studyId, type);
+				volume.setSize(size);
+				extraDataVolumeRepository.save(volume);
+			}));
+		});
+	}
+
+	private TransactionTemplate newTransaction() {
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		return transaction;
+	}
+
+}
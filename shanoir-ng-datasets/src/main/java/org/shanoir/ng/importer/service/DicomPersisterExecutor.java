@@ -0,0 +1,55 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+
+package org.shanoir.ng.importer.service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * The threads sending the series of the imports to the PACS. They are shared by
+ * all the imports (ImporterService is a prototype), so that at most parallelism
+ * series are sent to the PACS at once. With STOW-RS, the requests of these series
+ * are sent by the threads of DICOMWebService, also shared, which bound the number
+ * of requests to the PACS.
+ */
+@Component
+public class DicomPersisterExecutor {
+
+	@Value("${dcm4chee-arc.dicom.persist.parallelism:4}")
+	private int parallelism;
+
+	private ExecutorService executor;
+
+	@PostConstruct
+	public void init() {
+		executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+}
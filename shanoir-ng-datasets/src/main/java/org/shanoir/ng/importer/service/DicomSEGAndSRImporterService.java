@@ -35,6 +35,7 @@ import org.shanoir.ng.datasetacquisition.model.mr.MrDatasetAcquisition;
 import org.shanoir.ng.datasetacquisition.model.pet.PetDatasetAcquisition;
 import org.shanoir.ng.datasetacquisition.model.xa.XaDatasetAcquisition;
 import org.shanoir.ng.datasetfile.DatasetFile;
+import org.shanoir.ng.dicom.web.DICOMWebMetadataCache;
 import org.shanoir.ng.dicom.web.StudyInstanceUIDHandler;
 import org.shanoir.ng.dicom.web.service.DICOMWebService;
 import org.shanoir.ng.examination.model.Examination;
@@ -88,6 +89,9 @@ public class DicomSEGAndSRImporterService {
 	
 	@Autowired
 	private DICOMWebService dicomWebService;
+
+	@Autowired
+	private DICOMWebMetadataCache metadataCache;
 	
 	@Autowired
 	private StudyInstanceUIDHandler studyInstanceUIDHandler;
@@ -445,6 +449,7 @@ public class DicomSEGAndSRImporterService {
 			try(InputStream finalInputStream = new ByteArrayInputStream(bAOS.toByteArray())) {
 				dicomWebService.sendDicomInputStreamToPacs(finalInputStream);				
 			}
+			metadataCache.evictStudy(datasetAttributes.getString(Tag.StudyInstanceUID));
 		}
 	}
 
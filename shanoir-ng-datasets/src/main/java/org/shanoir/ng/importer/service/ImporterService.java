@@ -24,6 +24,11 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.joda.time.DateTime;
 import org.shanoir.ng.dataset.modality.*;
@@ -36,6 +41,8 @@ import org.shanoir.ng.dataset.service.DatasetService;
 import org.shanoir.ng.datasetacquisition.model.DatasetAcquisition;
 import org.shanoir.ng.datasetacquisition.service.DatasetAcquisitionService;
 import org.shanoir.ng.datasetfile.DatasetFile;
+import org.shanoir.ng.dicom.web.DICOMWebMetadataCache;
+import org.shanoir.ng.dicom.web.StudyInstanceUIDHandler;
 import org.shanoir.ng.dicom.DicomProcessing;
 import org.shanoir.ng.download.AcquisitionAttributes;
 import org.shanoir.ng.download.ExaminationAttributes;
@@ -103,6 +110,12 @@ public class ImporterService {
     @Autowired
     private DicomPersisterService dicomPersisterService;
 
+    @Autowired
+    private DicomPersisterExecutor dicomPersisterExecutor;
+
+    @Autowired
+    private DICOMWebMetadataCache metadataCache;
+
     @Autowired
     private ShanoirEventService eventService;
 
@@ -181,6 +194,7 @@ public class ImporterService {
                 	generatedAcquisitions = new HashSet<DatasetAcquisition>(datasetAcquisitionService.createAll(generatedAcquisitions));
                     try {
                         persistPatientInPacs(importJob.getPatients(), event);
+                        metadataCache.evictExamination(StudyInstanceUIDHandler.PREFIX + examination.getId());
                     } catch (Exception e) { // if error in pacs
                         // revert dataset acquisitions
                         for (DatasetAcquisition acquisition : generatedAcquisitions) {
@@ -350,24 +364,72 @@ public class ImporterService {
     }
     
      /**
-     *  Persist Dicom images in the Shanoir Pacs
+     *  Persist Dicom images in the Shanoir Pacs: the selected series are sent in parallel,
+     *  at most dcm4chee-arc.dicom.persist.parallelism at once (for all the imports).
+     *  With STOW-RS, the requests of these series share the dcm4chee-arc.dicom.web.stow.parallelism
+     *  threads of DICOMWebService, so that the requests to the PACS do not multiply.
+     *  If a serie fails, the series not started are not sent, and the error is thrown
+     *  once the series in progress are finished, so that the caller can revert the import.
      * @throws Exception 
      */
     private void persistPatientInPacs(List<Patient> patients, ShanoirEvent event) throws Exception {
+        List<Serie> series = new ArrayList<>();
         for (Patient patient : patients) {
             for (Study study : patient.getStudies()) {
-                float progress = 0.75f;
                 for (Serie serie : study.getSelectedSeries() ) {
                     if (serie.getSelected() != null && serie.getSelected()) {
-                        persistSerieInPacs(serie);
+                        series.add(serie);
                     }
-                    progress += 0.25f / study.getSelectedSeries().size();
-                    event.setMessage("Saving serie " + serie.getSeriesDescription()+ " into pacs");
-                    event.setProgress(progress);
-                    eventService.publishEvent(event);
                 }
             }
-        }           
+        }
+        CompletionService<Serie> completionService = new ExecutorCompletionService<>(dicomPersisterExecutor.getExecutor());
+        // claimed by the persistence when it starts, or by waitForEnd to skip it
+        Map<Future<Serie>, AtomicBoolean> persistences = new LinkedHashMap<>();
+        for (Serie serie : series) {
+            AtomicBoolean claimed = new AtomicBoolean();
+            persistences.put(completionService.submit(() -> {
+                if (claimed.compareAndSet(false, true)) {
+                    persistSerieInPacs(serie);
+                }
+                return serie;
+            }), claimed);
+        }
+        try {
+            for (int persisted = 1; persisted <= series.size(); persisted++) {
+                Serie serie = completionService.take().get();
+                event.setMessage("Saved serie " + serie.getSeriesDescription() + " into pacs (" + persisted + "/" + series.size() + ")");
+                event.setProgress(0.75f + 0.25f * persisted / series.size());
+                eventService.publishEvent(event);
+            }
+        } catch (ExecutionException e) {
+            waitForEnd(persistences);
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } catch (InterruptedException e) {
+            waitForEnd(persistences);
+            throw e;
+        }
+    }
+
+    /**
+     * Cancels the serie persistences not started, and waits for the ones in progress.
+     */
+    private void waitForEnd(Map<Future<Serie>, AtomicBoolean> persistences) {
+        for (Map.Entry<Future<Serie>, AtomicBoolean> persistence : persistences.entrySet()) {
+            if (persistence.getValue().compareAndSet(false, true)) {
+                // not started: skipped
+                persistence.getKey().cancel(false);
+                continue;
+            }
+            try {
+                persistence.getKey().get();
+            } catch (ExecutionException e) {
+                // already reported
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
     }
 
     public DatasetAcquisition createDatasetAcquisitionForSerie(Serie serie, int rank, Examination examination, ImportJob importJob, AcquisitionAttributes<String> dicomAttributes) throws Exception {
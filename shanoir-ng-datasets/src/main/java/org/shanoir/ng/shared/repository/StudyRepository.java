@@ -14,6 +14,7 @@
 package org.shanoir.ng.shared.repository;
 
 import java.math.BigInteger;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -31,4 +32,11 @@ public interface StudyRepository extends CrudRepository<Study, Long> {
 	@Query(value="select rd.study_id from related_datasets rd where dataset_id = ?1",
 			nativeQuery = true)
 	List<BigInteger> findByDatasetId(Long datasetId);
+
+	/**
+	 * @return the pairs [dataset id, study id] of the studies related to the given datasets
+	 */
+	@Query(value="select rd.dataset_id, rd.study_id from related_datasets rd where rd.dataset_id in (?1)",
+			nativeQuery = true)
+	List<Object[]> findByDatasetIdIn(Collection<Long> datasetIds);
 }
@@ -19,6 +19,7 @@
  */
 package org.shanoir.ng.solr.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -41,4 +42,29 @@ public interface ShanoirMetadataRepositoryCustom {
 	List<ShanoirMetadata> findSolrDocs(List<Long> datasetIds);
 
 	Map<Long, List<String>> findAllTags(List<Long> datasetIds);
+
+	/**
+	 * Find the documents of the datasets with an id between minId and maxId (included).
+	 */
+	List<ShanoirMetadata> findSolrDocsBetween(Long minId, Long maxId);
+
+	/**
+	 * Find the tags of the datasets with an id between minId and maxId (included).
+	 */
+	Map<Long, List<String>> findTagsBetween(Long minId, Long maxId);
+
+	/**
+	 * @return the next dataset ids after lastId, ordered, at most limit ids
+	 */
+	List<Long> findDatasetIdsAfter(Long lastId, int limit);
+
+	/**
+	 * @return the ids of the datasets modified since the given date: the dataset, its metadata or its examination
+	 */
+	List<Long> findDatasetIdsModifiedSince(LocalDateTime since);
+
+	/**
+	 * @return the last modification date of the datasets, their metadata and their examinations
+	 */
+	LocalDateTime findLastModified();
 }
@@ -28,6 +28,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -358,6 +360,17 @@ public class ShanoirMetadataRepositoryImpl implements ShanoirMetadataRepositoryC
 			" INNER JOIN dataset_tag dstag ON d.id = dstag.dataset_id " +
 			" INNER JOIN study_tag tag ON dstag.study_tag_id = tag.id";
 
+	public static final String DATASET_IDS_MODIFIED_QUERY = "SELECT d.id FROM dataset d" +
+			" LEFT JOIN dataset_metadata dm ON dm.id = d.updated_metadata_id" +
+			" LEFT JOIN dataset_acquisition da ON da.id = d.dataset_acquisition_id" +
+			" LEFT JOIN examination e ON e.id = da.examination_id" +
+			" WHERE d.last_modified >= :since OR dm.last_modified >= :since OR e.last_modified >= :since";
+
+	public static final String LAST_MODIFIED_QUERY = "SELECT MAX(m.last_modified) FROM (" +
+			"SELECT MAX(last_modified) AS last_modified FROM dataset" +
+			" UNION ALL SELECT MAX(last_modified) FROM dataset_metadata" +
+			" UNION ALL SELECT MAX(last_modified) FROM examination) m";
+
 	@PersistenceContext
 	private EntityManager em;
 	
@@ -403,6 +416,35 @@ public class ShanoirMetadataRepositoryImpl implements ShanoirMetadataRepositoryC
 		return this.findSolr(clause);
 	}
 
+	@Override
+	public List<ShanoirMetadata> findSolrDocsBetween(Long minId, Long maxId) {
+		return this.findSolr(" AND d.id BETWEEN " + minId + " AND " + maxId);
+	}
+
+	@Override
+	public List<Long> findDatasetIdsAfter(Long lastId, int limit) {
+		Query query = em.createNativeQuery("SELECT d.id FROM dataset d WHERE d.id > :lastId ORDER BY d.id");
+		query.setParameter("lastId", lastId);
+		query.setMaxResults(limit);
+		return ((List<Number>) query.getResultList()).stream().map(Number::longValue).collect(Collectors.toList());
+	}
+
+	@Override
+	public List<Long> findDatasetIdsModifiedSince(LocalDateTime since) {
+		Query query = em.createNativeQuery(DATASET_IDS_MODIFIED_QUERY);
+		query.setParameter("since", since);
+		return ((List<Number>) query.getResultList()).stream().map(Number::longValue).collect(Collectors.toList());
+	}
+
+	@Override
+	public LocalDateTime findLastModified() {
+		Object result = em.createNativeQuery(LAST_MODIFIED_QUERY).getSingleResult();
+		if (result instanceof Timestamp timestamp) {
+			return timestamp.toLocalDateTime();
+		}
+		return (LocalDateTime) result;
+	}
+
 	private List<ShanoirMetadata> findSolr(String clause){
 
 		List<ShanoirMetadata> result = new ArrayList<>();
@@ -447,14 +489,23 @@ public class ShanoirMetadataRepositoryImpl implements ShanoirMetadataRepositoryC
 	@Override
 	public Map<Long, List<String>> findAllTags(List<Long> datasetIds){
 
-		List<Object[]> result = new ArrayList<>();
-
 		String clause = "";
 
 		if(datasetIds != null && !datasetIds.isEmpty()){
 			String ids = datasetIds.stream().map(Object::toString).collect(Collectors.joining(","));
 			clause = " AND d.id IN (" + ids + ")";
 		}
+		return this.findTags(clause);
+	}
+
+	@Override
+	public Map<Long, List<String>> findTagsBetween(Long minId, Long maxId) {
+		return this.findTags(" AND d.id BETWEEN " + minId + " AND " + maxId);
+	}
+
+	private Map<Long, List<String>> findTags(String clause) {
+
+		List<Object[]> result = new ArrayList<>();
 
 		Query subjectTagQuery = em.createNativeQuery(SUBJECT_TAG_QUERY + clause);
 		result.addAll(subjectTagQuery.getResultList());
@@ -45,6 +45,8 @@ public interface SolrService {
 
 	void indexAll() throws SolrServerException, IOException;
 
+	void indexModified() throws SolrServerException, IOException;
+
 	void indexDataset(Long datasetId) throws SolrServerException, IOException;
 	
 	void indexDatasets(List<Long> datasetIds) throws SolrServerException, IOException;
@@ -65,4 +67,9 @@ public interface SolrService {
 
 	void updateStudyAsync(Long studyId) throws SolrServerException, IOException;
 
+	/**
+	 * Forgets the study and center filters of the users, after a change of the study users or of the center names.
+	 */
+	void evictStudiesCenterCache();
+
 }
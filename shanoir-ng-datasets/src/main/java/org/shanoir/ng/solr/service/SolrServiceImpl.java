@@ -20,7 +20,11 @@
 package org.shanoir.ng.solr.service;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import org.apache.solr.client.solrj.SolrServerException;
@@ -48,6 +52,8 @@ import org.shanoir.ng.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -56,9 +62,14 @@ import org.springframework.data.solr.core.query.result.SolrResultPage;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.CollectionUtils;
 
 /**
@@ -92,8 +103,35 @@ public class SolrServiceImpl implements SolrService {
 	@Autowired
 	private ShanoirEventService eventService;
 
+	@Autowired
+	private SolrUpdateQueue updateQueue;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
 	private static final Logger LOG = LoggerFactory.getLogger(SolrServiceImpl.class);
 
+	/** Modifications committed late, after the watermark was read, are caught by the next indexation */
+	private static final Duration WATERMARK_OVERLAP = Duration.ofHours(1);
+
+	@Value("${solr.index.batch-size:1000}")
+	private int indexBatchSize;
+
+	@Value("${solr.update.batch-size:500}")
+	private int updateBatchSize;
+
+	@Value("${solr.update.max-attempts:3}")
+	private int updateMaxAttempts;
+
+	/** Last modification date of the datasets at the start of the last indexation */
+	private volatile LocalDateTime indexWatermark;
+
+	/** Solr filter of each user: the center names he can see by study id, by user id */
+	private final Map<Long, Map<Long, List<String>>> studiesCenterByUser = new ConcurrentHashMap<>();
+
+	/** Incremented at each eviction of the filters */
+	private final AtomicLong studiesCenterGeneration = new AtomicLong();
+
 	public void addToIndex (final ShanoirSolrDocument document) throws SolrServerException, IOException {
 		solrJWrapper.addToIndex(document);
 	}
@@ -118,46 +156,99 @@ public class SolrServiceImpl implements SolrService {
 	@Override
 	@Async
 	@Transactional
-	@Scheduled(cron = "0 0 6 * * *", zone="Europe/Paris")
 	public void indexAll() {
+		ShanoirEvent event = new ShanoirEvent(
+				ShanoirEventType.SOLR_INDEX_ALL_EVENT,
+				null,
+				KeycloakUtil.getTokenUserId(),
+				"Indexing datasets...",
+				ShanoirEvent.IN_PROGRESS,
+				0f);
+		eventService.publishEvent(event);
+		reindexAll(event);
+	}
 
+	/**
+	 * Nightly indexation: only the datasets modified since the last indexation are indexed again,
+	 * or all the datasets if there was no indexation since the start of the application.
+	 */
+	@Override
+	@Async
+	@Transactional
+	@Scheduled(cron = "0 0 6 * * *", zone="Europe/Paris")
+	public void indexModified() {
 		ShanoirEvent event = new ShanoirEvent(
 				ShanoirEventType.SOLR_INDEX_ALL_EVENT,
 				null,
 				KeycloakUtil.getTokenUserId(),
-				"Cleaning Solr index...",
+				"Indexing modified datasets...",
 				ShanoirEvent.IN_PROGRESS,
 				0f);
 		eventService.publishEvent(event);
-        try {
-            deleteAll();
-        } catch (SolrServerException | IOException e) {
-			LOG.error("Error while cleaning Solr index.", e);
-			eventService.publishErrorEvent(event, "Error while cleaning Solr index : " + e.getMessage());
+		if (indexWatermark == null) {
+			reindexAll(event);
 			return;
-        }
-		eventService.publishEvent(event, "Fetching data to index...", 0.25f);
-
-		List<ShanoirMetadata> documents;
-		Map<Long, List<String>> tags;
+		}
 		try {
-			documents = shanoirMetadataRepository.findAllAsSolrDoc();
-			eventService.publishEvent(event, "Fetching data to index...", 0.5f);
-			tags = shanoirMetadataRepository.findAllTags(null);
-			eventService.publishEvent(event, "Fetching data to index...", 0.75f);
-		} catch(Exception e){
-			LOG.error("Error while fetching data to index.", e);
-			eventService.publishErrorEvent(event, "Error while fetching data to index : " + e.getMessage());
-			return;
+			LocalDateTime watermark = shanoirMetadataRepository.findLastModified();
+			List<Long> datasetIds = shanoirMetadataRepository.findDatasetIdsModifiedSince(indexWatermark.minus(WATERMARK_OVERLAP));
+			for (int i = 0; i < datasetIds.size(); i += indexBatchSize) {
+				List<Long> batch = datasetIds.subList(i, Math.min(datasetIds.size(), i + indexBatchSize));
+				solrJWrapper.addAllToIndexWithoutCommit(getShanoirSolrDocuments(shanoirMetadataRepository.findSolrDocs(batch),
+						shanoirMetadataRepository.findAllTags(batch)));
+				eventService.publishEvent(event, "Indexing modified datasets...", (float) (i + batch.size()) / datasetIds.size());
+			}
+			solrJWrapper.commit();
+			indexWatermark = watermark;
+			eventService.publishSuccessEvent(event, "Indexed [" + datasetIds.size() + "] modified datasets.");
+		} catch (Exception e) {
+			LOG.error("Error indexing modified datasets into Solr.", e);
+			eventService.publishErrorEvent(event, "Error indexing modified datasets into Solr : " + e.getMessage());
 		}
+	}
 
+	/**
+	 * Indexes all the datasets again, by batches of dataset ids: the index is never emptied,
+	 * the documents of each batch replace the existing ones and the documents of deleted datasets
+	 * are removed batch after batch. The changes are committed at the end.
+	 */
+	private void reindexAll(ShanoirEvent event) {
 		try {
-            this.indexDocumentsInSolr(documents, tags, event);
-        } catch (SolrServerException | IOException e) {
+			LocalDateTime watermark = shanoirMetadataRepository.findLastModified();
+			long total = dsRepository.count();
+			long indexed = 0;
+			Long lastId = 0L;
+			List<Long> datasetIds;
+			while (!(datasetIds = shanoirMetadataRepository.findDatasetIdsAfter(lastId, indexBatchSize)).isEmpty()) {
+				Long firstId = lastId + 1;
+				lastId = datasetIds.get(datasetIds.size() - 1);
+				indexed += reindexBetween(firstId, lastId);
+				eventService.publishEvent(event, "Indexing datasets...", total > 0 ? Math.min(1f, (float) indexed / total) : 1f);
+			}
+			solrJWrapper.deleteAfterWithoutCommit(lastId);
+			solrJWrapper.commit();
+			indexWatermark = watermark;
+			eventService.publishSuccessEvent(event, "Indexed [" + indexed + "] datasets.");
+		} catch (Exception e) {
 			LOG.error("Error indexing datasets into Solr.", e);
 			eventService.publishErrorEvent(event, "Error indexing datasets into Solr : " + e.getMessage());
-        }
-    }
+		}
+	}
+
+	/**
+	 * Indexes the datasets with an id between firstId and lastId, and removes the documents of the missing ones.
+	 * @return the number of indexed datasets
+	 */
+	private int reindexBetween(Long firstId, Long lastId) throws SolrServerException, IOException {
+		List<ShanoirSolrDocument> documents = getShanoirSolrDocuments(shanoirMetadataRepository.findSolrDocsBetween(firstId, lastId),
+				shanoirMetadataRepository.findTagsBetween(firstId, lastId));
+		solrJWrapper.addAllToIndexWithoutCommit(documents);
+		Set<Long> indexedIds = documents.stream().map(ShanoirSolrDocument::getDatasetId).collect(Collectors.toSet());
+		List<Long> staleIds = solrJWrapper.findDatasetIdsBetween(firstId, lastId).stream()
+				.filter(id -> !indexedIds.contains(id)).collect(Collectors.toList());
+		solrJWrapper.deleteFromIndexWithoutCommit(staleIds);
+		return indexedIds.size();
+	}
 
 	@Transactional
 	@Override
@@ -187,20 +278,20 @@ public class SolrServiceImpl implements SolrService {
 			eventService.publishEvent(event, "Indexing [" + docNb + "] datasets...", event.getProgress());
 		}
 
-		Iterator<ShanoirMetadata> docIt = metadatas.iterator();
+		solrJWrapper.addAllToIndex(getShanoirSolrDocuments(metadatas, tags));
+		if(event != null){
+			eventService.publishSuccessEvent(event, "Indexed [" + docNb + "] datasets.");
+		}
+	}
 
+	private List<ShanoirSolrDocument> getShanoirSolrDocuments(List<ShanoirMetadata> metadatas, Map<Long, List<String>> tags) {
 		List<ShanoirSolrDocument> solrDocuments = new ArrayList<>();
-
-		while (docIt.hasNext()) {
-			ShanoirMetadata shanoirMetadata = docIt.next();
+		for (ShanoirMetadata shanoirMetadata : metadatas) {
 			ShanoirSolrDocument doc = this.getShanoirSolrDocument(shanoirMetadata);
 			doc.setTags(tags.get(shanoirMetadata.getDatasetId()));
 			solrDocuments.add(doc);
 		}
-		solrJWrapper.addAllToIndex(solrDocuments);
-		if(event != null){
-			eventService.publishSuccessEvent(event, "Indexed [" + docNb + "] datasets.");
-		}
+		return solrDocuments;
 	}
 
 	private ShanoirSolrDocument getShanoirSolrDocument(ShanoirMetadata shanoirMetadata) {
@@ -226,21 +317,71 @@ public class SolrServiceImpl implements SolrService {
 		return result;
 	}
 
+	/**
+	 * @return the filter of the connected user: the center names he can see, by study id
+	 */
 	private Map<Long, List<String>> getStudiesCenter() {
-		List<StudyUser> studyUsers = Utils.toList(rightsRepository.findByUserId(KeycloakUtil.getTokenUserId()));
+		Long userId = KeycloakUtil.getTokenUserId();
+		Map<Long, List<String>> studiesCenter = studiesCenterByUser.get(userId);
+		if (studiesCenter == null) {
+			long generation = studiesCenterGeneration.get();
+			studiesCenter = findStudiesCenter(userId);
+			// do not cache a filter computed before an eviction
+			synchronized (studiesCenterByUser) {
+				if (generation == studiesCenterGeneration.get()) {
+					studiesCenterByUser.put(userId, studiesCenter);
+				}
+			}
+		}
+		return studiesCenter;
+	}
+
+	private Map<Long, List<String>> findStudiesCenter(Long userId) {
+		List<StudyUser> studyUsers = Utils.toList(rightsRepository.findByUserId(userId));
+		Set<Long> centerIds = new HashSet<>();
+		for (StudyUser su : studyUsers) {
+			if (su.isConfirmed() && su.getCenterIds() != null) {
+				centerIds.addAll(su.getCenterIds());
+			}
+		}
+		Map<Long, String> centerNames = new HashMap<>();
+		if (!centerIds.isEmpty()) {
+			for (Center center : centerRepository.findAllById(centerIds)) {
+				centerNames.put(center.getId(), center.getName());
+			}
+		}
 		Map<Long, List<String>> studiesCenter = new HashMap<>();
-		List<Center> centers = Utils.toList(centerRepository.findAll());
-		for(StudyUser su : studyUsers) {
+		for (StudyUser su : studyUsers) {
 			if (su.isConfirmed()) {
-				studiesCenter.put(su.getStudyId(), su.getCenterIds().stream().map(centerId -> findCenterName(centers, centerId)).collect(Collectors.toList()));
+				List<String> names = new ArrayList<>();
+				if (su.getCenterIds() != null) {
+					su.getCenterIds().forEach(centerId -> names.add(centerNames.get(centerId)));
+				}
+				studiesCenter.put(su.getStudyId(), Collections.unmodifiableList(names));
 			}
 		}
-		return studiesCenter;
+		return Collections.unmodifiableMap(studiesCenter);
 	}
-	
-	private String findCenterName(List<Center> centers, Long id) {
-		List<Center> filteredCenters = centers.stream().filter(centerToFilter -> centerToFilter.getId().equals(id)).collect(Collectors.toList());
-		return filteredCenters.size() > 0 ? filteredCenters.get(0).getName() : null;
+
+	@Override
+	public void evictStudiesCenterCache() {
+		clearStudiesCenter();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			// a search could cache the previous values before the commit
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					clearStudiesCenter();
+				}
+			});
+		}
+	}
+
+	private void clearStudiesCenter() {
+		synchronized (studiesCenterByUser) {
+			studiesCenterGeneration.incrementAndGet();
+			studiesCenterByUser.clear();
+		}
 	}
 
 	private Pageable prepareTextFields(Pageable pageable) {
@@ -290,10 +431,12 @@ public class SolrServiceImpl implements SolrService {
 		this.indexDatasets(datasetIds);		
 	}
 
+	/**
+	 * Adds the datasets to the update queue, they are updated in Solr at the next flush.
+	 */
 	@Override
-	@Async
 	public void updateDatasetsAsync(List<Long> datasetIds) throws SolrServerException, IOException {
-		this.updateDatasets(datasetIds);
+		updateQueue.add(datasetIds);
 	}
 
 	@Override
@@ -301,14 +444,78 @@ public class SolrServiceImpl implements SolrService {
 	@Transactional
 	public void updateSubjectsAsync(List<Long> subjectIds) throws SolrServerException, IOException {
 		List<Long> ids = this.dsRepository.findIdsBySubjectIdIn(subjectIds);
-		this.updateDatasets(ids);
+		updateQueue.add(ids);
 	}
 
 	@Override
 	@Async
 	public void updateStudyAsync(Long studyId) throws SolrServerException, IOException {
 		List<Long> ids = this.dsRepository.findIdsByStudyId(studyId);
-		this.updateDatasets(ids);
+		updateQueue.add(ids);
+	}
+
+	/**
+	 * Updates in Solr the datasets of the update queue, by batches: the updates requested
+	 * for the same dataset since the last flush are done only once.
+	 * The documents of a batch are read in their own read-only transaction. If Solr or the
+	 * database can not be reached, the batch is put back in the queue, to be updated at the next flush.
+	 */
+	@Scheduled(fixedDelayString = "${solr.update.delay-ms:2000}")
+	public void flushUpdateQueue() {
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		transaction.setReadOnly(true);
+		List<Long> datasetIds;
+		while (!(datasetIds = updateQueue.poll(updateBatchSize)).isEmpty()) {
+			long start = System.currentTimeMillis();
+			int updated;
+			try {
+				updated = updateBatch(transaction, datasetIds);
+			} catch (Exception e) {
+				LOG.error("Error updating datasets {} in Solr, retried at the next flush.", datasetIds, e);
+				updateQueue.requeue(datasetIds);
+				return;
+			}
+			updateQueue.flushed(updated, System.currentTimeMillis() - start);
+			LOG.info("Updated [{}] datasets in Solr, update queue: {}", updated, updateQueue);
+		}
+	}
+
+	/**
+	 * Updates a batch of datasets in Solr. A batch failing because of some of its datasets,
+	 * as a document rejected by Solr, is split in halves to update the other datasets.
+	 * A failing dataset is retried at the next flushes, then dropped after updateMaxAttempts.
+	 * The documents replace the indexed ones with the same id: only the removed datasets are deleted,
+	 * so a failed update leaves the previous document in the index.
+	 *
+	 * @return the number of updated datasets
+	 * @throws Exception if Solr or the database can not be reached
+	 */
+	private int updateBatch(TransactionTemplate transaction, List<Long> datasetIds) throws Exception {
+		try {
+			List<ShanoirSolrDocument> documents = transaction.execute(status -> getShanoirSolrDocuments(
+					shanoirMetadataRepository.findSolrDocs(datasetIds), shanoirMetadataRepository.findAllTags(datasetIds)));
+			Set<Long> indexedIds = documents.stream().map(ShanoirSolrDocument::getDatasetId).collect(Collectors.toSet());
+			solrJWrapper.deleteFromIndexWithoutCommit(datasetIds.stream().filter(id -> !indexedIds.contains(id)).collect(Collectors.toList()));
+			solrJWrapper.addAllToIndexWithoutCommit(documents);
+			solrJWrapper.commit();
+		} catch (SolrServerException | IOException | TransactionException | DataAccessResourceFailureException e) {
+			throw e;
+		} catch (Exception e) {
+			if (datasetIds.size() > 1) {
+				int half = datasetIds.size() / 2;
+				return updateBatch(transaction, datasetIds.subList(0, half))
+						+ updateBatch(transaction, datasetIds.subList(half, datasetIds.size()));
+			}
+			Long datasetId = datasetIds.get(0);
+			if (updateQueue.failed(datasetId, updateMaxAttempts)) {
+				LOG.warn("Error updating dataset {} in Solr, retried at the next flush.", datasetId, e);
+			} else {
+				LOG.error("Error updating dataset {} in Solr after {} attempts, dropped from the update queue.", datasetId, updateMaxAttempts, e);
+			}
+			return 0;
+		}
+		updateQueue.updated(datasetIds);
+		return datasetIds.size();
 	}
 
 }
@@ -0,0 +1,184 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+
+package org.shanoir.ng.solr.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * The datasets waiting to be updated in Solr. The same dataset updated several times
+ * before the next flush is updated only once.
+ *
+ * The queue also counts the requested and the flushed updates, to measure the coalescing.
+ * A dataset whose update fails is retried a limited number of times, then kept aside in the dropped datasets.
+ */
+@Component
+public class SolrUpdateQueue {
+
+	private final Set<Long> pendingIds = new LinkedHashSet<>();
+
+	/** Failed updates of the datasets being retried, guarded by pendingIds */
+	private final Map<Long, Integer> failedAttempts = new HashMap<>();
+
+	/** Datasets dropped after too many failed updates, guarded by pendingIds */
+	private final Set<Long> droppedIds = new LinkedHashSet<>();
+
+	private final AtomicLong requestedUpdates = new AtomicLong();
+
+	private final AtomicLong flushedUpdates = new AtomicLong();
+
+	private final AtomicLong flushes = new AtomicLong();
+
+	private final AtomicLong flushMillis = new AtomicLong();
+
+	public void add(Collection<Long> datasetIds) {
+		if (datasetIds == null || datasetIds.isEmpty()) {
+			return;
+		}
+		requestedUpdates.addAndGet(datasetIds.size());
+		synchronized (pendingIds) {
+			pendingIds.addAll(datasetIds);
+			// a new update of a dropped dataset is tried again
+			droppedIds.removeAll(datasetIds);
+			failedAttempts.keySet().removeAll(datasetIds);
+		}
+	}
+
+	/**
+	 * Puts back in the queue datasets polled but not updated, to update them at the next flush.
+	 * They are not counted again as requested updates.
+	 */
+	public void requeue(Collection<Long> datasetIds) {
+		synchronized (pendingIds) {
+			pendingIds.addAll(datasetIds);
+		}
+	}
+
+	/**
+	 * Records a failed update of a dataset: it is put back in the queue, or dropped after maxAttempts.
+	 *
+	 * @param datasetId the dataset whose update failed
+	 * @param maxAttempts the maximum number of updates of a dataset
+	 * @return true if the dataset is put back in the queue, false if it is dropped
+	 */
+	public boolean failed(Long datasetId, int maxAttempts) {
+		synchronized (pendingIds) {
+			int attempts = failedAttempts.merge(datasetId, 1, Integer::sum);
+			if (attempts >= maxAttempts) {
+				failedAttempts.remove(datasetId);
+				droppedIds.add(datasetId);
+				return false;
+			}
+			pendingIds.add(datasetId);
+			return true;
+		}
+	}
+
+	/**
+	 * Records the successful update of datasets, that may have failed before.
+	 */
+	public void updated(Collection<Long> datasetIds) {
+		synchronized (pendingIds) {
+			if (!failedAttempts.isEmpty()) {
+				failedAttempts.keySet().removeAll(datasetIds);
+			}
+		}
+	}
+
+	/**
+	 * @return the datasets dropped after too many failed updates, until they are updated again
+	 */
+	public List<Long> getDroppedIds() {
+		synchronized (pendingIds) {
+			return new ArrayList<>(droppedIds);
+		}
+	}
+
+	/**
+	 * Removes from the queue the next datasets to update, in the order they were added.
+	 *
+	 * @param maxSize the maximum number of datasets returned
+	 * @return the dataset ids, empty if the queue is empty
+	 */
+	public List<Long> poll(int maxSize) {
+		List<Long> datasetIds = new ArrayList<>();
+		synchronized (pendingIds) {
+			Iterator<Long> it = pendingIds.iterator();
+			while (it.hasNext() && datasetIds.size() < maxSize) {
+				datasetIds.add(it.next());
+				it.remove();
+			}
+		}
+		return datasetIds;
+	}
+
+	/**
+	 * Records a flush of the queue.
+	 *
+	 * @param datasetCount the number of updated datasets
+	 * @param millis the duration of the flush
+	 */
+	public void flushed(int datasetCount, long millis) {
+		flushedUpdates.addAndGet(datasetCount);
+		flushes.incrementAndGet();
+		flushMillis.addAndGet(millis);
+	}
+
+	public int getDepth() {
+		synchronized (pendingIds) {
+			return pendingIds.size();
+		}
+	}
+
+	public long getRequestedUpdates() {
+		return requestedUpdates.get();
+	}
+
+	public long getFlushedUpdates() {
+		return flushedUpdates.get();
+	}
+
+	/**
+	 * @return the number of requested updates for one flushed update, 1 if nothing was coalesced
+	 */
+	public double getCoalescingRatio() {
+		long flushed = flushedUpdates.get();
+		return flushed == 0 ? 1 : (double) requestedUpdates.get() / flushed;
+	}
+
+	/**
+	 * @return the average duration of a flush, in milliseconds
+	 */
+	public double getAverageFlushMillis() {
+		long count = flushes.get();
+		return count == 0 ? 0 : (double) flushMillis.get() / count;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("depth %d, %d requested updates, %d flushed updates (coalescing ratio %.2f), average flush %.0f ms, %d dropped",
+				getDepth(), getRequestedUpdates(), getFlushedUpdates(), getCoalescingRatio(), getAverageFlushMillis(), getDroppedIds().size());
+	}
+
+}
@@ -50,6 +50,28 @@ public interface SolrJWrapper {
 	
 	void deleteAll() throws SolrServerException, IOException;
 
+	/**
+	 * Adds the documents without committing, for large indexations committed at the end.
+	 */
+	void addAllToIndexWithoutCommit(List<ShanoirSolrDocument> documents) throws SolrServerException, IOException;
+
+	/**
+	 * Deletes the documents without committing, for large indexations committed at the end.
+	 */
+	void deleteFromIndexWithoutCommit(List<Long> datasetIds) throws SolrServerException, IOException;
+
+	/**
+	 * Deletes, without committing, the documents of the datasets with an id greater than datasetId.
+	 */
+	void deleteAfterWithoutCommit(Long datasetId) throws SolrServerException, IOException;
+
+	void commit() throws SolrServerException, IOException;
+
+	/**
+	 * @return the ids of the indexed datasets with an id between minId and maxId (included)
+	 */
+	List<Long> findDatasetIdsBetween(Long minId, Long maxId) throws SolrServerException, IOException;
+
 	public Page<ShanoirSolrDocument> findByDatasetIdIn(Collection<Long> datasetIds, Pageable pageable) throws RestServiceException;
 
 	public Page<ShanoirSolrDocument> findByStudyIdInAndDatasetIdIn(Map<Long, List<String>> studiesCenter, Collection<Long> datasetIds, Pageable pageable) throws RestServiceException;
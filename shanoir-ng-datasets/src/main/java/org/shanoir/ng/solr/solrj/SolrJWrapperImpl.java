@@ -80,6 +80,8 @@ public class SolrJWrapperImpl implements SolrJWrapper {
 	private static final String IMPORT_DATE_FACET = "importDate";
 	private static final String USERNAME_IMPORT_FACET = "username";
 
+	private static final int ID_PAGE_SIZE = 1000;
+
 	private static final String[] DOCUMENT_FACET_LIST = {
 			DOCUMENT_ID_FACET,
 			DATASET_ID_FACET,
@@ -149,6 +151,43 @@ public class SolrJWrapperImpl implements SolrJWrapper {
 		solrClient.commit();
 	}
 
+	public void addAllToIndexWithoutCommit(final List<ShanoirSolrDocument> documents) throws SolrServerException, IOException {
+		if (!documents.isEmpty()) {
+			solrClient.addBeans(documents);
+		}
+	}
+
+	public void deleteFromIndexWithoutCommit(List<Long> datasetIds) throws SolrServerException, IOException {
+		if (!datasetIds.isEmpty()) {
+			solrClient.deleteById(datasetIds.stream().map(String::valueOf).collect(Collectors.toList()));
+		}
+	}
+
+	public void deleteAfterWithoutCommit(Long datasetId) throws SolrServerException, IOException {
+		solrClient.deleteByQuery(DATASET_ID_FACET + ":{" + datasetId + " TO *]");
+	}
+
+	public void commit() throws SolrServerException, IOException {
+		solrClient.commit();
+	}
+
+	public List<Long> findDatasetIdsBetween(Long minId, Long maxId) throws SolrServerException, IOException {
+		final SolrQuery query = new SolrQuery(DATASET_ID_FACET + ":[" + minId + " TO " + maxId + "]");
+		query.setFields(DATASET_ID_FACET);
+		query.setSort(DATASET_ID_FACET, ORDER.asc);
+		query.setRows(ID_PAGE_SIZE);
+		List<Long> datasetIds = new ArrayList<>();
+		SolrDocumentList documents;
+		do {
+			query.setStart(datasetIds.size());
+			documents = solrClient.query(query).getResults();
+			for (SolrDocument document : documents) {
+				datasetIds.add(((Number) document.getFieldValue(DATASET_ID_FACET)).longValue());
+			}
+		} while (documents.size() == ID_PAGE_SIZE);
+		return datasetIds;
+	}
+
 	public SolrResultPage<ShanoirSolrDocument> findByFacetCriteriaForAdmin(ShanoirSolrQuery facet, Pageable pageable) throws RestServiceException {
 		if (KeycloakUtil.getTokenRoles().contains("ROLE_ADMIN")) {
 			return getSearchResultsWithFacetsForAdmin(facet, pageable);			
@@ -91,6 +91,21 @@ public class QualityExaminationRule extends AbstractEntity {
     public void apply(ExaminationData examination, QualityCardResult result, WADODownloaderService downloader) {
         apply(examination, null, result, downloader);
     }
+
+    /**
+     * Application on an examination whose dicom data is fetched from pacs.
+     * @param examinationAttributesCache dicom attributes of the examination datasets, already fetched or
+     * fetched by the conditions when missing, shared by the rules of a card
+     */
+    public void apply(Examination examination, QualityCardResult result, WADODownloaderService downloader, ExaminationAttributes<Long> examinationAttributesCache) {
+        ExaminationData examData = new ExaminationData(examination);
+        if (examData.getSubjectStudy() == null) {
+            Logger log = LoggerFactory.getLogger(QualityExaminationRule.class);
+            log.warn("No subject study in exam " + examination.getId());
+        } else {
+            apply(examData, null, result, downloader, examinationAttributesCache);
+        }
+    }
 	
 	public void apply(Examination examination, ExaminationAttributes<?> examinationDicomAttributes, QualityCardResult result, WADODownloaderService downloader) {
 	    ExaminationData examData = new ExaminationData(examination);
@@ -103,11 +118,15 @@ public class QualityExaminationRule extends AbstractEntity {
     }
 
     public void apply(ExaminationData examination, ExaminationAttributes<?> examinationDicomAttributes, QualityCardResult result, WADODownloaderService downloader) {
+        apply(examination, examinationDicomAttributes, result, downloader, null);
+    }
+
+    private void apply(ExaminationData examination, ExaminationAttributes<?> examinationDicomAttributes, QualityCardResult result, WADODownloaderService downloader, ExaminationAttributes<Long> examinationAttributesCache) {
         if (this.getConditions() == null || this.getConditions().isEmpty()) {
             result.addUpdatedSubjectStudy( 
                     setTagToSubjectStudy(examination.getSubjectStudy()));
         } else {
-            ConditionResult conditionResult = conditionsfulfilled(examinationDicomAttributes, examination, result, downloader);
+            ConditionResult conditionResult = conditionsfulfilled(examinationDicomAttributes, examination, result, downloader, examinationAttributesCache);
             if (conditionResult.isFulfilled()) {
                 result.addUpdatedSubjectStudy( 
                         setTagToSubjectStudy(examination.getSubjectStudy()));
@@ -151,21 +170,20 @@ public class QualityExaminationRule extends AbstractEntity {
      * Else conditions will be checked on the looping on the given dicom attributes 
      * @param examination
      * @param result
+     * @param examinationAttributesCache dicom data already fetched from pacs, can be null
      * @return
      */
-    private ConditionResult conditionsfulfilled(ExaminationAttributes<?> dicomAttributes, ExaminationData examination, QualityCardResult result, WADODownloaderService downloader) {
+    private ConditionResult conditionsfulfilled(ExaminationAttributes<?> dicomAttributes, ExaminationData examination, QualityCardResult result, WADODownloaderService downloader, ExaminationAttributes<Long> examinationAttributesCache) {
         boolean allFulfilled = true;
         ConditionResult condResult = new ConditionResult();
-        Collections.sort(conditions, new ConditionComparator()); // sort by level
-        boolean pilotedByDicomAttributes;
-        ExaminationAttributes<Long> examinationAttributesCache = new ExaminationAttributes<Long>(downloader.getWadoURLHandler());
-        if (dicomAttributes != null) {
-            pilotedByDicomAttributes = true;
-        } else {
-            pilotedByDicomAttributes = false;
+        // sort by level, on a copy as the rule is shared by the examinations checked in parallel
+        List<StudyCardCondition> sortedConditions = new ArrayList<>(getConditions());
+        Collections.sort(sortedConditions, new ConditionComparator());
+        boolean pilotedByDicomAttributes = dicomAttributes != null;
+        if (examinationAttributesCache == null) {
             examinationAttributesCache = new ExaminationAttributes<Long>(downloader.getWadoURLHandler());
         }
-        for (StudyCardCondition condition : getConditions()) {
+        for (StudyCardCondition condition : sortedConditions) {
             StringBuffer msg = new StringBuffer();
             boolean fulfilled = true;
             if (condition instanceof StudyCardDICOMConditionOnDatasets) {
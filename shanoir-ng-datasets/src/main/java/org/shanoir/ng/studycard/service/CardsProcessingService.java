@@ -14,17 +14,27 @@
 
 package org.shanoir.ng.studycard.service;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.collections4.CollectionUtils;
+import org.dcm4che3.data.Attributes;
 import org.hibernate.Hibernate;
 import org.shanoir.ng.dataset.model.Dataset;
 import org.shanoir.ng.dataset.model.DatasetExpression;
 import org.shanoir.ng.datasetacquisition.model.DatasetAcquisition;
 import org.shanoir.ng.datasetacquisition.service.DatasetAcquisitionService;
 import org.shanoir.ng.download.AcquisitionAttributes;
+import org.shanoir.ng.download.ExaminationAttributes;
 import org.shanoir.ng.download.WADODownloaderService;
 import org.shanoir.ng.examination.model.Examination;
 import org.shanoir.ng.examination.service.ExaminationService;
@@ -43,18 +53,36 @@ import org.shanoir.ng.studycard.dto.QualityCardResult;
 import org.shanoir.ng.studycard.model.QualityCard;
 import org.shanoir.ng.studycard.model.StudyCard;
 import org.shanoir.ng.studycard.model.condition.StudyCardCondition;
+import org.shanoir.ng.studycard.model.condition.StudyCardDICOMConditionOnDatasets;
 import org.shanoir.ng.studycard.model.rule.QualityExaminationRule;
 import org.shanoir.ng.utils.KeycloakUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClientException;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
 @Service
 public class CardsProcessingService {
 	
 	private static final Logger LOG = LoggerFactory.getLogger(CardsProcessingService.class);
+
+	/** Number of examinations checked at once, for all the quality checks */
+	@Value("${quality-check.threads:4}")
+	private int qualityCheckThreads;
+
+	/** Number of dicom metadata requests to the pacs in flight, for all the quality checks */
+	@Value("${quality-check.pacs-requests:8}")
+	private int pacsRequests;
+
+	private ExecutorService qualityCheckExecutor;
+
+	private ExecutorService pacsExecutor;
 	
 	@Autowired
 	private StudyService studyService;
@@ -74,6 +102,17 @@ public class CardsProcessingService {
     @Autowired
     private ShanoirEventService eventService;
 
+	@PostConstruct
+	public void initExecutors() {
+		qualityCheckExecutor = new DelegatingSecurityContextExecutorService(Executors.newFixedThreadPool(qualityCheckThreads));
+		pacsExecutor = new DelegatingSecurityContextExecutorService(Executors.newFixedThreadPool(pacsRequests));
+	}
+
+	@PreDestroy
+	public void shutdownExecutors() {
+		qualityCheckExecutor.shutdownNow();
+		pacsExecutor.shutdownNow();
+	}
 
 	/**
 	 * Apply study card on given acquisitions
@@ -102,6 +141,13 @@ public class CardsProcessingService {
 	 * @throws MicroServiceCommunicationException
 	 */
 	public QualityCardResult applyQualityCardOnExamination(QualityCard qualityCard, Examination examination, boolean updateTags) throws MicroServiceCommunicationException {
+        return applyQualityCardOnExamination(qualityCard, examination, updateTags, null);
+	}
+
+	/**
+	 * @param dicomAttributes dicom attributes of the examination datasets already fetched from pacs, can be null
+	 */
+	private QualityCardResult applyQualityCardOnExamination(QualityCard qualityCard, Examination examination, boolean updateTags, ExaminationAttributes<Long> dicomAttributes) throws MicroServiceCommunicationException {
         long startTs = new Date().getTime();
         if (qualityCard == null) throw new IllegalArgumentException("qualityCard can't be null");
 		if (examination == null ) throw new IllegalArgumentException("examination can't be null");
@@ -121,8 +167,12 @@ public class CardsProcessingService {
                 LOG.debug(acquisitions.size() + " acquisitions found for examination with id: " + examination.getId());
                 LOG.debug(qualityCard.getRules().size() + " rules found for study card with id: " + qualityCard.getId() + " and name: " + qualityCard.getName());
                 long rulesStartTs = new Date().getTime();
+                // dicom attributes fetched once for all the rules
+                if (dicomAttributes == null) {
+                    dicomAttributes = new ExaminationAttributes<>(downloader.getWadoURLHandler());
+                }
                 for (QualityExaminationRule rule : qualityCard.getRules()) {
-                    rule.apply(examination, result, downloader);
+                    rule.apply(examination, result, downloader, dicomAttributes);
                 }
                 LOG.debug("Quality check for examination " + examination.getId() + " : rules application took " + (new Date().getTime() - rulesStartTs) + "ms");
             }
@@ -174,24 +224,26 @@ public class CardsProcessingService {
             // Load lazy data before go parallel
             loadExaminationsLazyCollections(study.getExaminations(), event);
             loadRulesLazyCollections(qualityCard.getRules(), event);
-            // main loop
-            try {
-                examinations.parallelStream().forEach(examination -> {
+            // main loop, the checks of the examinations wait for their dicom attributes
+            Map<Long, CompletableFuture<ExaminationAttributes<Long>>> dicomAttributesByExamination = prefetchDicomAttributes(qualityCard, examinations);
+            List<Future<?>> checks = new ArrayList<>();
+            for (Examination examination : examinations) {
+                checks.add(qualityCheckExecutor.submit(() -> {
                     event.setStatus(2);
                     event.setProgress(0.5f + (i.floatValue() * 0.5f / examinations.size()));
                     event.setMessage("checking quality for examination " + examination.getComment());
                     //event.setReport(result.toString()); // too heavy, too slow
                     eventService.publishEvent(event);
+                    CompletableFuture<ExaminationAttributes<Long>> dicomAttributes = dicomAttributesByExamination.remove(examination.getId());
                     try {
-                        result.merge(applyQualityCardOnExamination(qualityCard, examination, false));
+                        result.merge(applyQualityCardOnExamination(qualityCard, examination, false, dicomAttributes != null ? dicomAttributes.join() : null));
                     } catch (MicroServiceCommunicationException e) {
                         throw new StreamExceptionWrapper(e);
                     }
                     i.incrementAndGet();
-                });
-            } catch (StreamExceptionWrapper e) {
-                throw (MicroServiceCommunicationException)(e.getCause());
+                }));
             }
+            waitForChecks(checks);
             if (updateTags) { // update subject studies
 			    try {
                     event.setMessage("setting quality subject tags");
@@ -216,6 +268,82 @@ public class CardsProcessingService {
         }
 	}
 
+    /**
+     * Gets concurrently the dicom attributes of the datasets of the examinations, once for all the rules,
+     * if the quality card has dicom conditions. The attributes that can not be fetched are left to the conditions.
+     *
+     * @return the attributes by examination id, empty if there are no dicom conditions
+     */
+    private Map<Long, CompletableFuture<ExaminationAttributes<Long>>> prefetchDicomAttributes(QualityCard qualityCard, List<Examination> examinations) {
+        Map<Long, CompletableFuture<ExaminationAttributes<Long>>> dicomAttributesByExamination = new ConcurrentHashMap<>();
+        if (!hasDicomConditions(qualityCard.getRules())) {
+            return dicomAttributesByExamination;
+        }
+        for (Examination examination : examinations) {
+            ExaminationAttributes<Long> examinationAttributes = new ExaminationAttributes<>(downloader.getWadoURLHandler());
+            List<CompletableFuture<Void>> downloads = new ArrayList<>();
+            if (examination.getDatasetAcquisitions() != null) {
+                for (DatasetAcquisition acquisition : examination.getDatasetAcquisitions()) {
+                    AcquisitionAttributes<Long> acquisitionAttributes = new AcquisitionAttributes<>();
+                    examinationAttributes.addAcquisitionAttributes(acquisition.getId(), acquisitionAttributes);
+                    if (acquisition.getDatasets() != null) {
+                        for (Dataset dataset : acquisition.getDatasets()) {
+                            downloads.add(CompletableFuture.runAsync(() -> {
+                                try {
+                                    Attributes attributes = downloader.getDicomAttributesForDataset(dataset);
+                                    acquisitionAttributes.addDatasetAttributes(dataset.getId(), attributes);
+                                } catch (PacsException e) {
+                                    LOG.warn("Could not prefetch dicom attributes of dataset [{}] : {}", dataset.getId(), e.getMessage());
+                                }
+                            }, pacsExecutor));
+                        }
+                    }
+                }
+            }
+            dicomAttributesByExamination.put(examination.getId(),
+                    CompletableFuture.allOf(downloads.toArray(new CompletableFuture[0])).thenApply(v -> examinationAttributes));
+        }
+        return dicomAttributesByExamination;
+    }
+
+    private boolean hasDicomConditions(List<QualityExaminationRule> rules) {
+        if (rules != null) {
+            for (QualityExaminationRule rule : rules) {
+                if (rule.getConditions() != null) {
+                    for (StudyCardCondition condition : rule.getConditions()) {
+                        if (condition instanceof StudyCardDICOMConditionOnDatasets) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits for the checks of the examinations, cancels the remaining ones if one fails.
+     */
+    private void waitForChecks(List<Future<?>> checks) throws MicroServiceCommunicationException {
+        try {
+            for (Future<?> check : checks) {
+                check.get();
+            }
+        } catch (ExecutionException e) {
+            checks.forEach(check -> check.cancel(true));
+            if (e.getCause() instanceof StreamExceptionWrapper) {
+                throw (MicroServiceCommunicationException) e.getCause().getCause();
+            } else if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Quality check failed", e.getCause());
+        } catch (InterruptedException e) {
+            checks.forEach(check -> check.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Quality check interrupted", e);
+        }
+    }
+
     private void loadExaminationsLazyCollections(List<Examination> examinations, ShanoirEvent event) {
         if (examinations != null) {
             int i = 0;
@@ -1,13 +1,21 @@
 package org.shanoir.ng.vip.monitoring.schedule;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.shanoir.ng.shared.event.ShanoirEvent;
 import org.shanoir.ng.shared.event.ShanoirEventService;
 import org.shanoir.ng.shared.event.ShanoirEventType;
 import org.shanoir.ng.shared.exception.EntityNotFoundException;
-import org.shanoir.ng.shared.exception.SecurityException;
 import org.shanoir.ng.utils.KeycloakUtil;
+import org.shanoir.ng.utils.SecurityContextUtil;
 import org.shanoir.ng.vip.controller.VipClientService;
 import org.shanoir.ng.vip.dto.VipExecutionDTO;
 import org.shanoir.ng.vip.monitoring.model.ExecutionMonitoring;
@@ -19,15 +27,27 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.time.LocalDate;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 /**
- * CRON job to request VIP api and create processedDataset
+ * Monitors the state of the running VIP executions and processes their outcome.
+ *
+ * A single poller checks the status of all the monitored executions with
+ * non-blocking calls to the VIP API, each execution being checked every sleepTime.
+ * It runs on its own thread, not on the Spring scheduler shared with the other
+ * scheduled tasks (Solr, PACS, download jobs), so that they do not delay each other.
+ * The failed checks are retried with an exponential backoff. Only the outcome of an
+ * ended execution is processed by a worker thread.
  * 
  * @author KhalilKes
  */
@@ -36,12 +56,14 @@ public class ExecutionStatusMonitorService {
 
 	public static final float DEFAULT_PROGRESS = 0.5f;
 
+	/** Maximum number of consecutive failed checks before setting the execution in error */
+	private static final int MAX_FAILED_CHECKS = 5;
+
 	@Value("${vip.sleep-time}")
 	private long sleepTime;
 
-	private ThreadLocal<Boolean> stop = new ThreadLocal<>();
-
-	private String identifier;
+	@Value("${vip.monitoring.max-concurrent-checks:20}")
+	private int maxConcurrentChecks;
 
 	private static final Logger LOG = LoggerFactory.getLogger(ExecutionStatusMonitorService.class);
 
@@ -57,75 +79,157 @@ public class ExecutionStatusMonitorService {
 	@Autowired
 	private VipClientService vipClient;
 
+	@Autowired
+	private AsyncTaskExecutor taskExecutor;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	/** Monitored executions by monitoring id */
+	private final Map<Long, MonitoredExecution> monitoredExecutions = new ConcurrentHashMap<>();
+
+	private ScheduledExecutorService pollExecutor;
+
+	@PostConstruct
+	public void initPollExecutor() {
+		pollExecutor = Executors.newSingleThreadScheduledExecutor();
+		pollExecutor.scheduleWithFixedDelay(this::pollExecutionStatus, 1, 1, TimeUnit.SECONDS);
+	}
+
+	@PreDestroy
+	public void shutdownPollExecutor() {
+		pollExecutor.shutdownNow();
+	}
+
 	/**
-	 * Async job that monitor the state of the VIP execution and process its outcome
+	 * Starts the monitoring of the state of the VIP execution: its status is checked
+	 * by the next poll, and its outcome is processed when it ends.
 	 *
 	 * @param processing
 	 * @param event
-	 *
-	 * @throws EntityNotFoundException
-	 * @throws SecurityException
 	 */
-
-	@Async
-	@Transactional
-	public void startMonitoringJob(ExecutionMonitoring processing, ShanoirEvent event) throws EntityNotFoundException, SecurityException {
-		int attempts = 1;
-		this.identifier = processing.getIdentifier();
-
-		stop.set(false);
-
+	public void startMonitoringJob(ExecutionMonitoring processing, ShanoirEvent event) {
 		String execLabel = this.getExecLabel(processing);
 		event = this.initShanoirEvent(processing, event, execLabel);
+		monitoredExecutions.put(processing.getId(), new MonitoredExecution(processing, event, execLabel));
+	}
+
+	/**
+	 * Checks the status of the monitored executions that are due, without waiting for VIP answers.
+	 */
+	public void pollExecutionStatus() {
+		try {
+			pollDueExecutions();
+		} catch (RuntimeException e) {
+			// an exception would stop the next polls
+			LOG.error("Error while polling the VIP executions status", e);
+		}
+	}
 
-		while (!stop.get()) {
-
-			try{
-
-				VipExecutionDTO dto = vipClient.getExecutionAsServiceAccount(attempts, this.identifier).block();
-
-				if(dto == null){
-					attempts++;
-					continue;
-				}else{
-					attempts = 1;
-				}
-
-				switch (dto.getStatus()) {
-					case FINISHED:
-
-						this.processFinishedJob(processing, event, dto.getEndDate());
-						break;
-
-					case UNKNOWN:
-					case EXECUTION_FAILED:
-					case KILLED:
-
-						this.processKilledJob(processing, event, dto);
-						break;
-
-					case RUNNING:
-						try{
-							Thread.sleep(sleepTime); // sleep/stop a thread for 20 seconds
-						} catch (InterruptedException e) {
-							event.setMessage(execLabel + " : Monitoring interrupted, current state unknown...");
-							eventService.publishEvent(event);
-							LOG.warn("Execution monitoring thread interrupted", e);
-						}
-						break;
-					default:
-						stop.set(true);
-						break;
-				}
-			} catch (Exception e){
-				// Unwrap ReactiveException thrown from async method
-				Throwable ex = Exceptions.unwrap(e);
-				LOG.error(ex.getMessage(), ex.getCause());
-				this.setJobInError(event, execLabel + " : " + ex.getMessage());
-				LOG.warn("Stopping thread...");
-				stop.set(true);
+	private void pollDueExecutions() {
+		long now = System.currentTimeMillis();
+		List<MonitoredExecution> dueExecutions = new ArrayList<>();
+		for (MonitoredExecution execution : monitoredExecutions.values()) {
+			if (execution.nextCheck <= now && execution.checking.compareAndSet(false, true)) {
+				dueExecutions.add(execution);
 			}
 		}
+		if (dueExecutions.isEmpty()) {
+			return;
+		}
+		Flux.fromIterable(dueExecutions)
+				.flatMap(execution -> checkStatus(execution)
+						.doOnNext(dto -> onStatus(execution, dto))
+						.switchIfEmpty(Mono.fromRunnable(() -> onEmptyStatus(execution)))
+						.onErrorResume(e -> {
+							onCheckError(execution, e);
+							return Mono.empty();
+						})
+						.doFinally(signal -> execution.checking.set(false)),
+						maxConcurrentChecks)
+				.subscribe();
+	}
+
+	private Mono<VipExecutionDTO> checkStatus(MonitoredExecution execution) {
+		// the service account token is fetched with a blocking call
+		return Mono.defer(() -> {
+			try {
+				return vipClient.getExecutionAsServiceAccount(execution.attempts, execution.processing.getIdentifier());
+			} catch (Exception e) {
+				return Mono.error(e);
+			}
+		}).subscribeOn(Schedulers.boundedElastic());
+	}
+
+	private void onStatus(MonitoredExecution execution, VipExecutionDTO dto) {
+		execution.attempts = 1;
+		execution.failedChecks = 0;
+		switch (dto.getStatus()) {
+			case FINISHED:
+				stopMonitoring(execution, () -> this.processFinishedJob(execution.processing, execution.event, dto.getEndDate()));
+				break;
+
+			case UNKNOWN:
+			case EXECUTION_FAILED:
+			case KILLED:
+				stopMonitoring(execution, () -> this.processKilledJob(execution.processing, execution.event, dto));
+				break;
+
+			case RUNNING:
+				execution.nextCheck = System.currentTimeMillis() + sleepTime;
+				break;
+
+			default:
+				monitoredExecutions.remove(execution.processing.getId());
+				break;
+		}
+	}
+
+	/**
+	 * No status when the service account token was refused: retried at next poll with a refreshed token.
+	 */
+	private void onEmptyStatus(MonitoredExecution execution) {
+		execution.attempts++;
+	}
+
+	private void onCheckError(MonitoredExecution execution, Throwable e) {
+		// Unwrap ReactiveException thrown from async method
+		Throwable ex = Exceptions.unwrap(e);
+		execution.failedChecks++;
+		if (ex instanceof ResultHandlerException || execution.failedChecks >= MAX_FAILED_CHECKS) {
+			LOG.error(ex.getMessage(), ex.getCause());
+			LOG.warn("Stopping monitoring of {}...", execution.execLabel);
+			monitoredExecutions.remove(execution.processing.getId());
+			this.setJobInError(execution.event, execution.execLabel + " : " + ex.getMessage());
+		} else {
+			long backoff = sleepTime << Math.min(execution.failedChecks, 6);
+			LOG.warn("{} : status check failed ({}), retrying in {} ms", execution.execLabel, ex.getMessage(), backoff);
+			execution.nextCheck = System.currentTimeMillis() + backoff;
+		}
+	}
+
+	/**
+	 * Stops the monitoring of the ended execution and processes its outcome
+	 * in a worker thread, within a transaction.
+	 */
+	private void stopMonitoring(MonitoredExecution execution, OutcomeProcessing processing) {
+		monitoredExecutions.remove(execution.processing.getId());
+		taskExecutor.execute(() -> {
+			SecurityContextUtil.initAuthenticationContext("ROLE_ADMIN");
+			try {
+				new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+					try {
+						processing.process();
+					} catch (Exception e) {
+						status.setRollbackOnly();
+						LOG.error(e.getMessage(), e);
+						this.setJobInError(execution.event, execution.execLabel + " : " + e.getMessage());
+					}
+				});
+			} finally {
+				SecurityContextUtil.clearAuthentication();
+			}
+		});
 	}
 
 	private ShanoirEvent initShanoirEvent(ExecutionMonitoring processing, ShanoirEvent event, String execLabel) {
@@ -163,8 +267,6 @@ public class ExecutionStatusMonitorService {
 
 		LOG.info("Execution status updated, stopping job...");
 
-		stop.set(true);
-
 		this.setJobInError(event, execLabel + " : "  + vipExecutionDTO.getStatus().getRestLabel()
 				+ (vipExecutionDTO.getErrorCode() != null ? " (Error code : " + vipExecutionDTO.getErrorCode() + ")" : ""));
 	}
@@ -186,8 +288,6 @@ public class ExecutionStatusMonitorService {
 
 		LOG.info("Execution status updated, stopping job...");
 
-		stop.set(true);
-
 		event.setMessage(execLabel + " : Finished");
 		event.setStatus(ShanoirEvent.SUCCESS);
 		event.setProgress(1f);
@@ -200,4 +300,36 @@ public class ExecutionStatusMonitorService {
 		event.setProgress(1f);
 		eventService.publishEvent(event);
 	}
+
+	@FunctionalInterface
+	private interface OutcomeProcessing {
+		void process() throws Exception;
+	}
+
+	/**
+	 * A monitored execution: its monitoring, its event and the state of its status checks.
+	 */
+	private static class MonitoredExecution {
+
+		private final ExecutionMonitoring processing;
+
+		private final ShanoirEvent event;
+
+		private final String execLabel;
+
+		/** Only one status check at a time */
+		private final AtomicBoolean checking = new AtomicBoolean();
+
+		private volatile long nextCheck;
+
+		private volatile int attempts = 1;
+
+		private volatile int failedChecks;
+
+		private MonitoredExecution(ExecutionMonitoring processing, ShanoirEvent event, String execLabel) {
+			this.processing = processing;
+			this.event = event;
+			this.execLabel = execLabel;
+		}
+	}
 }
@@ -32,6 +32,7 @@ import org.shanoir.ng.dataset.model.DatasetMetadata;
 import org.shanoir.ng.dataset.repository.DatasetRepository;
 import org.shanoir.ng.dataset.security.DatasetSecurityService;
 import org.shanoir.ng.dataset.service.CreateStatisticsService;
+import org.shanoir.ng.dataset.service.DatasetDownloadJobService;
 import org.shanoir.ng.dataset.service.DatasetDownloaderServiceImpl;
 import org.shanoir.ng.dataset.service.DatasetService;
 import org.shanoir.ng.datasetacquisition.model.DatasetAcquisition;
@@ -156,6 +157,9 @@ public class DatasetApiControllerTest {
 	@MockBean
 	private DatasetDownloaderServiceImpl datasetDownloaderService;
 
+	@MockBean
+	private DatasetDownloadJobService downloadJobService;
+
 	@MockBean
 	private SolrService solrService;
 
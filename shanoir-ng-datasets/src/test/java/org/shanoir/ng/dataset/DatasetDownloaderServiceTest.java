@@ -50,7 +50,6 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -122,7 +121,7 @@ public class DatasetDownloaderServiceTest {
 		doNothing().when(datasetServiceMock).deleteById(1L);
 		given(datasetServiceMock.findById(1L)).willReturn(new MrDataset());
 		given(datasetServiceMock.create(Mockito.mock(MrDataset.class))).willReturn(new MrDataset());
-		given(studyRepo.findById(Mockito.anyLong())).willReturn(Optional.of(study));
+		given(studyRepo.findAllById(Mockito.anyIterable())).willReturn(Collections.singletonList(study));
 		given(controlerSecurityService.idMatches(Mockito.anyLong(), Mockito.any(Dataset.class))).willReturn(true);
 		dsAcq.setRank(2);
 		dsAcq.setSortingIndex(2);
@@ -145,7 +144,7 @@ public class DatasetDownloaderServiceTest {
 		// Link it to datasetExpression in a dataset in a study
 		Dataset dataset = new MrDataset();
 		dataset.setSubjectId(3L);
-		given(subjectRepository.findById(3L)).willReturn(Optional.of(subject));
+		given(subjectRepository.findAllById(Mockito.anyIterable())).willReturn(Collections.singletonList(subject));
 		dataset.setDatasetAcquisition(dsAcq);
 		dataset.setUpdatedMetadata(updatedMetadata);
 
@@ -185,7 +184,7 @@ public class DatasetDownloaderServiceTest {
 		dataset.setId(1L);
 		dataset.setDownloadable(true);
 		dataset.setSubjectId(3L);
-		given(subjectRepository.findById(3L)).willReturn(Optional.of(subject));
+		given(subjectRepository.findAllById(Mockito.anyIterable())).willReturn(Collections.singletonList(subject));
 		dataset.setDatasetAcquisition(dsAcq);
 		dataset.setUpdatedMetadata(updatedMetadata);
 
@@ -229,7 +228,7 @@ public class DatasetDownloaderServiceTest {
 		dataset.setDownloadable(true);
 		dataset.setId(1L);
 		dataset.setSubjectId(3L);
-		given(subjectRepository.findById(3L)).willReturn(Optional.of(subject));
+		given(subjectRepository.findAllById(Mockito.anyIterable())).willReturn(Collections.singletonList(subject));
 		dataset.setDatasetAcquisition(dsAcq);
 		dataset.setUpdatedMetadata(updatedMetadata);
 
@@ -0,0 +1,141 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+
+package org.shanoir.ng.dataset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.BDDMockito.given;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.shanoir.ng.dataset.dto.DatasetDTO;
+import org.shanoir.ng.dataset.model.Dataset;
+import org.shanoir.ng.dataset.repository.DatasetRepository;
+import org.shanoir.ng.dataset.security.DatasetSecurityService;
+import org.shanoir.ng.datasetacquisition.model.DatasetAcquisition;
+import org.shanoir.ng.shared.exception.EntityNotFoundException;
+import org.shanoir.ng.shared.repository.StudyRepository;
+import org.shanoir.ng.shared.security.rights.StudyUserRight;
+import org.shanoir.ng.solr.service.SolrService;
+import org.shanoir.ng.study.rights.StudyRightsService;
+import org.shanoir.ng.study.rights.StudyUser;
+import org.shanoir.ng.study.rights.StudyUserRightsRepository;
+import org.shanoir.ng.utils.ModelsUtil;
+import org.shanoir.ng.utils.usermock.WithMockKeycloakUser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Measures the number of queries and the duration of the rights filtering of dataset lists
+ * of different sizes: the number of queries must not depend on the size of the list.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class DatasetSecurityServiceBenchmarkTest {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DatasetSecurityServiceBenchmarkTest.class);
+
+	private static final long LOGGED_USER_ID = 2L;
+
+	private static final String LOGGED_USER_USERNAME = "logged";
+
+	private static final long STUDY_COUNT = 10;
+
+	@Autowired
+	private DatasetSecurityService datasetSecurityService;
+
+	@Autowired
+	private StudyRightsService studyRightsService;
+
+	@MockBean
+	private DatasetRepository datasetRepository;
+
+	@MockBean
+	private StudyRepository studyRepository;
+
+	@MockBean
+	private StudyUserRightsRepository rightsRepository;
+
+	@MockBean
+	private SolrService solrService;
+
+	@BeforeEach
+	public void setup() {
+		// the user can see all on the odd studies, only in center 1
+		List<StudyUser> studyUsers = new ArrayList<>();
+		for (long studyId = 1; studyId <= STUDY_COUNT; studyId++) {
+			StudyUser su = new StudyUser();
+			su.setId(studyId);
+			su.setUserId(LOGGED_USER_ID);
+			su.setStudyId(studyId);
+			su.setConfirmed(true);
+			su.setCenterIds(Arrays.asList(1L));
+			su.setStudyUserRights(studyId % 2 == 1 ? Arrays.asList(StudyUserRight.CAN_SEE_ALL) : new ArrayList<>());
+			studyUsers.add(su);
+		}
+		given(rightsRepository.findByUserId(LOGGED_USER_ID)).willReturn(studyUsers);
+	}
+
+	@Test
+	@WithMockKeycloakUser(id = LOGGED_USER_ID, username = LOGGED_USER_USERNAME, authorities = { "ROLE_USER" })
+	public void filterDatasetDTOList() throws EntityNotFoundException {
+		for (int size : new int[] { 20, 200, 2000 }) {
+			List<Dataset> datasets = new ArrayList<>();
+			List<DatasetDTO> dtos = new ArrayList<>();
+			for (long id = 1; id <= size; id++) {
+				datasets.add(mockDataset(id, id % STUDY_COUNT + 1, id % 2 + 1));
+				DatasetDTO dto = new DatasetDTO();
+				dto.setId(id);
+				dtos.add(dto);
+			}
+			given(datasetRepository.findAllById(Mockito.anyIterable())).willReturn(datasets);
+			studyRightsService.evictRights(null);
+			Mockito.clearInvocations(datasetRepository, studyRepository, rightsRepository);
+
+			long start = System.nanoTime();
+			datasetSecurityService.filterDatasetDTOList(dtos, "CAN_SEE_ALL");
+			long micros = (System.nanoTime() - start) / 1000;
+			int queries = countInvocations(datasetRepository) + countInvocations(studyRepository) + countInvocations(rightsRepository);
+			LOG.info("filterDatasetDTOList: {} datasets filtered with {} queries in {} us", size, queries, micros);
+
+			// datasets, related studies and study users
+			assertEquals(3, queries);
+			// even ids: odd study and center 1
+			assertEquals(size / 2, dtos.size());
+		}
+	}
+
+	private int countInvocations(Object mock) {
+		return Mockito.mockingDetails(mock).getInvocations().size();
+	}
+
+	private Dataset mockDataset(Long id, Long studyId, Long centerId) {
+		Dataset dataset = ModelsUtil.createMrDataset();
+		dataset.setId(id);
+		DatasetAcquisition acquisition = dataset.getDatasetAcquisition();
+		acquisition.getExamination().getStudy().setId(studyId);
+		acquisition.getExamination().setCenterId(centerId);
+		return dataset;
+	}
+
+}
@@ -0,0 +1,152 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+
+package org.shanoir.ng.dataset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.BDDMockito.given;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.shanoir.ng.dataset.dto.DatasetDTO;
+import org.shanoir.ng.dataset.model.Dataset;
+import org.shanoir.ng.dataset.modality.MrDataset;
+import org.shanoir.ng.dataset.repository.DatasetRepository;
+import org.shanoir.ng.dataset.security.DatasetSecurityService;
+import org.shanoir.ng.processing.model.DatasetProcessing;
+import org.shanoir.ng.shared.exception.EntityNotFoundException;
+import org.shanoir.ng.shared.repository.StudyRepository;
+import org.shanoir.ng.shared.security.rights.StudyUserRight;
+import org.shanoir.ng.solr.service.SolrService;
+import org.shanoir.ng.study.rights.StudyRightsService;
+import org.shanoir.ng.study.rights.StudyUser;
+import org.shanoir.ng.study.rights.StudyUserRightsRepository;
+import org.shanoir.ng.utils.ModelsUtil;
+import org.shanoir.ng.utils.usermock.WithMockKeycloakUser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Rights on the datasets related to a study the user has no right on.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class DatasetSecurityServiceTest {
+
+	private static final long LOGGED_USER_ID = 2L;
+
+	private static final String LOGGED_USER_USERNAME = "logged";
+
+	private static final Long DATASET_ID = 10L;
+
+	private static final Long DATASET_STUDY_ID = 1L;
+
+	private static final Long RELATED_STUDY_ID = 5L;
+
+	@Autowired
+	private DatasetSecurityService datasetSecurityService;
+
+	@Autowired
+	private StudyRightsService studyRightsService;
+
+	@MockBean
+	private DatasetRepository datasetRepository;
+
+	@MockBean
+	private StudyRepository studyRepository;
+
+	@MockBean
+	private StudyUserRightsRepository rightsRepository;
+
+	@MockBean
+	private SolrService solrService;
+
+	@BeforeEach
+	public void setup() {
+		// the user can only see the related study, in all the centers
+		StudyUser su = new StudyUser();
+		su.setId(1L);
+		su.setUserId(LOGGED_USER_ID);
+		su.setStudyId(RELATED_STUDY_ID);
+		su.setConfirmed(true);
+		su.setCenterIds(new ArrayList<>());
+		su.setStudyUserRights(Arrays.asList(StudyUserRight.CAN_SEE_ALL));
+		given(rightsRepository.findByUserId(LOGGED_USER_ID)).willReturn(Arrays.asList(su));
+		studyRightsService.evictRights(null);
+	}
+
+	@Test
+	@WithMockKeycloakUser(id = LOGGED_USER_ID, username = LOGGED_USER_USERNAME, authorities = { "ROLE_USER" })
+	public void hasRightOnRelatedDataset() {
+		given(studyRepository.findByDatasetId(DATASET_ID)).willReturn(Arrays.asList(BigInteger.valueOf(RELATED_STUDY_ID)));
+		assertTrue(datasetSecurityService.hasRightOnTrustedDataset(mockDataset(), "CAN_SEE_ALL"));
+	}
+
+	@Test
+	@WithMockKeycloakUser(id = LOGGED_USER_ID, username = LOGGED_USER_USERNAME, authorities = { "ROLE_USER" })
+	public void hasRightOnProcessedDataset() {
+		// a processed dataset has no acquisition
+		Dataset dataset = new MrDataset();
+		dataset.setId(DATASET_ID);
+		DatasetProcessing processing = new DatasetProcessing();
+		processing.setStudyId(RELATED_STUDY_ID);
+		dataset.setDatasetProcessing(processing);
+		assertTrue(datasetSecurityService.hasRightOnTrustedDataset(dataset, "CAN_SEE_ALL"));
+	}
+
+	@Test
+	@WithMockKeycloakUser(id = LOGGED_USER_ID, username = LOGGED_USER_USERNAME, authorities = { "ROLE_USER" })
+	public void filterRelatedDatasetDTOList() throws EntityNotFoundException {
+		given(datasetRepository.findAllById(Mockito.anyIterable())).willReturn(Arrays.asList(mockDataset()));
+		List<Object[]> related = new ArrayList<>();
+		related.add(new Object[] { BigInteger.valueOf(DATASET_ID), BigInteger.valueOf(RELATED_STUDY_ID) });
+		given(studyRepository.findByDatasetIdIn(Mockito.anyCollection())).willReturn(related);
+		List<DatasetDTO> dtos = new ArrayList<>(Arrays.asList(createDto(DATASET_ID)));
+		datasetSecurityService.filterDatasetDTOList(dtos, "CAN_SEE_ALL");
+		assertEquals(1, dtos.size());
+	}
+
+	@Test
+	@WithMockKeycloakUser(id = LOGGED_USER_ID, username = LOGGED_USER_USERNAME, authorities = { "ROLE_USER" })
+	public void filterMissingDatasetDTOList() {
+		given(datasetRepository.findAllById(Mockito.anyIterable())).willReturn(Arrays.asList(mockDataset()));
+		List<DatasetDTO> dtos = new ArrayList<>(Arrays.asList(createDto(DATASET_ID), createDto(DATASET_ID + 1)));
+		assertThrows(EntityNotFoundException.class, () -> datasetSecurityService.filterDatasetDTOList(dtos, "CAN_SEE_ALL"));
+	}
+
+	private Dataset mockDataset() {
+		Dataset dataset = ModelsUtil.createMrDataset();
+		dataset.setId(DATASET_ID);
+		dataset.getDatasetAcquisition().getExamination().getStudy().setId(DATASET_STUDY_ID);
+		dataset.getDatasetAcquisition().getExamination().setCenterId(1L);
+		return dataset;
+	}
+
+	private DatasetDTO createDto(Long id) {
+		DatasetDTO dto = new DatasetDTO();
+		dto.setId(id);
+		return dto;
+	}
+
+}
@@ -178,8 +178,8 @@ public class DatasetServiceSecurityTest {
 		assertThat(service.findByStudyId(2L)).isNullOrEmpty();
 		assertAccessDenied(service::findByStudyId, 3L);
 		
-		//queryStatistics(String, String, String, String)
-		assertAccessDenied(service::queryStatistics,"", "", "", "");
+		//queryStatistics(String, String, String, String, StatisticsRowHandler)
+		assertAccessDenied((studyIn, studyOut, subjectIn, subjectOut) -> service.queryStatistics(studyIn, studyOut, subjectIn, subjectOut, row -> {}), "", "", "", "");
 	}
 	
 	private void testFindPage() throws ShanoirException {
@@ -0,0 +1,61 @@
+package org.shanoir.ng.dicom.web;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class DICOMWebMetadataCacheTest {
+
+	private static final String SERIES = "/series";
+
+	private DICOMWebMetadataCache cache;
+
+	@BeforeEach
+	public void setup() {
+		cache = new DICOMWebMetadataCache();
+		ReflectionTestUtils.setField(cache, "maxSizeMb", 1L);
+	}
+
+	@Test
+	public void hitsAndEviction() {
+		assertNull(cache.get("exam1", SERIES));
+		cache.put("exam1", "study1", SERIES, "[1]");
+		cache.put("exam2", "study2", SERIES, "[2]");
+		assertEquals("[1]", cache.get("exam1", SERIES));
+		assertEquals(0.5, cache.getHitRatio());
+		assertEquals(3, cache.getBytesServed());
+
+		cache.evictStudy("study1");
+		assertNull(cache.get("exam1", SERIES));
+		cache.evictExamination("exam2");
+		assertNull(cache.get("exam2", SERIES));
+	}
+
+	@Test
+	public void leastRecentlyUsedEvicted() {
+		String json = "x".repeat(400 * 1024);
+		cache.put("exam1", "study1", SERIES, json);
+		cache.put("exam2", "study2", SERIES, json);
+		cache.get("exam1", SERIES);
+		// exceeds 1 MB: exam2 is the least recently used
+		cache.put("exam3", "study3", SERIES, json);
+		assertNotNull(cache.get("exam1", SERIES));
+		assertNull(cache.get("exam2", SERIES));
+		assertNotNull(cache.get("exam3", SERIES));
+	}
+
+	@Test
+	public void sizeCountedInBytes() {
+		// 300 K chars, 600 KB in UTF-8
+		String json = "\u00e9".repeat(300 * 1024);
+		cache.put("exam1", "study1", SERIES, json);
+		cache.put("exam2", "study2", SERIES, json);
+		assertNull(cache.get("exam1", SERIES));
+		assertNotNull(cache.get("exam2", SERIES));
+	}
+
+}
@@ -0,0 +1,77 @@
+package org.shanoir.ng.dicom.web;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares the tree and the streaming replacement of the StudyInstanceUIDs
+ * in the metadata Json of a serie. Run with the main method, from the IDE or
+ * with exec:java on the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StudyInstanceUIDHandlerBenchmark {
+
+	private static final String EXAMINATION_UID = StudyInstanceUIDHandler.PREFIX + "12";
+
+	@Param({ "100", "10000" })
+	private int instances;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private final StudyInstanceUIDHandler handler = new StudyInstanceUIDHandler();
+
+	private byte[] json;
+
+	@Setup
+	public void setup() {
+		json = StudyInstanceUIDHandlerTest.createSerieMetadata(instances).getBytes();
+	}
+
+	@Benchmark
+	public String tree() throws IOException {
+		JsonNode root = mapper.readTree(json);
+		handler.replaceStudyInstanceUIDsWithExaminationUIDs(root, EXAMINATION_UID, false);
+		return mapper.writeValueAsString(root);
+	}
+
+	@Benchmark
+	public String streaming() throws IOException {
+		StringWriter writer = new StringWriter();
+		try (JsonParser parser = mapper.getFactory().createParser(json);
+				JsonGenerator generator = mapper.getFactory().createGenerator(writer)) {
+			handler.replaceStudyInstanceUIDsWithExaminationUIDs(parser, generator, EXAMINATION_UID, false);
+		}
+		return writer.toString();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(StudyInstanceUIDHandlerBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
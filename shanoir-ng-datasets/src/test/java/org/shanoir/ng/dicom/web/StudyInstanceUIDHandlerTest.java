@@ -0,0 +1,65 @@
+package org.shanoir.ng.dicom.web;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class StudyInstanceUIDHandlerTest {
+
+	private static final String EXAMINATION_UID = StudyInstanceUIDHandler.PREFIX + "12";
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private final StudyInstanceUIDHandler handler = new StudyInstanceUIDHandler();
+
+	@Test
+	public void streamingReplacementEqualsTreeReplacement() throws IOException {
+		String json = createSerieMetadata(3);
+
+		JsonNode root = mapper.readTree(json);
+		handler.replaceStudyInstanceUIDsWithExaminationUIDs(root, EXAMINATION_UID, false);
+
+		StringWriter writer = new StringWriter();
+		try (JsonParser parser = mapper.getFactory().createParser(json);
+				JsonGenerator generator = mapper.getFactory().createGenerator(writer)) {
+			handler.replaceStudyInstanceUIDsWithExaminationUIDs(parser, generator, EXAMINATION_UID, false);
+		}
+
+		assertEquals(mapper.writeValueAsString(root), writer.toString());
+		JsonNode instance = mapper.readTree(writer.toString()).get(0);
+		assertEquals(EXAMINATION_UID, instance.get("0020000D").get("Value").get(0).asText());
+		assertEquals("http://pacs/dicomweb/studies/" + EXAMINATION_UID + "/series/1.2.3",
+				instance.get("00081190").get("Value").get(0).asText());
+		// attributes inside sequences are kept
+		assertEquals("1.2.840.1", instance.get("00081115").get("Value").get(0).get("0020000D").get("Value").get(0).asText());
+	}
+
+	/**
+	 * Creates the metadata Json of a serie, as sent by the PACS.
+	 */
+	static String createSerieMetadata(int instances) {
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < instances; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append("{\"00080018\":{\"vr\":\"UI\",\"Value\":[\"1.2.3.").append(i).append("\"]},")
+				.append("\"0020000D\":{\"vr\":\"UI\",\"Value\":[\"1.2.840.1\"]},")
+				.append("\"0020000E\":{\"vr\":\"UI\",\"Value\":[\"1.2.3\"]},")
+				.append("\"00081115\":{\"vr\":\"SQ\",\"Value\":[{\"0020000D\":{\"vr\":\"UI\",\"Value\":[\"1.2.840.1\"]}}]},")
+				.append("\"00200013\":{\"vr\":\"IS\",\"Value\":[").append(i + 1).append("]},")
+				.append("\"00280030\":{\"vr\":\"DS\",\"Value\":[0.9375,0.9375]},")
+				.append("\"00081190\":{\"vr\":\"UR\",\"Value\":[\"http://pacs/dicomweb/studies/1.2.840.1/series/1.2.3\"]}}");
+		}
+		return json.append(']').toString();
+	}
+
+}
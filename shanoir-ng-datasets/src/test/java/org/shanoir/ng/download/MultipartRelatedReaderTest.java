@@ -0,0 +1,88 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+
+package org.shanoir.ng.download;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class MultipartRelatedReaderTest {
+
+	private static final String BOUNDARY = "myboundary";
+
+	@Test
+	public void extractBoundary() {
+		assertEquals(BOUNDARY, MultipartRelatedReader.extractBoundary("multipart/related; type=\"application/dicom\"; boundary=\"" + BOUNDARY + "\""));
+		assertEquals(BOUNDARY, MultipartRelatedReader.extractBoundary("multipart/related;boundary=" + BOUNDARY + ";type=application/dicom"));
+		assertNull(MultipartRelatedReader.extractBoundary("application/dicom"));
+		assertNull(MultipartRelatedReader.extractBoundary(null));
+	}
+
+	@Test
+	public void readParts() throws IOException {
+		byte[] first = new byte[200000];
+		new Random(1).nextBytes(first);
+		// looks like the beginning of a boundary
+		byte[] second = ("abc\r\n--" + BOUNDARY.substring(0, 5) + "def").getBytes(StandardCharsets.US_ASCII);
+
+		ByteArrayOutputStream message = new ByteArrayOutputStream();
+		message.write(("preamble\r\n--" + BOUNDARY + "\r\nContent-Type: application/dicom\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+		message.write(first);
+		message.write(("\r\n--" + BOUNDARY + "\r\ncontent-type: application/dicom+xml; charset=utf-8\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+		message.write(second);
+		message.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+
+		MultipartRelatedReader reader = new MultipartRelatedReader(new ByteArrayInputStream(message.toByteArray()), BOUNDARY);
+		MultipartRelatedReader.BodyPart part = reader.nextPart();
+		assertNotNull(part);
+		assertEquals("application/dicom", part.getMimeType());
+		assertArrayEquals(first, part.getInputStream().readAllBytes());
+
+		part = reader.nextPart();
+		assertNotNull(part);
+		assertEquals("application/dicom+xml", part.getMimeType());
+		assertArrayEquals(second, part.getInputStream().readAllBytes());
+
+		assertNull(reader.nextPart());
+	}
+
+	@Test
+	public void skipUnreadPart() throws IOException {
+		String message = "--" + BOUNDARY + "\r\nContent-Type: application/dicom\r\n\r\nfirst\r\n--"
+				+ BOUNDARY + "\r\nContent-Type: application/dicom\r\n\r\nsecond\r\n--" + BOUNDARY + "--";
+
+		MultipartRelatedReader reader = new MultipartRelatedReader(new ByteArrayInputStream(message.getBytes(StandardCharsets.US_ASCII)), BOUNDARY);
+		assertNotNull(reader.nextPart());
+		MultipartRelatedReader.BodyPart part = reader.nextPart();
+		assertEquals("second", new String(part.getInputStream().readAllBytes(), StandardCharsets.US_ASCII));
+		assertNull(reader.nextPart());
+	}
+
+	@Test
+	public void truncatedMessage() throws IOException {
+		String message = "--" + BOUNDARY + "\r\nContent-Type: application/dicom\r\n\r\ntruncated";
+
+		MultipartRelatedReader reader = new MultipartRelatedReader(new ByteArrayInputStream(message.getBytes(StandardCharsets.US_ASCII)), BOUNDARY);
+		MultipartRelatedReader.BodyPart part = reader.nextPart();
+		assertThrows(IOException.class, () -> part.getInputStream().readAllBytes());
+	}
+
+}
@@ -25,6 +25,7 @@ import org.mockito.Mockito;
 import org.shanoir.ng.examination.model.Examination;
 import org.shanoir.ng.examination.repository.ExaminationRepository;
 import org.shanoir.ng.examination.service.ExaminationServiceImpl;
+import org.shanoir.ng.examination.service.ExtraDataVolumeService;
 import org.shanoir.ng.shared.event.ShanoirEventService;
 import org.shanoir.ng.shared.exception.RestServiceException;
 import org.shanoir.ng.shared.exception.ShanoirException;
@@ -83,6 +84,9 @@ public class ExaminationServiceTest {
 	@Mock
 	private ObjectMapper mapper;
 
+	@Mock
+	private ExtraDataVolumeService extraDataVolumeService;
+
 	@BeforeEach
 	public void setup() throws ShanoirException {
 		// given(examinationRepository.findByStudy_IdIn(Mockito.anyListOf(Long.class), Mockito.any(Pageable.class)))
@@ -0,0 +1,90 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+package org.shanoir.ng.examination;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.BDDMockito.given;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.shanoir.ng.examination.model.ExtraDataVolume;
+import org.shanoir.ng.examination.repository.ExtraDataVolumeRepository;
+import org.shanoir.ng.examination.service.ExtraDataVolumeService;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * The extra data sizes are stored by study and by type.
+ */
+@ExtendWith(MockitoExtension.class)
+public class ExtraDataVolumeServiceTest {
+
+	private static final Long STUDY_ID = 1L;
+
+	@Mock
+	private ExtraDataVolumeRepository extraDataVolumeRepository;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	@InjectMocks
+	private ExtraDataVolumeService extraDataVolumeService;
+
+	@Test
+	public void sizeAddedByType() {
+		ExtraDataVolume pdf = createVolume(STUDY_ID, "pdf", 100);
+		given(extraDataVolumeRepository.findByStudyIdAndExtraDataType(STUDY_ID, "pdf")).willReturn(Optional.of(pdf));
+		given(extraDataVolumeRepository.findByStudyIdAndExtraDataType(STUDY_ID, "none")).willReturn(Optional.empty());
+
+		extraDataVolumeService.add(STUDY_ID, Map.of(ExtraDataVolumeService.getType("report.PDF"), 50L,
+				ExtraDataVolumeService.getType("README"), 10L));
+
+		ArgumentCaptor<ExtraDataVolume> saved = ArgumentCaptor.forClass(ExtraDataVolume.class);
+		Mockito.verify(extraDataVolumeRepository, Mockito.times(2)).save(saved.capture());
+		assertEquals(150, pdf.getSize());
+		assertEquals(10, saved.getAllValues().stream().filter(v -> "none".equals(v.getExtraDataType())).findFirst().get().getSize());
+	}
+
+	@Test
+	public void reconcileAllStudies() {
+		ExtraDataVolume drifted = createVolume(STUDY_ID, "pdf", 100);
+		ExtraDataVolume deleted = createVolume(2L, "csv", 20);
+		given(extraDataVolumeRepository.findAll()).willReturn(Arrays.asList(drifted, deleted));
+
+		extraDataVolumeService.reconcile(Map.of(STUDY_ID, Map.of("pdf", 80L), 3L, Map.of("zip", 30L)));
+
+		assertEquals(80, drifted.getSize());
+		Mockito.verify(extraDataVolumeRepository).delete(deleted);
+		ArgumentCaptor<ExtraDataVolume> saved = ArgumentCaptor.forClass(ExtraDataVolume.class);
+		Mockito.verify(extraDataVolumeRepository, Mockito.times(2)).save(saved.capture());
+		ExtraDataVolume created = saved.getAllValues().get(1);
+		assertEquals(3L, created.getStudyId());
+		assertEquals(30, created.getSize());
+	}
+
+	private ExtraDataVolume createVolume(Long studyId, String type, long size) {
+		ExtraDataVolume volume = new ExtraDataVolume(studyId, type);
+		volume.setSize(size);
+		return volume;
+	}
+
+}
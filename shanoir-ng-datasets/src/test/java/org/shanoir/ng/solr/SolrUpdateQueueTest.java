@@ -0,0 +1,71 @@
+package org.shanoir.ng.solr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.shanoir.ng.solr.service.SolrUpdateQueue;
+
+public class SolrUpdateQueueTest {
+
+	@Test
+	public void coalesceUpdates() {
+		SolrUpdateQueue queue = new SolrUpdateQueue();
+		queue.add(Arrays.asList(1L, 2L, 3L));
+		queue.add(Arrays.asList(2L, 3L, 4L));
+		queue.add(Arrays.asList(1L));
+		assertEquals(4, queue.getDepth());
+
+		List<Long> batch = queue.poll(3);
+		assertEquals(Arrays.asList(1L, 2L, 3L), batch);
+		queue.flushed(batch.size(), 10);
+		batch = queue.poll(3);
+		assertEquals(Arrays.asList(4L), batch);
+		queue.flushed(batch.size(), 20);
+
+		assertTrue(queue.poll(3).isEmpty());
+		assertEquals(0, queue.getDepth());
+		assertEquals(7, queue.getRequestedUpdates());
+		assertEquals(4, queue.getFlushedUpdates());
+		assertEquals(7d / 4, queue.getCoalescingRatio());
+		assertEquals(15d, queue.getAverageFlushMillis());
+	}
+
+	@Test
+	public void requeueFailedUpdates() {
+		SolrUpdateQueue queue = new SolrUpdateQueue();
+		queue.add(Arrays.asList(1L, 2L));
+		List<Long> batch = queue.poll(2);
+		queue.add(Arrays.asList(2L, 3L));
+		// the flush of the batch failed
+		queue.requeue(batch);
+		assertEquals(3, queue.getDepth());
+		assertEquals(4, queue.getRequestedUpdates());
+		assertEquals(0, queue.getFlushedUpdates());
+	}
+
+	@Test
+	public void dropFailingUpdates() {
+		SolrUpdateQueue queue = new SolrUpdateQueue();
+		queue.add(Arrays.asList(1L, 2L));
+		queue.poll(2);
+		queue.updated(Arrays.asList(1L));
+		// the update of dataset 2 is retried, then dropped
+		assertTrue(queue.failed(2L, 2));
+		assertEquals(Arrays.asList(2L), queue.poll(2));
+		assertFalse(queue.failed(2L, 2));
+		assertEquals(0, queue.getDepth());
+		assertEquals(Arrays.asList(2L), queue.getDroppedIds());
+
+		// a new update request gives it new attempts
+		queue.add(Arrays.asList(2L));
+		assertTrue(queue.getDroppedIds().isEmpty());
+		queue.poll(2);
+		assertTrue(queue.failed(2L, 2));
+	}
+
+}
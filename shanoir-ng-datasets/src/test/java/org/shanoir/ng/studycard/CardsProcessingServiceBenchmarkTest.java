@@ -0,0 +1,175 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+
+package org.shanoir.ng.studycard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.BDDMockito.given;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.shanoir.ng.dataset.model.Dataset;
+import org.shanoir.ng.dataset.modality.MrDataset;
+import org.shanoir.ng.datasetacquisition.model.DatasetAcquisition;
+import org.shanoir.ng.datasetacquisition.model.mr.MrDatasetAcquisition;
+import org.shanoir.ng.download.WADODownloaderService;
+import org.shanoir.ng.examination.model.Examination;
+import org.shanoir.ng.shared.event.ShanoirEventService;
+import org.shanoir.ng.shared.model.Study;
+import org.shanoir.ng.shared.model.Subject;
+import org.shanoir.ng.shared.model.SubjectStudy;
+import org.shanoir.ng.shared.quality.QualityTag;
+import org.shanoir.ng.shared.service.StudyService;
+import org.shanoir.ng.shared.service.SubjectStudyService;
+import org.shanoir.ng.studycard.dto.QualityCardResult;
+import org.shanoir.ng.studycard.model.Operation;
+import org.shanoir.ng.studycard.model.QualityCard;
+import org.shanoir.ng.studycard.model.condition.StudyCardCondition;
+import org.shanoir.ng.studycard.model.condition.StudyCardDICOMConditionOnDatasets;
+import org.shanoir.ng.studycard.model.rule.QualityExaminationRule;
+import org.shanoir.ng.studycard.service.CardsProcessingService;
+import org.shanoir.ng.utils.usermock.WithMockKeycloakUser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Measures the quality check of a synthetic study of 1000 examinations, the pacs answering
+ * in PACS_LATENCY_MS: the dicom attributes of each dataset must be fetched only once,
+ * whatever the number of rules.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class CardsProcessingServiceBenchmarkTest {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CardsProcessingServiceBenchmarkTest.class);
+
+	private static final Long STUDY_ID = 1L;
+
+	private static final int EXAMINATION_COUNT = 1000;
+
+	private static final int DATASETS_BY_EXAMINATION = 3;
+
+	private static final long PACS_LATENCY_MS = 2;
+
+	@Autowired
+	private CardsProcessingService cardsProcessingService;
+
+	@MockBean
+	private WADODownloaderService downloader;
+
+	@MockBean
+	private StudyService studyService;
+
+	@MockBean
+	private SubjectStudyService subjectStudyService;
+
+	@MockBean
+	private ShanoirEventService eventService;
+
+	@Test
+	@WithMockKeycloakUser(id = 2L, username = "logged", authorities = { "ROLE_ADMIN" })
+	public void applyQualityCardOnStudy() throws Exception {
+		AtomicInteger pacsRequests = new AtomicInteger();
+		given(downloader.getDicomAttributesForDataset(Mockito.any())).willAnswer(invocation -> {
+			pacsRequests.incrementAndGet();
+			Thread.sleep(PACS_LATENCY_MS);
+			Attributes attributes = new Attributes();
+			attributes.setString(Tag.SeriesDescription, VR.LO, "T1");
+			return attributes;
+		});
+		given(studyService.findById(STUDY_ID)).willReturn(createStudy());
+		QualityCard qualityCard = new QualityCard();
+		qualityCard.setStudyId(STUDY_ID);
+		qualityCard.setRules(Arrays.asList(
+				createRule(QualityTag.VALID, "T1"),
+				createRule(QualityTag.WARNING, "T2"),
+				createRule(QualityTag.ERROR, "T1")));
+
+		long start = System.currentTimeMillis();
+		QualityCardResult result = cardsProcessingService.applyQualityCardOnStudy(qualityCard, false);
+		long millis = System.currentTimeMillis() - start;
+		LOG.info("applyQualityCardOnStudy: {} examinations checked with {} pacs requests in {} ms",
+				EXAMINATION_COUNT, pacsRequests.get(), millis);
+
+		assertEquals(EXAMINATION_COUNT * DATASETS_BY_EXAMINATION, pacsRequests.get());
+		// one entry by examination for the error tag set
+		assertEquals(EXAMINATION_COUNT, result.size());
+	}
+
+	private Study createStudy() {
+		Study study = new Study(STUDY_ID, "study");
+		List<SubjectStudy> subjectStudies = new ArrayList<>();
+		List<Examination> examinations = new ArrayList<>();
+		long datasetId = 1;
+		for (long examinationId = 1; examinationId <= EXAMINATION_COUNT; examinationId++) {
+			Subject subject = new Subject(examinationId, "subject" + examinationId);
+			SubjectStudy subjectStudy = new SubjectStudy();
+			subjectStudy.setId(examinationId);
+			subjectStudy.setStudy(study);
+			subjectStudy.setSubject(subject);
+			subject.setSubjectStudyList(Arrays.asList(subjectStudy));
+			subjectStudies.add(subjectStudy);
+
+			DatasetAcquisition acquisition = new MrDatasetAcquisition();
+			acquisition.setId(examinationId);
+			List<Dataset> datasets = new ArrayList<>();
+			for (int i = 0; i < DATASETS_BY_EXAMINATION; i++) {
+				Dataset dataset = new MrDataset();
+				dataset.setId(datasetId++);
+				dataset.setDatasetAcquisition(acquisition);
+				datasets.add(dataset);
+			}
+			acquisition.setDatasets(datasets);
+
+			Examination examination = new Examination();
+			examination.setId(examinationId);
+			examination.setComment("examination" + examinationId);
+			examination.setStudy(study);
+			examination.setSubject(subject);
+			examination.setDatasetAcquisitions(Arrays.asList(acquisition));
+			acquisition.setExamination(examination);
+			examinations.add(examination);
+		}
+		study.setSubjectStudyList(subjectStudies);
+		study.setExaminations(examinations);
+		return study;
+	}
+
+	private QualityExaminationRule createRule(QualityTag tag, String seriesDescription) {
+		StudyCardDICOMConditionOnDatasets condition = new StudyCardDICOMConditionOnDatasets();
+		condition.setDicomTag(Tag.SeriesDescription);
+		condition.setOperation(Operation.EQUALS);
+		condition.setValues(Arrays.asList(seriesDescription));
+		condition.setCardinality(-1);
+		List<StudyCardCondition> conditions = new ArrayList<>();
+		conditions.add(condition);
+		QualityExaminationRule rule = new QualityExaminationRule();
+		rule.setQualityTag(tag);
+		rule.setConditions(conditions);
+		return rule;
+	}
+
+}
@@ -15,6 +15,7 @@
 package org.shanoir.ng.importer;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.shanoir.ng.importer.dicom.query.DicomQuery;
 import org.shanoir.ng.importer.model.EegImportJob;
@@ -54,10 +55,10 @@ public interface ImporterApi {
     @PreAuthorize("hasRole('ADMIN') or (hasAnyRole('EXPERT', 'USER') and @importSecurityService.hasRightOnOneStudy('CAN_IMPORT'))")
     ResponseEntity<String> createTempDir() throws RestServiceException;
     
-    // used by ShanoirUploader!!! 2. step: called for each DICOM file
-    @Operation(summary = "Upload a file into a specific temp dir", description = "Upload a file into a specific temp dir")
+    // used by ShanoirUploader!!! 2. step: called for each batch of DICOM files
+    @Operation(summary = "Upload files into a specific temp dir", description = "Upload one or several files into a specific temp dir, the files already received with the same size are ignored")
 	@ApiResponses(value = {
-			@ApiResponse(responseCode = "200", description = "file uploaded"),
+			@ApiResponse(responseCode = "200", description = "files uploaded"),
 			@ApiResponse(responseCode = "401", description = "unauthorized"),
 			@ApiResponse(responseCode = "403", description = "forbidden"),
 			@ApiResponse(responseCode = "500", description = "unexpected error") })
@@ -65,7 +66,20 @@ public interface ImporterApi {
     @PreAuthorize("hasRole('ADMIN') or (hasAnyRole('EXPERT', 'USER') and @importSecurityService.hasRightOnOneStudy('CAN_IMPORT'))")
     ResponseEntity<Void> uploadFile(
     		@Parameter(name = "tempDirId", required = true) @PathVariable("tempDirId") String tempDirId,
-    		@Parameter(name = "file") @RequestParam("file") MultipartFile file) throws RestServiceException, IOException;
+    		@Parameter(name = "file") @RequestParam("file") List<MultipartFile> files) throws RestServiceException, IOException;
+
+    // used by ShanoirUploader!!! to resume an upload: files to send again
+    @Operation(summary = "List the files received into a specific temp dir", description = "List the names of the files received into a specific temp dir")
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "received files"),
+			@ApiResponse(responseCode = "401", description = "unauthorized"),
+			@ApiResponse(responseCode = "403", description = "forbidden"),
+			@ApiResponse(responseCode = "422", description = "temp dir not existing"),
+			@ApiResponse(responseCode = "500", description = "unexpected error") })
+    @GetMapping(value = "/{tempDirId}/files", produces = { "application/json" })
+    @PreAuthorize("hasRole('ADMIN') or (hasAnyRole('EXPERT', 'USER') and @importSecurityService.hasRightOnOneStudy('CAN_IMPORT'))")
+    ResponseEntity<List<String>> findUploadedFiles(
+    		@Parameter(name = "tempDirId", required = true) @PathVariable("tempDirId") String tempDirId) throws RestServiceException;
     
     @Operation(summary = "Upload one DICOM .zip file", description = "Upload DICOM .zip file")
     @ApiResponses(value = {
@@ -64,6 +64,7 @@ import java.io.*;
 import java.net.URL;
 import java.net.URLConnection;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.regex.Matcher;
@@ -96,6 +97,8 @@ public class ImporterApiController implements ImporterApi {
 
 	private static final String DICOMDIR = "DICOMDIR";
 
+	private static final String UPLOAD_PART_SUFFIX = ".part";
+
 	private static final String APPLICATION_ZIP = "application/zip";
 
 	/** The Constant KB. */
@@ -634,26 +637,44 @@ public class ImporterApiController implements ImporterApi {
 
 	@Override
 	public ResponseEntity<Void> uploadFile(@PathVariable("tempDirId") String tempDirId,
-										   @RequestParam("file") MultipartFile file) throws RestServiceException, IOException {
-		final File userImportDir = ImportUtils.getUserImportDir(importDir);
-		final File importJobDir = new File(userImportDir, tempDirId);
-		// only continue in case of existing temp dir id
-		if (importJobDir.exists()) {
+										   @RequestParam("file") List<MultipartFile> files) throws RestServiceException, IOException {
+		final File importJobDir = getTempDir(tempDirId, "Upload file called with not existing tempDirId.");
+		for (MultipartFile file : files) {
 			File fileToWrite = new File(importJobDir, file.getOriginalFilename());
 			if (fileToWrite.exists()) {
+				// sent again after a failed request
+				if (fileToWrite.length() == file.getSize()) {
+					continue;
+				}
 				throw new RestServiceException(new ErrorModel(HttpStatus.UNPROCESSABLE_ENTITY.value(),
 						"Duplicate file name in tempDir, could not create file as file exists already.", null));
-			} else {
-				byte[] bytes = file.getBytes();
-				Files.write(fileToWrite.toPath(), bytes);
 			}
-		} else {
-			throw new RestServiceException(new ErrorModel(HttpStatus.UNPROCESSABLE_ENTITY.value(),
-					"Upload file called with not existing tempDirId.", null));
+			// written under a temporary name, so that a received file is always complete
+			File partFile = new File(importJobDir, file.getOriginalFilename() + UPLOAD_PART_SUFFIX);
+			Files.deleteIfExists(partFile.toPath());
+			file.transferTo(partFile);
+			Files.move(partFile.toPath(), fileToWrite.toPath(), StandardCopyOption.ATOMIC_MOVE);
 		}
 		return null;
 	}
 
+	@Override
+	public ResponseEntity<List<String>> findUploadedFiles(@PathVariable("tempDirId") String tempDirId) throws RestServiceException {
+		final File importJobDir = getTempDir(tempDirId, "Find uploaded files called with not existing tempDirId.");
+		String[] fileNames = importJobDir.list((dir, name) -> !name.endsWith(UPLOAD_PART_SUFFIX));
+		return new ResponseEntity<>(fileNames != null ? Arrays.asList(fileNames) : new ArrayList<>(), HttpStatus.OK);
+	}
+
+	private File getTempDir(String tempDirId, String errorMessage) throws RestServiceException {
+		final File userImportDir = ImportUtils.getUserImportDir(importDir);
+		final File importJobDir = new File(userImportDir, tempDirId);
+		// only continue in case of existing temp dir id
+		if (!importJobDir.exists()) {
+			throw new RestServiceException(new ErrorModel(HttpStatus.UNPROCESSABLE_ENTITY.value(), errorMessage, null));
+		}
+		return importJobDir;
+	}
+
 	/**
 	 * This methods returns a dicom file
 	 *
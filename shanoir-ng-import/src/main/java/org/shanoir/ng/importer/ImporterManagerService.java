@@ -22,9 +22,14 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.shanoir.anonymization.anonymization.AnonymizationServiceImpl;
 import org.shanoir.ng.importer.dicom.ImagesCreatorAndDicomFileAnalyzerService;
+import org.shanoir.ng.importer.dicom.query.DicomMoveScheduler;
 import org.shanoir.ng.importer.dicom.query.DicomStoreSCPServer;
 import org.shanoir.ng.importer.dicom.query.QueryPACSService;
 import org.shanoir.ng.importer.model.Image;
@@ -71,6 +76,8 @@ public class ImporterManagerService {
 	private static Logger LOG = LoggerFactory.getLogger(ImporterManagerService.class);
 
 	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private static final long MOVE_PROGRESS_INTERVAL_SECONDS = 1;
 	
 	/**
 	 * For the moment Spring is not used here to autowire, as we try to keep the
@@ -85,6 +92,9 @@ public class ImporterManagerService {
 	
 	@Autowired
 	private DicomStoreSCPServer dicomStoreSCPServer;
+
+	@Autowired
+	private DicomMoveScheduler dicomMoveScheduler;
 	
 	@Autowired
 	private ImagesCreatorAndDicomFileAnalyzerService imagesCreatorAndDicomFileAnalyzer;
@@ -297,6 +307,8 @@ public class ImporterManagerService {
 
 	/**
 	 * Calls a c-move for each serie involved, files are received via DicomStoreSCPServer.
+	 * The c-moves of the series of a study are scheduled in parallel by the DicomMoveScheduler,
+	 * the progress is published from the instances received.
 	 * 
 	 * @param patients
 	 * @throws ShanoirException
@@ -308,38 +320,65 @@ public class ImporterManagerService {
 			for (Iterator<Study> studiesIt = studies.iterator(); studiesIt.hasNext();) {
 				Study study = studiesIt.next();
 				List<Serie> series = study.getSelectedSeries();
-				int nbSeries = series.size();
-				int cpt = 1;
-				for (Iterator<Serie> seriesIt = series.iterator(); seriesIt.hasNext();) {
-					Serie serie = seriesIt.next();
-					event.setMessage("Downloading DICOM files from PACS for serie [" + (serie.getProtocolName() == null ? serie.getSeriesInstanceUID() : serie.getProtocolName()) + "] (" + cpt + "/" + nbSeries + ")");
-					eventService.publishEvent(event);
-
-					String studyInstanceUID = study.getStudyInstanceUID();
-					String seriesInstanceUID = serie.getSeriesInstanceUID();
-					queryPACSService.queryCFINDInstances(studyInstanceUID, serie);
-					queryPACSService.queryCMOVE(studyInstanceUID, serie);
-					File serieIDFolderDir = new File(importJobDir + File.separator + seriesInstanceUID);
+				String studyInstanceUID = study.getStudyInstanceUID();
+				// the instances of all the series are queried over one association
+				queryPACSService.queryCFINDInstances(studyInstanceUID, series);
+				CompletableFuture<Void> moves = dicomMoveScheduler.moveSeries(studyInstanceUID, series);
+				waitForMoves(moves, series, event);
+				for (Serie serie : series) {
+					moveDicomFilesToImportJobDir(importJobDir, serie);
+				}
+			}
+		}
+	}
 
-					if(!serieIDFolderDir.exists()) {
-						serieIDFolderDir.mkdirs();
-					} else {
-						throw new ShanoirException("Error while creating serie id folder: folder already exists.");
-					}
-					for (Iterator<Instance> iterator = serie.getInstances().iterator(); iterator.hasNext();) {
-						Instance instance = iterator.next();
-						String sopInstanceUID = instance.getSopInstanceUID();
-						File oldFile = new File(dicomStoreSCPServer.getStorageDirPath() + File.separator + seriesInstanceUID + File.separator + sopInstanceUID + DicomStoreSCPServer.DICOM_FILE_SUFFIX);
-						if (oldFile.exists()) {
-							File newFile = new File(importJobDir.getAbsolutePath() + File.separator + seriesInstanceUID + File.separator + oldFile.getName());
-							oldFile.renameTo(newFile);
-							LOG.debug("Moving file: {} to ", oldFile.getAbsolutePath(), newFile.getAbsolutePath());
-						} else {
-							throw new ShanoirException("Error while creating serie id folder: file to copy does not exist.");
-						}
+	/**
+	 * Waits for the c-moves of the series, and publishes every second the number of received instances.
+	 */
+	private void waitForMoves(CompletableFuture<Void> moves, List<Serie> series, ShanoirEvent event) throws Exception {
+		int nbInstances = series.stream().mapToInt(serie -> serie.getInstances().size()).sum();
+		while (true) {
+			try {
+				moves.get(MOVE_PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+				return;
+			} catch (TimeoutException e) {
+				int nbReceivedInstances = 0;
+				int nbReceivedSeries = 0;
+				for (Serie serie : series) {
+					int received = dicomStoreSCPServer.countReceivedInstances(serie);
+					nbReceivedInstances += received;
+					if (received == serie.getInstances().size()) {
+						nbReceivedSeries++;
 					}
-					cpt++;
 				}
+				event.setMessage("Downloading DICOM files from PACS: " + nbReceivedInstances + "/" + nbInstances
+						+ " images received (" + nbReceivedSeries + "/" + series.size() + " series)");
+				eventService.publishEvent(event);
+			} catch (ExecutionException e) {
+				throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+			}
+		}
+	}
+
+	private void moveDicomFilesToImportJobDir(final File importJobDir, Serie serie) throws ShanoirException {
+		String seriesInstanceUID = serie.getSeriesInstanceUID();
+		File serieIDFolderDir = new File(importJobDir + File.separator + seriesInstanceUID);
+
+		if(!serieIDFolderDir.exists()) {
+			serieIDFolderDir.mkdirs();
+		} else {
+			throw new ShanoirException("Error while creating serie id folder: folder already exists.");
+		}
+		for (Iterator<Instance> iterator = serie.getInstances().iterator(); iterator.hasNext();) {
+			Instance instance = iterator.next();
+			String sopInstanceUID = instance.getSopInstanceUID();
+			File oldFile = new File(dicomStoreSCPServer.getStorageDirPath() + File.separator + seriesInstanceUID + File.separator + sopInstanceUID + DicomStoreSCPServer.DICOM_FILE_SUFFIX);
+			if (oldFile.exists()) {
+				File newFile = new File(importJobDir.getAbsolutePath() + File.separator + seriesInstanceUID + File.separator + oldFile.getName());
+				oldFile.renameTo(newFile);
+				LOG.debug("Moving file: {} to ", oldFile.getAbsolutePath(), newFile.getAbsolutePath());
+			} else {
+				throw new ShanoirException("Error while creating serie id folder: file to copy does not exist.");
 			}
 		}
 	}
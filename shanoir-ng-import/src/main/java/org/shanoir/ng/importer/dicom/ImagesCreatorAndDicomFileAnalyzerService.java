@@ -19,9 +19,16 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.dcm4che3.data.Attributes;
@@ -29,6 +36,7 @@ import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.UID;
 import org.dcm4che3.emf.MultiframeExtractor;
 import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.io.DicomInputStream.IncludeBulkData;
 import org.shanoir.ng.anonymization.uid.generation.UIDGeneration;
 import org.shanoir.ng.importer.model.Image;
 import org.shanoir.ng.importer.model.Instance;
@@ -44,8 +52,12 @@ import org.shanoir.ng.shared.event.ShanoirEventService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
 /**
  * This class reads all instances. A FileInputStream in form of a DicomInputStream is opened
  * to all files to read additional informations, e.g. missing in the DicomDir.
@@ -60,6 +72,11 @@ import org.springframework.stereotype.Service;
  * In case of the import from pacs, the files are accessed using the STORAGE_PATTERN defined
  * in DicomStoreSCPServer.
  * 
+ * The dicom files are analyzed in parallel, by analyzerThreads threads shared by all the
+ * imports, and their pixel data are not read (skipPixelData), only their headers. An import
+ * submits the files of a serie while the previous one is collected, not all its series at
+ * once, so that a large import does not delay the analysis of the other imports.
+ * 
  * @author mkain
  *
  */
@@ -74,11 +91,42 @@ public class ImagesCreatorAndDicomFileAnalyzerService {
 	
 	private static final String YES = "YES";
 
+	@Value("${shanoir.import.dicom-analysis.threads:4}")
+	private int analyzerThreads;
+
+	@Value("${shanoir.import.dicom-analysis.skip-pixel-data:true}")
+	private boolean skipPixelData;
+
 	@Autowired
 	private ShanoirEventService eventService;
 
+	private ExecutorService analyzerExecutor;
+
+	@PostConstruct
+	private void initAnalyzerExecutor() {
+		analyzerExecutor = Executors.newFixedThreadPool(analyzerThreads);
+	}
+
+	@PreDestroy
+	private void shutdownAnalyzerExecutor() {
+		analyzerExecutor.shutdownNow();
+	}
+
 	public void createImagesAndAnalyzeDicomFiles(List<Patient> patients, String folderFileAbsolutePath, boolean isImportFromPACS, ShanoirEvent event)
 			throws FileNotFoundException {
+		// the files of a serie are analyzed in parallel, while the results of the previous serie are collected
+		List<Serie> seriesToAnalyze = new ArrayList<>();
+		for (Patient patient : patients) {
+			for (Study study : patient.getStudies()) {
+				for (Serie serie : study.getSeries()) {
+					if (!serie.isIgnored()) {
+						seriesToAnalyze.add(serie);
+					}
+				}
+			}
+		}
+		Map<Serie, List<CompletableFuture<Image>>> analyzedInstancesBySerie = new IdentityHashMap<>();
+		int collectedSeries = 0;
 		// patient level
 		for (Iterator<Patient> patientsIt = patients.iterator(); patientsIt.hasNext();) {
 			Patient patient = patientsIt.next();
@@ -97,8 +145,14 @@ public class ImagesCreatorAndDicomFileAnalyzerService {
 							event.setMessage("Creating images and analyzing DICOM files for serie [" + (serie.getSeriesDescription() == null ? serie.getSeriesInstanceUID() : serie.getSeriesDescription()) + "] " + cpt + "/" + nbSeries + ")");
 							eventService.publishEvent(event);
 						}
+						// this serie and the next one are submitted
+						while (analyzedInstancesBySerie.size() < Math.min(collectedSeries + 2, seriesToAnalyze.size())) {
+							Serie serieToAnalyze = seriesToAnalyze.get(analyzedInstancesBySerie.size());
+							analyzedInstancesBySerie.put(serieToAnalyze, analyzeInstances(folderFileAbsolutePath, serieToAnalyze, isImportFromPACS));
+						}
+						collectedSeries++;
 						try {
-							filterAndCreateImages(folderFileAbsolutePath, serie, isImportFromPACS);
+							filterAndCreateImages(serie, analyzedInstancesBySerie.get(serie));
 						} catch (Exception e) { // one serie/file could cause problems, log and mark as erroneous, but continue with next serie
 							handleError(event, nbSeries, cpt, serie, e);
 						}
@@ -144,21 +198,56 @@ public class ImagesCreatorAndDicomFileAnalyzerService {
 	}
 
 	/**
-	 * This method iterates over all instances, filters only the images
-	 * and puts them into a new list: images.
+	 * This method submits the analysis of the dicom file of each instance of a serie
+	 * to the analyzerExecutor, in the order of the instances. Without executor (not
+	 * created by Spring), the files are analyzed immediately, in the calling thread.
 	 * 
 	 * @param folderFileAbsolutePath
 	 * @param serie
-	 * @throws FileNotFoundException
+	 * @param isImportFromPACS
+	 * @return one image by instance, null for the ignored instances
 	 */
-	private void filterAndCreateImages(String folderFileAbsolutePath, Serie serie, boolean isImportFromPACS) throws Exception {
-		List<Image> images = new ArrayList<Image>();
+	private List<CompletableFuture<Image>> analyzeInstances(String folderFileAbsolutePath, Serie serie, boolean isImportFromPACS) {
+		List<CompletableFuture<Image>> analyzedInstances = new ArrayList<>();
 		List<Instance> instances = serie.getInstances();
 		if (instances != null) {
-			for (Iterator<Instance> instancesIt = instances.iterator(); instancesIt.hasNext();) {
-				Instance instance = instancesIt.next();
-				File instanceFile = getFileFromInstance(instance, serie, folderFileAbsolutePath, isImportFromPACS);
-				processDicomFilePerInstanceAndCreateImage(instanceFile, images, folderFileAbsolutePath);
+			Executor executor = analyzerExecutor != null ? analyzerExecutor : Runnable::run;
+			for (Instance instance : instances) {
+				analyzedInstances.add(CompletableFuture.supplyAsync(() -> {
+					try {
+						File instanceFile = getFileFromInstance(instance, serie, folderFileAbsolutePath, isImportFromPACS);
+						return processDicomFilePerInstanceAndCreateImage(instanceFile, folderFileAbsolutePath);
+					} catch (Exception e) {
+						throw new CompletionException(e);
+					}
+				}, executor));
+			}
+		}
+		return analyzedInstances;
+	}
+
+	/**
+	 * This method collects the analyzed instances, filters only the images
+	 * and puts them into a new list: images.
+	 * 
+	 * @param serie
+	 * @param analyzedInstances
+	 * @throws Exception the error of the first instance in error
+	 */
+	private void filterAndCreateImages(Serie serie, List<CompletableFuture<Image>> analyzedInstances) throws Exception {
+		List<Image> images = new ArrayList<Image>();
+		if (serie.getInstances() != null) {
+			try {
+				for (CompletableFuture<Image> analyzedInstance : analyzedInstances) {
+					Image image = analyzedInstance.join();
+					if (image != null) {
+						images.add(image);
+					}
+				}
+			} catch (CompletionException e) {
+				// one file in error is an error for the entire serie: the other files are not analyzed
+				analyzedInstances.forEach(analyzedInstance -> analyzedInstance.cancel(false));
+				throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
 			}
 			/**
 			 * Old versions of ShUp v7.0.1, still installed and running, send "ignored" series.
@@ -223,19 +312,24 @@ public class ImagesCreatorAndDicomFileAnalyzerService {
 	 * and extracts meta-data from the dicom, that will be used later.
 	 * 
 	 * @param dicomFile
-	 * @param serie
-	 * @param instances
-	 * @param instance
-	 * @param index
-	 * @param nonImages
-	 * @param images
+	 * @param folderFileAbsolutePath
+	 * @return the image, null if the instance is ignored
 	 */
-	private void processDicomFilePerInstanceAndCreateImage(File dicomFile, List<Image> images, String folderFileAbsolutePath) throws Exception {
+	private Image processDicomFilePerInstanceAndCreateImage(File dicomFile, String folderFileAbsolutePath) throws Exception {
 		try (DicomInputStream dIS = new DicomInputStream(dicomFile)) { // keep try to finally close input stream
+			if (skipPixelData) {
+				/**
+				 * The bulk data (pixel data etc.) are skipped and only referenced (file, offset and length):
+				 * not readDatasetUntilPixelData, as the MultiframeExtractor needs the pixel data element
+				 * of the enhanced dicom files, but not its value.
+				 */
+				dIS.setIncludeBulkData(IncludeBulkData.URI);
+			}
 			Attributes attributes = dIS.readDataset();
 			// Some DICOM files with a particular SOPClassUID are ignored: such as Raw Data Storage etc.
 			if (DicomSerieAndInstanceAnalyzer.checkInstanceIsIgnored(attributes)) {
-				// do nothing here as instances list will be emptied after split between images and non-images
+				// return nothing here as instances list will be emptied after split between images and non-images
+				return null;
 			} else {
 				Image image = new Image();
 				/**
@@ -245,7 +339,7 @@ public class ImagesCreatorAndDicomFileAnalyzerService {
 				String relativeFilePath = dicomFile.getAbsolutePath().replace(folderFileAbsolutePath + SLASH, "");
 				image.setPath(relativeFilePath);
 				addImageSeparateDatasetsInfo(image, attributes);
-				images.add(image);
+				return image;
 			}
 		} catch (IOException iOE) {
 			throw iOE;
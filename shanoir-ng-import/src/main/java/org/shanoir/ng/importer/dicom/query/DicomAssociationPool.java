@@ -0,0 +1,299 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+
+package org.shanoir.ng.importer.dicom.query;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.net.ApplicationEntity;
+import org.dcm4che3.net.Association;
+import org.dcm4che3.net.Connection;
+import org.dcm4che3.net.Device;
+import org.dcm4che3.net.DimseRSP;
+import org.dcm4che3.net.IncompatibleConnectionException;
+import org.dcm4che3.net.Status;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.dicom.param.DicomNode;
+
+/**
+ * Pool of the associations opened by the QueryPACSService, to avoid a new
+ * TCP connection and DIMSE association negotiation for each query.
+ *
+ * The associations are pooled by calling AE, called AE and kind (C-FIND or C-MOVE),
+ * as the presentation contexts differ. An association is used by one thread at a time:
+ * it is borrowed for a query and given back afterwards. Idle associations are released
+ * after idleTimeoutSeconds, and checked (still open, C-ECHO for the C-FIND ones) before
+ * being borrowed again: the C-MOVE associations do not negotiate the verification, a
+ * failed C-MOVE is retried by the caller on a new association (borrowNew).
+ * All the devices share the same executors.
+ *
+ * Used on the server and in ShUp, therefore no Spring bean.
+ */
+public class DicomAssociationPool {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DicomAssociationPool.class);
+
+	/** Idle associations are checked with a C-ECHO when not used for this delay */
+	private static final long VALIDATION_INTERVAL_MS = 5000;
+
+	private int idleTimeoutSeconds = 30;
+
+	private int maxIdlePerKey = 4;
+
+	private final ExecutorService executor;
+
+	private final ScheduledExecutorService scheduledExecutor;
+
+	/** One device by calling AE */
+	private final Map<String, ApplicationEntity> callingAEs = new ConcurrentHashMap<>();
+
+	/** Idle associations by key, the most recently used first */
+	private final Map<String, Deque<IdleAssociation>> idleAssociations = new ConcurrentHashMap<>();
+
+	/** Key of the borrowed associations */
+	private final Map<Association, String> borrowedAssociations = new ConcurrentHashMap<>();
+
+	public DicomAssociationPool() {
+		this.executor = Executors.newCachedThreadPool(daemonThreadFactory("dicom-association-"));
+		this.scheduledExecutor = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("dicom-association-timer-"));
+		this.scheduledExecutor.scheduleWithFixedDelay(this::releaseExpiredAssociations, 10, 10, TimeUnit.SECONDS);
+	}
+
+	public void setIdleTimeoutSeconds(int idleTimeoutSeconds) {
+		this.idleTimeoutSeconds = idleTimeoutSeconds;
+	}
+
+	public void setMaxIdlePerKey(int maxIdlePerKey) {
+		this.maxIdlePerKey = maxIdlePerKey;
+	}
+
+	/**
+	 * Returns an idle association to the called node if a valid one exists, opens a new one otherwise.
+	 * The association must be given back with giveBack.
+	 *
+	 * @param calling
+	 * @param called
+	 * @param cfind true for C-FIND (and C-ECHO), false for C-MOVE
+	 * @return the association
+	 * @throws Exception
+	 */
+	public Association borrow(DicomNode calling, DicomNode called, boolean cfind) throws Exception {
+		String key = getKey(calling, called, cfind);
+		Deque<IdleAssociation> idle = idleAssociations.computeIfAbsent(key, k -> new ArrayDeque<>());
+		while (true) {
+			IdleAssociation idleAssociation;
+			synchronized (idle) {
+				idleAssociation = idle.pollFirst();
+			}
+			if (idleAssociation == null) {
+				break;
+			}
+			if (isValid(idleAssociation, cfind)) {
+				LOG.debug("Reusing association between calling {} and called {}", calling.getAet(), called.getAet());
+				borrowedAssociations.put(idleAssociation.association(), key);
+				return idleAssociation.association();
+			}
+			release(idleAssociation.association());
+		}
+		return borrowNew(calling, called, cfind);
+	}
+
+	/**
+	 * Opens a new association, without reusing an idle one, e.g. when the association
+	 * borrowed before has been closed by the called node. The association must be given
+	 * back with giveBack.
+	 */
+	public Association borrowNew(DicomNode calling, DicomNode called, boolean cfind) throws Exception {
+		Association association = connect(calling, called, cfind);
+		borrowedAssociations.put(association, getKey(calling, called, cfind));
+		return association;
+	}
+
+	/**
+	 * Gives back a borrowed association: kept for the next queries if still open
+	 * and if the pool is not full, released otherwise.
+	 *
+	 * @param association
+	 */
+	public void giveBack(Association association) {
+		String key = borrowedAssociations.remove(association);
+		if (key == null || !association.isReadyForDataTransfer()) {
+			release(association);
+			return;
+		}
+		Deque<IdleAssociation> idle = idleAssociations.computeIfAbsent(key, k -> new ArrayDeque<>());
+		synchronized (idle) {
+			if (idle.size() < maxIdlePerKey) {
+				idle.addFirst(new IdleAssociation(association, System.currentTimeMillis()));
+				return;
+			}
+		}
+		release(association);
+	}
+
+	/**
+	 * Opens a new association, not pooled.
+	 */
+	public Association connect(DicomNode calling, DicomNode called, boolean cfind) throws Exception {
+		try {
+			ApplicationEntity callingAE = callingAEs.computeIfAbsent(calling.getAet(), this::createApplicationEntity);
+			// called: create a connection and an AAssociateRQ
+			Connection calledConn = new Connection(null, called.getHostname(), called.getPort());
+			AAssociateRQ aarq = new AAssociateRQ();
+			aarq.setCallingAET(calling.getAet());
+			aarq.setCalledAET(called.getAet());
+			if (cfind) {
+				aarq.addPresentationContext(new PresentationContext(1,
+						UID.Verification, UID.ImplicitVRLittleEndian));
+				aarq.addPresentationContext(new PresentationContext(2,
+						UID.PatientRootQueryRetrieveInformationModelFind, UID.ImplicitVRLittleEndian));
+				aarq.addPresentationContext(new PresentationContext(3,
+						UID.StudyRootQueryRetrieveInformationModelFind, UID.ImplicitVRLittleEndian));
+			} else {
+				aarq.addPresentationContext(new PresentationContext(1,
+						UID.StudyRootQueryRetrieveInformationModelMove, UID.ImplicitVRLittleEndian));
+			}
+			Association association = callingAE.connect(calledConn, aarq);
+			LOG.info("connectAssociation finished between calling {} and called {}", calling.getAet(), called.getAet());
+			return association;
+		} catch (IOException | InterruptedException | IncompatibleConnectionException | GeneralSecurityException e) {
+			LOG.error(e.getMessage(), e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Releases an association, without pooling it.
+	 */
+	public void release(Association association) {
+		borrowedAssociations.remove(association);
+		try {
+			if (association.isReadyForDataTransfer()) {
+				association.release();
+			}
+		} catch (IOException e) {
+			LOG.error(e.getMessage(), e);
+		}
+		LOG.info("releaseAssociation finished between calling {} and called {}", association.getCallingAET(), association.getCalledAET());
+	}
+
+	/**
+	 * Releases the idle associations and stops the executors.
+	 */
+	public void close() {
+		for (Deque<IdleAssociation> idle : idleAssociations.values()) {
+			List<IdleAssociation> associations;
+			synchronized (idle) {
+				associations = new ArrayList<>(idle);
+				idle.clear();
+			}
+			associations.forEach(a -> release(a.association()));
+		}
+		scheduledExecutor.shutdownNow();
+		executor.shutdown();
+	}
+
+	private boolean isValid(IdleAssociation idleAssociation, boolean cfind) {
+		Association association = idleAssociation.association();
+		if (!association.isReadyForDataTransfer()) {
+			return false;
+		}
+		long idleMs = System.currentTimeMillis() - idleAssociation.idleSince();
+		if (idleMs > TimeUnit.SECONDS.toMillis(idleTimeoutSeconds)) {
+			return false;
+		}
+		// only the C-FIND associations negotiate the verification presentation context
+		if (cfind && idleMs > VALIDATION_INTERVAL_MS) {
+			try {
+				DimseRSP rsp = association.cecho();
+				rsp.next();
+				return rsp.getCommand().getInt(Tag.Status, -1) == Status.Success;
+			} catch (IOException | InterruptedException e) {
+				LOG.warn("Idle association to {} not valid anymore: {}", association.getCalledAET(), e.getMessage());
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void releaseExpiredAssociations() {
+		long expiration = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(idleTimeoutSeconds);
+		for (Deque<IdleAssociation> idle : idleAssociations.values()) {
+			List<IdleAssociation> expired = new ArrayList<>();
+			synchronized (idle) {
+				for (Iterator<IdleAssociation> it = idle.iterator(); it.hasNext();) {
+					IdleAssociation idleAssociation = it.next();
+					if (idleAssociation.idleSince() < expiration || !idleAssociation.association().isReadyForDataTransfer()) {
+						expired.add(idleAssociation);
+						it.remove();
+					}
+				}
+			}
+			// not in the timer thread of the devices
+			expired.forEach(a -> executor.execute(() -> release(a.association())));
+		}
+	}
+
+	private ApplicationEntity createApplicationEntity(String callingAET) {
+		Device device = new Device(QueryPACSService.class.getName() + "-" + callingAET);
+		device.setExecutor(executor);
+		device.setScheduledExecutor(scheduledExecutor);
+		ApplicationEntity callingAE = new ApplicationEntity(callingAET);
+		Connection callingConn = new Connection();
+		device.addConnection(callingConn);
+		device.addApplicationEntity(callingAE);
+		callingAE.addConnection(callingConn);
+		return callingAE;
+	}
+
+	private String getKey(DicomNode calling, DicomNode called, boolean cfind) {
+		return calling.getAet() + "|" + called.getAet() + "@" + called.getHostname() + ":" + called.getPort()
+				+ "|" + (cfind ? "C-FIND" : "C-MOVE");
+	}
+
+	private static ThreadFactory daemonThreadFactory(String prefix) {
+		AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * An association given back to the pool, and since when.
+	 */
+	private record IdleAssociation(Association association, long idleSince) {
+	}
+
+}
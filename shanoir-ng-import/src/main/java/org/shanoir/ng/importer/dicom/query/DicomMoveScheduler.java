@@ -0,0 +1,130 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+
+package org.shanoir.ng.importer.dicom.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.shanoir.ng.importer.model.Serie;
+import org.shanoir.ng.shared.exception.ShanoirException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * This class schedules the c-moves of the series to download from the PACS: at most
+ * maxConcurrentMoves c-moves are in flight to the PACS, for all the imports together,
+ * each one on its own (pooled) association.
+ *
+ * After the c-move of a serie, the instances received by the DicomStoreSCPServer are
+ * checked: the missing ones, and only them, are moved again, up to maxAttempts times.
+ * A failed c-move counts as an attempt: the instances it did not move are moved again.
+ */
+@Service
+public class DicomMoveScheduler {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DicomMoveScheduler.class);
+
+	@Value("${shanoir.import.pacs.move.max-concurrent:4}")
+	private int maxConcurrentMoves;
+
+	@Value("${shanoir.import.pacs.move.max-attempts:3}")
+	private int maxAttempts;
+
+	@Autowired
+	private QueryPACSService queryPACSService;
+
+	@Autowired
+	private DicomStoreSCPServer dicomStoreSCPServer;
+
+	private ExecutorService moveExecutor;
+
+	@PostConstruct
+	private void initExecutor() {
+		moveExecutor = Executors.newFixedThreadPool(maxConcurrentMoves);
+	}
+
+	@PreDestroy
+	private void shutdownExecutor() {
+		moveExecutor.shutdownNow();
+	}
+
+	/**
+	 * Schedules the c-moves of the series of a study. The instances of the series
+	 * must have been queried before (queryCFINDInstances).
+	 *
+	 * @param studyInstanceUID
+	 * @param series
+	 * @return completed when all the instances of all the series are received, or exceptionally
+	 * 	if instances of a serie are still missing after maxAttempts c-moves
+	 */
+	public CompletableFuture<Void> moveSeries(String studyInstanceUID, List<Serie> series) {
+		List<CompletableFuture<Void>> moves = new ArrayList<>();
+		for (Serie serie : series) {
+			moves.add(CompletableFuture.runAsync(() -> moveSerie(studyInstanceUID, serie), moveExecutor));
+		}
+		return CompletableFuture.allOf(moves.toArray(new CompletableFuture[0]));
+	}
+
+	private void moveSerie(String studyInstanceUID, Serie serie) {
+		try {
+			Exception moveError = move(() -> queryPACSService.queryCMOVE(studyInstanceUID, serie), serie, 1);
+			List<String> missingInstances = dicomStoreSCPServer.findMissingInstances(serie);
+			for (int attempt = 2; attempt <= maxAttempts && !missingInstances.isEmpty(); attempt++) {
+				LOG.warn("C-MOVE of serie {}: {} instances missing, moving them again (attempt {}/{}).",
+						serie.getSeriesInstanceUID(), missingInstances.size(), attempt, maxAttempts);
+				List<String> instances = missingInstances;
+				moveError = move(() -> queryPACSService.queryCMOVEInstances(studyInstanceUID, serie, instances), serie, attempt);
+				missingInstances = dicomStoreSCPServer.findMissingInstances(serie);
+			}
+			if (!missingInstances.isEmpty()) {
+				throw new ShanoirException("C-MOVE of serie " + serie.getSeriesInstanceUID() + ": "
+						+ missingInstances.size() + " instances still missing after " + maxAttempts + " attempts.", moveError);
+			}
+		} catch (Exception e) {
+			throw new CompletionException(e);
+		}
+	}
+
+	/**
+	 * @return the error of the c-move, null if it succeeded
+	 */
+	private Exception move(CMove cmove, Serie serie, int attempt) throws InterruptedException {
+		try {
+			cmove.run();
+			return null;
+		} catch (InterruptedException e) {
+			throw e;
+		} catch (Exception e) {
+			LOG.warn("C-MOVE of serie {} failed (attempt {}/{}): {}", serie.getSeriesInstanceUID(), attempt, maxAttempts, e.getMessage());
+			return e;
+		}
+	}
+
+	@FunctionalInterface
+	private interface CMove {
+		void run() throws Exception;
+	}
+
+}
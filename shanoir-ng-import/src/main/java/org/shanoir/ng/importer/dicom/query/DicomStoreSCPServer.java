@@ -15,7 +15,11 @@
 package org.shanoir.ng.importer.dicom.query;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.shanoir.ng.importer.model.Instance;
+import org.shanoir.ng.importer.model.Serie;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -89,6 +93,30 @@ public class DicomStoreSCPServer {
         LOG.info("DicomStoreSCPServer successfully initialized: {}, {}, {}, {}", calledName, calledHost, calledPort, storageDirPath);
 	}
 
+	/**
+	 * @param serie
+	 * @return the number of instances of the serie received in the storage folder
+	 */
+	public int countReceivedInstances(Serie serie) {
+		return serie.getInstances().size() - findMissingInstances(serie).size();
+	}
+
+	/**
+	 * @param serie
+	 * @return the SOPInstanceUIDs of the instances of the serie not received in the storage folder
+	 */
+	public List<String> findMissingInstances(Serie serie) {
+		List<String> missingInstances = new ArrayList<>();
+		for (Instance instance : serie.getInstances()) {
+			File file = new File(storageDirPath + File.separator + serie.getSeriesInstanceUID()
+					+ File.separator + instance.getSopInstanceUID() + DICOM_FILE_SUFFIX);
+			if (!file.exists()) {
+				missingInstances.add(instance.getSopInstanceUID());
+			}
+		}
+		return missingInstances;
+	}
+
 	public String getStorageDirPath() {
 		return storageDirPath;
 	}
@@ -15,14 +15,10 @@
 package org.shanoir.ng.importer.dicom.query;
 
 import java.io.IOException;
-import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.stream.IntStream;
 
 import javax.swing.JProgressBar;
@@ -33,16 +29,10 @@ import org.dcm4che3.data.ElementDictionary;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.UID;
 import org.dcm4che3.data.VR;
-import org.dcm4che3.net.ApplicationEntity;
 import org.dcm4che3.net.Association;
-import org.dcm4che3.net.Connection;
-import org.dcm4che3.net.Device;
 import org.dcm4che3.net.DimseRSPHandler;
-import org.dcm4che3.net.IncompatibleConnectionException;
 import org.dcm4che3.net.Priority;
 import org.dcm4che3.net.Status;
-import org.dcm4che3.net.pdu.AAssociateRQ;
-import org.dcm4che3.net.pdu.PresentationContext;
 import org.dcm4che3.net.service.QueryRetrieveLevel;
 import org.shanoir.ng.importer.dicom.DicomSerieAndInstanceAnalyzer;
 import org.shanoir.ng.importer.dicom.InstanceNumberSorter;
@@ -65,6 +55,7 @@ import org.weasis.dicom.param.DicomProgress;
 import org.weasis.dicom.param.DicomState;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 @Service
 public class QueryPACSService {
@@ -98,6 +89,14 @@ public class QueryPACSService {
 	
 	@Value("${shanoir.import.pacs.store.aet.called.name}")
 	private String calledNameSCP;
+
+	@Value("${shanoir.import.pacs.query.association.idle-timeout-seconds:30}")
+	private int associationIdleTimeoutSeconds;
+
+	@Value("${shanoir.import.pacs.query.association.max-idle:4}")
+	private int associationMaxIdle;
+
+	private final DicomAssociationPool associationPool = new DicomAssociationPool();
 	
 	public QueryPACSService() {} // for ShUp usage
 	
@@ -111,6 +110,17 @@ public class QueryPACSService {
 		this.called = new DicomNode(calledName, calledHost, calledPort);
 		LOG.info("Query: DicomNodes initialized via CDI: calling ({}, {}, {}) and called ({}, {}, {})",
 				callingName, callingHost, callingPort, calledName, calledHost, calledPort);
+		associationPool.setIdleTimeoutSeconds(associationIdleTimeoutSeconds);
+		associationPool.setMaxIdlePerKey(associationMaxIdle);
+	}
+
+	/**
+	 * Closes the pooled associations and the threads of the pool. Called via PreDestroy
+	 * in MS Import, and by ShanoirUploader when its DicomServerClient is replaced or at exit.
+	 */
+	@PreDestroy
+	public void closeAssociationPool() {
+		associationPool.close();
 	}
 	
 	/**
@@ -129,54 +139,16 @@ public class QueryPACSService {
 				calling.getAet(), calling.getHostname(), calling.getPort(), called.getAet(), called.getHostname(), called.getPort());
 	}
 	
+	/**
+	 * Borrows an association from the pool: opened only if no idle association
+	 * to the called node can be reused.
+	 */
 	private Association connectAssociation(DicomNode calling, DicomNode called, boolean cfind) throws Exception {
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        ScheduledExecutorService scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
-        try {
-        	// calling: create a device, a connection and an application entity
-        	Device device = new Device(this.getClass().getName());
-            device.setExecutor(executor);
-            device.setScheduledExecutor(scheduledExecutor);
-        	ApplicationEntity callingAE = new ApplicationEntity(calling.getAet());
-            Connection callingConn = new Connection();
-            device.addConnection(callingConn);
-            device.addApplicationEntity(callingAE);
-            callingAE.addConnection(callingConn);
-            // called: create a connection and an AAssociateRQ
-            Connection calledConn = new Connection(null, called.getHostname(), called.getPort());
-            AAssociateRQ aarq = new AAssociateRQ();
-            aarq.setCallingAET(calling.getAet());
-            aarq.setCalledAET(called.getAet());
-            if (cfind) {
-	            aarq.addPresentationContext(new PresentationContext(1,
-	                    UID.Verification, UID.ImplicitVRLittleEndian));
-	            aarq.addPresentationContext(new PresentationContext(2,
-	            		UID.PatientRootQueryRetrieveInformationModelFind, UID.ImplicitVRLittleEndian));
-	            aarq.addPresentationContext(new PresentationContext(3,
-	            		UID.StudyRootQueryRetrieveInformationModelFind, UID.ImplicitVRLittleEndian));
-            } else {
-                aarq.addPresentationContext(new PresentationContext(1,
-                		UID.StudyRootQueryRetrieveInformationModelMove, UID.ImplicitVRLittleEndian));
-            }
-            Association association = callingAE.connect(calledConn, aarq);
-            LOG.info("connectAssociation finished between calling {} and called {}", calling.getAet(), called.getAet());
-            return association;
-        } catch (IOException | InterruptedException | IncompatibleConnectionException | GeneralSecurityException e) {
-			LOG.error(e.getMessage(), e);
-			throw e;
-        }
+		return associationPool.borrow(calling, called, cfind);
 	}
 
 	private void releaseAssociation(Association association) {
-		try {
-			association.release();
-		} catch (IOException e) {
-			LOG.error(e.getMessage(), e);
-		}
-		ExecutorService executorService = (ExecutorService) association.getDevice().getExecutor();
-		executorService.shutdown();
-		association.getDevice().getScheduledExecutor().shutdown();
-		LOG.info("releaseAssociation finished between calling {} and called {}", calling.getAet(), called.getAet());
+		associationPool.giveBack(association);
 	}
 	
 	public ImportJob queryCFIND(DicomQuery dicomQuery) throws Exception {
@@ -184,24 +156,27 @@ public class QueryPACSService {
 		LOG.debug("--- START C-FIND ---");
 		LOG.debug("--------------------");
 		long start = System.currentTimeMillis();
-		Association association = connectAssociation(calling, called, true);
 		ImportJob importJob = new ImportJob();
 		if (StringUtils.isNotBlank(dicomQuery.getPatientName())
 			|| StringUtils.isNotBlank(dicomQuery.getPatientID())
 			|| StringUtils.isNotBlank(dicomQuery.getPatientBirthDate())
 			|| StringUtils.isNotBlank(dicomQuery.getStudyDescription())
 			|| StringUtils.isNotBlank(dicomQuery.getStudyDate())) {
-			// patient root query level
-			if (!dicomQuery.isStudyRootQuery()) {
-				queryPatientLevel(association, dicomQuery, importJob);
-			// study root query level
-			} else {
-				queryStudyLevel(association, dicomQuery, importJob);
+			Association association = connectAssociation(calling, called, true);
+			try {
+				// patient root query level
+				if (!dicomQuery.isStudyRootQuery()) {
+					queryPatientLevel(association, dicomQuery, importJob);
+				// study root query level
+				} else {
+					queryStudyLevel(association, dicomQuery, importJob);
+				}
+			} finally {
+				releaseAssociation(association);
 			}
 		} else {
 			throw new ShanoirImportException("DicomQuery: missing parameters.");
 		}
-		releaseAssociation(association);
 		long finish = System.currentTimeMillis();
 		long timeElapsed = finish - start;
 		LOG.debug("Duration of all calls of queryCFIND " + timeElapsed + "ms.");
@@ -217,9 +192,12 @@ public class QueryPACSService {
 		LOG.debug("------------------------------");
 		long start = System.currentTimeMillis();
 		Association association = connectAssociation(calling, called, true);
-		LOG.info("Query instances/images (before c-move) for serie: " + serie.getSeriesDescription());
-		queryInstances(association, studyInstanceUID, serie);
-		releaseAssociation(association);
+		try {
+			LOG.info("Query instances/images (before c-move) for serie: " + serie.getSeriesDescription());
+			queryInstances(association, studyInstanceUID, serie);
+		} finally {
+			releaseAssociation(association);
+		}
 		long finish = System.currentTimeMillis();
 		long timeElapsed = finish - start;
 		LOG.debug("Duration of all calls of queryCFIND " + timeElapsed + "ms.");
@@ -228,22 +206,43 @@ public class QueryPACSService {
 		LOG.debug("------------------------------");
 	}
 
+	/**
+	 * Queries the instances/images of several series of a study over the same association.
+	 * 
+	 * @param studyInstanceUID
+	 * @param series
+	 * @throws Exception
+	 */
+	public void queryCFINDInstances(String studyInstanceUID, List<Serie> series) throws Exception {
+		long start = System.currentTimeMillis();
+		Association association = connectAssociation(calling, called, true);
+		try {
+			for (Serie serie : series) {
+				LOG.info("Query instances/images (before c-move) for serie: " + serie.getSeriesDescription());
+				queryInstances(association, studyInstanceUID, serie);
+			}
+		} finally {
+			releaseAssociation(association);
+		}
+		LOG.debug("Duration of queryCFINDInstances for {} series: {}ms.", series.size(), System.currentTimeMillis() - start);
+	}
+
 	public void queryCMOVEs(String studyInstanceUID, List<Serie> selectedSeries, JProgressBar progressBar) throws Exception {
 		LOG.info("--------------------");
 		LOG.info("--- START C-MOVES --");
 		LOG.info("--------------------");
 		long start = System.currentTimeMillis();
-		Association association = connectAssociation(calling, called, false);
 		int totalPercent = 0;
 		int serieNumber = 0;
 		int numberOfSeries = selectedSeries.size();
 		for (Serie serie : selectedSeries) {
 			serieNumber++;
-			queryCMOVEPerSerie(studyInstanceUID, serie, association);
+			queryCMOVEPerSerie(studyInstanceUID, serie);
 			totalPercent = Math.round(((float) serieNumber / numberOfSeries) * 100);
-			progressBar.setValue(totalPercent);
+			if (progressBar != null) {
+				progressBar.setValue(totalPercent);
+			}
 		}
-		releaseAssociation(association);
 		long finish = System.currentTimeMillis();
 		long timeElapsed = finish - start;
 		LOG.info("Duration of all series " + timeElapsed + "ms.");
@@ -257,9 +256,7 @@ public class QueryPACSService {
 		LOG.info("--- START C-MOVE ---");
 		LOG.info("--------------------");
 		long start = System.currentTimeMillis();
-		Association association = connectAssociation(calling, called, false);
-		queryCMOVEPerSerie(studyInstanceUID, serie, association);
-		releaseAssociation(association);
+		queryCMOVEPerSerie(studyInstanceUID, serie);
 		long finish = System.currentTimeMillis();
 		long timeElapsed = finish - start;
 		LOG.info("Duration of one serie " + timeElapsed + "ms.");
@@ -268,13 +265,31 @@ public class QueryPACSService {
 		LOG.info("--------------------");
 	}
 
-	private void queryCMOVEPerSerie(String studyInstanceUID, Serie serie, Association association) {
+	/**
+	 * Moves again some instances of a serie, e.g. the ones not received after the c-move of the serie.
+	 * 
+	 * @param studyInstanceUID
+	 * @param serie
+	 * @param sopInstanceUIDs
+	 * @throws Exception
+	 */
+	public void queryCMOVEInstances(String studyInstanceUID, Serie serie, List<String> sopInstanceUIDs) throws Exception {
+		DicomParam[] params = {
+			new DicomParam(Tag.QueryRetrieveLevel, "IMAGE"),
+			new DicomParam(Tag.StudyInstanceUID, studyInstanceUID),
+			new DicomParam(Tag.SeriesInstanceUID, serie.getSeriesInstanceUID()),
+			new DicomParam(Tag.SOPInstanceUID, sopInstanceUIDs.toArray(new String[0])) };
+		LOG.info("Calling DICOM server, C-MOVE for {} instances of serie: {} of study: {}", sopInstanceUIDs.size(), serie.getSeriesDescription(), studyInstanceUID);
+		queryCMove(params);
+	}
+
+	private void queryCMOVEPerSerie(String studyInstanceUID, Serie serie) throws Exception {
 		DicomParam[] params = {
 			new DicomParam(Tag.QueryRetrieveLevel, "SERIES"),
 			new DicomParam(Tag.StudyInstanceUID, studyInstanceUID),
 			new DicomParam(Tag.SeriesInstanceUID, serie.getSeriesInstanceUID()) };
 		LOG.info("Calling DICOM server, C-MOVE for serie: {} of study: {}", serie.getSeriesDescription(), studyInstanceUID);
-		queryCMove(association, params);
+		queryCMove(params);
 	}
 	
 	public boolean queryECHO(String calledAET, String hostName, int port, String callingAET) {
@@ -282,9 +297,10 @@ public class QueryPACSService {
         try {
     		DicomNode called = new DicomNode(calledAET, hostName, port);
     		DicomNode calling = new DicomNode(callingAET);
-    		Association association = connectAssociation(calling, called, true);
+    		// not pooled: the echo tests the connection
+    		Association association = associationPool.connect(calling, called, true);
         	association.cecho();
-            releaseAssociation(association);
+            associationPool.release(association);
         } catch (Exception e) {
 			LOG.error(e.getMessage(), e);
 			return false;
@@ -625,21 +641,48 @@ public class QueryPACSService {
 		return rspHandler;
 	}
 
-	private List<Attributes> queryCMove(Association association, DicomParam[] params) {
+	/**
+	 * Runs a C-MOVE on a pooled association. Only the C-FIND associations are checked
+	 * with a C-ECHO before being reused: if the association has been closed by the PACS
+	 * while idle, the C-MOVE is retried once on a new association. An association on
+	 * which the C-MOVE failed is released, not given back to the pool.
+	 */
+	private List<Attributes> queryCMove(DicomParam[] params) throws Exception {
+		for (int attempt = 1;; attempt++) {
+			Association association = attempt == 1 ? connectAssociation(calling, called, false)
+					: associationPool.borrowNew(calling, called, false);
+			boolean moved = false;
+			try {
+				List<Attributes> response = queryCMove(association, params);
+				moved = true;
+				return response;
+			} catch (IOException e) {
+				if (attempt > 1) {
+					LOG.error("Error in c-move query: ", e);
+					throw e;
+				}
+				LOG.warn("Error in c-move query, retrying on a new association: {}", e.getMessage());
+			} finally {
+				if (moved) {
+					releaseAssociation(association);
+				} else {
+					associationPool.release(association);
+				}
+			}
+		}
+	}
+
+	private List<Attributes> queryCMove(Association association, DicomParam[] params) throws IOException, InterruptedException {
 		DicomState state = new DicomState(new DicomProgress());
         DimseRSPHandler rspHandler = createCMoveRSPHandler(association, state);
 		Attributes attributes = new Attributes();
 		for (DicomParam p : params) {
 			addAttributes(attributes, p);
 		}
-		try {
-			association.cmove(UID.StudyRootQueryRetrieveInformationModelMove, Priority.NORMAL, attributes, null, calledNameSCP, rspHandler);
-	        if (association.isReadyForDataTransfer()) {
-	            association.waitForOutstandingRSP();
-	        }
-		} catch (IOException | InterruptedException e) {
-			LOG.error("Error in c-move query: ", e);
-		}
+		association.cmove(UID.StudyRootQueryRetrieveInformationModelMove, Priority.NORMAL, attributes, null, calledNameSCP, rspHandler);
+        if (association.isReadyForDataTransfer()) {
+            association.waitForOutstandingRSP();
+        }
 		List<Attributes> response = state.getDicomRSP();
 		LOG.info("C-MOVE-RESPONSE NB. ELEMENTS: " + response.size());
 		LOG.debug("C-MOVE-RESPONSE CONTENT:\n" + response);
@@ -0,0 +1,176 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+
+package org.shanoir.ng.importer.dicom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomOutputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.shanoir.ng.importer.model.Image;
+import org.shanoir.ng.importer.model.Instance;
+import org.shanoir.ng.importer.model.Patient;
+import org.shanoir.ng.importer.model.Serie;
+import org.shanoir.ng.importer.model.Study;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Measures the duration of the analysis of the dicom files of an import from pacs
+ * (one folder by serie), sequential with the complete files read, and parallel with
+ * only the headers read: the images created must be the same.
+ */
+public class ImagesCreatorAndDicomFileAnalyzerServiceBenchmarkTest {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ImagesCreatorAndDicomFileAnalyzerServiceBenchmarkTest.class);
+
+	private static final int SERIES_COUNT = 20;
+
+	private static final int INSTANCES_BY_SERIE = 120;
+
+	private static final int ROWS = 128;
+
+	private static final String UID_ROOT = "1.2.3.4.5.";
+
+	@TempDir
+	private File folder;
+
+	@BeforeEach
+	public void setup() throws IOException {
+		byte[] pixelData = new byte[ROWS * ROWS * 2];
+		for (int serieIndex = 0; serieIndex < SERIES_COUNT; serieIndex++) {
+			File serieFolder = new File(folder, getSeriesInstanceUID(serieIndex));
+			serieFolder.mkdirs();
+			for (int instanceIndex = 0; instanceIndex < INSTANCES_BY_SERIE; instanceIndex++) {
+				String sopInstanceUID = getSOPInstanceUID(serieIndex, instanceIndex);
+				Attributes attributes = new Attributes();
+				attributes.setString(Tag.SOPClassUID, VR.UI, UID.MRImageStorage);
+				attributes.setString(Tag.SOPInstanceUID, VR.UI, sopInstanceUID);
+				attributes.setString(Tag.SeriesInstanceUID, VR.UI, getSeriesInstanceUID(serieIndex));
+				attributes.setString(Tag.SeriesDescription, VR.LO, "serie " + serieIndex);
+				attributes.setInt(Tag.AcquisitionNumber, VR.IS, instanceIndex % 3);
+				// two echoes in the odd series
+				int echoNumber = serieIndex % 2 == 1 ? instanceIndex % 2 + 1 : 1;
+				attributes.setInt(Tag.EchoNumbers, VR.IS, echoNumber);
+				attributes.setDouble(Tag.EchoTime, VR.DS, 10.0 * echoNumber);
+				attributes.setDouble(Tag.RepetitionTime, VR.DS, 2000.0);
+				attributes.setDouble(Tag.ImageOrientationPatient, VR.DS, 1, 0, 0, 0, 1, 0);
+				attributes.setInt(Tag.Rows, VR.US, ROWS);
+				attributes.setInt(Tag.Columns, VR.US, ROWS);
+				attributes.setInt(Tag.BitsAllocated, VR.US, 16);
+				attributes.setInt(Tag.BitsStored, VR.US, 12);
+				attributes.setInt(Tag.SamplesPerPixel, VR.US, 1);
+				attributes.setString(Tag.PhotometricInterpretation, VR.CS, "MONOCHROME2");
+				attributes.setBytes(Tag.PixelData, VR.OW, pixelData);
+				Attributes fmi = attributes.createFileMetaInformation(UID.ExplicitVRLittleEndian);
+				try (DicomOutputStream dOS = new DicomOutputStream(new File(serieFolder, sopInstanceUID + ".dcm"))) {
+					dOS.writeDataset(fmi, attributes);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void createImagesAndAnalyzeDicomFiles() throws IOException {
+		// sequential, complete files: as before
+		ImagesCreatorAndDicomFileAnalyzerService sequentialService = new ImagesCreatorAndDicomFileAnalyzerService();
+		ReflectionTestUtils.setField(sequentialService, "skipPixelData", false);
+		List<Patient> sequentialPatients = createPatients();
+		long start = System.nanoTime();
+		sequentialService.createImagesAndAnalyzeDicomFiles(sequentialPatients, folder.getAbsolutePath(), true, null);
+		long sequentialMillis = (System.nanoTime() - start) / 1000000;
+
+		// parallel, headers only
+		ImagesCreatorAndDicomFileAnalyzerService parallelService = new ImagesCreatorAndDicomFileAnalyzerService();
+		ReflectionTestUtils.setField(parallelService, "analyzerThreads", 4);
+		ReflectionTestUtils.setField(parallelService, "skipPixelData", true);
+		ReflectionTestUtils.invokeMethod(parallelService, "initAnalyzerExecutor");
+		List<Patient> parallelPatients = createPatients();
+		try {
+			start = System.nanoTime();
+			parallelService.createImagesAndAnalyzeDicomFiles(parallelPatients, folder.getAbsolutePath(), true, null);
+			long parallelMillis = (System.nanoTime() - start) / 1000000;
+			LOG.info("createImagesAndAnalyzeDicomFiles: {} files analyzed in {} ms sequentially (complete files), in {} ms in parallel (headers only)",
+					SERIES_COUNT * INSTANCES_BY_SERIE, sequentialMillis, parallelMillis);
+		} finally {
+			ReflectionTestUtils.invokeMethod(parallelService, "shutdownAnalyzerExecutor");
+		}
+
+		List<Serie> sequentialSeries = sequentialPatients.get(0).getStudies().get(0).getSeries();
+		List<Serie> parallelSeries = parallelPatients.get(0).getStudies().get(0).getSeries();
+		for (int serieIndex = 0; serieIndex < SERIES_COUNT; serieIndex++) {
+			Serie sequentialSerie = sequentialSeries.get(serieIndex);
+			Serie parallelSerie = parallelSeries.get(serieIndex);
+			assertFalse(parallelSerie.isErroneous());
+			assertFalse(parallelSerie.isIgnored());
+			assertEquals("serie " + serieIndex, parallelSerie.getSeriesDescription());
+			assertEquals(INSTANCES_BY_SERIE, parallelSerie.getImagesNumber());
+			for (int instanceIndex = 0; instanceIndex < INSTANCES_BY_SERIE; instanceIndex++) {
+				Image sequentialImage = sequentialSerie.getImages().get(instanceIndex);
+				Image parallelImage = parallelSerie.getImages().get(instanceIndex);
+				// images in the order of the instances
+				assertEquals(getSeriesInstanceUID(serieIndex) + File.separator + getSOPInstanceUID(serieIndex, instanceIndex) + ".dcm",
+						parallelImage.getPath());
+				assertEquals(sequentialImage.getPath(), parallelImage.getPath());
+				assertEquals(sequentialImage.getAcquisitionNumber(), parallelImage.getAcquisitionNumber());
+				assertEquals(sequentialImage.getImageOrientationPatient(), parallelImage.getImageOrientationPatient());
+				assertEquals(sequentialImage.getEchoTimes(), parallelImage.getEchoTimes());
+			}
+		}
+	}
+
+	private List<Patient> createPatients() {
+		List<Serie> series = new ArrayList<>();
+		for (int serieIndex = 0; serieIndex < SERIES_COUNT; serieIndex++) {
+			Serie serie = new Serie();
+			serie.setSeriesInstanceUID(getSeriesInstanceUID(serieIndex));
+			List<Instance> instances = new ArrayList<>();
+			for (int instanceIndex = 0; instanceIndex < INSTANCES_BY_SERIE; instanceIndex++) {
+				Instance instance = new Instance();
+				instance.setSopInstanceUID(getSOPInstanceUID(serieIndex, instanceIndex));
+				instances.add(instance);
+			}
+			serie.setInstances(instances);
+			series.add(serie);
+		}
+		Study study = new Study();
+		study.setSeries(series);
+		Patient patient = new Patient();
+		patient.setStudies(new ArrayList<>(Arrays.asList(study)));
+		return new ArrayList<>(Arrays.asList(patient));
+	}
+
+	private String getSeriesInstanceUID(int serieIndex) {
+		return UID_ROOT + serieIndex;
+	}
+
+	private String getSOPInstanceUID(int serieIndex, int instanceIndex) {
+		return UID_ROOT + serieIndex + "." + instanceIndex;
+	}
+
+}
@@ -0,0 +1,98 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+
+package org.shanoir.ng.importer.dicom.query;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.BDDMockito.given;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.shanoir.ng.importer.model.Serie;
+import org.shanoir.ng.shared.exception.ShanoirException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * The instances not moved by a failed c-move are moved again.
+ */
+public class DicomMoveSchedulerTest {
+
+	private static final String STUDY_INSTANCE_UID = "1.2.3";
+
+	private static final List<String> MISSING_INSTANCES = Arrays.asList("1.2.3.4.1", "1.2.3.4.2");
+
+	private DicomMoveScheduler scheduler;
+
+	private QueryPACSService queryPACSService;
+
+	private DicomStoreSCPServer dicomStoreSCPServer;
+
+	private Serie serie;
+
+	@BeforeEach
+	public void setup() {
+		queryPACSService = Mockito.mock(QueryPACSService.class);
+		dicomStoreSCPServer = Mockito.mock(DicomStoreSCPServer.class);
+		scheduler = new DicomMoveScheduler();
+		ReflectionTestUtils.setField(scheduler, "maxConcurrentMoves", 2);
+		ReflectionTestUtils.setField(scheduler, "maxAttempts", 3);
+		ReflectionTestUtils.setField(scheduler, "queryPACSService", queryPACSService);
+		ReflectionTestUtils.setField(scheduler, "dicomStoreSCPServer", dicomStoreSCPServer);
+		ReflectionTestUtils.invokeMethod(scheduler, "initExecutor");
+		serie = new Serie();
+		serie.setSeriesInstanceUID("1.2.3.4");
+	}
+
+	@AfterEach
+	public void shutdown() {
+		ReflectionTestUtils.invokeMethod(scheduler, "shutdownExecutor");
+	}
+
+	@Test
+	public void failedMoveRetried() throws Exception {
+		Mockito.doThrow(new IOException("association closed")).when(queryPACSService).queryCMOVE(STUDY_INSTANCE_UID, serie);
+		given(dicomStoreSCPServer.findMissingInstances(serie)).willReturn(MISSING_INSTANCES, Collections.emptyList());
+
+		scheduler.moveSeries(STUDY_INSTANCE_UID, Arrays.asList(serie)).get(10, TimeUnit.SECONDS);
+
+		Mockito.verify(queryPACSService).queryCMOVEInstances(STUDY_INSTANCE_UID, serie, MISSING_INSTANCES);
+	}
+
+	@Test
+	public void failedMovesReported() throws Exception {
+		IOException error = new IOException("association closed");
+		Mockito.doThrow(error).when(queryPACSService).queryCMOVE(STUDY_INSTANCE_UID, serie);
+		Mockito.doThrow(error).when(queryPACSService).queryCMOVEInstances(STUDY_INSTANCE_UID, serie, MISSING_INSTANCES);
+		given(dicomStoreSCPServer.findMissingInstances(serie)).willReturn(MISSING_INSTANCES);
+
+		ExecutionException e = assertThrows(ExecutionException.class,
+				() -> scheduler.moveSeries(STUDY_INSTANCE_UID, Arrays.asList(serie)).get(10, TimeUnit.SECONDS));
+
+		assertInstanceOf(ShanoirException.class, e.getCause());
+		assertInstanceOf(IOException.class, e.getCause().getCause());
+		// the serie, then its missing instances twice
+		Mockito.verify(queryPACSService, Mockito.times(2)).queryCMOVEInstances(STUDY_INSTANCE_UID, serie, MISSING_INSTANCES);
+	}
+
+}
@@ -19,6 +19,7 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.servers.Server;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 
@@ -26,6 +27,7 @@ import io.swagger.v3.oas.annotations.OpenAPIDefinition;
  * Shanoir-NG microservice studies application.
  */
 @SpringBootApplication
+@EnableScheduling
 @OpenAPIDefinition(
 		info = @Info(title = "Shanoir studies API", version = "1.0"),
 		servers = @Server(url = "/shanoir-ng/studies", description = "Studies"),
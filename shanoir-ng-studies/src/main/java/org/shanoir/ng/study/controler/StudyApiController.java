@@ -32,6 +32,7 @@ import org.shanoir.ng.study.dto.mapper.StudyMapper;
 import org.shanoir.ng.study.dua.DataUserAgreement;
 import org.shanoir.ng.study.dua.DataUserAgreementService;
 import org.shanoir.ng.study.model.Study;
+import org.shanoir.ng.study.model.StudyFilesVolume;
 import org.shanoir.ng.study.model.StudyUser;
 import org.shanoir.ng.study.security.StudyFieldEditionSecurityManager;
 import org.shanoir.ng.study.service.RelatedDatasetService;
@@ -357,6 +358,7 @@ public class StudyApiController implements StudyApi {
 			Files.createFile(newFilePath);
 			LOG.info("newFilePath: {}", newFilePath.getFileName());
 			file.transferTo(newFilePath);
+			studyService.addStudyFileSize(studyId, StudyFilesVolume.PROTOCOL_TYPE, Files.size(newFilePath));
 		} catch (Exception e) {
 			LOG.error("Error while loading files on examination: {}. File not uploaded. {}", studyId, e);
 		}
@@ -437,6 +439,7 @@ public class StudyApiController implements StudyApi {
 			Files.createDirectories(duaPath.getParent());
 			Files.createFile(duaPath);
 			file.transferTo(duaPath);
+			studyService.addStudyFileSize(studyId, StudyFilesVolume.DATA_USER_AGREEMENT_TYPE, Files.size(duaPath));
 		} catch (Exception e) {
 			LOG.error("Error while loading files on study: {}. File not uploaded.", studyId, e);
 		}
@@ -1,7 +1,9 @@
 package org.shanoir.ng.study.dto;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class StudyStorageVolumeDTO {
     private Long total = 0L;
@@ -10,6 +12,8 @@ public class StudyStorageVolumeDTO {
 
     private Long extraDataSize = 0L;
 
+    private Map<String, Long> extraDataSizeByType = new HashMap<>();
+
     public StudyStorageVolumeDTO() {
     }
 
@@ -29,6 +33,14 @@ public class StudyStorageVolumeDTO {
         this.extraDataSize = extraDataSize;
     }
 
+    public Map<String, Long> getExtraDataSizeByType() {
+        return extraDataSizeByType;
+    }
+
+    public void setExtraDataSizeByType(Map<String, Long> extraDataSizeByType) {
+        this.extraDataSizeByType = extraDataSizeByType;
+    }
+
     public Long getTotal() {
         return total;
     }
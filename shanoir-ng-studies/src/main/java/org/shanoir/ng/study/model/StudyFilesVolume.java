@@ -0,0 +1,100 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+package org.shanoir.ng.study.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.validation.constraints.NotNull;
+import org.shanoir.ng.shared.core.model.AbstractEntity;
+
+/**
+ * Total size of the files of a study, protocol files or data user agreements.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = { "study_id", "file_type" }))
+public class StudyFilesVolume extends AbstractEntity {
+
+	/**
+	 * UID
+	 */
+	private static final long serialVersionUID = -4410358213695843571L;
+
+	public static final String PROTOCOL_TYPE = "protocol";
+
+	public static final String DATA_USER_AGREEMENT_TYPE = "data-user-agreement";
+
+	@NotNull
+	private Long studyId;
+
+	@NotNull
+	private String fileType;
+
+	/** Size in bytes. */
+	private long size;
+
+	public StudyFilesVolume() {
+	}
+
+	public StudyFilesVolume(Long studyId, String fileType) {
+		this.studyId = studyId;
+		this.fileType = fileType;
+	}
+
+	/**
+	 * @return the studyId
+	 */
+	public Long getStudyId() {
+		return studyId;
+	}
+
+	/**
+	 * @param studyId
+	 *            the studyId to set
+	 */
+	public void setStudyId(Long studyId) {
+		this.studyId = studyId;
+	}
+
+	/**
+	 * @return the fileType
+	 */
+	public String getFileType() {
+		return fileType;
+	}
+
+	/**
+	 * @param fileType
+	 *            the fileType to set
+	 */
+	public void setFileType(String fileType) {
+		this.fileType = fileType;
+	}
+
+	/**
+	 * @return the size
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @param size
+	 *            the size to set
+	 */
+	public void setSize(long size) {
+		this.size = size;
+	}
+
+}
@@ -0,0 +1,34 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+package org.shanoir.ng.study.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.shanoir.ng.study.model.StudyFilesVolume;
+import org.springframework.data.repository.CrudRepository;
+
+/**
+ * Repository for the study files volumes.
+ */
+public interface StudyFilesVolumeRepository extends CrudRepository<StudyFilesVolume, Long> {
+
+	Optional<StudyFilesVolume> findByStudyIdAndFileType(Long studyId, String fileType);
+
+	List<StudyFilesVolume> findByStudyId(Long studyId);
+
+	List<StudyFilesVolume> findByStudyIdIn(Collection<Long> studyIds);
+
+}
@@ -53,4 +53,10 @@ public interface StudyRepository extends CrudRepository<Study, Long>, StudyRepos
 	@Query("SELECT s.dataUserAgreementPaths FROM Study s WHERE s.id = :studyId")
     List<String> findDataUserAgreementPathsByStudyId(Long studyId);
 
+	@Query("SELECT s.id, p FROM Study s JOIN s.protocolFilePaths p")
+	List<Object[]> findAllProtocolFilePaths();
+
+	@Query("SELECT s.id, p FROM Study s JOIN s.dataUserAgreementPaths p")
+	List<Object[]> findAllDataUserAgreementPaths();
+
 }
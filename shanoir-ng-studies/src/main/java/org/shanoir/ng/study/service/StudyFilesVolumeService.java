@@ -0,0 +1,161 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+package org.shanoir.ng.study.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.shanoir.ng.study.model.StudyFilesVolume;
+import org.shanoir.ng.study.repository.StudyFilesVolumeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Total size of the protocol and data user agreement files by study, stored in database
+ * so that the storage volume of a study is read without walking its files.
+ * The changes are committed in their own transaction, inside the lock,
+ * so that concurrent changes of the same total are not lost.
+ */
+@Service
+public class StudyFilesVolumeService {
+
+	private static final Logger LOG = LoggerFactory.getLogger(StudyFilesVolumeService.class);
+
+	@Autowired
+	private StudyFilesVolumeRepository studyFilesVolumeRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	/**
+	 * Adds the size of an uploaded file to the totals of a study.
+	 * 
+	 * @param studyId id of the study
+	 * @param fileType type of the file
+	 * @param size size of the file
+	 */
+	public synchronized void add(Long studyId, String fileType, long size) {
+		newTransaction().executeWithoutResult(status -> {
+			StudyFilesVolume volume = studyFilesVolumeRepository.findByStudyIdAndFileType(studyId, fileType)
+					.orElseGet(() -> new StudyFilesVolume(studyId, fileType));
+			volume.setSize(Math.max(0, volume.getSize() + size));
+			studyFilesVolumeRepository.save(volume);
+		});
+	}
+
+	/**
+	 * Replaces the totals of a study, after files were deleted or archived.
+	 * 
+	 * @param studyId id of the study
+	 * @param sizeByType size of the files of the study, by type
+	 */
+	public synchronized void set(Long studyId, Map<String, Long> sizeByType) {
+		newTransaction().executeWithoutResult(status -> {
+			Map<String, Long> remaining = new HashMap<>(sizeByType);
+			for (StudyFilesVolume volume : studyFilesVolumeRepository.findByStudyId(studyId)) {
+				update(volume, remaining.remove(volume.getFileType()), false);
+			}
+			create(studyId, remaining);
+		});
+	}
+
+	/**
+	 * @param studyId id of the study
+	 * @return the size of the files of the study, by type
+	 */
+	public Map<String, Long> getSizeByType(Long studyId) {
+		Map<String, Long> sizeByType = new HashMap<>();
+		for (StudyFilesVolume volume : studyFilesVolumeRepository.findByStudyId(studyId)) {
+			sizeByType.put(volume.getFileType(), volume.getSize());
+		}
+		return sizeByType;
+	}
+
+	/**
+	 * @param studyIds ids of the studies
+	 * @return the size of the files by type, for each study of the list
+	 */
+	public Map<Long, Map<String, Long>> getSizeByTypeByStudyId(Collection<Long> studyIds) {
+		Map<Long, Map<String, Long>> sizeByTypeByStudy = new HashMap<>();
+		for (Long studyId : studyIds) {
+			sizeByTypeByStudy.put(studyId, new HashMap<>());
+		}
+		for (StudyFilesVolume volume : studyFilesVolumeRepository.findByStudyIdIn(studyIds)) {
+			sizeByTypeByStudy.get(volume.getStudyId()).put(volume.getFileType(), volume.getSize());
+		}
+		return sizeByTypeByStudy;
+	}
+
+	/**
+	 * @return true if no total is stored yet, as after the creation of the table.
+	 */
+	public boolean isEmpty() {
+		return studyFilesVolumeRepository.count() == 0;
+	}
+
+	/**
+	 * Replaces the stored totals of all the studies by the given ones, computed from the files.
+	 * 
+	 * @param sizeByTypeByStudy the size of the files by type, for each study having some
+	 */
+	public synchronized void reconcile(Map<Long, Map<String, Long>> sizeByTypeByStudy) {
+		newTransaction().executeWithoutResult(status -> {
+			Map<Long, Map<String, Long>> remaining = new HashMap<>();
+			sizeByTypeByStudy.forEach((studyId, sizeByType) -> remaining.put(studyId, new HashMap<>(sizeByType)));
+			for (StudyFilesVolume volume : studyFilesVolumeRepository.findAll()) {
+				Map<String, Long> sizeByType = remaining.get(volume.getStudyId());
+				update(volume, sizeByType != null ? sizeByType.remove(volume.getFileType()) : null, true);
+			}
+			remaining.forEach(this::create);
+		});
+	}
+
+	/**
+	 * Sets the size of a stored total, deleted if the study has no more files of its type.
+	 */
+	private void update(StudyFilesVolume volume, Long size, boolean logDrift) {
+		long newSize = size != null ? size : 0L;
+		if (logDrift && newSize != volume.getSize()) {
+			LOG.warn("Files size of study {} for type {} corrected from {} to {} bytes.",
+					volume.getStudyId(), volume.getFileType(), volume.getSize(), newSize);
+		}
+		if (size == null) {
+			studyFilesVolumeRepository.delete(volume);
+		} else if (newSize != volume.getSize()) {
+			volume.setSize(newSize);
+			studyFilesVolumeRepository.save(volume);
+		}
+	}
+
+	private void create(Long studyId, Map<String, Long> sizeByType) {
+		sizeByType.forEach((type, size) -> {
+			StudyFilesVolume volume = new StudyFilesVolume(studyId, type);
+			volume.setSize(size);
+			studyFilesVolumeRepository.save(volume);
+		});
+	}
+
+	private TransactionTemplate newTransaction() {
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		return transaction;
+	}
+
+}
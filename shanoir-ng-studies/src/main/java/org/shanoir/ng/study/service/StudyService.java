@@ -142,6 +142,18 @@ public interface StudyService {
 	 */
 	String getStudyFilePath(Long studyId, String fileName);
 
+	/**
+	 * Adds the size of a file uploaded into the folder of the study to its storage volume.
+	 * 
+	 * @param studyId
+	 *            id of the study
+	 * @param fileType
+	 *            type of the file, protocol or data user agreement
+	 * @param size
+	 *            size of the file
+	 */
+	void addStudyFileSize(Long studyId, String fileType, long size);
+
 	/**
 	 * Returns all public available studies;
 	 */
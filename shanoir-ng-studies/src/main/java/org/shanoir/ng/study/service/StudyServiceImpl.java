@@ -35,6 +35,7 @@ import org.shanoir.ng.study.dto.mapper.StudyMapper;
 import org.shanoir.ng.study.dua.DataUserAgreement;
 import org.shanoir.ng.study.dua.DataUserAgreementService;
 import org.shanoir.ng.study.model.Study;
+import org.shanoir.ng.study.model.StudyFilesVolume;
 import org.shanoir.ng.study.model.StudyUser;
 import org.shanoir.ng.study.repository.StudyRepository;
 import org.shanoir.ng.study.repository.StudyUserRepository;
@@ -61,6 +62,9 @@ import org.springframework.amqp.AmqpException;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
@@ -68,7 +72,6 @@ import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Implementation of study service.
@@ -124,6 +127,9 @@ public class StudyServiceImpl implements StudyService {
 	@Autowired
 	private StudyCenterRepository studyCenterRepository;
 
+	@Autowired
+	private StudyFilesVolumeService studyFilesVolumeService;
+
 	@Override
 	public void deleteById(final Long id) throws EntityNotFoundException {
 		final Study study = studyRepository.findById(id).orElse(null);
@@ -144,6 +150,7 @@ public class StudyServiceImpl implements StudyService {
 		}
 
 		studyRepository.deleteById(id);
+		studyFilesVolumeService.set(id, Collections.emptyMap());
 	}
 
 	@Override
@@ -337,6 +344,8 @@ public class StudyServiceImpl implements StudyService {
 		if (study.getDataUserAgreementPaths() != null) { // do this after updateStudyUsers
 			studyDb.setDataUserAgreementPaths(study.getDataUserAgreementPaths());
 		}
+		// files removed or data user agreement archived
+		studyFilesVolumeService.set(studyDb.getId(), computeStudyFilesSizeByType(studyDb));
 
 		studyDb = studyRepository.save(studyDb);
 
@@ -805,9 +814,7 @@ public class StudyServiceImpl implements StudyService {
 			LOG.error("Error while fetching study [{}] datasets volume storage details.", studyId, e);
 			return null;
 		}
-		long filesSize = this.getStudyFilesSize(studyId);
-		dto.setExtraDataSize(filesSize + dto.getExtraDataSize());
-		dto.setTotal(filesSize + dto.getTotal());
+		addStudyFilesSize(dto, studyFilesVolumeService.getSizeByType(studyId));
 		return dto;
 	}
 
@@ -827,42 +834,82 @@ public class StudyServiceImpl implements StudyService {
 			return null;
 		}
 
-		this.studyRepository.findAllById(studyIds).forEach( study -> {
-					if(!detailedStorageVolumes.containsKey(study.getId())){
-						return;
-					}
-					Long filesSize = this.getStudyFilesSize(study);
-					StudyStorageVolumeDTO dto = detailedStorageVolumes.get(study.getId());
-					dto.setExtraDataSize(filesSize + dto.getExtraDataSize());
-					dto.setTotal(filesSize + dto.getTotal());
-				}
-		);
+		studyFilesVolumeService.getSizeByTypeByStudyId(studyIds).forEach((studyId, filesSizeByType) -> {
+			StudyStorageVolumeDTO dto = detailedStorageVolumes.get(studyId);
+			if (dto != null) {
+				addStudyFilesSize(dto, filesSizeByType);
+			}
+		});
 
 		return detailedStorageVolumes;
 	}
 
-	private long getStudyFilesSize(Long studyId){
-		Optional<Study> study = this.studyRepository.findById(studyId);
-		return study.map(this::getStudyFilesSize).orElse(0L);
-
+	/**
+	 * Adds the size of the protocol and data user agreement files to the extra data of the study.
+	 */
+	private void addStudyFilesSize(StudyStorageVolumeDTO dto, Map<String, Long> filesSizeByType) {
+		long filesSize = filesSizeByType.values().stream().mapToLong(Long::longValue).sum();
+		if (dto.getExtraDataSizeByType() == null) {
+			dto.setExtraDataSizeByType(new HashMap<>());
+		}
+		filesSizeByType.forEach((type, size) -> dto.getExtraDataSizeByType().merge(type, size, Long::sum));
+		dto.setExtraDataSize(filesSize + dto.getExtraDataSize());
+		dto.setTotal(filesSize + dto.getTotal());
 	}
 
-	private long getStudyFilesSize(Study study){
-
-		List<String> paths = Stream.of(study.getDataUserAgreementPaths(), study.getProtocolFilePaths())
-				.flatMap(Collection::stream)
-				.collect(Collectors.toList());
-
-		long size = 0L;
+	/**
+	 * Sums by type the size of the existing protocol and data user agreement files of a study.
+	 */
+	private Map<String, Long> computeStudyFilesSizeByType(Study study) {
+		Map<String, Long> sizeByType = new HashMap<>();
+		addStudyFilesSize(sizeByType, study.getId(), StudyFilesVolume.PROTOCOL_TYPE, study.getProtocolFilePaths());
+		addStudyFilesSize(sizeByType, study.getId(), StudyFilesVolume.DATA_USER_AGREEMENT_TYPE, study.getDataUserAgreementPaths());
+		return sizeByType;
+	}
 
+	private void addStudyFilesSize(Map<String, Long> sizeByType, Long studyId, String fileType, Collection<String> paths) {
+		if (paths == null) {
+			return;
+		}
 		for (String path : paths) {
-			File f = new File(this.getStudyFilePath(study.getId(), path));
+			File f = new File(this.getStudyFilePath(studyId, path));
 			if(f.exists()){
-				size += f.length();
+				sizeByType.merge(fileType, f.length(), Long::sum);
 			}
 		}
+	}
+
+	@Override
+	public void addStudyFileSize(Long studyId, String fileType, long size) {
+		studyFilesVolumeService.add(studyId, fileType, size);
+	}
+
+	/**
+	 * Fills the stored files sizes at the first start after the creation of their table.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void initStudyFilesSizes() {
+		if (studyFilesVolumeService.isEmpty()) {
+			reconcileStudyFilesSizes();
+		}
+	}
 
-		return size;
+	/**
+	 * Corrects the stored files sizes of all the studies, that could have drifted
+	 * with files changed outside of Shanoir, failed transactions or concurrent changes.
+	 */
+	@Scheduled(cron = "0 0 5 * * *", zone="Europe/Paris")
+	public void reconcileStudyFilesSizes() {
+		Map<Long, Map<String, Long>> sizeByTypeByStudy = new HashMap<>();
+		for (Object[] studyFile : studyRepository.findAllProtocolFilePaths()) {
+			addStudyFilesSize(sizeByTypeByStudy.computeIfAbsent((Long) studyFile[0], id -> new HashMap<>()),
+					(Long) studyFile[0], StudyFilesVolume.PROTOCOL_TYPE, List.of((String) studyFile[1]));
+		}
+		for (Object[] studyFile : studyRepository.findAllDataUserAgreementPaths()) {
+			addStudyFilesSize(sizeByTypeByStudy.computeIfAbsent((Long) studyFile[0], id -> new HashMap<>()),
+					(Long) studyFile[0], StudyFilesVolume.DATA_USER_AGREEMENT_TYPE, List.of((String) studyFile[1]));
+		}
+		studyFilesVolumeService.reconcile(sizeByTypeByStudy);
 	}
 
 	@Override
@@ -103,6 +103,9 @@ public class StudyServiceTest {
 	@Mock
 	private ObjectMapper objectMapper;
 
+	@Mock
+	private StudyFilesVolumeService studyFilesVolumeService;
+
 	@TempDir
 	public File tempFolder;
 
@@ -14,22 +14,46 @@
 
 package org.shanoir.ng.study.rights;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.shanoir.ng.shared.security.rights.StudyUserRight;
 import org.shanoir.ng.utils.KeycloakUtil;
-import org.shanoir.ng.utils.Utils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
+/**
+ * Checks the rights of the connected user on the studies.
+ *
+ * The rights of a user on all their studies are loaded at once, at the first check, and kept
+ * in memory: the next checks, including the ones done for each element of a list, do not access
+ * the database. The rights of a user are forgotten when their study users are updated
+ * (see StudyUserUpdateService), and after rightsCacheTtlSeconds in any case.
+ */
 @Service
 public class StudyRightsService {
 		
 	@Autowired
 	private StudyUserRightsRepository repo;
+
+	@Value("${study-rights.cache.ttl-seconds:300}")
+	private long rightsCacheTtlSeconds;
+
+	/** Rights of the users by user id */
+	private final Map<Long, UserRights> rightsByUser = new ConcurrentHashMap<>();
+
+	/** Incremented at each eviction, rights loaded during an eviction are not kept */
+	private final AtomicLong rightsGeneration = new AtomicLong();
 	
 	
 	/**
@@ -44,12 +68,11 @@ public class StudyRightsService {
 		if (userId == null) {
 			throw new IllegalStateException("UserId should not be null. Cannot check rights on the study " + studyId);
 		}
-		StudyUser founded = repo.findByUserIdAndStudyId(userId, studyId);
+		StudyRights founded = getUserRights(userId).get(studyId);
 		return
 				founded != null
-				&& founded.getStudyUserRights() != null
-				&& founded.getStudyUserRights().contains(StudyUserRight.valueOf(rightStr))
-				&& founded.isConfirmed();
+				&& founded.hasRight(StudyUserRight.valueOf(rightStr))
+				&& founded.confirmed();
     }
    
     public boolean hasRightOnCenter(Long studyId, Long centerId) {
@@ -57,12 +80,12 @@ public class StudyRightsService {
 		if (userId == null) {
 			throw new IllegalStateException("UserId should not be null. Cannot check rights on the study " + studyId);
 		}
-		StudyUser founded = repo.findByUserIdAndStudyId(userId, studyId);
+		StudyRights founded = getUserRights(userId).get(studyId);
 		
 		return
 				founded != null
 				&& 
-				( founded.getCenterIds().isEmpty() || founded.getCenterIds().contains(centerId) );
+				( founded.centerIds().isEmpty() || founded.centerIds().contains(centerId) );
     }
 
     /*
@@ -73,16 +96,14 @@ public class StudyRightsService {
 		if (userId == null) {
 			throw new IllegalStateException("UserId should not be null. Cannot check rights");
 		}
-		List<StudyUser> founded = Utils.toList(repo.findByUserIdAndStudyIdIn(userId, studies));
-		
-		if (CollectionUtils.isEmpty(founded)) {
-			return false;
-		}
-		boolean hasRight = false;
-		for (StudyUser su  : founded) {
-			hasRight = hasRight || CollectionUtils.isEmpty(su.getCenterIds()) || su.getCenterIds().contains(centerId);
+		Map<Long, StudyRights> userRights = getUserRights(userId);
+		for (Long studyId : studies) {
+			StudyRights su = userRights.get(studyId);
+			if (su != null && (su.centerIds().isEmpty() || su.centerIds().contains(centerId))) {
+				return true;
+			}
 		}
-		return hasRight;
+		return false;
     }
 
     /**
@@ -95,10 +116,10 @@ public class StudyRightsService {
     public boolean hasOneRightOnStudy(Long studyId, String... rightStrs) {
 		Long userId = KeycloakUtil.getTokenUserId();
 		if (userId == null) throw new IllegalStateException("UserId should not be null. Cannot check rights on the study " + studyId);
-		StudyUser founded = repo.findByUserIdAndStudyId(userId, studyId);
-		if (founded != null && founded.getStudyUserRights() != null) {
+		StudyRights founded = getUserRights(userId).get(studyId);
+		if (founded != null && founded.confirmed()) {
 			for (String rightStr : rightStrs) {
-				if (founded.getStudyUserRights().contains(StudyUserRight.valueOf(rightStr)) && founded.isConfirmed()) return true;
+				if (founded.hasRight(StudyUserRight.valueOf(rightStr))) return true;
 			}
 		}
 		return false;
@@ -116,14 +137,14 @@ public class StudyRightsService {
 		if (userId == null) {
 			throw new IllegalStateException("UserId should not be null. Cannot check rights on the studies " + studyIds);
 		}
-		Iterable<StudyUser> founded = repo.findByUserIdAndStudyIdIn(userId, studyIds);
+		Map<Long, StudyRights> userRights = getUserRights(userId);
+		StudyUserRight right = StudyUserRight.valueOf(rightStr);
 		Set<Long> validIds = new HashSet<>();
-		if (founded != null) {
-			for (StudyUser su : founded) {
-				if (su.getStudyUserRights().contains(StudyUserRight.valueOf(rightStr)) && su.isConfirmed()) {
-					validIds.add(su.getStudyId());
-				}
-			}			
+		for (Long studyId : studyIds) {
+			StudyRights su = userRights.get(studyId);
+			if (su != null && su.hasRight(right) && su.confirmed()) {
+				validIds.add(studyId);
+			}
 		}
 		return validIds;
 	}
@@ -139,16 +160,88 @@ public class StudyRightsService {
 		if (userId == null) {
 			throw new IllegalStateException("UserId should not be null. Cannot check rights.");
 		}
-		Iterable<StudyUser> founded = repo.findByUserId(userId);
-		if (founded != null) {
-			for (StudyUser su : founded) {
-				if (su.getStudyUserRights().contains(StudyUserRight.valueOf(rightStr)) && su.isConfirmed()) {
-					return true;
-				}
-			}			
+		StudyUserRight right = StudyUserRight.valueOf(rightStr);
+		for (StudyRights su : getUserRights(userId).values()) {
+			if (su.hasRight(right) && su.confirmed()) {
+				return true;
+			}
 		}
 		return false;
 	}
-    
 
-}
\ No newline at end of file
+	/**
+	 * Forgets the rights of the given users, to be called when their study users change.
+	 *
+	 * @param userIds the user ids, null to forget the rights of all the users
+	 */
+	public void evictRights(Collection<Long> userIds) {
+		synchronized (rightsByUser) {
+			rightsGeneration.incrementAndGet();
+			if (userIds == null) {
+				rightsByUser.clear();
+			} else {
+				rightsByUser.keySet().removeAll(userIds);
+			}
+		}
+	}
+
+	/**
+	 * @return the rights of the user by study id, loaded from the database if not in memory
+	 */
+	private Map<Long, StudyRights> getUserRights(Long userId) {
+		UserRights userRights = rightsByUser.get(userId);
+		if (userRights == null || userRights.isExpired(rightsCacheTtlSeconds)) {
+			long generation = rightsGeneration.get();
+			userRights = loadUserRights(userId);
+			synchronized (rightsByUser) {
+				if (generation == rightsGeneration.get()) {
+					rightsByUser.put(userId, userRights);
+				}
+			}
+		}
+		return userRights.byStudy();
+	}
+
+	private UserRights loadUserRights(Long userId) {
+		Map<Long, StudyRights> byStudy = new HashMap<>();
+		Iterable<StudyUser> studyUsers = repo.findByUserId(userId);
+		if (studyUsers != null) {
+			for (StudyUser su : studyUsers) {
+				byStudy.put(su.getStudyId(), StudyRights.of(su));
+			}
+		}
+		return new UserRights(Collections.unmodifiableMap(byStudy), System.currentTimeMillis());
+	}
+
+	/**
+	 * The rights of a user on his studies, and their loading date.
+	 */
+	private record UserRights(Map<Long, StudyRights> byStudy, long loadedAt) {
+
+		boolean isExpired(long ttlSeconds) {
+			return System.currentTimeMillis() - loadedAt > TimeUnit.SECONDS.toMillis(ttlSeconds);
+		}
+	}
+
+	/**
+	 * The rights of a user on a study: one bit by right id.
+	 */
+	private record StudyRights(long rights, boolean confirmed, List<Long> centerIds) {
+
+		static StudyRights of(StudyUser su) {
+			long rights = 0;
+			if (su.getStudyUserRights() != null) {
+				for (StudyUserRight right : su.getStudyUserRights()) {
+					rights |= 1L << right.getId();
+				}
+			}
+			List<Long> centerIds = CollectionUtils.isEmpty(su.getCenterIds()) ? Collections.emptyList() : List.copyOf(su.getCenterIds());
+			return new StudyRights(rights, su.isConfirmed(), centerIds);
+		}
+
+		boolean hasRight(StudyUserRight right) {
+			return (rights & (1L << right.getId())) != 0;
+		}
+	}
+
+}
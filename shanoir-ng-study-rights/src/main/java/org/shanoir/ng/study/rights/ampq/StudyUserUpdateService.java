@@ -15,6 +15,7 @@
 package org.shanoir.ng.study.rights.ampq;
 
 import org.shanoir.ng.shared.security.rights.StudyUserRight;
+import org.shanoir.ng.study.rights.StudyRightsService;
 import org.shanoir.ng.study.rights.StudyUser;
 import org.shanoir.ng.study.rights.StudyUserRightsRepository;
 import org.shanoir.ng.study.rights.command.CommandType;
@@ -35,6 +36,9 @@ public class StudyUserUpdateService {
 	@Autowired
 	private StudyUserRightsRepository studyUserRepository;
 
+	@Autowired
+	private StudyRightsService studyRightsService;
+
 	public void processCommands(Iterable<StudyUserCommand> commands) {
 
 		List<StudyUser> toBeCreated = new ArrayList<>();
@@ -85,9 +89,21 @@ public class StudyUserUpdateService {
 			LOG.debug("Updating {} study-user(s)", updateSize);
 			studyUserRepository.saveAll(toBeUpdatedDb);
 		}
+		// users whose rights changed: their rights kept in memory by StudyRightsService are now outdated
+		Set<Long> userIds = new HashSet<>();
+		for (StudyUser su : toBeCreated) {
+			userIds.add(su.getUserId());
+		}
+		for (StudyUser su : toBeUpdatedDb) {
+			userIds.add(su.getUserId());
+		}
 		if (!toBeDeleted.isEmpty()) {
+			for (StudyUser su : studyUserRepository.findAllById(toBeDeleted)) {
+				userIds.add(su.getUserId());
+			}
 			LOG.debug("Deleting {} study-user(s)", toBeDeleted.size());
 			studyUserRepository.deleteByIdIn(toBeDeleted);
 		}
+		studyRightsService.evictRights(userIds);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,139 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+
+package org.shanoir.ng.events;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Write-behind store of the events: the received events are saved in database
+ * every write-behind-ms, and the successive updates of the same event received
+ * in the meantime are saved only once, with their last state.
+ * 
+ * The updates of an event do not carry its creation date: the date of the first
+ * state received is kept for the events in progress and set on their next states.
+ */
+@Component
+public class ShanoirEventStore {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ShanoirEventStore.class);
+
+	private static final int IN_PROGRESS = org.shanoir.ng.shared.event.ShanoirEvent.IN_PROGRESS;
+
+	/** Max number of creation dates kept, for the events never ended */
+	private static final int MAX_CREATION_DATES = 10000;
+
+	@Autowired
+	private ShanoirEventRepository repository;
+
+	/** Events waiting to be saved, by id */
+	private Map<Long, ShanoirEvent> pendingEvents = new HashMap<>();
+
+	/** Creation dates of the events in progress, by id */
+	private final Map<Long, Date> creationDates = new LinkedHashMap<>() {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Date> eldest) {
+			return size() > MAX_CREATION_DATES;
+		}
+	};
+
+	private final AtomicLong receivedEvents = new AtomicLong();
+
+	private final AtomicLong savedEvents = new AtomicLong();
+
+	public void add(ShanoirEvent event) {
+		receivedEvents.incrementAndGet();
+		if (event.getCreationDate() == null) {
+			event.setCreationDate(getCreationDate(event));
+		}
+		synchronized (this) {
+			pendingEvents.put(event.getId(), event);
+			if (event.getStatus() == IN_PROGRESS) {
+				creationDates.putIfAbsent(event.getId(), event.getCreationDate());
+			} else {
+				creationDates.remove(event.getId());
+			}
+		}
+	}
+
+	/**
+	 * @return the creation date of the first state received, read from the database
+	 * for an event in progress not received yet (started before a restart), now otherwise
+	 */
+	private Date getCreationDate(ShanoirEvent event) {
+		synchronized (this) {
+			Date creationDate = creationDates.get(event.getId());
+			if (creationDate != null) {
+				return creationDate;
+			}
+		}
+		if (event.getStatus() == IN_PROGRESS) {
+			Date creationDate = repository.findById(event.getId()).map(ShanoirEvent::getCreationDate).orElse(null);
+			if (creationDate != null) {
+				return creationDate;
+			}
+		}
+		return new Date();
+	}
+
+	/**
+	 * @param id
+	 * @return the last state of the event if it is not saved yet, null otherwise
+	 */
+	public synchronized ShanoirEvent getPending(Long id) {
+		return pendingEvents.get(id);
+	}
+
+	@Scheduled(fixedDelayString = "${events.write-behind-ms:500}")
+	@PreDestroy
+	public void flush() {
+		Map<Long, ShanoirEvent> events;
+		synchronized (this) {
+			if (pendingEvents.isEmpty()) {
+				return;
+			}
+			events = pendingEvents;
+			pendingEvents = new HashMap<>();
+		}
+		List<ShanoirEvent> toSave = new ArrayList<>(events.values());
+		try {
+			repository.saveAll(toSave);
+			savedEvents.addAndGet(toSave.size());
+			LOG.debug("{} events saved, {} received events for {} saved events.", toSave.size(), receivedEvents.get(), savedEvents.get());
+		} catch (Exception e) {
+			LOG.error("Error while saving {} events, retrying at next flush.", toSave.size(), e);
+			synchronized (this) {
+				// keep the newer states received in the meantime
+				for (ShanoirEvent event : toSave) {
+					pendingEvents.putIfAbsent(event.getId(), event);
+				}
+			}
+		}
+	}
+
+}
@@ -1,14 +1,12 @@
 package org.shanoir.ng.events;
 
-import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateUtils;
 import org.shanoir.ng.shared.event.ShanoirEventType;
-import org.shanoir.ng.tasks.AsyncTaskApiController;
-import org.shanoir.ng.tasks.UserSseEmitter;
+import org.shanoir.ng.tasks.UserSseEmitters;
 import org.shanoir.ng.user.model.User;
 import org.shanoir.ng.user.model.dto.UserDTO;
 import org.shanoir.ng.user.repository.UserRepository;
@@ -21,13 +19,11 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.util.Pair;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.access.prepost.PostAuthorize;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
-import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /**
  * Service managing ShanoirEvents
@@ -45,13 +41,17 @@ public class ShanoirEventsService {
 	@Autowired
 	UserRepository userRepository;
 
+	@Autowired
+	ShanoirEventStore eventStore;
+
+	@Autowired
+	UserSseEmitters userSseEmitters;
+
 	private static final Logger LOG = LoggerFactory.getLogger(ShanoirEventsService.class);
 
 	public void addEvent(ShanoirEvent event) {
-		// Call repository
-		repository.save(event);
-		// This is sad but with the @CreationTimestamp the date is not returned by the save method 
-		ShanoirEvent saved = repository.findById(event.getId()).orElse(null);
+		// Saved later, with the following updates of the same event
+		eventStore.add(event);
 		// Push notification to UI
 		if (ShanoirEventType.IMPORT_DATASET_EVENT.equals(event.getEventType())
 			  || ShanoirEventType.EXECUTION_MONITORING_EVENT.equals(event.getEventType())
@@ -59,7 +59,7 @@ public class ShanoirEventsService {
 				|| ShanoirEventType.COPY_DATASET_EVENT.equals(event.getEventType())
 				|| ShanoirEventType.CHECK_QUALITY_EVENT.equals(event.getEventType())
 				|| ShanoirEventType.DOWNLOAD_STATISTICS_EVENT.equals(event.getEventType())) {
-			sendSseEventsToUI(saved);
+			sendSseEventsToUI(event);
 		}
 	}
 
@@ -94,51 +94,36 @@ public class ShanoirEventsService {
 	}
 
 	/**
-	 * Sends an event using an emiter
+	 * Sends an event using the emitters of its user
 	 * @param notification the event to send
 	 */
 	public void sendSseEventsToUI(ShanoirEvent notification) {
-        List<UserSseEmitter> sseEmitterListToRemove = new ArrayList<>();
-        AsyncTaskApiController.emitters.forEach((UserSseEmitter emitter) -> {
-			// ! IMPORTANT filter on user id
-			if (notification.getUserId() != null && notification.getUserId().equals(emitter.getUserId())) {
-				if (notification.getLastUpdate() == null) {
-					notification.setLastUpdate(new Date());
-				}
-				try {
-					emitter.send(notification, MediaType.APPLICATION_JSON);
-				} catch (IOException e2) {
-					emitter.complete();
-					sseEmitterListToRemove.add(emitter);
-					LOG.error("Error while send task to UI ", e2);
-				} catch (Exception e) {
-					emitter.complete();
-					sseEmitterListToRemove.add(emitter);
-					LOG.error("Error while send task to UI ", e);
-					throw e;
-				}
-			}
-        });
-        AsyncTaskApiController.emitters.removeAll(sseEmitterListToRemove);
-    }
+		// ! IMPORTANT filter on user id
+		if (notification.getUserId() == null) {
+			return;
+		}
+		// The creation date is kept by the event store, the dates are set when saved
+		Date now = new Date();
+		if (notification.getCreationDate() == null) {
+			notification.setCreationDate(now);
+		}
+		if (notification.getLastUpdate() == null) {
+			notification.setLastUpdate(now);
+		}
+		userSseEmitters.send(notification.getUserId(), notification);
+	}
 
 	@Scheduled(fixedDelay = 30000)
 	private void keepConnectionAlive( ) {
-        List<SseEmitter> sseEmitterListToRemove = new ArrayList<>();
-        AsyncTaskApiController.emitters.forEach((SseEmitter emitter) -> {
-            try {
-                emitter.send("{}", MediaType.APPLICATION_JSON);
-            } catch (Exception e) {
-            	// This happens when the user's connection reset, do not log anything.
-            	emitter.complete();
-                sseEmitterListToRemove.add(emitter);
-            }
-        });
-        AsyncTaskApiController.emitters.removeAll(sseEmitterListToRemove);
+		userSseEmitters.sendToAll("{}");
 	}
 
 	public ShanoirEvent findById(Long taskId) {
 		Long userId = KeycloakUtil.getTokenUserId();
+		ShanoirEvent pending = eventStore.getPending(taskId);
+		if (pending != null && userId.equals(pending.getUserId())) {
+			return pending;
+		}
 		return repository.findByIdAndUserId(taskId, userId);
 	}
 
@@ -31,7 +31,8 @@ public class AsyncTaskApiController implements AsyncTaskApi {
 	@Autowired
 	ShanoirEventsService taskService;
 
-    public static final List<UserSseEmitter> emitters = Collections.synchronizedList(new ArrayList<>());
+	@Autowired
+	UserSseEmitters userSseEmitters;
 
 	@Override
 	public ResponseEntity<List<ShanoirEventLight>> findTasks() {
@@ -71,8 +72,7 @@ public class AsyncTaskApiController implements AsyncTaskApi {
     public ResponseEntity<SseEmitter> updateTasks() throws IOException {
 	long userId = KeycloakUtil.getTokenUserId();
         UserSseEmitter emitter = new UserSseEmitter(userId);
-        emitters.add(emitter);
-        emitter.onCompletion(() -> emitters.remove(emitter));
+        userSseEmitters.add(emitter);
         return new ResponseEntity<>(emitter,HttpStatus.OK);
     }
 }
@@ -0,0 +1,135 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+
+package org.shanoir.ng.tasks;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * The SSE emitters of the connected users, indexed by user id.
+ *
+ * The sends are done by sse-threads single thread executors, the user id choosing
+ * the executor: the events of a user are sent in order, and a slow connection
+ * only delays the users sharing its executor.
+ */
+@Component
+public class UserSseEmitters {
+
+	private static final Logger LOG = LoggerFactory.getLogger(UserSseEmitters.class);
+
+	@Value("${events.sse-threads:4}")
+	private int sseThreads;
+
+	private final Map<Long, Set<UserSseEmitter>> emittersByUser = new ConcurrentHashMap<>();
+
+	private ExecutorService[] executors;
+
+	@PostConstruct
+	public void init() {
+		executors = new ExecutorService[sseThreads];
+		for (int i = 0; i < sseThreads; i++) {
+			executors[i] = Executors.newSingleThreadExecutor();
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		for (ExecutorService executor : executors) {
+			executor.shutdownNow();
+		}
+	}
+
+	public void add(UserSseEmitter emitter) {
+		emittersByUser.computeIfAbsent(emitter.getUserId(), id -> ConcurrentHashMap.newKeySet()).add(emitter);
+		emitter.onCompletion(() -> remove(emitter));
+		emitter.onTimeout(() -> remove(emitter));
+		emitter.onError(e -> remove(emitter));
+	}
+
+	private void remove(UserSseEmitter emitter) {
+		emittersByUser.computeIfPresent(emitter.getUserId(), (id, emitters) -> {
+			emitters.remove(emitter);
+			return emitters.isEmpty() ? null : emitters;
+		});
+	}
+
+	/**
+	 * Sends asynchronously the data to the emitters of the user.
+	 *
+	 * @param userId
+	 * @param data
+	 */
+	public void send(Long userId, Object data) {
+		if (!emittersByUser.containsKey(userId)) {
+			return;
+		}
+		getExecutor(userId).execute(() -> {
+			Set<UserSseEmitter> emitters = emittersByUser.get(userId);
+			if (emitters != null) {
+				for (UserSseEmitter emitter : emitters) {
+					send(emitter, data, true);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Sends asynchronously the data to all the emitters, without logging the errors.
+	 *
+	 * @param data
+	 */
+	public void sendToAll(Object data) {
+		for (Long userId : emittersByUser.keySet()) {
+			getExecutor(userId).execute(() -> {
+				Set<UserSseEmitter> emitters = emittersByUser.get(userId);
+				if (emitters != null) {
+					for (UserSseEmitter emitter : emitters) {
+						send(emitter, data, false);
+					}
+				}
+			});
+		}
+	}
+
+	private void send(UserSseEmitter emitter, Object data, boolean logError) {
+		try {
+			emitter.send(data, MediaType.APPLICATION_JSON);
+		} catch (Exception e) {
+			// This happens when the user's connection reset
+			if (logError) {
+				LOG.error("Error while send task to UI ", e);
+			}
+			emitter.complete();
+			remove(emitter);
+		}
+	}
+
+	private ExecutorService getExecutor(Long userId) {
+		return executors[(int) Math.floorMod(userId, (long) executors.length)];
+	}
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Shanoir NG - Import, manage and share neuroimaging data
+ * Copyright (C) 2009-2019 Inria - https://www.inria.fr/
+ * Contact us on https://project.inria.fr/shanoir/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/gpl-3.0.html
+ */
+
+package org.shanoir.ng.events;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.BDDMockito.given;
+
+import java.util.Date;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+/**
+ * The updates of an event keep the creation date of its first state.
+ */
+@ExtendWith(MockitoExtension.class)
+public class ShanoirEventStoreTest {
+
+	private static final int IN_PROGRESS = 2;
+
+	private static final int SUCCESS = 1;
+
+	@Mock
+	private ShanoirEventRepository repository;
+
+	@InjectMocks
+	private ShanoirEventStore eventStore;
+
+	@Test
+	public void creationDateKeptByUpdates() {
+		given(repository.findById(1L)).willReturn(Optional.empty());
+		ShanoirEvent first = createEvent(1L, IN_PROGRESS);
+		eventStore.add(first);
+		eventStore.flush();
+		ShanoirEvent update = createEvent(1L, IN_PROGRESS);
+		eventStore.add(update);
+		ShanoirEvent last = createEvent(1L, SUCCESS);
+		eventStore.add(last);
+
+		assertEquals(first.getCreationDate(), update.getCreationDate());
+		assertEquals(first.getCreationDate(), last.getCreationDate());
+		// read once, for the first state
+		Mockito.verify(repository, Mockito.times(1)).findById(1L);
+	}
+
+	@Test
+	public void creationDateReadForEventStartedBefore() {
+		Date creationDate = new Date(0);
+		ShanoirEvent saved = createEvent(2L, IN_PROGRESS);
+		saved.setCreationDate(creationDate);
+		given(repository.findById(2L)).willReturn(Optional.of(saved));
+		ShanoirEvent update = createEvent(2L, IN_PROGRESS);
+		eventStore.add(update);
+
+		assertEquals(creationDate, update.getCreationDate());
+	}
+
+	private ShanoirEvent createEvent(Long id, int status) {
+		ShanoirEvent event = new ShanoirEvent();
+		event.setId(id);
+		event.setStatus(status);
+		return event;
+	}
+
+}
@@ -76,6 +76,20 @@ public class ShUpConfig {
 
 	public static final String PASSWORD = "password";
 
+	public static final String IMPORT_TABLE_DOWNLOAD_THREADS = "import.table.download.threads";
+
+	public static final String IMPORT_TABLE_PSEUDONYMIZE_THREADS = "import.table.pseudonymize.threads";
+
+	public static final String IMPORT_TABLE_LINES_IN_FLIGHT = "import.table.lines.in.flight";
+
+	public static final String UPLOAD_BATCH_SIZE = "upload.batch.size";
+
+	public static final String UPLOAD_BATCHES_IN_FLIGHT = "upload.batches.in.flight";
+
+	public static final String UPLOAD_BATCH_ATTEMPTS = "upload.batch.attempts";
+
+	public static final String UPLOAD_PROGRESS_WRITE_INTERVAL_MS = "upload.progress.write.interval.ms";
+
 	/**
 	 * Static variables
 	 */
@@ -129,4 +143,16 @@ public class ShUpConfig {
 		return Boolean.parseBoolean(profileProperties.getProperty(MODE_SUBJECT_STUDY_IDENTIFIER));
 	}
 
+	/**
+	 * @return the positive integer value of the property, or defaultValue if missing or invalid
+	 */
+	public static int getIntProperty(Properties properties, String key, int defaultValue) {
+		try {
+			int value = Integer.parseInt(properties.getProperty(key, "").trim());
+			return value > 0 ? value : defaultValue;
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
 }
@@ -19,7 +19,7 @@ public class ShUpOnloadConfig {
 
 	private static File workFolder;
 
-	private static IDicomServerClient dicomServerClient;
+	private static volatile IDicomServerClient dicomServerClient;
 
 	private static CurrentNominativeDataController currentNominativeDataController;
 
@@ -38,6 +38,16 @@ public class ShUpOnloadConfig {
 	/** Instance unique pré-initialisée */
 	private static ShUpOnloadConfig INSTANCE = new ShUpOnloadConfig();
 
+	static {
+		// close the connections of the DICOM server client at exit
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			IDicomServerClient client = dicomServerClient;
+			if (client != null) {
+				client.close();
+			}
+		}));
+	}
+
 	/** Point d'accès pour l'instance unique du singleton */
 	public static ShUpOnloadConfig getInstance() {
 		return INSTANCE;
@@ -55,8 +65,13 @@ public class ShUpOnloadConfig {
 		return dicomServerClient;
 	}
 
-	public static void setDicomServerClient(IDicomServerClient dicomServerClient) {
+	public static synchronized void setDicomServerClient(IDicomServerClient dicomServerClient) {
+		IDicomServerClient previousClient = ShUpOnloadConfig.dicomServerClient;
 		ShUpOnloadConfig.dicomServerClient = dicomServerClient;
+		// the replaced client, for example after a change of the PACS configuration, is closed
+		if (previousClient != null && previousClient != dicomServerClient) {
+			previousClient.close();
+		}
 	}
 
 	public static CurrentNominativeDataController getCurrentNominativeDataController() {
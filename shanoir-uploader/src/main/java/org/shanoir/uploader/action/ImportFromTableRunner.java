@@ -17,6 +17,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.JTabbedPane;
 import javax.swing.SwingWorker;
@@ -52,6 +59,13 @@ import org.shanoir.uploader.utils.ImportUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Imports the lines of a table as a pipeline: each line goes through the stages
+ * PACS query, download (C-MOVE and analysis of the DICOM files), preparation on
+ * the server (study card, subject, examination) and pseudonymization, the upload
+ * being done afterwards by the UploadServiceJob. Each stage has its own threads,
+ * so that line N+1 is downloaded while line N is pseudonymized or uploaded.
+ */
 public class ImportFromTableRunner extends SwingWorker<Void, Integer> {
 
 	private static final Logger logger = LoggerFactory.getLogger(ImportFromTableRunner.class);
@@ -109,29 +123,49 @@ public class ImportFromTableRunner extends SwingWorker<Void, Integer> {
 			}
 		}
 
-		boolean success = true;
-		int i = 1;
-
-		for (ImportJob importJob : importJobs.values()) {
-			importFromTableWindow.progressBar.setString("Preparing import " + i + "/" + this.importJobs.size());
-			importFromTableWindow.progressBar.setValue(100*i/this.importJobs.size() + 1);
-			try {
-				String patientName = importJob.getDicomQuery().getPatientName();
-				String patientID = importJob.getDicomQuery().getPatientID();
-				String studyDate = importJob.getDicomQuery().getStudyDate();
-				String importJobIdentifier = "[Line: " + i + ", patientName: " + patientName + ", patientID: " + patientID + ", studyDate: " + studyDate + "]";
-				logger.info("\r\n------------------------------------------------------\r\n"
-					+ "Starting importJob " + importJobIdentifier + "\r\n"
-					+ "------------------------------------------------------");
-				success = importData(importJob, study, acquisitionEquipments) && success;
-				logger.info("\r\n------------------------------------------------------\r\n"
-					+ "Finished importJob " + importJobIdentifier + ", success?: " + success+ "\r\n"
-					+ "------------------------------------------------------");
-			} catch(Exception exception) {
-				logger.error(exception.getMessage(), exception);
+		final List<AcquisitionEquipment> equipments = acquisitionEquipments;
+		int downloadThreads = ShUpConfig.getIntProperty(ShUpConfig.basicProperties, ShUpConfig.IMPORT_TABLE_DOWNLOAD_THREADS, 1);
+		int pseudonymizeThreads = ShUpConfig.getIntProperty(ShUpConfig.basicProperties, ShUpConfig.IMPORT_TABLE_PSEUDONYMIZE_THREADS, 2);
+		int maxLinesInFlight = ShUpConfig.getIntProperty(ShUpConfig.basicProperties, ShUpConfig.IMPORT_TABLE_LINES_IN_FLIGHT, 4);
+		ExecutorService queryExecutor = Executors.newSingleThreadExecutor();
+		ExecutorService downloadExecutor = Executors.newFixedThreadPool(downloadThreads);
+		// study cards, equipments and subjects are found or created in shared lists: one line at a time
+		ExecutorService prepareExecutor = Executors.newSingleThreadExecutor();
+		ExecutorService pseudonymizeExecutor = Executors.newFixedThreadPool(pseudonymizeThreads);
+		// bounds the lines waiting in the queues of the stages
+		Semaphore linesInFlight = new Semaphore(maxLinesInFlight);
+		AtomicInteger finishedLines = new AtomicInteger();
+		List<CompletableFuture<Boolean>> results = new ArrayList<CompletableFuture<Boolean>>();
+		importFromTableWindow.progressBar.setString("Import 0/" + this.importJobs.size());
+		try {
+			int i = 1;
+			for (ImportJob importJob : importJobs.values()) {
+				linesInFlight.acquire();
+				ImportLine line = new ImportLine(i, importJob);
+				CompletableFuture<Boolean> result = CompletableFuture.completedFuture(true);
+				result = nextStage(result, line, () -> queryAndSelectSeries(line), queryExecutor);
+				result = nextStage(result, line, () -> download(line), downloadExecutor);
+				result = nextStage(result, line, () -> prepareImport(line, study, equipments), prepareExecutor);
+				result = nextStage(result, line, () -> pseudonymizeAndScheduleUpload(line), pseudonymizeExecutor);
+				results.add(result.whenComplete((lineSuccess, exception) -> {
+					linesInFlight.release();
+					logger.info("\r\n------------------------------------------------------\r\n"
+						+ "Finished importJob " + line.identifier + ", success?: " + lineSuccess + "\r\n"
+						+ "------------------------------------------------------");
+					int finished = finishedLines.incrementAndGet();
+					importFromTableWindow.progressBar.setString("Import " + finished + "/" + this.importJobs.size());
+					importFromTableWindow.progressBar.setValue(100 * finished / this.importJobs.size());
+				}));
+				i++;
 			}
-			i++;
+			CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+		} finally {
+			queryExecutor.shutdownNow();
+			downloadExecutor.shutdownNow();
+			prepareExecutor.shutdownNow();
+			pseudonymizeExecutor.shutdownNow();
 		}
+		boolean success = results.stream().allMatch(CompletableFuture::join);
 
 		if (success) {
 			importFromTableWindow.progressBar.setString("Success !");
@@ -147,7 +181,30 @@ public class ImportFromTableRunner extends SwingWorker<Void, Integer> {
 		return null;
 	}
 
-	private boolean importData(ImportJob importJob, org.shanoir.uploader.model.rest.Study studyREST, List<AcquisitionEquipment> acquisitionEquipments) throws UnsupportedEncodingException, NoSuchAlgorithmException, PseudonymusException {
+	/**
+	 * Runs the stage of a line with the executor of the stage, once the previous stage
+	 * succeeded. A line in error skips the next stages.
+	 */
+	private CompletableFuture<Boolean> nextStage(CompletableFuture<Boolean> previous, ImportLine line, Callable<Boolean> stage, Executor executor) {
+		return previous.thenCompose(success -> success
+			? CompletableFuture.supplyAsync(() -> runStage(line, stage), executor)
+			: CompletableFuture.completedFuture(false));
+	}
+
+	private boolean runStage(ImportLine line, Callable<Boolean> stage) {
+		try {
+			return stage.call();
+		} catch (Exception exception) {
+			logger.error(line.identifier + ": " + exception.getMessage(), exception);
+			return false;
+		}
+	}
+
+	private boolean queryAndSelectSeries(ImportLine line) throws UnsupportedEncodingException, NoSuchAlgorithmException, PseudonymusException {
+		ImportJob importJob = line.importJob;
+		logger.info("\r\n------------------------------------------------------\r\n"
+			+ "Starting importJob " + line.identifier + "\r\n"
+			+ "------------------------------------------------------");
 		logger.info("1. Query PACS");
 		List<Patient> patients = null;
 		try {
@@ -240,25 +297,32 @@ public class ImportFromTableRunner extends SwingWorker<Void, Integer> {
 		importJob.setPatient(dicomPatient);
 		Subject subject = dOCAL.createSubjectFromPatient(dicomPatient);
 		importJob.setSubject(subject);
+		line.dicomStudy = dicomStudy;
+		line.subject = subject;
+		return true;
+	}
 
+	private boolean download(ImportLine line) {
+		ImportJob importJob = line.importJob;
 		logger.info("3. Download from PACS");
 		/**
-		 * For the moment the ImportFromTableRunner processes line-by-line, study-by-study,
-		 * so we only send one import job to the DownloadOrCopyRunnable, to download only
-		 * one DICOM study, as the code after directly finishes the import of this study.
+		 * Each line is one DICOM study, so we only send one import job to the
+		 * DownloadOrCopyRunnable, which runs in the thread of the download stage.
 		 */
 		HashMap<String, ImportJob> downloadImportJobs = new HashMap<String, ImportJob>();
-		downloadImportJobs.put(dicomStudy.getStudyInstanceUID(), importJob);
-		Runnable downloadRunnable = new DownloadOrCopyRunnable(true, importFromTableWindow.frame, importFromTableWindow.downloadProgressBar,  dicomServerClient, dicomFileAnalyzer,  null, downloadImportJobs);
-		Thread downloadThread = new Thread(downloadRunnable);
-		downloadThread.start();
-		while (downloadThread.isAlive()) {
-			// wait for download thread to finish 
-		}
-		File uploadJobFile = new File(importJob.getWorkFolder() + File.separator + UploadJobManager.UPLOAD_JOB_XML);
-		UploadJobManager uploadJobManager = new UploadJobManager(uploadJobFile);
-		UploadJob uploadJob = uploadJobManager.readUploadJob();
+		downloadImportJobs.put(line.dicomStudy.getStudyInstanceUID(), importJob);
+		new DownloadOrCopyRunnable(true, importFromTableWindow.frame, importFromTableWindow.downloadProgressBar,  dicomServerClient, dicomFileAnalyzer,  null, downloadImportJobs).run();
+		line.uploadJobFile = new File(importJob.getWorkFolder() + File.separator + UploadJobManager.UPLOAD_JOB_XML);
+		UploadJobManager uploadJobManager = new UploadJobManager(line.uploadJobFile);
+		line.uploadJob = uploadJobManager.readUploadJob();
+		return true;
+	}
 
+	private boolean prepareImport(ImportLine line, org.shanoir.uploader.model.rest.Study studyREST, List<AcquisitionEquipment> acquisitionEquipments) {
+		ImportJob importJob = line.importJob;
+		UploadJob uploadJob = line.uploadJob;
+		Subject subject = line.subject;
+		Study dicomStudy = line.dicomStudy;
 		logger.info("4. Find matching study card in selected study or create a new study card");
 		StudyCard studyCard = null;
 		List<StudyCard> studyCards = studyREST.getStudyCards();
@@ -445,12 +509,15 @@ public class ImportFromTableRunner extends SwingWorker<Void, Integer> {
 		importJob.setDicomQuery(null); // clean up, as not necessary anymore
 		importJob.setPatientVerification(null); // avoid sending patient info to server
 		ImportUtils.prepareImportJob(importJob, subjectREST.getName(), subjectREST.getId(), examinationId, studyREST, studyCard);
-		Runnable importRunnable = new ImportFinishRunnable(uploadJob, uploadJobFile.getParentFile(), importJob, subjectREST.getName());
-		Thread importThread = new Thread(importRunnable);
-		importThread.start();
-		while (importThread.isAlive()) {
-			// wait for import thread to finish 
-		}
+		line.subjectName = subjectREST.getName();
+		return true;
+	}
+
+	/**
+	 * Pseudonymizes the DICOM files of the line and schedules their upload.
+	 */
+	private boolean pseudonymizeAndScheduleUpload(ImportLine line) {
+		new ImportFinishRunnable(line.uploadJob, line.uploadJobFile.getParentFile(), line.importJob, line.subjectName).run();
 		return true;
 	}
 
@@ -546,4 +613,33 @@ public class ImportFromTableRunner extends SwingWorker<Void, Integer> {
 		return searchedElement.equalsIgnoreCase(filter);
 	}
 
+	/**
+	 * A line of the table and what its stages found or created.
+	 */
+	private static class ImportLine {
+
+		private final ImportJob importJob;
+
+		private final String identifier;
+
+		private Study dicomStudy;
+
+		private Subject subject;
+
+		private File uploadJobFile;
+
+		private UploadJob uploadJob;
+
+		private String subjectName;
+
+		private ImportLine(int number, ImportJob importJob) {
+			this.importJob = importJob;
+			String patientName = importJob.getDicomQuery().getPatientName();
+			String patientID = importJob.getDicomQuery().getPatientID();
+			String studyDate = importJob.getDicomQuery().getStudyDate();
+			this.identifier = "[Line: " + number + ", patientName: " + patientName + ", patientID: " + patientID + ", studyDate: " + studyDate + "]";
+		}
+
+	}
+
 }
@@ -204,9 +204,9 @@ public class DicomServerClient implements IDicomServerClient {
 	}
 
 	private void downloadFromDicomServer(String studyInstanceUID, List<Serie> selectedSeries, final JProgressBar progressBar, StringBuilder downloadOrCopyReport) throws Exception {
-		// 1. query instances/images for selected series to get DICOM file names
-		for (Serie serie : selectedSeries) {
-			queryPACSService.queryCFINDInstances(studyInstanceUID, serie);
+		// 1. query instances/images for selected series to get DICOM file names, over one association
+		queryPACSService.queryCFINDInstances(studyInstanceUID, selectedSeries);
+		for (Serie serie : new ArrayList<Serie>(selectedSeries)) {
 			List<Instance> instances = serie.getInstances();
 			if (instances == null || instances.isEmpty()) {
 				downloadOrCopyReport.append("Error: Download: serie " + serie.getSeriesDescription() + " has no images (ignored).\n");
@@ -233,4 +233,16 @@ public class DicomServerClient implements IDicomServerClient {
 		return workFolder;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.shanoir.uploader.dicom.IDicomServerClient#close()
+	 */
+	@Override
+	public void close() {
+		// ShUp does not run the Spring lifecycle of the QueryPACSService
+		queryPACSService.closeAssociationPool();
+		logger.info("DicomServerClient closed.");
+	}
+
 }
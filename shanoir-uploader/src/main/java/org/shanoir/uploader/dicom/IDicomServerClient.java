@@ -46,4 +46,9 @@ public interface IDicomServerClient {
 	 */
 	public File getWorkFolder();
 
+	/**
+	 * Closes the connections to the DICOM server, when the client is replaced or at exit.
+	 */
+	public void close();
+
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.List;
 
 import javax.net.ssl.SSLContext;
 
@@ -71,7 +72,10 @@ public class HttpService {
 
 	private CloseableHttpClient httpClient;
 	
-	private HttpClientContext context;
+	/** Proxy authentication, shared by the contexts of the requests (thread safe) */
+	private BasicCredentialsProvider proxyCredentialsProvider;
+
+	private AuthCache proxyAuthCache;
 
 	public HttpService(String serverURL) {
 		try {
@@ -93,7 +97,7 @@ public class HttpService {
 		try {
 			HttpGet httpGet = new HttpGet(url);
 			httpGet.addHeader("Authorization", "Bearer " + ShUpOnloadConfig.getTokenString());
-			CloseableHttpResponse response = httpClient.execute(httpGet, context);
+			CloseableHttpResponse response = httpClient.execute(httpGet, createHttpClientContext());
 			return response;
 		} catch (Exception e) {
 			logger.error(e.getMessage(), e);
@@ -111,7 +115,7 @@ public class HttpService {
 			}
 			StringEntity requestEntity = new StringEntity(json, ContentType.APPLICATION_JSON);
 			httpPost.setEntity(requestEntity);
-			CloseableHttpResponse response = httpClient.execute(httpPost, context);
+			CloseableHttpResponse response = httpClient.execute(httpPost, createHttpClientContext());
 			return response;				
 		} catch (Exception e) {
 			logger.error(e.getMessage(), e);
@@ -127,7 +131,28 @@ public class HttpService {
 			builder.addBinaryBody("file", file, ContentType.create("application/octet-stream"), file.getName());
 			HttpEntity entity = builder.build();
 			httpPost.setEntity(entity);
-			CloseableHttpResponse response = httpClient.execute(httpPost, context);
+			CloseableHttpResponse response = httpClient.execute(httpPost, createHttpClientContext());
+			return response;
+		} catch (Exception e) {
+			logger.error(e.getMessage(), e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Posts several files with one multipart request, the files being streamed from disk.
+	 */
+	public CloseableHttpResponse postFiles(String url, String tempDirId, List<File> files) throws Exception {
+		try {
+			HttpPost httpPost = new HttpPost(url + "/" + tempDirId);
+			httpPost.addHeader("Authorization", "Bearer " + ShUpOnloadConfig.getTokenString());
+			MultipartEntityBuilder builder = MultipartEntityBuilder.create();
+			for (File file : files) {
+				builder.addBinaryBody("file", file, ContentType.create("application/octet-stream"), file.getName());
+			}
+			HttpEntity entity = builder.build();
+			httpPost.setEntity(entity);
+			CloseableHttpResponse response = httpClient.execute(httpPost, createHttpClientContext());
 			return response;
 		} catch (Exception e) {
 			logger.error(e.getMessage(), e);
@@ -143,7 +168,7 @@ public class HttpService {
 			builder.addBinaryBody("file", file, ContentType.create("application/octet-stream"), file.getName());
 			HttpEntity entity = builder.build();
 			httpPost.setEntity(entity);
-			CloseableHttpResponse response = httpClient.execute(httpPost, context);
+			CloseableHttpResponse response = httpClient.execute(httpPost, createHttpClientContext());
 			return response;
 		} catch (Exception e) {
 			logger.error(e.getMessage(), e);
@@ -160,7 +185,7 @@ public class HttpService {
 			httpPost.addHeader("Authorization", "Bearer " + ShUpOnloadConfig.getTokenString());
 			httpPost.setHeader(HttpHeaders.CONTENT_TYPE, CONTENT_TYPE_MULTIPART+";type="+CONTENT_TYPE_DICOM+";boundary="+BOUNDARY);
 			httpPost.setEntity(entity);
-			CloseableHttpResponse response = httpClient.execute(httpPost, context);
+			CloseableHttpResponse response = httpClient.execute(httpPost, createHttpClientContext());
 			return response;
 		} catch (Exception e) {
 			logger.error(e.getMessage(), e);
@@ -174,7 +199,7 @@ public class HttpService {
 			httpPut.addHeader("Authorization", "Bearer " + ShUpOnloadConfig.getTokenString());
 			StringEntity requestEntity = new StringEntity(json, ContentType.APPLICATION_JSON);
 			httpPut.setEntity(requestEntity);
-			CloseableHttpResponse response = httpClient.execute(httpPut, context);
+			CloseableHttpResponse response = httpClient.execute(httpPut, createHttpClientContext());
 			return response;
 		} catch (Exception e) {
 			logger.error(e.getMessage(), e);
@@ -211,7 +236,7 @@ public class HttpService {
 							new UsernamePasswordCredentials(serviceConfiguration.getProxyUser(),
 									serviceConfiguration.getProxyPassword().toCharArray()));
 					logger.info("buildHttpClient: credentialsProvider build.");
-					createHttpClientContext(proxyHost, credentialsProvider);
+					createProxyAuthentication(proxyHost, credentialsProvider);
 				}
 				logger.info("buildHttpClient: proxyHost (host+port) build.");
 			// Only host is configured, so do not set port
@@ -224,7 +249,7 @@ public class HttpService {
 							new UsernamePasswordCredentials(serviceConfiguration.getProxyUser(),
 									serviceConfiguration.getProxyPassword().toCharArray()));
 					logger.info("buildHttpClient: credentialsProvider build.");
-					createHttpClientContext(proxyHost, credentialsProvider);
+					createProxyAuthentication(proxyHost, credentialsProvider);
 				}
 				logger.info("buildHttpClient: proxyHost (host) build.");
 			} else {
@@ -235,20 +260,34 @@ public class HttpService {
 	}
 
 	/**
-	 * Create and assign a HttpContext necessary only for proxy authentication.
+	 * Create and assign the proxy authentication, used by the HttpContext of each request.
 	 * 
 	 * @param proxyHost
 	 * @param credentialsProvider
 	 */
-	private void createHttpClientContext(HttpHost proxyHost, BasicCredentialsProvider credentialsProvider) {
+	private void createProxyAuthentication(HttpHost proxyHost, BasicCredentialsProvider credentialsProvider) {
 		AuthCache authCache = new BasicAuthCache();
 		BasicScheme basicAuth = new BasicScheme();
 		authCache.put(proxyHost, basicAuth);
+		this.proxyCredentialsProvider = credentialsProvider;
+		this.proxyAuthCache = authCache;
+		logger.info("createProxyAuthentication: proxy authentication created and assigned.");
+	}
+
+	/**
+	 * Create a HttpContext, necessary only for proxy authentication: a context is not
+	 * thread safe, and the files are uploaded by several threads at once.
+	 * 
+	 * @return the context of a request, null without proxy authentication
+	 */
+	private HttpClientContext createHttpClientContext() {
+		if (proxyAuthCache == null) {
+			return null;
+		}
 		HttpClientContext context = HttpClientContext.create();
-		context.setCredentialsProvider(credentialsProvider);
-		context.setAuthCache(authCache);
-		this.context = context;
-		logger.info("createHttpClientContext: context created and assigned.");
+		context.setCredentialsProvider(proxyCredentialsProvider);
+		context.setAuthCache(proxyAuthCache);
+		return context;
 	}
 
 	/**
@@ -528,6 +528,36 @@ public class ShanoirUploaderServiceClient {
 		}
 	}
 	
+	public void uploadFiles(String tempDirId, List<File> files) throws Exception {
+		try (CloseableHttpResponse response = httpService.postFiles(this.serviceURLImporterCreateTempDir, tempDirId,
+				files)) {
+			int code = response.getCode();
+			if (code != HttpStatus.SC_OK) {
+				logger.error("Error in uploadFiles: with tempDirId " + tempDirId + " with " + files.size()
+						+ " files (first path: " + files.get(0).getAbsolutePath() + "), status code: "
+						+ code + ", message: " + apiResponseMessages.getOrDefault(code, "unknown status code"));
+				throw new Exception("Error in uploadFiles.");
+			}
+		}
+	}
+
+	/**
+	 * @param tempDirId
+	 * @return the names of the files already received in the tempDir, null if the tempDir does not exist anymore
+	 * @throws Exception
+	 */
+	public List<String> findUploadedFiles(String tempDirId) throws Exception {
+		try (CloseableHttpResponse response = httpService.get(this.serviceURLImporterCreateTempDir + "/" + tempDirId + "/files")) {
+			int code = response.getCode();
+			if (code == HttpStatus.SC_OK) {
+				return Util.getMappedList(response, String.class);
+			} else {
+				logger.warn("Could not get uploaded files of tempDir " + tempDirId + " (status code: " + code + ", message: " + apiResponseMessages.getOrDefault(code, "unknown status code") + ")");
+				return null;
+			}
+		}
+	}
+
 	public ImportJob uploadDicom(File file) throws Exception {
 		try (CloseableHttpResponse response = httpService.postFile(this.serviceURLImporterUploadDicom, file)) {
 			try (response) {
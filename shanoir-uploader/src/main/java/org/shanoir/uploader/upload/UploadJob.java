@@ -38,6 +38,9 @@ public class UploadJob {
 	private String uploadDate;
 	
 	private UploadState uploadState;
+
+	/** Temp dir of the upload on the server, kept to resume the upload */
+	private String tempDirId;
 	
 	private Collection<SerieTreeNode> series;
 	
@@ -91,6 +94,14 @@ public class UploadJob {
 		this.series = series;
 	}
 
+	public String getTempDirId() {
+		return tempDirId;
+	}
+
+	public void setTempDirId(String tempDirId) {
+		this.tempDirId = tempDirId;
+	}
+
 	public String getUploadDate() {
 		return uploadDate;
 	}
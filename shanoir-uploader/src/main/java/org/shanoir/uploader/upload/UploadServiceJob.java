@@ -5,8 +5,15 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.io.FileUtils;
 import org.shanoir.ng.importer.model.ImportJob;
@@ -40,6 +47,17 @@ public class UploadServiceJob {
 
 	private static final Logger logger = LoggerFactory.getLogger(UploadServiceJob.class);
 
+	/** Default maximum number of files sent with one request */
+	private static final int DEFAULT_UPLOAD_BATCH_SIZE = 50;
+
+	/** Default maximum number of requests sent in parallel */
+	private static final int DEFAULT_UPLOADS_IN_FLIGHT = 4;
+
+	private static final int DEFAULT_UPLOAD_BATCH_ATTEMPTS = 3;
+
+	/** Default minimum interval between two writes of the upload percentage on disk */
+	private static final int DEFAULT_PROGRESS_WRITE_INTERVAL_MS = 2000;
+
 	@Autowired
 	private ShanoirUploaderServiceClient shanoirUploaderServiceClient;
 
@@ -146,24 +164,21 @@ public class UploadServiceJob {
 			CurrentNominativeDataController currentNominativeDataController) {
 		try {
 			uploading = true;
-			String tempDirId = shanoirUploaderServiceClient.createTempDir();
-			logger.info("Upload: tempDirId for import: " + tempDirId);
+			final Set<String> uploadedFileNames = new HashSet<String>();
+			String tempDirId = findOrCreateTempDir(uploadJob, uploadJobManager, uploadedFileNames);
 			/**
-			 * Upload all DICOM files, one by one.
+			 * Upload all DICOM files not yet received by the server, by batches.
 			 */
-			int i = 0;
-			for (Iterator<File> iterator = allFiles.iterator(); iterator.hasNext();) {
-				File file = (File) iterator.next();
-				i++;
-				logger.debug("UploadServiceJob started to upload file: " + file.getName());
-				shanoirUploaderServiceClient.uploadFile(tempDirId, file);
-				logger.debug("UploadServiceJob finished to upload file: " + file.getName());
-				uploadPercentage = i * 100 / allFiles.size() + " %";
-				nominativeDataUploadJob.setUploadPercentage(uploadPercentage);
-				currentNominativeDataController.updateNominativeDataPercentage(folder, uploadPercentage);
-				nominativeDataUploadJobManager.writeUploadDataJob(nominativeDataUploadJob);
-				logger.debug("Upload percentage of folder " + folder.getName() + " = " + uploadPercentage + ".");
+			final List<File> filesToUpload = new ArrayList<File>();
+			for (File file : allFiles) {
+				if (!uploadedFileNames.contains(file.getName())) {
+					filesToUpload.add(file);
+				}
 			}
+			logger.info("Upload: tempDirId for import: " + tempDirId + ", " + filesToUpload.size() + " of "
+					+ allFiles.size() + " files to upload.");
+			uploadFiles(folder, tempDirId, filesToUpload, allFiles.size(), nominativeDataUploadJob,
+					nominativeDataUploadJobManager, currentNominativeDataController);
 			logger.info("Upload: " + allFiles.size() + " uploaded files to tempDirId: " + tempDirId);
 
 			/**
@@ -200,6 +215,115 @@ public class UploadServiceJob {
 		}
 	}
 
+	/**
+	 * Returns the tempDir of a previous, interrupted upload of the job if it still exists on
+	 * the server, with the names of the files it already received, or creates a new tempDir.
+	 * The tempDirId is kept in upload-job.xml to resume the upload after a restart of ShUp.
+	 * 
+	 * @param uploadJob
+	 * @param uploadJobManager
+	 * @param uploadedFileNames filled with the names of the files already on the server
+	 * @return the tempDirId
+	 * @throws Exception
+	 */
+	private String findOrCreateTempDir(final UploadJob uploadJob, final UploadJobManager uploadJobManager,
+			final Set<String> uploadedFileNames) throws Exception {
+		String tempDirId = uploadJob.getTempDirId();
+		if (tempDirId != null) {
+			List<String> fileNames = shanoirUploaderServiceClient.findUploadedFiles(tempDirId);
+			if (fileNames != null) {
+				uploadedFileNames.addAll(fileNames);
+				logger.info("Upload: resuming upload in tempDirId " + tempDirId + ", " + fileNames.size()
+						+ " files already uploaded.");
+				return tempDirId;
+			}
+		}
+		tempDirId = shanoirUploaderServiceClient.createTempDir();
+		if (tempDirId == null) {
+			throw new Exception("Could not create tempDir on server.");
+		}
+		uploadJob.setTempDirId(tempDirId);
+		uploadJobManager.writeUploadJob(uploadJob);
+		return tempDirId;
+	}
+
+	/**
+	 * Uploads the files by batches of upload.batch.size files, upload.batches.in.flight requests
+	 * being sent in parallel. The percentage is updated in the table after each batch, but
+	 * written on disk at most every upload.progress.write.interval.ms and after the last batch.
+	 * These values are read from basic.properties.
+	 * 
+	 * @param folder
+	 * @param tempDirId
+	 * @param filesToUpload
+	 * @param allFilesCount number of files of the upload, including the ones already uploaded
+	 * @throws Exception
+	 */
+	private void uploadFiles(final File folder, final String tempDirId, final List<File> filesToUpload,
+			final int allFilesCount, final NominativeDataUploadJob nominativeDataUploadJob,
+			NominativeDataUploadJobManager nominativeDataUploadJobManager,
+			CurrentNominativeDataController currentNominativeDataController) throws Exception {
+		int batchSize = ShUpConfig.getIntProperty(ShUpConfig.basicProperties, ShUpConfig.UPLOAD_BATCH_SIZE, DEFAULT_UPLOAD_BATCH_SIZE);
+		int uploadsInFlight = ShUpConfig.getIntProperty(ShUpConfig.basicProperties, ShUpConfig.UPLOAD_BATCHES_IN_FLIGHT, DEFAULT_UPLOADS_IN_FLIGHT);
+		int batchAttempts = ShUpConfig.getIntProperty(ShUpConfig.basicProperties, ShUpConfig.UPLOAD_BATCH_ATTEMPTS, DEFAULT_UPLOAD_BATCH_ATTEMPTS);
+		int progressWriteIntervalMs = ShUpConfig.getIntProperty(ShUpConfig.basicProperties,
+				ShUpConfig.UPLOAD_PROGRESS_WRITE_INTERVAL_MS, DEFAULT_PROGRESS_WRITE_INTERVAL_MS);
+		ExecutorService executor = Executors.newFixedThreadPool(uploadsInFlight);
+		try {
+			CompletionService<Integer> completionService = new ExecutorCompletionService<Integer>(executor);
+			int batches = 0;
+			for (int i = 0; i < filesToUpload.size(); i += batchSize) {
+				final List<File> batch = filesToUpload.subList(i, Math.min(i + batchSize, filesToUpload.size()));
+				completionService.submit(() -> uploadBatch(tempDirId, batch, batchAttempts));
+				batches++;
+			}
+			int uploadedFiles = allFilesCount - filesToUpload.size();
+			long lastWrite = 0;
+			for (int i = 0; i < batches; i++) {
+				try {
+					uploadedFiles += completionService.take().get();
+				} catch (ExecutionException e) {
+					throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+				}
+				uploadPercentage = (allFilesCount == 0 ? 100 : uploadedFiles * 100 / allFilesCount) + " %";
+				nominativeDataUploadJob.setUploadPercentage(uploadPercentage);
+				currentNominativeDataController.updateNominativeDataPercentage(folder, uploadPercentage);
+				long now = System.currentTimeMillis();
+				if (now - lastWrite >= progressWriteIntervalMs || i == batches - 1) {
+					nominativeDataUploadJobManager.writeUploadDataJob(nominativeDataUploadJob);
+					lastWrite = now;
+				}
+				logger.debug("Upload percentage of folder " + folder.getName() + " = " + uploadPercentage + ".");
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Sends a batch of files, again in case of error: the server ignores the files
+	 * it already received.
+	 * 
+	 * @param attempts maximum number of times the batch is sent
+	 * @return the number of uploaded files
+	 */
+	private int uploadBatch(final String tempDirId, final List<File> batch, final int attempts) throws Exception {
+		for (int attempt = 1;; attempt++) {
+			try {
+				logger.debug("UploadServiceJob started to upload " + batch.size() + " files, first: " + batch.get(0).getName());
+				shanoirUploaderServiceClient.uploadFiles(tempDirId, batch);
+				return batch.size();
+			} catch (Exception e) {
+				if (attempt >= attempts) {
+					throw e;
+				}
+				logger.warn("Upload of " + batch.size() + " files to tempDirId " + tempDirId + " failed (attempt "
+						+ attempt + "), retrying: " + e.getMessage());
+				Thread.sleep(attempt * 1000L);
+			}
+		}
+	}
+
 	/**
 	 * @param tempDirId
 	 * @param importJobJsonFile